@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.wss4j.stax.setup.OutboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.ext.SecurePart;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures securing a message with the streaming OutboundWSSec, for a number of action orders (which
+ * determine how much of the security header must be buffered to reorder it) and for different sizes
+ * of the SOAP Body. Running the benchmark via {@link #main} (or with "-prof gc") also reports the bytes
+ * allocated per message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutboundSecurityHeaderBenchmark {
+
+    private static final String KEY_NAME = "wss40";
+    private static final char[] KEYSTORE_PASSWORD = "security".toCharArray();
+    private static final String NS = "http://ws.apache.org/wss4j/benchmarks";
+
+    public enum Message {
+        TIMESTAMP_SIGNATURE(WSSConstants.TIMESTAMP, WSSConstants.SIGNATURE),
+        SIGNATURE_TIMESTAMP(WSSConstants.SIGNATURE, WSSConstants.TIMESTAMP),
+        SIGNATURE_ENCRYPTION_TIMESTAMP(WSSConstants.SIGNATURE, WSSConstants.ENCRYPTION, WSSConstants.TIMESTAMP);
+
+        private final List<XMLSecurityConstants.Action> actions;
+
+        Message(XMLSecurityConstants.Action... actions) {
+            this.actions = Arrays.asList(actions);
+        }
+    }
+
+    @Param
+    private Message message;
+
+    /**
+     * The number of elements in the SOAP Body
+     */
+    @Param({"1", "100", "1000"})
+    private int bodyElements;
+
+    private OutboundWSSec outboundWSSec;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.setActions(new ArrayList<>(message.actions));
+        securityProperties.loadSignatureKeyStore(
+            getClass().getClassLoader().getResource("keys/wss40.jks"), KEYSTORE_PASSWORD);
+        securityProperties.setSignatureUser(KEY_NAME);
+        securityProperties.setSignatureKeyIdentifier(
+            WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE);
+        securityProperties.loadEncryptionKeystore(
+            getClass().getClassLoader().getResource("keys/wss40.jks"), KEYSTORE_PASSWORD);
+        securityProperties.setEncryptionUser(KEY_NAME);
+        securityProperties.setCallbackHandler(new KeystoreCallbackHandler());
+        securityProperties.addSignaturePart(new SecurePart(WSSConstants.TAG_WSU_TIMESTAMP, SecurePart.Modifier.Element));
+        securityProperties.addSignaturePart(
+            new SecurePart(new QName(WSSConstants.NS_SOAP11, "Body"), SecurePart.Modifier.Element));
+
+        outboundWSSec = WSSec.getOutboundWSSec(securityProperties);
+    }
+
+    @Benchmark
+    public byte[] secureMessage() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024 + bodyElements * 64);
+        XMLStreamWriter writer =
+            outboundWSSec.processOutMessage(outputStream, StandardCharsets.UTF_8.name(), new ArrayList<SecurityEvent>());
+        writer.writeStartDocument();
+        writer.writeStartElement("soapenv", "Envelope", WSSConstants.NS_SOAP11);
+        writer.writeNamespace("soapenv", WSSConstants.NS_SOAP11);
+        writer.writeStartElement("soapenv", "Header", WSSConstants.NS_SOAP11);
+        writer.writeEndElement();
+        writer.writeStartElement("soapenv", "Body", WSSConstants.NS_SOAP11);
+        writer.writeStartElement("ns1", "order", NS);
+        writer.writeNamespace("ns1", NS);
+        for (int i = 0; i < bodyElements; i++) {
+            writer.writeStartElement("ns1", "item", NS);
+            writer.writeAttribute("id", Integer.toString(i));
+            writer.writeCharacters("item value " + i);
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+        return outputStream.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(OutboundSecurityHeaderBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+
+}
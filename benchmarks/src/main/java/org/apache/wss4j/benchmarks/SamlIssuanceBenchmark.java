@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.saml.OpenSAMLUtil;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.saml.bean.AttributeBean;
+import org.apache.wss4j.common.saml.bean.AttributeStatementBean;
+import org.apache.wss4j.common.saml.bean.ConditionsBean;
+import org.apache.wss4j.common.saml.bean.SubjectBean;
+import org.apache.wss4j.common.saml.bean.Version;
+import org.apache.wss4j.common.saml.builder.SAML1Constants;
+import org.apache.wss4j.common.saml.builder.SAML2Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Measures the number of signed SAML 1.1 and SAML 2.0 Assertions that can be issued per second,
+ * i.e. building the Assertion from a SAMLCallback, signing it, and marshalling it to DOM. The
+ * attribute statements are built once and reused as a template for every Assertion, as an
+ * STS would do for a given set of claims.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SamlIssuanceBenchmark {
+
+    private static final String ISSUER = "www.example.com";
+    private static final String ISSUER_KEY_NAME = "wss40";
+    private static final String ISSUER_KEY_PASSWORD = "security";
+
+    /**
+     * The number of attributes in the attribute statement of each issued Assertion
+     */
+    @Param({"1", "10"})
+    private int attributeCount;
+
+    private Crypto issuerCrypto;
+    private DocumentBuilder documentBuilder;
+    private List<AttributeBean> attributeTemplate;
+
+    @Setup
+    public void setUp() throws Exception {
+        OpenSAMLUtil.initSamlEngine();
+        issuerCrypto = CryptoFactory.getInstance("wss40.properties");
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        documentBuilder = factory.newDocumentBuilder();
+
+        attributeTemplate = new ArrayList<>(attributeCount);
+        for (int i = 0; i < attributeCount; i++) {
+            AttributeBean attributeBean = new AttributeBean();
+            attributeBean.setSimpleName("role" + i);
+            attributeBean.setQualifiedName("http://custom-ns/role" + i);
+            attributeBean.addAttributeValue("user");
+            attributeTemplate.add(attributeBean);
+        }
+    }
+
+    @Benchmark
+    public Element issueSaml11Assertion() throws Exception {
+        return issue(Version.SAML_11, SAML1Constants.CONF_SENDER_VOUCHES);
+    }
+
+    @Benchmark
+    public Element issueSaml20Assertion() throws Exception {
+        return issue(Version.SAML_20, SAML2Constants.CONF_SENDER_VOUCHES);
+    }
+
+    private Element issue(Version version, String confirmationMethod) throws Exception {
+        SAMLCallback samlCallback = new SAMLCallback();
+        samlCallback.setSamlVersion(version);
+        samlCallback.setIssuer(ISSUER);
+
+        SubjectBean subjectBean =
+            new SubjectBean("uid=joe,ou=people,ou=saml-demo,o=example.com", "www.example.com", confirmationMethod);
+        AttributeStatementBean attributeStatement = new AttributeStatementBean();
+        attributeStatement.setSubject(subjectBean);
+        attributeStatement.setSamlAttributes(attributeTemplate);
+        samlCallback.setSubject(subjectBean);
+        samlCallback.setAttributeStatementData(Collections.singletonList(attributeStatement));
+
+        ConditionsBean conditions = new ConditionsBean();
+        conditions.setTokenPeriodMinutes(5);
+        samlCallback.setConditions(conditions);
+
+        SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+        samlAssertion.signAssertion(ISSUER_KEY_NAME, ISSUER_KEY_PASSWORD, issuerCrypto, false);
+
+        Document doc = documentBuilder.newDocument();
+        return samlAssertion.toDOM(doc);
+    }
+
+}
@@ -0,0 +1,274 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.security.auth.callback.CallbackHandler;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.Attachment;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SAMLUtil;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.saml.builder.SAML1Constants;
+import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SAML1CallbackHandler;
+import org.apache.wss4j.dom.common.UsernamePasswordCallbackHandler;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.AttachmentCallbackHandler;
+import org.apache.wss4j.dom.message.WSSecEncrypt;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSignature;
+import org.apache.wss4j.dom.message.WSSecTimestamp;
+import org.apache.wss4j.dom.message.WSSecUsernameToken;
+import org.apache.wss4j.dom.saml.WSSecSignatureSAML;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+
+/**
+ * Measures WSSecurityEngine.processSecurityHeader for a number of representative secured messages, and
+ * for different sizes of the SOAP Body. Each message is secured once per trial, and is parsed into a new
+ * Document before every invocation (outside of the measurement), as processing modifies the Document.
+ * The throughput and the latency percentiles (SampleTime) are reported, and running the benchmark
+ * via {@link #main} (or with "-prof gc") also reports the bytes allocated per operation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecurityHeaderProcessingBenchmark {
+
+    private static final String KEY_NAME = "wss40";
+    private static final String KEY_PASSWORD = "security";
+    private static final int TTL = 3600;
+
+    private static final String ATTACHMENT_ID = "benchmark-attachment";
+    private static final byte[] ATTACHMENT_BYTES = new byte[64 * 1024];
+
+    public enum Message {
+        TIMESTAMP,
+        USERNAME_TOKEN_DIGEST,
+        X509_SIGNATURE,
+        SIGNATURE_ENCRYPTION,
+        SAML_HOLDER_OF_KEY,
+        SWA_SIGNATURE,
+    }
+
+    @Param
+    private Message message;
+
+    /**
+     * The number of elements in the SOAP Body
+     */
+    @Param({"1", "100", "1000"})
+    private int bodyElements;
+
+    private final WSSecurityEngine engine = new WSSecurityEngine();
+    private Crypto crypto;
+    private CallbackHandler callbackHandler;
+    private DocumentBuilder documentBuilder;
+    private byte[] securedMessage;
+
+    private Document document;
+    private RequestData requestData;
+
+    @Setup(Level.Trial)
+    public void setUpMessage() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance("wss40.properties");
+        callbackHandler = message == Message.USERNAME_TOKEN_DIGEST
+            ? new UsernamePasswordCallbackHandler() : new KeystoreCallbackHandler();
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        documentBuilder = factory.newDocumentBuilder();
+
+        Document doc = documentBuilder.parse(
+            new ByteArrayInputStream(createSoapMessage(bodyElements).getBytes(StandardCharsets.UTF_8)));
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+        secure(doc, secHeader);
+        securedMessage = serialize(doc);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws Exception {
+        document = documentBuilder.parse(new ByteArrayInputStream(securedMessage));
+
+        requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setDecCrypto(crypto);
+        requestData.setCallbackHandler(callbackHandler);
+        requestData.setTimeStampTTL(TTL);
+        requestData.setUtTTL(TTL);
+        if (message == Message.SWA_SIGNATURE) {
+            requestData.setAttachmentCallbackHandler(
+                new AttachmentCallbackHandler(Collections.singletonList(createAttachment())));
+        }
+    }
+
+    @Benchmark
+    public WSHandlerResult processSecurityHeader() throws Exception {
+        return engine.processSecurityHeader(document, requestData);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(SecurityHeaderProcessingBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+
+    private void secure(Document doc, WSSecHeader secHeader) throws Exception {
+        switch (message) {
+        case TIMESTAMP:
+            WSSecTimestamp timestamp = new WSSecTimestamp(secHeader);
+            timestamp.setTimeToLive(TTL);
+            timestamp.build();
+            break;
+        case USERNAME_TOKEN_DIGEST:
+            WSSecUsernameToken usernameToken = new WSSecUsernameToken(secHeader);
+            usernameToken.setUserInfo("wernerd", "verySecret");
+            usernameToken.setPasswordType(WSConstants.PASSWORD_DIGEST);
+            usernameToken.build();
+            break;
+        case X509_SIGNATURE:
+            sign(secHeader);
+            break;
+        case SIGNATURE_ENCRYPTION:
+            sign(secHeader);
+            WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+            encrypt.setUserInfo(KEY_NAME);
+            encrypt.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+            encrypt.setSymmetricEncAlgorithm(WSConstants.AES_128_GCM);
+            KeyGenerator keyGenerator = KeyUtils.getKeyGenerator(WSConstants.AES_128_GCM);
+            SecretKey symmetricKey = keyGenerator.generateKey();
+            encrypt.build(crypto, symmetricKey);
+            break;
+        case SAML_HOLDER_OF_KEY:
+            SAML1CallbackHandler samlCallbackHandler = new SAML1CallbackHandler();
+            samlCallbackHandler.setStatement(SAML1CallbackHandler.Statement.AUTHN);
+            samlCallbackHandler.setConfirmationMethod(SAML1Constants.CONF_HOLDER_KEY);
+            SAMLCallback samlCallback = new SAMLCallback();
+            SAMLUtil.doSAMLCallback(samlCallbackHandler, samlCallback);
+            SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+            samlAssertion.signAssertion(KEY_NAME, KEY_PASSWORD, crypto, false);
+
+            WSSecSignatureSAML samlSignature = new WSSecSignatureSAML(secHeader);
+            samlSignature.setUserInfo(KEY_NAME, KEY_PASSWORD);
+            samlSignature.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+            samlSignature.build(crypto, samlAssertion, null, null, null);
+            break;
+        case SWA_SIGNATURE:
+            WSSecSignature signature = new WSSecSignature(secHeader);
+            signature.setUserInfo(KEY_NAME, KEY_PASSWORD);
+            signature.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+            signature.getParts().add(WSSecurityUtil.getDefaultEncryptionPart(doc));
+            signature.getParts().add(new WSEncryptionPart("cid:Attachments", "Content"));
+            signature.setAttachmentCallbackHandler(
+                new AttachmentCallbackHandler(Collections.singletonList(createAttachment())));
+            signature.build(crypto);
+            break;
+        default:
+            throw new IllegalStateException("Unknown message: " + message);
+        }
+    }
+
+    private void sign(WSSecHeader secHeader) throws Exception {
+        WSSecSignature signature = new WSSecSignature(secHeader);
+        signature.setUserInfo(KEY_NAME, KEY_PASSWORD);
+        signature.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        signature.build(crypto);
+    }
+
+    private static Attachment createAttachment() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_ID, "<" + ATTACHMENT_ID + ">");
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_TYPE, "application/octet-stream");
+
+        Attachment attachment = new Attachment();
+        attachment.setId(ATTACHMENT_ID);
+        attachment.setMimeType("application/octet-stream");
+        attachment.addHeaders(headers);
+        attachment.setSourceStream(new ByteArrayInputStream(ATTACHMENT_BYTES));
+        return attachment;
+    }
+
+    private static String createSoapMessage(int elements) {
+        StringBuilder soapMessage = new StringBuilder(256 + elements * 64);
+        soapMessage.append("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">")
+            .append("<soapenv:Body><ns1:order xmlns:ns1=\"http://ws.apache.org/wss4j/benchmarks\">");
+        for (int i = 0; i < elements; i++) {
+            soapMessage.append("<ns1:item id=\"").append(i).append("\">item value ").append(i).append("</ns1:item>");
+        }
+        return soapMessage.append("</ns1:order></soapenv:Body></soapenv:Envelope>").toString();
+    }
+
+    private static byte[] serialize(Document doc) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.transform(new DOMSource(doc), new StreamResult(outputStream));
+        return outputStream.toByteArray();
+    }
+
+}
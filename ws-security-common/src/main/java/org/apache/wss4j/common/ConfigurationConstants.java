@@ -514,6 +514,16 @@ public class ConfigurationConstants {
     public static final String VALIDATE_SAML_SUBJECT_CONFIRMATION =
         "validateSamlSubjectConfirmation";
 
+    /**
+     * Whether to process a received SAML Token directly on the streamed XML events, rather than
+     * converting it to a DOM Element and unmarshalling it via OpenSAML. The signature of the Assertion
+     * is verified on the events, and the OpenSAML object is only created on demand. Assertions that
+     * are validated by a custom SamlTokenValidator are still unmarshalled, unless the validator opts in
+     * via StreamingSamlTokenValidator. This is only supported by the streaming (StAX) code. The default
+     * is false.
+     */
+    public static final String STREAMING_SAML_TOKEN_PROCESSING = "streamingSamlTokenProcessing";
+
     /**
      * Whether to include the Signature Token in the security header as well or not. This is only
      * applicable to the IssuerSerial, Thumbprint and SKI Key Identifier cases. The default is false.
@@ -552,6 +562,15 @@ public class ConfigurationConstants {
      */
     public static final String STORE_BYTES_IN_ATTACHMENT = "storeBytesInAttachment";
 
+    /**
+     * Whether to serialize and encrypt an Element that is stored in an attachment (see
+     * STORE_BYTES_IN_ATTACHMENT) as the attachment is read, instead of encrypting it into a byte array
+     * when the message is secured. The encrypted Element must then not be modified until the attachment
+     * has been written out, and an error while serializing or encrypting it is thrown as an IOException
+     * when the attachment is read, rather than when the message is secured. The default is false.
+     */
+    public static final String STREAM_BYTES_IN_ATTACHMENT = "streamBytesInAttachment";
+
     /**
      * Whether to expand xop:Include Elements encountered when verifying a Signature. The default is true,
      * meaning that the relevant attachment bytes are BASE-64 encoded and inserted into the Element. This
@@ -570,6 +589,35 @@ public class ConfigurationConstants {
      */
     public static final String EXPAND_XOP_INCLUDE = "expandXOPInclude";
 
+    /**
+     * Whether to stream the BASE-64 encoded attachment bytes referenced by xop:Include Elements into
+     * the digest when signing an Element on the outbound side, instead of inlining them into a copy of
+     * the Element in the DOM tree. This only applies if EXPAND_XOP_INCLUDE is true. The default is false.
+     */
+    public static final String STREAM_XOP_INCLUDE = "streamXOPInclude";
+
+    /**
+     * Whether to buffer the plaintext of received AES-GCM encrypted (SwA) attachments outside of the Cipher.
+     * If this is set to true, the attachment is decrypted through the JCE Cipher when it is first read, and
+     * the plaintext is kept in memory up to 1 MB and in a temporary file above that, until Cipher.doFinal
+     * has verified the authentication tag. No plaintext is released before the tag has been verified. This
+     * only bounds the heap that is used with a JCE provider that releases AES-GCM plaintext incrementally
+     * (the SunJCE provider buffers the complete ciphertext in the Cipher). The default is false.
+     */
+    public static final String AUTHENTICATE_ATTACHMENT_BEFORE_RELEASE = "authenticateAttachmentBeforeRelease";
+
+    /**
+     * The maximum number of decrypted (SwA) attachment bytes of a message that are buffered in memory by
+     * the streaming (StAX) code. If this is set to a value of zero or more, each decrypted attachment is
+     * read completely, and so authenticated, before it is passed to the attachment CallbackHandler. The
+     * decrypted bytes are buffered in memory until the budget of the message is used up, after which
+     * they are written to a temporary file instead. The default is -1, meaning that the decrypted
+     * attachments are not buffered, but are decrypted as the application reads them. The budget only
+     * applies to attachments: decrypted XML (EncryptedData in the SOAP message) is streamed and is not
+     * counted against it. An invalid (non-numeric) value is reported as a WSSecurityException.
+     */
+    public static final String DECRYPTION_MEMORY_BUDGET = "decryptionMemoryBudget";
+
     //
     // (Non-boolean) Configuration parameters for the actions/processors
     //
@@ -962,6 +1010,34 @@ public class ConfigurationConstants {
      */
     public static final String SAML_ONE_TIME_USE_CACHE_INSTANCE = "samlOneTimeUseCacheInstance";
 
+    /**
+     * This holds a reference to a ReplayCache instance used to cache the authenticators of received
+     * Kerberos AP-REQ tokens, to detect replayed tokens. There is no default instance, and so only the
+     * replay detection of the GSS-API implementation applies unless it is set.
+     */
+    public static final String KERBEROS_REPLAY_CACHE_INSTANCE = "kerberosReplayCacheInstance";
+
+    /**
+     * This holds a reference to a KerberosTicketCache instance used to cache the session keys that a
+     * KerberosTokenDecoder obtained from received service tickets, so that a ticket that is reused with a
+     * new authenticator is not decoded again. There is no default instance.
+     */
+    public static final String KERBEROS_TICKET_CACHE_INSTANCE = "kerberosTicketCacheInstance";
+
+    /**
+     * This holds a reference to a SecurityContextStore instance used to look up the secrets of
+     * established security contexts (and to cache the keys derived from them) before asking the
+     * CallbackHandler. There is no default instance.
+     */
+    public static final String SECURITY_CONTEXT_STORE_INSTANCE = "securityContextStoreInstance";
+
+    /**
+     * This holds a reference to a UsernameTokenDerivedKeyCache instance used to cache the keys derived
+     * from received UsernameTokens, so that the key of a UsernameToken that reuses a salt is not derived
+     * again. There is no default instance, and so every key is derived unless it is set.
+     */
+    public static final String UT_DERIVED_KEY_CACHE_INSTANCE = "utDerivedKeyCacheInstance";
+
     /**
      * This holds a reference to a PasswordEncryptor instance, which is used to encrypt or
      * decrypt passwords in the Merlin Crypto implementation (or any custom Crypto implementations).
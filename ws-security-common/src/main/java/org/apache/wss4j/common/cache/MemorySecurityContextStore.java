@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.cache;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A simple in-memory ConcurrentHashMap based SecurityContextStore. Lookups do not lock, and expired
+ * security contexts are removed when they are looked up, or by a sweep of the store every so many
+ * additions. The default TTL is 60 minutes and the max TTL is 12 hours. The number of derived keys
+ * cached per security context is bounded, as each message may derive its keys with a fresh nonce.
+ */
+public class MemorySecurityContextStore implements SecurityContextStore {
+
+    public static final long DEFAULT_TTL = 60L * 60L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+    public static final int DEFAULT_MAX_DERIVED_KEYS = 64;
+
+    private static final int SWEEP_INTERVAL = 256;
+
+    private final Map<String, SecurityContext> contexts = new ConcurrentHashMap<>();
+    private final int maxDerivedKeys;
+    private int additions;
+
+    public MemorySecurityContextStore() {
+        this(DEFAULT_MAX_DERIVED_KEYS);
+    }
+
+    public MemorySecurityContextStore(int maxDerivedKeys) {
+        this.maxDerivedKeys = maxDerivedKeys;
+    }
+
+    /**
+     * Add the secret of the given security context. It will be stored for a default amount of time.
+     * @param identifier The identifier of the security context
+     * @param secret The shared secret of the security context
+     */
+    @Override
+    public void add(String identifier, byte[] secret) {
+        add(identifier, secret, Instant.now().plusSeconds(DEFAULT_TTL));
+    }
+
+    /**
+     * Add the secret of the given security context, to be stored until the given expiry time
+     * @param identifier The identifier of the security context
+     * @param secret The shared secret of the security context
+     * @param expiry A custom expiry time for the security context
+     */
+    @Override
+    public void add(String identifier, byte[] secret, Instant expiry) {
+        if (identifier == null || identifier.length() == 0 || secret == null || secret.length == 0) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        Instant maxTTL = now.plusSeconds(MAX_TTL);
+        if (expiry == null || expiry.isBefore(now) || expiry.isAfter(maxTTL)) {
+            expiry = now.plusSeconds(DEFAULT_TTL);
+        }
+
+        contexts.put(identifier, new SecurityContext(secret.clone(), expiry));
+        sweep(now);
+    }
+
+    /**
+     * Get the secret of the given security context
+     * @param identifier The identifier of the security context
+     * @return the shared secret of the security context, or null if the security context is unknown or expired
+     */
+    @Override
+    public byte[] getSecret(String identifier) {
+        SecurityContext context = getContext(identifier);
+        return context != null ? context.secret.clone() : null;
+    }
+
+    /**
+     * Remove the given security context, together with any keys derived from it
+     * @param identifier The identifier of the security context
+     */
+    @Override
+    public void remove(String identifier) {
+        if (identifier != null) {
+            contexts.remove(identifier);
+        }
+    }
+
+    /**
+     * Get a key derived from the secret of the given security context
+     * @param identifier The identifier of the security context
+     * @param derivationKey An identifier of the derivation parameters (algorithm, label, nonce, offset and length)
+     * @return the derived key, or null if it is not cached
+     */
+    @Override
+    public byte[] getDerivedKey(String identifier, String derivationKey) {
+        SecurityContext context = getContext(identifier);
+        if (context == null || derivationKey == null) {
+            return null;
+        }
+        byte[] derivedKey = context.derivedKeys.get(derivationKey);
+        return derivedKey != null ? derivedKey.clone() : null;
+    }
+
+    /**
+     * Cache a key derived from the secret of the given security context. The key is discarded together
+     * with the security context.
+     * @param identifier The identifier of the security context
+     * @param derivationKey An identifier of the derivation parameters (algorithm, label, nonce, offset and length)
+     * @param derivedKey The derived key
+     */
+    @Override
+    public void addDerivedKey(String identifier, String derivationKey, byte[] derivedKey) {
+        SecurityContext context = getContext(identifier);
+        if (context == null || derivationKey == null || derivedKey == null) {
+            return;
+        }
+        if (context.derivedKeys.size() >= maxDerivedKeys) {
+            // Keys derived with a per-message nonce are not reused, so just start again
+            context.derivedKeys.clear();
+        }
+        context.derivedKeys.put(derivationKey, derivedKey.clone());
+    }
+
+    @Override
+    public synchronized void close() {
+        contexts.clear();
+    }
+
+    private SecurityContext getContext(String identifier) {
+        if (identifier == null) {
+            return null;
+        }
+        SecurityContext context = contexts.get(identifier);
+        if (context != null && !Instant.now().isBefore(context.expiry)) {
+            contexts.remove(identifier, context);
+            return null;
+        }
+        return context;
+    }
+
+    private void sweep(Instant now) {
+        synchronized (this) {
+            if (++additions < SWEEP_INTERVAL) {
+                return;
+            }
+            additions = 0;
+        }
+        contexts.values().removeIf(context -> !now.isBefore(context.expiry));
+    }
+
+    private static final class SecurityContext {
+        private final byte[] secret;
+        private final Instant expiry;
+        private final Map<String, byte[]> derivedKeys = new ConcurrentHashMap<>();
+
+        SecurityContext(byte[] secret, Instant expiry) {
+            this.secret = secret;
+            this.expiry = expiry;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.time.Instant;
+
+/**
+ * A store of the shared secrets of established WS-SecureConversation security contexts, keyed by the
+ * identifier of the SecurityContextToken. The secret of a context is looked up in the store before the
+ * CallbackHandler is asked for it. Keys derived from the secret of a context (via a DerivedKeyToken) can
+ * also be cached per context, so that they are not derived again for every message. Implementations must
+ * be thread-safe.
+ */
+public interface SecurityContextStore extends Closeable {
+
+    /**
+     * Add the secret of the given security context. It will be stored for a default amount of time.
+     * @param identifier The identifier of the security context
+     * @param secret The shared secret of the security context
+     */
+    void add(String identifier, byte[] secret);
+
+    /**
+     * Add the secret of the given security context, to be stored until the given expiry time
+     * @param identifier The identifier of the security context
+     * @param secret The shared secret of the security context
+     * @param expiry A custom expiry time for the security context
+     */
+    void add(String identifier, byte[] secret, Instant expiry);
+
+    /**
+     * Get the secret of the given security context
+     * @param identifier The identifier of the security context
+     * @return the shared secret of the security context, or null if the security context is unknown or expired
+     */
+    byte[] getSecret(String identifier);
+
+    /**
+     * Remove the given security context, together with any keys derived from it
+     * @param identifier The identifier of the security context
+     */
+    void remove(String identifier);
+
+    /**
+     * Get a key derived from the secret of the given security context
+     * @param identifier The identifier of the security context
+     * @param derivationKey An identifier of the derivation parameters (algorithm, label, nonce, offset and length)
+     * @return the derived key, or null if it is not cached
+     */
+    byte[] getDerivedKey(String identifier, String derivationKey);
+
+    /**
+     * Cache a key derived from the secret of the given security context. The key is discarded together
+     * with the security context.
+     * @param identifier The identifier of the security context
+     * @param derivationKey An identifier of the derivation parameters (algorithm, label, nonce, offset and length)
+     * @param derivedKey The derived key
+     */
+    void addDerivedKey(String identifier, String derivationKey, byte[] derivedKey);
+
+}
@@ -283,10 +283,12 @@ public class CertificateStore extends CryptoBase {
     @Override
     public void verifyTrust(X509Certificate[] certs, boolean enableRevocation, Collection<Pattern> subjectCertConstraints,
                             Collection<Pattern> issuerCertConstraints) throws WSSecurityException {
-        verifyTrust(certs, enableRevocation, subjectCertConstraints);
-        if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
-        }
+        verifyTrustOnce(certs, enableRevocation, subjectCertConstraints, issuerCertConstraints, () -> {
+            verifyTrust(certs, enableRevocation, subjectCertConstraints);
+            if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+            }
+        });
     }
 
     /**
@@ -30,9 +30,15 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -63,6 +69,10 @@ public abstract class CryptoBase implements Crypto {
     private String defaultAlias;
     private String cryptoProvider;
     private String trustProvider;
+    private X509CertificateCache certificateCache = X509CertificateCache.getDefault();
+    private final Map<TrustVerificationKey, CompletableFuture<Void>> pendingTrustVerifications =
+        new ConcurrentHashMap<>();
+    private boolean coalesceTrustVerifications = true;
 
     static {
         Constructor<?> cons = null;
@@ -113,6 +123,25 @@ public abstract class CryptoBase implements Crypto {
         return trustProvider;
     }
 
+    /**
+     * Get whether concurrent verifications of the same certificate chain (with the same revocation
+     * setting and constraints) share a single verification. The default is true.
+     * @return whether concurrent verifications of the same certificate chain are coalesced
+     */
+    public boolean isCoalesceTrustVerifications() {
+        return coalesceTrustVerifications;
+    }
+
+    /**
+     * Set whether concurrent verifications of the same certificate chain (with the same revocation
+     * setting and constraints) share a single verification.
+     * @param coalesceTrustVerifications whether concurrent verifications of the same certificate
+     * chain are coalesced
+     */
+    public void setCoalesceTrustVerifications(boolean coalesceTrustVerifications) {
+        this.coalesceTrustVerifications = coalesceTrustVerifications;
+    }
+
     /**
      * Retrieves the identifier name of the default certificate. This should be the certificate
      * that is used for signature and encryption. This identifier corresponds to the certificate
@@ -197,6 +226,42 @@ public abstract class CryptoBase implements Crypto {
         }
     }
 
+    /**
+     * Load a X509Certificate from its encoded form. The parsed certificate is taken from the
+     * X509CertificateCache if one is configured. Otherwise it is loaded with loadCertificate(InputStream),
+     * and added to the cache.
+     *
+     * @param data The <code>byte</code> array containing the X509 data
+     * @return An X509 certificate
+     * @throws WSSecurityException
+     */
+    @Override
+    public X509Certificate loadCertificate(byte[] data) throws WSSecurityException {
+        if (certificateCache == null) {
+            return Crypto.super.loadCertificate(data);
+        }
+        return certificateCache.getCertificate(
+            data, getCertificateFactory(), () -> Crypto.super.loadCertificate(data)
+        );
+    }
+
+    /**
+     * Get the cache of parsed certificates used by loadCertificate(byte[]) and getCertificatesFromBytes.
+     * The shared X509CertificateCache.getDefault() instance is used by default.
+     * @return the X509CertificateCache, or null if parsed certificates are not cached
+     */
+    public X509CertificateCache getCertificateCache() {
+        return certificateCache;
+    }
+
+    /**
+     * Set the cache of parsed certificates used by loadCertificate(byte[]) and getCertificatesFromBytes.
+     * @param certificateCache the X509CertificateCache, or null to parse every certificate
+     */
+    public void setCertificateCache(X509CertificateCache certificateCache) {
+        this.certificateCache = certificateCache;
+    }
+
     /**
      * Reads the SubjectKeyIdentifier information from the certificate.
      * <p/>
@@ -276,10 +341,21 @@ public abstract class CryptoBase implements Crypto {
      * @throws WSSecurityException
      */
     public X509Certificate[] getCertificatesFromBytes(byte[] data)
+        throws WSSecurityException {
+        CertificateFactory certFactory = getCertificateFactory();
+        if (certificateCache != null) {
+            return certificateCache.getCertificateChain(
+                data, certFactory, () -> parseCertificateChain(data, certFactory)
+            );
+        }
+        return parseCertificateChain(data, certFactory);
+    }
+
+    private static X509Certificate[] parseCertificateChain(byte[] data, CertificateFactory certFactory)
         throws WSSecurityException {
         CertPath path = null;
         try (InputStream in = new ByteArrayInputStream(data)) {
-            path = getCertificateFactory().generateCertPath(in);
+            path = certFactory.generateCertPath(in);
         } catch (CertificateException | IOException e) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "parseError"
@@ -306,6 +382,78 @@ public abstract class CryptoBase implements Crypto {
         return new X500Principal(s);
     }
 
+    /**
+     * Run the given verification of a certificate chain, unless a verification of the same chain with
+     * the same revocation setting and constraints is already in progress on another thread, in which
+     * case the result of that verification is waited for and shared. Only in-flight verifications are
+     * shared, the result is not cached beyond the completion of the verification.
+     *
+     * @param certs the certificate chain to verify
+     * @param enableRevocation whether revocation checking is enabled
+     * @param subjectCertConstraints the constraints on the Subject DN of the certificate
+     * @param issuerCertConstraints the constraints on the Issuer DN of the certificate
+     * @param verification the verification to run
+     * @throws WSSecurityException if the certificate chain is invalid
+     */
+    protected void verifyTrustOnce(
+        X509Certificate[] certs,
+        boolean enableRevocation,
+        Collection<Pattern> subjectCertConstraints,
+        Collection<Pattern> issuerCertConstraints,
+        TrustVerification verification
+    ) throws WSSecurityException {
+        if (!coalesceTrustVerifications || certs == null || certs.length == 0) {
+            verification.verify();
+            return;
+        }
+
+        TrustVerificationKey key =
+            new TrustVerificationKey(certs, enableRevocation, subjectCertConstraints, issuerCertConstraints);
+        CompletableFuture<Void> newVerification = new CompletableFuture<>();
+        CompletableFuture<Void> pendingVerification = pendingTrustVerifications.putIfAbsent(key, newVerification);
+        if (pendingVerification == null) {
+            try {
+                verification.verify();
+                newVerification.complete(null);
+            } catch (WSSecurityException | RuntimeException | Error e) {
+                newVerification.completeExceptionally(e);
+                throw e;
+            } finally {
+                pendingTrustVerifications.remove(key, newVerification);
+            }
+            return;
+        }
+
+        LOG.debug("Waiting for the pending verification of the certificate chain of {}",
+                  certs[0].getSubjectX500Principal().getName());
+        try {
+            pendingVerification.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "certpath",
+                                          new Object[] {"Interrupted"});
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WSSecurityException) {
+                throw (WSSecurityException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, (Exception) cause, "certpath",
+                                          new Object[] {cause.getMessage()});
+        }
+    }
+
+    /**
+     * A verification of a certificate chain, see {@link #verifyTrustOnce}
+     */
+    @FunctionalInterface
+    protected interface TrustVerification {
+        void verify() throws WSSecurityException;
+    }
+
     /**
      * @return      true if the certificate's SubjectDN matches the constraints defined in the
      *              subject DNConstraints; false, otherwise. The certificate subject DN only
@@ -409,4 +557,54 @@ public abstract class CryptoBase implements Crypto {
                         "Invalid type for NameConstraints; must be Sequence or OctetString-encoded Sequence");
         }
     }
+
+    private static final class TrustVerificationKey {
+        private final List<X509Certificate> certs;
+        private final boolean enableRevocation;
+        private final List<String> subjectCertConstraints;
+        private final List<String> issuerCertConstraints;
+        private final int hashCode;
+
+        TrustVerificationKey(X509Certificate[] certs, boolean enableRevocation,
+                             Collection<Pattern> subjectCertConstraints, Collection<Pattern> issuerCertConstraints) {
+            this.certs = Arrays.asList(certs.clone());
+            this.enableRevocation = enableRevocation;
+            this.subjectCertConstraints = toStrings(subjectCertConstraints);
+            this.issuerCertConstraints = toStrings(issuerCertConstraints);
+            this.hashCode = Objects.hash(this.certs, enableRevocation,
+                                         this.subjectCertConstraints, this.issuerCertConstraints);
+        }
+
+        private static List<String> toStrings(Collection<Pattern> patterns) {
+            if (patterns == null) {
+                return null;
+            }
+            List<String> strings = new ArrayList<>(patterns.size());
+            for (Pattern pattern : patterns) {
+                strings.add(pattern.flags() + ":" + pattern.pattern());
+            }
+            return strings;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TrustVerificationKey)) {
+                return false;
+            }
+            TrustVerificationKey other = (TrustVerificationKey) obj;
+            return hashCode == other.hashCode
+                && enableRevocation == other.enableRevocation
+                && certs.equals(other.certs)
+                && Objects.equals(subjectCertConstraints, other.subjectCertConstraints)
+                && Objects.equals(issuerCertConstraints, other.issuerCertConstraints);
+        }
+    }
 }
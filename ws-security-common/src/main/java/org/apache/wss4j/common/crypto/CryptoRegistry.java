@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.crypto;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A registry of ReloadableCrypto instances, keyed by the name of the crypto properties file or by a
+ * reference to crypto properties. The Crypto instances are rebuilt in the background when the crypto
+ * files change (see {@link ReloadableCrypto}), so that keys can be rotated and partner certificates added
+ * without a restart. The registry can be shared between handlers.
+ */
+public class CryptoRegistry {
+
+    private final Map<String, ReloadableCrypto> cryptos = new ConcurrentHashMap<>();
+    private long checkInterval = ReloadableCrypto.DEFAULT_CHECK_INTERVAL;
+
+    /**
+     * Get the current Crypto instance for the given crypto properties file, loading it if required
+     * @param propFilename the location of the crypto properties file
+     * @param classLoader the ClassLoader to load the properties file and the crypto files with
+     * @param passwordEncryptor the PasswordEncryptor to decrypt encrypted passwords with
+     * @return the current Crypto instance
+     * @throws WSSecurityException if the Crypto instance cannot be created
+     */
+    public Crypto getCrypto(
+        String propFilename, ClassLoader classLoader, PasswordEncryptor passwordEncryptor
+    ) throws WSSecurityException {
+        ReloadableCrypto reloadableCrypto = cryptos.get(propFilename);
+        if (reloadableCrypto == null) {
+            reloadableCrypto = register(propFilename,
+                                        new ReloadableCrypto(propFilename, classLoader, passwordEncryptor));
+        }
+        return reloadableCrypto.getCrypto();
+    }
+
+    /**
+     * Get the current Crypto instance for the given crypto properties file, loading it with the given
+     * CryptoLoader if required. The CryptoLoader is kept to create the Crypto instance again on a reload.
+     * @param propFilename the location of the crypto properties file
+     * @param classLoader the ClassLoader to load the properties file with, and to locate the crypto files
+     * @param cryptoLoader the CryptoLoader that creates the Crypto instances
+     * @return the current Crypto instance
+     * @throws WSSecurityException if the Crypto instance cannot be created
+     */
+    public Crypto getCrypto(
+        String propFilename, ClassLoader classLoader, ReloadableCrypto.CryptoLoader cryptoLoader
+    ) throws WSSecurityException {
+        ReloadableCrypto reloadableCrypto = cryptos.get(propFilename);
+        if (reloadableCrypto == null) {
+            reloadableCrypto = register(propFilename, new ReloadableCrypto(propFilename, classLoader, cryptoLoader));
+        }
+        return reloadableCrypto.getCrypto();
+    }
+
+    /**
+     * Get the current Crypto instance for the given reference to crypto properties, loading it if required
+     * @param refId the reference to the crypto properties
+     * @param properties the crypto properties
+     * @param classLoader the ClassLoader to load the crypto files with
+     * @param passwordEncryptor the PasswordEncryptor to decrypt encrypted passwords with
+     * @return the current Crypto instance
+     * @throws WSSecurityException if the Crypto instance cannot be created
+     */
+    public Crypto getCrypto(
+        String refId, Properties properties, ClassLoader classLoader, PasswordEncryptor passwordEncryptor
+    ) throws WSSecurityException {
+        ReloadableCrypto reloadableCrypto = cryptos.get(refId);
+        if (reloadableCrypto == null) {
+            reloadableCrypto = register(refId, new ReloadableCrypto(properties, classLoader, passwordEncryptor));
+        }
+        return reloadableCrypto.getCrypto();
+    }
+
+    private ReloadableCrypto register(String key, ReloadableCrypto reloadableCrypto) {
+        reloadableCrypto.setCheckInterval(checkInterval);
+        // Another thread might have loaded the same Crypto in the meantime
+        ReloadableCrypto existingCrypto = cryptos.putIfAbsent(key, reloadableCrypto);
+        return existingCrypto != null ? existingCrypto : reloadableCrypto;
+    }
+
+    /**
+     * Get the ReloadableCrypto registered for the given key
+     * @param key the name of the crypto properties file, or the reference to the crypto properties
+     * @return the ReloadableCrypto, or null if none is registered
+     */
+    public ReloadableCrypto getReloadableCrypto(String key) {
+        return cryptos.get(key);
+    }
+
+    /**
+     * Remove the Crypto registered for the given key, so that it is loaded again when it is next retrieved
+     * @param key the name of the crypto properties file, or the reference to the crypto properties
+     */
+    public void remove(String key) {
+        cryptos.remove(key);
+    }
+
+    /**
+     * Remove all registered Crypto instances
+     */
+    public void clear() {
+        cryptos.clear();
+    }
+
+    /**
+     * Get the number of seconds between checks for changed crypto files of newly registered Crypto
+     * instances. The default is 60 seconds.
+     * @return the number of seconds between checks for changed crypto files
+     */
+    public long getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * Set the number of seconds between checks for changed crypto files of newly registered Crypto
+     * instances. A value of 0 disables the check.
+     * @param checkInterval the number of seconds between checks for changed crypto files
+     */
+    public void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+}
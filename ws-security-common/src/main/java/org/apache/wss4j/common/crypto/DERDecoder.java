@@ -220,4 +220,13 @@ public class DERDecoder {
         return value;
     }
 
+    /**
+     * Test if there are bytes left after the current position.
+     *
+     * @return true if the current position is not at the end of the array.
+     */
+    public boolean hasRemaining() {
+        return pos < arr.length;
+    }
+
 }
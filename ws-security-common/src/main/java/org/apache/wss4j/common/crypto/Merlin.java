@@ -22,6 +22,8 @@ package org.apache.wss4j.common.crypto;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
@@ -45,14 +47,19 @@ import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXCertPathChecker;
 import java.security.cert.PKIXParameters;
+import java.security.cert.PKIXRevocationChecker;
 import java.security.cert.TrustAnchor;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -118,6 +125,15 @@ public class Merlin extends CryptoBase {
      * CRL configuration
      */
     public static final String X509_CRL_FILE = "x509crl.file";
+    public static final String X509_CRL_INDEX = "x509crl.index";
+    public static final String X509_CRL_RELOAD_INTERVAL = "x509crl.reload.interval";
+
+    /*
+     * OCSP configuration
+     */
+    public static final String OCSP_ENABLE = "ocsp.enable";
+    public static final String OCSP_RESPONDER_URL = "ocsp.responder.url";
+    public static final String OCSP_TIMEOUT = "ocsp.timeout";
 
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(Merlin.class);
@@ -127,6 +143,7 @@ public class Merlin extends CryptoBase {
     protected KeyStore keystore;
     protected KeyStore truststore;
     protected CertStore crlCertStore;
+    protected ReloadableX509CRLIndex crlIndex;
     protected boolean loadCACerts;
     protected boolean privatePasswordSet;
     protected PasswordEncryptor passwordEncryptor;
@@ -134,6 +151,11 @@ public class Merlin extends CryptoBase {
     private boolean certProviderHandlesNameConstraints = false;
     private boolean enablePrivateKeyCaching = true;
     private Map<String, PrivateKey> privateKeyCache = new ConcurrentHashMap<>();
+    private boolean enableOCSP;
+    private URI ocspResponder;
+    private OCSPResponseCache ocspResponseCache = new OCSPResponseCache();
+    private OCSPClient ocspClient = new OCSPClient();
+    private X509CRLIndex crlCertStoreIndex;
 
     public Merlin() {
         // default constructor
@@ -314,14 +336,29 @@ public class Merlin extends CryptoBase {
         if (crlLocations != null) {
             String[] splittedCrlsLocations = crlLocations.split(COMMA_SEPARATOR);
             List<X509CRL> crls = new ArrayList<>(splittedCrlsLocations.length);
-            for (String crlLocation : splittedCrlsLocations) {
-                try (InputStream is = loadInputStream(loader, crlLocation.trim())) {
-                    CertificateFactory cf = getCertificateFactory();
-                    X509CRL crl = (X509CRL)cf.generateCRL(is);
-                    crls.add(crl);
-                } catch (Exception e) {
-                    LOG.debug(e.getMessage(), e);
-                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
+            X509CRLIndex index = null;
+            String crlReloadInterval = properties.getProperty(prefix + X509_CRL_RELOAD_INTERVAL);
+            if (Boolean.parseBoolean(properties.getProperty(prefix + X509_CRL_INDEX)) || crlReloadInterval != null) {
+                List<String> trimmedCrlLocations = new ArrayList<>(splittedCrlsLocations.length);
+                for (String crlLocation : splittedCrlsLocations) {
+                    trimmedCrlLocations.add(crlLocation.trim());
+                }
+                crlIndex = new ReloadableX509CRLIndex(loader, trimmedCrlLocations, getCertificateFactory());
+                if (crlReloadInterval != null) {
+                    crlIndex.setCheckInterval(Long.parseLong(crlReloadInterval.trim()));
+                }
+                index = crlIndex.getIndex();
+                crls.addAll(index.getCRLs());
+            } else {
+                for (String crlLocation : splittedCrlsLocations) {
+                    try (InputStream is = loadInputStream(loader, crlLocation.trim())) {
+                        CertificateFactory cf = getCertificateFactory();
+                        X509CRL crl = (X509CRL)cf.generateCRL(is);
+                        crls.add(crl);
+                    } catch (Exception e) {
+                        LOG.debug(e.getMessage(), e);
+                        throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
+                    }
                 }
             }
             try {
@@ -344,8 +381,30 @@ public class Merlin extends CryptoBase {
                 LOG.debug(e.getMessage(), e);
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
             }
+            crlCertStoreIndex = index;
             LOG.debug("The CRL files {} have been loaded", crlLocations);
         }
+
+        //
+        // OCSP
+        //
+        String ocspEnableProp = properties.getProperty(prefix + OCSP_ENABLE);
+        if (ocspEnableProp != null) {
+            enableOCSP = Boolean.parseBoolean(ocspEnableProp);
+        }
+        String ocspResponderUrl = properties.getProperty(prefix + OCSP_RESPONDER_URL);
+        if (ocspResponderUrl != null) {
+            try {
+                ocspResponder = new URI(ocspResponderUrl.trim());
+            } catch (URISyntaxException e) {
+                LOG.debug(e.getMessage(), e);
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
+            }
+        }
+        String ocspTimeout = properties.getProperty(prefix + OCSP_TIMEOUT);
+        if (ocspTimeout != null) {
+            ocspClient.setTimeout(Integer.parseInt(ocspTimeout.trim()));
+        }
     }
 
     /**
@@ -430,20 +489,56 @@ public class Merlin extends CryptoBase {
      * @param crlCertStore the CertStore from which to obtain a list of CRLs for Certificate
      * Revocation checking.
      */
-    public void setCRLCertStore(CertStore crlCertStore) {
+    public synchronized void setCRLCertStore(CertStore crlCertStore) {
         this.crlCertStore = crlCertStore;
+        crlCertStoreIndex = null;
     }
 
     /**
      * Get the CertStore from which to obtain a list of CRLs for Certificate Revocation
-     * checking.
+     * checking. If the CertStore was created from the CRLs of the CRL index, and the index
+     * has been reloaded since, it is replaced by a CertStore of the reloaded CRLs.
      * @return the CertStore from which to obtain a list of CRLs for Certificate
      * Revocation checking.
      */
-    public CertStore getCRLCertStore() {
+    public synchronized CertStore getCRLCertStore() {
+        if (crlIndex != null && crlCertStoreIndex != null) {
+            X509CRLIndex index = crlIndex.getIndex();
+            if (index != crlCertStoreIndex) {
+                try {
+                    crlCertStore =
+                        CertStore.getInstance(
+                            "Collection",
+                            new CollectionCertStoreParameters(index.getCRLs()),
+                            crlCertStore.getProvider()
+                        );
+                    crlCertStoreIndex = index;
+                } catch (GeneralSecurityException e) {
+                    LOG.warn("The CRL CertStore could not be replaced with the reloaded CRLs: {}", e.getMessage());
+                }
+            }
+        }
         return crlCertStore;
     }
 
+    /**
+     * Set the index of the CRLs for Certificate Revocation checking. If it is set, the revocation status
+     * of certificates is checked with an X509CRLRevocationChecker against the index instead of against
+     * the CRL CertStore.
+     * @param crlIndex the index of the CRLs for Certificate Revocation checking
+     */
+    public void setCRLIndex(ReloadableX509CRLIndex crlIndex) {
+        this.crlIndex = crlIndex;
+    }
+
+    /**
+     * Get the index of the CRLs for Certificate Revocation checking.
+     * @return the index of the CRLs for Certificate Revocation checking
+     */
+    public ReloadableX509CRLIndex getCRLIndex() {
+        return crlIndex;
+    }
+
     /**
      * Singleton certificate factory for this Crypto instance.
      * <p/>
@@ -843,13 +938,7 @@ public class Merlin extends CryptoBase {
             }
 
             // Verify the trust path using the above settings
-            String provider = getCryptoProvider();
-            CertPathValidator validator = null;
-            if (provider == null || provider.length() == 0) {
-                validator = CertPathValidator.getInstance("PKIX");
-            } else {
-                validator = CertPathValidator.getInstance("PKIX", provider);
-            }
+            CertPathValidator validator = getCertPathValidator();
 
             PKIXParameters param = createPKIXParameters(set, enableRevocation);
 
@@ -864,6 +953,7 @@ public class Merlin extends CryptoBase {
 
                     List<X509Certificate> certList = Arrays.asList(x509certs);
                     CertPath path = getCertificateFactory().generateCertPath(certList);
+                    path = addOCSPRevocationChecker(validator, param, path, set);
 
                     try {
                         validator.validate(path, param);
@@ -881,6 +971,7 @@ public class Merlin extends CryptoBase {
             } else {
                 List<X509Certificate> certList = Arrays.asList(certs);
                 CertPath path = getCertificateFactory().generateCertPath(certList);
+                path = addOCSPRevocationChecker(validator, param, path, set);
 
                 validator.validate(path, param);
             }
@@ -903,10 +994,12 @@ public class Merlin extends CryptoBase {
     public void verifyTrust(X509Certificate[] certs, boolean enableRevocation,
                             Collection<Pattern> subjectCertConstraints,
                             Collection<Pattern> issuerCertConstraints) throws WSSecurityException {
-        verifyTrust(certs, enableRevocation, subjectCertConstraints);
-        if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
-        }
+        verifyTrustOnce(certs, enableRevocation, subjectCertConstraints, issuerCertConstraints, () -> {
+            verifyTrust(certs, enableRevocation, subjectCertConstraints);
+            if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+            }
+        });
     }
 
     // Separated out to allow subclasses to override it
@@ -914,6 +1007,23 @@ public class Merlin extends CryptoBase {
         Set<TrustAnchor> trustAnchors, boolean enableRevocation
     ) throws InvalidAlgorithmParameterException {
         PKIXParameters param = new PKIXParameters(trustAnchors);
+        if (enableRevocation && crlIndex != null) {
+            // Revocation is checked against the CRL index rather than by the CertPathValidator
+            param.setRevocationEnabled(false);
+            if (enableOCSP) {
+                // OCSP is used for the certificates the revocation status of which the CRLs do not determine
+                param.addCertPathChecker(new X509CRLRevocationChecker(crlIndex.getIndex(), trustAnchors) {
+                    @Override
+                    protected void checkUndeterminedRevocationStatus(X509Certificate cert, X509Certificate issuerCert)
+                        throws java.security.cert.CertPathValidatorException {
+                        checkOCSPRevocationStatus(cert, issuerCert);
+                    }
+                });
+            } else {
+                param.addCertPathChecker(new X509CRLRevocationChecker(crlIndex.getIndex(), trustAnchors));
+            }
+            return param;
+        }
         param.setRevocationEnabled(enableRevocation);
         if (enableRevocation && crlCertStore != null) {
             param.addCertStore(crlCertStore);
@@ -922,6 +1032,166 @@ public class Merlin extends CryptoBase {
         return param;
     }
 
+    /**
+     * If OCSP is enabled and the revocation is checked by the CertPathValidator, add a PKIXRevocationChecker
+     * that checks the revocation status of the certificates of the path with OCSP to the PKIXParameters. The
+     * OCSP responses are taken from the OCSPResponseCache, or fetched from the OCSP responder and cached, and
+     * then passed to the PKIXRevocationChecker, which verifies them.
+     *
+     * OCSP responses are only fetched by the OCSPClient, within its timeout, and never by the
+     * PKIXRevocationChecker itself. If the OCSP response of a certificate cannot be obtained, the revocation
+     * status of the path is checked against the CRL CertStore alone, or, without a CRL CertStore, the path is
+     * rejected.
+     *
+     * A trust anchor certificate at the end of the path is removed from the path, as its revocation status
+     * cannot (and need not) be checked.
+     *
+     * @param validator the CertPathValidator
+     * @param param the PKIXParameters
+     * @param path the certificate path to validate
+     * @param trustAnchors the trust anchors
+     * @return the certificate path to validate
+     * @throws CertificateException if the certificate path cannot be created
+     * @throws WSSecurityException if the CertificateFactory cannot be created
+     * @throws java.security.cert.CertPathValidatorException if an OCSP response cannot be obtained and
+     * no CRL CertStore is configured
+     */
+    protected CertPath addOCSPRevocationChecker(
+        CertPathValidator validator, PKIXParameters param, CertPath path, Set<TrustAnchor> trustAnchors
+    ) throws CertificateException, WSSecurityException, java.security.cert.CertPathValidatorException {
+        if (!enableOCSP || !param.isRevocationEnabled()) {
+            return path;
+        }
+        List<? extends Certificate> certs = path.getCertificates();
+        if (certs.size() > 1) {
+            Certificate lastCert = certs.get(certs.size() - 1);
+            for (TrustAnchor trustAnchor : trustAnchors) {
+                if (lastCert.equals(trustAnchor.getTrustedCert())) {
+                    certs = certs.subList(0, certs.size() - 1);
+                    path = getCertificateFactory().generateCertPath(certs);
+                    break;
+                }
+            }
+        }
+
+        Map<X509Certificate, byte[]> ocspResponses = new HashMap<>();
+        for (int i = 0; i < certs.size(); i++) {
+            X509Certificate cert = (X509Certificate) certs.get(i);
+            X509Certificate issuerCert = null;
+            if (i + 1 < certs.size()) {
+                issuerCert = (X509Certificate) certs.get(i + 1);
+            } else {
+                for (TrustAnchor trustAnchor : trustAnchors) {
+                    X509Certificate trustedCert = trustAnchor.getTrustedCert();
+                    if (trustedCert != null
+                        && trustedCert.getSubjectX500Principal().equals(cert.getIssuerX500Principal())) {
+                        issuerCert = trustedCert;
+                        break;
+                    }
+                }
+            }
+
+            byte[] ocspResponse = getOCSPResponse(cert, issuerCert);
+            if (ocspResponse == null) {
+                if (crlCertStore == null) {
+                    throw new java.security.cert.CertPathValidatorException(
+                        "Could not obtain the OCSP response", null, path, i,
+                        java.security.cert.CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS
+                    );
+                }
+                // Leave the revocation checking to the CRLs rather than have the CertPathValidator fetch it
+                return path;
+            }
+            ocspResponses.put(cert, ocspResponse);
+        }
+
+        PKIXRevocationChecker revocationChecker = (PKIXRevocationChecker) validator.getRevocationChecker();
+        revocationChecker.setOcspResponses(ocspResponses);
+        if (ocspResponder != null) {
+            revocationChecker.setOcspResponder(ocspResponder);
+        }
+        if (crlCertStore == null) {
+            revocationChecker.setOptions(EnumSet.of(PKIXRevocationChecker.Option.NO_FALLBACK));
+        }
+        List<PKIXCertPathChecker> certPathCheckers = new ArrayList<>();
+        for (PKIXCertPathChecker certPathChecker : param.getCertPathCheckers()) {
+            if (!(certPathChecker instanceof PKIXRevocationChecker)) {
+                certPathCheckers.add(certPathChecker);
+            }
+        }
+        certPathCheckers.add(revocationChecker);
+        param.setCertPathCheckers(certPathCheckers);
+        return path;
+    }
+
+    /**
+     * Check the revocation status of a certificate, that could not be determined from the CRL index, with
+     * OCSP. The certificate is validated on its own, with its issuer as the trust anchor, by a
+     * CertPathValidator with a PKIXRevocationChecker that is given the OCSP response of the certificate.
+     *
+     * @param cert the certificate
+     * @param issuerCert the certificate of the issuer of the certificate, or null if it is not known
+     * @throws java.security.cert.CertPathValidatorException if the certificate is revoked, or its revocation
+     * status cannot be determined
+     */
+    protected void checkOCSPRevocationStatus(X509Certificate cert, X509Certificate issuerCert)
+        throws java.security.cert.CertPathValidatorException {
+        byte[] ocspResponse = issuerCert != null ? getOCSPResponse(cert, issuerCert) : null;
+        if (ocspResponse == null) {
+            throw new java.security.cert.CertPathValidatorException(
+                "Could not determine revocation status", null, null, -1,
+                java.security.cert.CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS
+            );
+        }
+        try {
+            CertPathValidator validator = getCertPathValidator();
+            PKIXRevocationChecker revocationChecker = (PKIXRevocationChecker) validator.getRevocationChecker();
+            revocationChecker.setOcspResponses(Collections.singletonMap(cert, ocspResponse));
+            if (ocspResponder != null) {
+                revocationChecker.setOcspResponder(ocspResponder);
+            }
+            revocationChecker.setOptions(EnumSet.of(PKIXRevocationChecker.Option.NO_FALLBACK));
+
+            PKIXParameters param = new PKIXParameters(Collections.singleton(new TrustAnchor(issuerCert, null)));
+            param.addCertPathChecker(revocationChecker);
+            validator.validate(getCertificateFactory().generateCertPath(Collections.singletonList(cert)), param);
+        } catch (NoSuchProviderException | NoSuchAlgorithmException | CertificateException
+            | InvalidAlgorithmParameterException | WSSecurityException e) {
+            throw new java.security.cert.CertPathValidatorException(
+                "Could not determine revocation status", e, null, -1,
+                java.security.cert.CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS
+            );
+        }
+    }
+
+    /**
+     * Get the OCSP response of a certificate from the OCSPResponseCache, or fetch it from the OCSP responder
+     * with the OCSPClient and cache it.
+     * @return the OCSP response of the certificate, or null if it cannot be obtained
+     */
+    private byte[] getOCSPResponse(X509Certificate cert, X509Certificate issuerCert) {
+        byte[] ocspResponse = ocspResponseCache.get(cert);
+        URI responder = ocspResponder != null ? ocspResponder : OCSPClient.getResponderURI(cert);
+        if (ocspResponse == null && issuerCert != null && responder != null) {
+            try {
+                ocspResponse = ocspClient.getResponse(cert, issuerCert, responder);
+                ocspResponseCache.put(cert, ocspResponse);
+            } catch (WSSecurityException e) {
+                LOG.debug("The OCSP response for {} could not be fetched: {}",
+                          cert.getSubjectX500Principal().getName(), e.getMessage());
+            }
+        }
+        return ocspResponse;
+    }
+
+    private CertPathValidator getCertPathValidator() throws NoSuchAlgorithmException, NoSuchProviderException {
+        String provider = getCryptoProvider();
+        if (provider == null || provider.length() == 0) {
+            return CertPathValidator.getInstance("PKIX");
+        }
+        return CertPathValidator.getInstance("PKIX", provider);
+    }
+
     /**
      * Evaluate whether a given public key should be trusted.
      *
@@ -1548,6 +1818,75 @@ public class Merlin extends CryptoBase {
         }
     }
 
+    /**
+     * Get whether the revocation status of certificates is checked with OCSP
+     * @return whether the revocation status of certificates is checked with OCSP
+     */
+    public boolean isEnableOCSP() {
+        return enableOCSP;
+    }
+
+    /**
+     * Set whether the revocation status of certificates is checked with OCSP, when revocation is enabled.
+     * If a CRL CertStore is configured as well, the PKIXRevocationChecker falls back to the CRLs if the
+     * OCSP status of a certificate cannot be determined. If a CRL index is configured, it is checked first,
+     * and OCSP is only used for the certificates the revocation status of which the CRLs do not determine.
+     * OCSP responses are fetched within the timeout of the OCSPClient, which may be set with the
+     * "ocsp.timeout" property, in milliseconds.
+     * @param enableOCSP whether the revocation status of certificates is checked with OCSP
+     */
+    public void setEnableOCSP(boolean enableOCSP) {
+        this.enableOCSP = enableOCSP;
+    }
+
+    /**
+     * Get the URI of the OCSP responder that overrides the responder named in the certificates
+     * @return the URI of the OCSP responder
+     */
+    public URI getOCSPResponder() {
+        return ocspResponder;
+    }
+
+    /**
+     * Set the URI of the OCSP responder that overrides the responder named in the certificates
+     * @param ocspResponder the URI of the OCSP responder
+     */
+    public void setOCSPResponder(URI ocspResponder) {
+        this.ocspResponder = ocspResponder;
+    }
+
+    /**
+     * Get the cache of OCSP responses. Pre-fetched (e.g. stapled) OCSP responses can be added to it.
+     * @return the cache of OCSP responses
+     */
+    public OCSPResponseCache getOCSPResponseCache() {
+        return ocspResponseCache;
+    }
+
+    /**
+     * Set the cache of OCSP responses, e.g. to share it between Crypto instances
+     * @param ocspResponseCache the cache of OCSP responses
+     */
+    public void setOCSPResponseCache(OCSPResponseCache ocspResponseCache) {
+        this.ocspResponseCache = ocspResponseCache;
+    }
+
+    /**
+     * Get the OCSPClient used to fetch OCSP responses
+     * @return the OCSPClient used to fetch OCSP responses
+     */
+    public OCSPClient getOCSPClient() {
+        return ocspClient;
+    }
+
+    /**
+     * Set the OCSPClient used to fetch OCSP responses
+     * @param ocspClient the OCSPClient used to fetch OCSP responses
+     */
+    public void setOCSPClient(OCSPClient ocspClient) {
+        this.ocspClient = ocspClient;
+    }
+
     public boolean isEnablePrivateKeyCaching() {
         return enablePrivateKeyCaching;
     }
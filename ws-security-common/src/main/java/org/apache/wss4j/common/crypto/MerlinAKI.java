@@ -190,6 +190,7 @@ public class MerlinAKI extends Merlin {
             }
 
             PKIXParameters param = createPKIXParameters(set, enableRevocation);
+            path = addOCSPRevocationChecker(validator, param, path, set);
             validator.validate(path, param);
         } catch (NoSuchProviderException | NoSuchAlgorithmException
             | CertificateException | InvalidAlgorithmParameterException
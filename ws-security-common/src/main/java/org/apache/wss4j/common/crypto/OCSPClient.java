@@ -0,0 +1,284 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A minimal OCSP client, that fetches the OCSP response for a certificate from an OCSP responder with an HTTP
+ * POST request. The request identifies the certificate with a SHA-1 CertID, as required by RFC 5019, and
+ * carries no nonce, so that the response can be cached. The response is not verified here, this is left to
+ * the PKIX revocation checker.
+ *
+ * A fetch is bounded by an explicit timeout: the connect and read timeouts are capped by the time left
+ * until the deadline of the fetch, and the fetch fails once the deadline has passed, so that a slow
+ * responder cannot hold up a certificate path validation for longer than about the timeout.
+ */
+public class OCSPClient {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 10000;
+    public static final int DEFAULT_TIMEOUT = 10000;
+    public static final int DEFAULT_MAX_RESPONSE_SIZE = 1024 * 1024;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(OCSPClient.class);
+
+    private static final String AUTHORITY_INFO_ACCESS_OID = "1.3.6.1.5.5.7.1.1";  //NOPMD - not an IP address
+    private static final byte[] ID_AD_OCSP = {0x2B, 0x06, 0x01, 0x05, 0x05, 0x07, 0x30, 0x01};
+    private static final byte[] SHA1_ALGORITHM_IDENTIFIER = {
+        0x30, 0x09, 0x06, 0x05, 0x2B, 0x0E, 0x03, 0x02, 0x1A, 0x05, 0x00
+    };
+    private static final int URI_TAG = 0x86;
+
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private int readTimeout = DEFAULT_READ_TIMEOUT;
+    private int timeout = DEFAULT_TIMEOUT;
+    private int maxResponseSize = DEFAULT_MAX_RESPONSE_SIZE;
+
+    /**
+     * Fetch the OCSP response for the given certificate
+     * @param cert the certificate
+     * @param issuerCert the certificate of the issuer of the certificate
+     * @param responder the URI of the OCSP responder
+     * @return the DER encoded OCSP response
+     * @throws WSSecurityException if the response cannot be fetched
+     */
+    public byte[] getResponse(X509Certificate cert, X509Certificate issuerCert, URI responder)
+        throws WSSecurityException {
+        byte[] request = createRequest(cert, issuerCert);
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) responder.toURL().openConnection();
+            connection.setConnectTimeout(Math.min(connectTimeout, timeout));
+            connection.setReadTimeout(Math.min(readTimeout, timeout));
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/ocsp-request");
+            connection.setRequestProperty("Accept", "application/ocsp-response");
+            connection.setFixedLengthStreamingMode(request.length);
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(request);
+            }
+            connection.setReadTimeout(getRemainingTime(deadline));
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "certpath",
+                    new Object[] {"OCSP responder returned HTTP status " + connection.getResponseCode()});
+            }
+            try (InputStream inputStream = connection.getInputStream()) {
+                ByteArrayOutputStream response = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    getRemainingTime(deadline);
+                    if (response.size() + read > maxResponseSize) {
+                        throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "certpath",
+                            new Object[] {"The OCSP response exceeds " + maxResponseSize + " bytes"});
+                    }
+                    response.write(buffer, 0, read);
+                }
+                return response.toByteArray();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "certpath",
+                                          new Object[] {e.getMessage()});
+        }
+    }
+
+    /**
+     * Get the time left until the deadline of a fetch in milliseconds
+     * @throws SocketTimeoutException if the deadline has passed
+     */
+    private static int getRemainingTime(long deadline) throws SocketTimeoutException {
+        long remainingTime = deadline - System.currentTimeMillis();
+        if (remainingTime <= 0) {
+            throw new SocketTimeoutException("The OCSP response was not received within the timeout");
+        }
+        return (int) Math.min(remainingTime, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get the URI of the OCSP responder from the Authority Information Access extension of the certificate
+     * @param cert the certificate
+     * @return the URI of the OCSP responder, or null if the certificate does not name an OCSP responder
+     */
+    public static URI getResponderURI(X509Certificate cert) {
+        byte[] extension = cert.getExtensionValue(AUTHORITY_INFO_ACCESS_OID);
+        if (extension == null) {
+            return null;
+        }
+        try {
+            DERDecoder decoder = new DERDecoder(extension);
+            decoder.expect(DERDecoder.TYPE_OCTET_STRING);
+            decoder.getLength();
+            decoder.expect(DERDecoder.TYPE_SEQUENCE);
+            DERDecoder accessDescriptions = new DERDecoder(decoder.getBytes(decoder.getLength()));
+            while (accessDescriptions.hasRemaining()) {
+                // AccessDescription ::= SEQUENCE { accessMethod OID, accessLocation GeneralName }
+                accessDescriptions.expect(DERDecoder.TYPE_SEQUENCE);
+                DERDecoder accessDescription =
+                    new DERDecoder(accessDescriptions.getBytes(accessDescriptions.getLength()));
+                accessDescription.expect(DERDecoder.TYPE_OBJECT_IDENTIFIER);
+                byte[] accessMethod = accessDescription.getBytes(accessDescription.getLength());
+                if (Arrays.equals(accessMethod, ID_AD_OCSP) && accessDescription.test((byte) URI_TAG)) {
+                    accessDescription.expect(URI_TAG);
+                    byte[] uri = accessDescription.getBytes(accessDescription.getLength());
+                    return URI.create(new String(uri, StandardCharsets.US_ASCII));
+                }
+            }
+        } catch (WSSecurityException | IllegalArgumentException e) {
+            LOG.debug("Error parsing the Authority Information Access extension: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Create a DER encoded OCSP request for the given certificate
+     */
+    static byte[] createRequest(X509Certificate cert, X509Certificate issuerCert) throws WSSecurityException {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] issuerNameHash = sha1.digest(issuerCert.getSubjectX500Principal().getEncoded());
+            byte[] issuerKeyHash = sha1.digest(getSubjectPublicKey(issuerCert));
+
+            byte[] certId = der(0x30, SHA1_ALGORITHM_IDENTIFIER, der(0x04, issuerNameHash),
+                                der(0x04, issuerKeyHash), der(0x02, cert.getSerialNumber().toByteArray()));
+            // OCSPRequest ::= SEQUENCE { TBSRequest ::= SEQUENCE { requestList SEQUENCE OF Request } }
+            return der(0x30, der(0x30, der(0x30, der(0x30, certId))));
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "certpath",
+                                          new Object[] {e.getMessage()});
+        }
+    }
+
+    /**
+     * Get the value of the subjectPublicKey BIT STRING of the certificate, without the unused bits byte
+     */
+    private static byte[] getSubjectPublicKey(X509Certificate cert) throws WSSecurityException {
+        DERDecoder decoder = new DERDecoder(cert.getPublicKey().getEncoded());
+        decoder.expect(DERDecoder.TYPE_SEQUENCE);
+        decoder.getLength();
+        decoder.expect(DERDecoder.TYPE_SEQUENCE);
+        decoder.skip(decoder.getLength());
+        decoder.expect(DERDecoder.TYPE_BIT_STRING);
+        int length = decoder.getLength();
+        decoder.skip(1);
+        return decoder.getBytes(length - 1);
+    }
+
+    private static byte[] der(int tag, byte[]... contents) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] bytes : contents) {
+            content.write(bytes, 0, bytes.length);
+        }
+        ByteArrayOutputStream der = new ByteArrayOutputStream();
+        der.write(tag);
+        int length = content.size();
+        if (length < 0x80) {
+            der.write(length);
+        } else if (length < 0x100) {
+            der.write(0x81);
+            der.write(length);
+        } else {
+            der.write(0x82);
+            der.write(length >> 8);
+            der.write(length & 0xFF);
+        }
+        der.write(content.toByteArray(), 0, length);
+        return der.toByteArray();
+    }
+
+    /**
+     * Get the connect timeout in milliseconds. The default is 5 seconds.
+     * @return the connect timeout in milliseconds
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Set the connect timeout in milliseconds
+     * @param connectTimeout the connect timeout in milliseconds
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Get the read timeout in milliseconds. The default is 10 seconds.
+     * @return the read timeout in milliseconds
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Set the read timeout in milliseconds
+     * @param readTimeout the read timeout in milliseconds
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Get the maximum time a fetch of an OCSP response may take in milliseconds, including connecting,
+     * sending the request and reading the response. The default is 10 seconds.
+     * @return the maximum time a fetch of an OCSP response may take in milliseconds
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Set the maximum time a fetch of an OCSP response may take in milliseconds
+     * @param timeout the maximum time a fetch of an OCSP response may take in milliseconds
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Get the maximum size of an OCSP response in bytes. The default is 1 MB.
+     * @return the maximum size of an OCSP response in bytes
+     */
+    public int getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    /**
+     * Set the maximum size of an OCSP response in bytes
+     * @param maxResponseSize the maximum size of an OCSP response in bytes
+     */
+    public void setMaxResponseSize(int maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+}
@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.crypto;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * Caches (DER encoded) OCSP responses per certificate, so that the revocation status of a certificate does
+ * not have to be fetched from the OCSP responder for every certificate path validation. A response is cached
+ * until its nextUpdate time, and for at most the configured time to live. Responses without a nextUpdate time
+ * are not cached, as newer revocation information is then always available. The number of entries is
+ * bounded, the least recently used entry being evicted first.
+ *
+ * An application can also put OCSP responses it obtained itself (e.g. responses stapled to a message) into
+ * the cache. The cache does not verify the responses, they are verified by the PKIX revocation checker as if
+ * they had been fetched from the OCSP responder.
+ */
+public class OCSPResponseCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL = 3600L;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(OCSPResponseCache.class);
+
+    private static final int SEQUENCE_TAG = 0x30;
+    private static final int ENUMERATED_TAG = 0x0A;
+    private static final int INTEGER_TAG = 0x02;
+    private static final int GENERALIZED_TIME_TAG = 0x18;
+    private static final int CONTEXT_0_TAG = 0xA0;
+    private static final int OCTET_STRING_TAG = 0x04;
+    private static final DateTimeFormatter GENERALIZED_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final Map<String, CachedResponse> responses;
+    private long ttl = DEFAULT_TTL;
+
+    public OCSPResponseCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public OCSPResponseCache(final int maxEntries) {
+        this.responses = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            private static final long serialVersionUID = 4130963851532712658L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the cached OCSP response for the given certificate
+     * @param cert the certificate
+     * @return the DER encoded OCSP response, or null if no current response is cached
+     */
+    public byte[] get(X509Certificate cert) {
+        String key = getKey(cert);
+        synchronized (responses) {
+            CachedResponse cachedResponse = responses.get(key);
+            if (cachedResponse != null) {
+                if (Instant.now().isBefore(cachedResponse.expiry)) {
+                    return cachedResponse.response.clone();
+                }
+                responses.remove(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cache the OCSP response for the given certificate
+     * @param cert the certificate
+     * @param response the DER encoded OCSP response
+     * @return whether the response was cached, i.e. whether it is a successful response for the
+     * certificate with a nextUpdate time in the future
+     */
+    public boolean put(X509Certificate cert, byte[] response) {
+        Instant nextUpdate = getNextUpdate(response, cert.getSerialNumber());
+        Instant now = Instant.now();
+        if (nextUpdate == null || !now.isBefore(nextUpdate)) {
+            LOG.debug("The OCSP response for {} is not cached", cert.getSubjectX500Principal().getName());
+            return false;
+        }
+        Instant expiry = now.plusSeconds(ttl);
+        if (nextUpdate.isBefore(expiry)) {
+            expiry = nextUpdate;
+        }
+        synchronized (responses) {
+            responses.put(getKey(cert), new CachedResponse(response.clone(), expiry));
+        }
+        return true;
+    }
+
+    /**
+     * Remove the cached OCSP response for the given certificate
+     * @param cert the certificate
+     */
+    public void remove(X509Certificate cert) {
+        synchronized (responses) {
+            responses.remove(getKey(cert));
+        }
+    }
+
+    /**
+     * Remove all cached OCSP responses
+     */
+    public void clear() {
+        synchronized (responses) {
+            responses.clear();
+        }
+    }
+
+    /**
+     * Get the maximum number of seconds an OCSP response is cached for. The default is one hour.
+     * @return the maximum number of seconds an OCSP response is cached for
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Set the maximum number of seconds an OCSP response is cached for
+     * @param ttl the maximum number of seconds an OCSP response is cached for
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    private static String getKey(X509Certificate cert) {
+        return cert.getIssuerX500Principal().getName(X500Principal.CANONICAL)
+            + ":" + cert.getSerialNumber().toString(16);
+    }
+
+    /**
+     * Get the nextUpdate time of the single response for the given serial number of a successful OCSP response.
+     * Only the outer DER structure of the response is walked, the response is not verified.
+     * @return the nextUpdate time, or null if the response is not successful, has no single response for the
+     * serial number, or the single response has no nextUpdate time
+     */
+    static Instant getNextUpdate(byte[] response, BigInteger serialNumber) {
+        try {
+            // OCSPResponse
+            int offset = enter(response, 0, SEQUENCE_TAG);
+            if ((response[offset] & 0xFF) != ENUMERATED_TAG || response[offset + 2] != 0) {
+                return null;
+            }
+            offset = enter(response, nextOffset(response, offset), CONTEXT_0_TAG);
+            // ResponseBytes: the responseType and the BasicOCSPResponse in an OCTET STRING
+            offset = enter(response, offset, SEQUENCE_TAG);
+            offset = enter(response, nextOffset(response, offset), OCTET_STRING_TAG);
+            offset = enter(response, offset, SEQUENCE_TAG);
+            // ResponseData: skip the version, responderID and producedAt to the responses
+            offset = enter(response, offset, SEQUENCE_TAG);
+            while ((response[offset] & 0xFF) != SEQUENCE_TAG) {
+                offset = nextOffset(response, offset);
+            }
+            int responsesEnd = nextOffset(response, offset);
+            offset = enter(response, offset, SEQUENCE_TAG);
+            while (offset < responsesEnd) {
+                int next = nextOffset(response, offset);
+                Instant nextUpdate = getNextUpdate(response, enter(response, offset, SEQUENCE_TAG), serialNumber);
+                if (nextUpdate != null) {
+                    return nextUpdate;
+                }
+                offset = next;
+            }
+        } catch (RuntimeException | WSSecurityException ex) {
+            LOG.debug("Error parsing the OCSP response: {}", ex.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Get the nextUpdate time of the SingleResponse at the given offset, if it is for the given serial number
+     */
+    private static Instant getNextUpdate(byte[] response, int offset, BigInteger serialNumber)
+        throws WSSecurityException {
+        // CertID: skip the hash algorithm, issuer name hash and issuer key hash to the serial number
+        int certIdEnd = nextOffset(response, offset);
+        int serialOffset = enter(response, offset, SEQUENCE_TAG);
+        for (int i = 0; i < 3; i++) {
+            serialOffset = nextOffset(response, serialOffset);
+        }
+        if ((response[serialOffset] & 0xFF) != INTEGER_TAG) {
+            return null;
+        }
+        byte[] serial = Arrays.copyOfRange(response, contentOffset(response, serialOffset),
+                                           nextOffset(response, serialOffset));
+        if (!serialNumber.equals(new BigInteger(serial))) {
+            return null;
+        }
+        // Skip the certStatus and thisUpdate
+        offset = nextOffset(response, nextOffset(response, certIdEnd));
+        if ((response[offset] & 0xFF) != CONTEXT_0_TAG) {
+            return null;
+        }
+        offset = enter(response, offset, CONTEXT_0_TAG);
+        if ((response[offset] & 0xFF) != GENERALIZED_TIME_TAG) {
+            return null;
+        }
+        String time = new String(response, contentOffset(response, offset),
+                                 nextOffset(response, offset) - contentOffset(response, offset),
+                                 StandardCharsets.US_ASCII);
+        // Drop any fractional seconds and the trailing "Z"
+        return LocalDateTime.parse(time.substring(0, 14), GENERALIZED_TIME_FORMAT).toInstant(ZoneOffset.UTC);
+    }
+
+    /**
+     * Check the tag of the DER element at the given offset, and get the offset of its contents
+     */
+    private static int enter(byte[] der, int offset, int tag) throws WSSecurityException {
+        if ((der[offset] & 0xFF) != tag) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "certpath",
+                                          new Object[] {"Unexpected DER tag " + (der[offset] & 0xFF)});
+        }
+        return contentOffset(der, offset);
+    }
+
+    /**
+     * Get the offset of the contents of the DER element at the given offset
+     */
+    private static int contentOffset(byte[] der, int offset) {
+        int lengthByte = der[offset + 1] & 0xFF;
+        if (lengthByte < 0x80) {
+            return offset + 2;
+        }
+        return offset + 2 + (lengthByte & 0x7F);
+    }
+
+    /**
+     * Get the offset following the DER element at the given offset
+     */
+    private static int nextOffset(byte[] der, int offset) throws WSSecurityException {
+        int lengthByte = der[offset + 1] & 0xFF;
+        int length = lengthByte;
+        if (lengthByte >= 0x80) {
+            int lengthBytes = lengthByte & 0x7F;
+            if (lengthBytes == 0 || lengthBytes > 4) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "certpath",
+                                              new Object[] {"Unsupported DER length encoding"});
+            }
+            length = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                length = (length << 8) | (der[offset + 2 + i] & 0xFF);
+            }
+        }
+        int next = contentOffset(der, offset) + length;
+        if (length < 0 || next > der.length) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "certpath",
+                                          new Object[] {"Truncated DER element"});
+        }
+        return next;
+    }
+
+    private static final class CachedResponse {
+        private final byte[] response;
+        private final Instant expiry;
+
+        CachedResponse(byte[] response, Instant expiry) {
+            this.response = response;
+            this.expiry = expiry;
+        }
+    }
+}
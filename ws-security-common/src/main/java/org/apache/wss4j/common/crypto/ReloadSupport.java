@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.crypto;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.wss4j.common.util.Loader;
+
+/**
+ * Support for reloading crypto material when the files it was loaded from change: the modification times of
+ * the files, and a background thread to reload on.
+ */
+final class ReloadSupport {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ReloadSupport.class);
+
+    private ReloadSupport() {
+        // complete
+    }
+
+    /**
+     * Get the modification times of the given locations, as resolved by Loader.loadInputStream. Locations
+     * that do not resolve to a file (e.g. a resource in a jar) are skipped, as they cannot change.
+     */
+    static Map<Path, Long> getLastModifiedTimes(ClassLoader loader, Collection<String> locations) {
+        Map<Path, Long> modifiedTimes = new HashMap<>();
+        for (String location : locations) {
+            Path path = getPath(loader, location);
+            if (path != null) {
+                try {
+                    modifiedTimes.put(path, Files.getLastModifiedTime(path).toMillis());
+                } catch (Exception e) {
+                    modifiedTimes.put(path, -1L);
+                }
+            }
+        }
+        return modifiedTimes;
+    }
+
+    /**
+     * Run the given task on the (single) background reload thread
+     */
+    static void execute(Runnable task) {
+        ReloadExecutorHolder.EXECUTOR.execute(task);
+    }
+
+    private static Path getPath(ClassLoader loader, String location) {
+        try {
+            URL url;
+            try {
+                url = new URL(location);
+            } catch (MalformedURLException ex) {
+                url = Loader.getResource(loader, location);
+            }
+            if (url != null) {
+                return "file".equals(url.getProtocol()) ? Paths.get(url.toURI()) : null;
+            }
+            Path path = Paths.get(location);
+            return Files.exists(path) ? path : null;
+        } catch (Exception e) {
+            LOG.debug(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static final class ReloadExecutorHolder {
+        private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wss4j-crypto-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
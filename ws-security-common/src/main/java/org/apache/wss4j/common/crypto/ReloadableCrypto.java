@@ -0,0 +1,243 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.crypto;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * Holds a Crypto instance that is rebuilt when the files it was loaded from change, i.e. the crypto properties
+ * file (if any), and the keystore, truststore and CRL files named in the properties. If a check interval is
+ * configured, the modification times of the files are checked at most once per interval when the Crypto
+ * instance is retrieved. If a file has changed, a new Crypto instance is created on a background thread, and
+ * replaces the current instance once it is complete. Callers that already retrieved the previous instance keep
+ * using it, and so a message being processed is not affected by the reload. If the reload fails, the previous
+ * instance is kept.
+ *
+ * The Crypto instances are created from the crypto properties by CryptoFactory, or by a CryptoLoader.
+ *
+ * The OCSPResponseCache of a Merlin instance is passed on to its replacement.
+ */
+public class ReloadableCrypto {
+
+    /**
+     * Creates a Crypto instance from crypto properties
+     */
+    @FunctionalInterface
+    public interface CryptoLoader {
+
+        /**
+         * Create a Crypto instance
+         * @param properties the crypto properties
+         * @return the Crypto instance
+         * @throws WSSecurityException if the Crypto instance cannot be created
+         */
+        Crypto loadCrypto(Properties properties) throws WSSecurityException;
+    }
+
+    public static final long DEFAULT_CHECK_INTERVAL = 60L;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ReloadableCrypto.class);
+
+    private static final String FILE_PROPERTY_SUFFIX = "file";
+    private static final String COMMA_SEPARATOR = ",";
+
+    private final String propFilename;
+    private final Properties properties;
+    private final ClassLoader classLoader;
+    private final CryptoLoader cryptoLoader;
+    private final AtomicBoolean reloading = new AtomicBoolean();
+    private volatile Crypto crypto;
+    private volatile List<String> locations;
+    private volatile Map<Path, Long> lastModifiedTimes;
+    private volatile long nextCheck;
+    private long checkInterval = DEFAULT_CHECK_INTERVAL;
+
+    /**
+     * Create a ReloadableCrypto from a crypto properties file
+     * @param propFilename the location of the crypto properties file
+     * @param classLoader the ClassLoader to load the properties file and the crypto files with
+     * @param passwordEncryptor the PasswordEncryptor to decrypt encrypted passwords with
+     * @throws WSSecurityException if the Crypto instance cannot be created
+     */
+    public ReloadableCrypto(
+        String propFilename, ClassLoader classLoader, PasswordEncryptor passwordEncryptor
+    ) throws WSSecurityException {
+        this(propFilename, null, classLoader,
+             properties -> CryptoFactory.getInstance(properties, classLoader, passwordEncryptor));
+    }
+
+    /**
+     * Create a ReloadableCrypto from a crypto properties file, the Crypto instances of which are created
+     * by the given CryptoLoader
+     * @param propFilename the location of the crypto properties file
+     * @param classLoader the ClassLoader to load the properties file with, and to locate the crypto files
+     * @param cryptoLoader the CryptoLoader that creates the Crypto instances
+     * @throws WSSecurityException if the Crypto instance cannot be created
+     */
+    public ReloadableCrypto(
+        String propFilename, ClassLoader classLoader, CryptoLoader cryptoLoader
+    ) throws WSSecurityException {
+        this(propFilename, null, classLoader, cryptoLoader);
+    }
+
+    /**
+     * Create a ReloadableCrypto from crypto properties
+     * @param properties the crypto properties
+     * @param classLoader the ClassLoader to load the crypto files with
+     * @param passwordEncryptor the PasswordEncryptor to decrypt encrypted passwords with
+     * @throws WSSecurityException if the Crypto instance cannot be created
+     */
+    public ReloadableCrypto(
+        Properties properties, ClassLoader classLoader, PasswordEncryptor passwordEncryptor
+    ) throws WSSecurityException {
+        this(null, properties, classLoader,
+             cryptoProperties -> CryptoFactory.getInstance(cryptoProperties, classLoader, passwordEncryptor));
+    }
+
+    private ReloadableCrypto(
+        String propFilename, Properties properties, ClassLoader classLoader, CryptoLoader cryptoLoader
+    ) throws WSSecurityException {
+        this.propFilename = propFilename;
+        this.properties = properties;
+        this.classLoader = classLoader;
+        this.cryptoLoader = cryptoLoader;
+        doReload();
+    }
+
+    /**
+     * Get the current Crypto instance, triggering a background reload if the check interval has passed
+     * and a file has changed.
+     * @return the current Crypto instance
+     */
+    public Crypto getCrypto() {
+        if (checkInterval > 0 && System.currentTimeMillis() >= nextCheck && reloading.compareAndSet(false, true)) {
+            nextCheck = System.currentTimeMillis() + checkInterval * 1000L;
+            try {
+                ReloadSupport.execute(() -> {
+                    try {
+                        if (!lastModifiedTimes.equals(ReloadSupport.getLastModifiedTimes(classLoader, locations))) {
+                            doReload();
+                        }
+                    } catch (WSSecurityException | RuntimeException e) {
+                        LOG.warn("The Crypto could not be reloaded, the previous Crypto is kept: {}",
+                                 e.getMessage());
+                    } finally {
+                        reloading.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                reloading.set(false);
+                LOG.debug(e.getMessage(), e);
+            }
+        }
+        return crypto;
+    }
+
+    /**
+     * Create a new Crypto instance and replace the current instance with it. If a (background) reload is
+     * already in progress, this returns without loading the Crypto instance again.
+     * @throws WSSecurityException if the Crypto instance cannot be created
+     */
+    public void reload() throws WSSecurityException {
+        if (!reloading.compareAndSet(false, true)) {
+            LOG.debug("The Crypto is already being reloaded from {}", locations);
+            return;
+        }
+        try {
+            doReload();
+        } finally {
+            reloading.set(false);
+        }
+    }
+
+    private void doReload() throws WSSecurityException {
+        Properties cryptoProperties = properties;
+        List<String> cryptoLocations = new ArrayList<>();
+        if (propFilename != null) {
+            cryptoLocations.add(propFilename);
+            // The modification times are taken before loading, so that a concurrent change is picked up later
+            Map<Path, Long> propertiesModifiedTimes = ReloadSupport.getLastModifiedTimes(classLoader, cryptoLocations);
+            cryptoProperties = CryptoFactory.getProperties(propFilename, classLoader);
+            cryptoLocations.addAll(getLocations(cryptoProperties));
+            Map<Path, Long> modifiedTimes = ReloadSupport.getLastModifiedTimes(classLoader, cryptoLocations);
+            modifiedTimes.putAll(propertiesModifiedTimes);
+            load(cryptoProperties, cryptoLocations, modifiedTimes);
+        } else {
+            cryptoLocations.addAll(getLocations(cryptoProperties));
+            load(cryptoProperties, cryptoLocations,
+                 ReloadSupport.getLastModifiedTimes(classLoader, cryptoLocations));
+        }
+    }
+
+    private void load(
+        Properties cryptoProperties, List<String> cryptoLocations, Map<Path, Long> modifiedTimes
+    ) throws WSSecurityException {
+        Crypto newCrypto = cryptoLoader.loadCrypto(cryptoProperties);
+        Crypto oldCrypto = crypto;
+        if (oldCrypto instanceof Merlin && newCrypto instanceof Merlin) {
+            ((Merlin) newCrypto).setOCSPResponseCache(((Merlin) oldCrypto).getOCSPResponseCache());
+        }
+        locations = cryptoLocations;
+        lastModifiedTimes = modifiedTimes;
+        crypto = newCrypto;
+        LOG.debug("The Crypto has been loaded from {}", cryptoLocations);
+    }
+
+    /**
+     * Get the locations of the files named in the crypto properties, i.e. the values of the properties
+     * ending in "file", such as the keystore, truststore and CRL files of Merlin.
+     */
+    private static List<String> getLocations(Properties cryptoProperties) {
+        List<String> fileLocations = new ArrayList<>();
+        for (String name : cryptoProperties.stringPropertyNames()) {
+            if (name.endsWith(FILE_PROPERTY_SUFFIX)) {
+                for (String location : cryptoProperties.getProperty(name).split(COMMA_SEPARATOR)) {
+                    if (!location.trim().isEmpty()) {
+                        fileLocations.add(location.trim());
+                    }
+                }
+            }
+        }
+        return fileLocations;
+    }
+
+    /**
+     * Get the number of seconds between checks for changed files. The default is 60 seconds.
+     * @return the number of seconds between checks for changed files
+     */
+    public long getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * Set the number of seconds between checks for changed files. A value of 0 disables the check.
+     * @param checkInterval the number of seconds between checks for changed files
+     */
+    public void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+}
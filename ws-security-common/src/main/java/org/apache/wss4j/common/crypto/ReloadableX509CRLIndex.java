@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+
+/**
+ * Holds the X509CRLIndex of a set of CRL locations. If a check interval is configured, the modification time
+ * of the CRL locations that are files is checked at most once per interval when the index is retrieved. If a
+ * CRL file has changed, the CRLs are reloaded on a background thread, and the new index replaces the old one
+ * once it is complete, so that certificate path validations are never blocked by the reload. If the reload
+ * fails, the previous index is kept.
+ */
+public class ReloadableX509CRLIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ReloadableX509CRLIndex.class);
+
+    private final ClassLoader loader;
+    private final List<String> crlLocations;
+    private final CertificateFactory certificateFactory;
+    private final AtomicBoolean reloading = new AtomicBoolean();
+    private volatile X509CRLIndex index;
+    private volatile Map<Path, Long> lastModifiedTimes;
+    private volatile long nextCheck;
+    private long checkInterval;
+
+    public ReloadableX509CRLIndex(
+        ClassLoader loader, List<String> crlLocations, CertificateFactory certificateFactory
+    ) throws WSSecurityException {
+        this.loader = loader;
+        this.crlLocations = new ArrayList<>(crlLocations);
+        this.certificateFactory = certificateFactory;
+        doReload();
+    }
+
+    /**
+     * Get the current index of the CRLs, triggering a background reload if the check interval has passed
+     * and a CRL file has changed.
+     * @return the current index of the CRLs
+     */
+    public X509CRLIndex getIndex() {
+        if (checkInterval > 0 && System.currentTimeMillis() >= nextCheck && reloading.compareAndSet(false, true)) {
+            nextCheck = System.currentTimeMillis() + checkInterval * 1000L;
+            try {
+                ReloadSupport.execute(() -> {
+                    try {
+                        if (!lastModifiedTimes.equals(ReloadSupport.getLastModifiedTimes(loader, crlLocations))) {
+                            doReload();
+                        }
+                    } catch (WSSecurityException e) {
+                        LOG.warn("The CRL files {} could not be reloaded, the previous CRLs are kept: {}",
+                                 crlLocations, e.getMessage());
+                    } finally {
+                        reloading.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                reloading.set(false);
+                LOG.debug(e.getMessage(), e);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Load the CRLs and replace the index. If a (background) reload is already in progress, this returns
+     * without loading the CRLs again.
+     * @throws WSSecurityException if a CRL cannot be loaded
+     */
+    public void reload() throws WSSecurityException {
+        if (!reloading.compareAndSet(false, true)) {
+            LOG.debug("The CRL files {} are already being reloaded", crlLocations);
+            return;
+        }
+        try {
+            doReload();
+        } finally {
+            reloading.set(false);
+        }
+    }
+
+    private void doReload() throws WSSecurityException {
+        Map<Path, Long> modifiedTimes = ReloadSupport.getLastModifiedTimes(loader, crlLocations);
+        Collection<X509CRL> crls = new ArrayList<>(crlLocations.size());
+        for (String crlLocation : crlLocations) {
+            try (InputStream is = Loader.loadInputStream(loader, crlLocation)) {
+                crls.add((X509CRL)certificateFactory.generateCRL(is));
+            } catch (Exception e) {
+                LOG.debug(e.getMessage(), e);
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
+            }
+        }
+        index = X509CRLIndex.newInstance(crls);
+        lastModifiedTimes = modifiedTimes;
+        LOG.debug("The CRL files {} have been indexed", crlLocations);
+    }
+
+    /**
+     * Get the number of seconds between checks for changed CRL files. The default is 0, meaning the CRL
+     * files are not checked for changes.
+     * @return the number of seconds between checks for changed CRL files
+     */
+    public long getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * Set the number of seconds between checks for changed CRL files. A value of 0 disables the check.
+     * @param checkInterval the number of seconds between checks for changed CRL files
+     */
+    public void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.crypto;
+
+import java.math.BigInteger;
+import java.security.PublicKey;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * An immutable index of a set of X.509 CRLs, used by the X509CRLRevocationChecker. The CRLs are indexed by
+ * the issuer of the certificates they cover, and the serial numbers of the revoked certificates of each
+ * issuer are held in a hash set, so that the revocation status of a certificate is found without searching
+ * a CertStore, and without verifying the signature of the CRL again for every certificate path validation.
+ *
+ * Only complete CRLs are indexed. Delta CRLs, CRLs with an issuing distribution point and CRLs with an
+ * unsupported critical extension (of the CRL or of one of its entries) are not, and the certificate issuers
+ * they cover are not indexed at all, so that the revocation status of their certificates is undetermined.
+ */
+public final class X509CRLIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(X509CRLIndex.class);
+
+    private static final String DELTA_CRL_INDICATOR_OID = "2.5.29.27";  //NOPMD - not an IP address
+    private static final String ISSUING_DISTRIBUTION_POINT_OID = "2.5.29.28";  //NOPMD - not an IP address
+    private static final Set<String> SUPPORTED_CRL_EXTENSIONS = new HashSet<>(Arrays.asList(
+        "2.5.29.20",  // CRL number
+        "2.5.29.35"   // authority key identifier
+    ));
+    private static final Set<String> SUPPORTED_CRL_ENTRY_EXTENSIONS = new HashSet<>(Arrays.asList(
+        "2.5.29.21",  // reason code
+        "2.5.29.23",  // hold instruction code
+        "2.5.29.24",  // invalidity date
+        "2.5.29.29"   // certificate issuer
+    ));
+
+    private final List<X509CRL> crls;
+    private final Map<X500Principal, List<IndexedCRL>> crlsByCertificateIssuer;
+
+    private X509CRLIndex(List<X509CRL> crls, Map<X500Principal, List<IndexedCRL>> crlsByCertificateIssuer) {
+        this.crls = crls;
+        this.crlsByCertificateIssuer = crlsByCertificateIssuer;
+    }
+
+    /**
+     * Create a new index of the given CRLs
+     * @param crls the CRLs to index
+     * @return the index of the CRLs
+     */
+    public static X509CRLIndex newInstance(Collection<X509CRL> crls) {
+        Map<X500Principal, List<IndexedCRL>> crlsByCertificateIssuer = new HashMap<>();
+        Set<X500Principal> unsupportedCertificateIssuers = new HashSet<>();
+        for (X509CRL crl : crls) {
+            IndexedCRL indexedCRL = new IndexedCRL(crl);
+            if (!isSupported(crl)) {
+                LOG.warn("The CRL of {} is not a complete CRL without unsupported critical extensions, the "
+                         + "revocation status of the certificates it covers cannot be determined",
+                         crl.getIssuerX500Principal());
+                unsupportedCertificateIssuers.addAll(indexedCRL.getCertificateIssuers());
+                continue;
+            }
+            for (X500Principal certificateIssuer : indexedCRL.getCertificateIssuers()) {
+                crlsByCertificateIssuer.computeIfAbsent(certificateIssuer, k -> new ArrayList<>(1)).add(indexedCRL);
+            }
+        }
+        crlsByCertificateIssuer.keySet().removeAll(unsupportedCertificateIssuers);
+        return new X509CRLIndex(Collections.unmodifiableList(new ArrayList<>(crls)), crlsByCertificateIssuer);
+    }
+
+    /**
+     * Whether the CRL is a complete CRL, without an issuing distribution point, the CRL or the entries of
+     * which have no critical extensions that are not supported
+     */
+    private static boolean isSupported(X509CRL crl) {
+        if (crl.getExtensionValue(DELTA_CRL_INDICATOR_OID) != null
+            || crl.getExtensionValue(ISSUING_DISTRIBUTION_POINT_OID) != null
+            || !isSupported(crl.getCriticalExtensionOIDs(), SUPPORTED_CRL_EXTENSIONS)) {
+            return false;
+        }
+        Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+        if (entries != null) {
+            for (X509CRLEntry entry : entries) {
+                if (!isSupported(entry.getCriticalExtensionOIDs(), SUPPORTED_CRL_ENTRY_EXTENSIONS)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSupported(Set<String> criticalExtensions, Set<String> supportedExtensions) {
+        return criticalExtensions == null || supportedExtensions.containsAll(criticalExtensions);
+    }
+
+    /**
+     * Get the CRLs of the index, including the CRLs that are not supported and so not indexed
+     * @return the CRLs of the index
+     */
+    public List<X509CRL> getCRLs() {
+        return crls;
+    }
+
+    List<IndexedCRL> getCRLs(X500Principal certificateIssuer) {
+        List<IndexedCRL> indexedCRLs = crlsByCertificateIssuer.get(certificateIssuer);
+        return indexedCRLs != null ? indexedCRLs : Collections.emptyList();
+    }
+
+    /**
+     * A CRL together with the serial numbers it revokes, per certificate issuer. The certificate issuer of
+     * an entry is the CRL issuer, unless the entry (or a preceding entry) of an indirect CRL names another
+     * certificate issuer.
+     */
+    static final class IndexedCRL {
+        private final X509CRL crl;
+        private final Map<X500Principal, Set<BigInteger>> revokedSerialNumbers = new HashMap<>();
+        private final Set<PublicKey> verifiedKeys = ConcurrentHashMap.newKeySet();
+
+        IndexedCRL(X509CRL crl) {
+            this.crl = crl;
+            X500Principal certificateIssuer = crl.getIssuerX500Principal();
+            revokedSerialNumbers.put(certificateIssuer, new HashSet<>());
+            Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+            if (entries != null) {
+                for (X509CRLEntry entry : entries) {
+                    if (entry.getCertificateIssuer() != null) {
+                        certificateIssuer = entry.getCertificateIssuer();
+                    }
+                    revokedSerialNumbers.computeIfAbsent(certificateIssuer, k -> new HashSet<>())
+                        .add(entry.getSerialNumber());
+                }
+            }
+        }
+
+        X509CRL getCRL() {
+            return crl;
+        }
+
+        Set<X500Principal> getCertificateIssuers() {
+            return revokedSerialNumbers.keySet();
+        }
+
+        boolean isCurrent(Date date) {
+            return !date.before(crl.getThisUpdate())
+                && (crl.getNextUpdate() == null || !date.after(crl.getNextUpdate()));
+        }
+
+        boolean isRevoked(X500Principal certificateIssuer, BigInteger serialNumber) {
+            Set<BigInteger> serialNumbers = revokedSerialNumbers.get(certificateIssuer);
+            return serialNumbers != null && serialNumbers.contains(serialNumber);
+        }
+
+        /**
+         * Verify the signature of the CRL with the given key. A successful verification is remembered.
+         */
+        boolean verify(PublicKey publicKey) {
+            if (verifiedKeys.contains(publicKey)) {
+                return true;
+            }
+            try {
+                crl.verify(publicKey);
+            } catch (Exception e) {
+                return false;
+            }
+            verifiedKeys.add(publicKey);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.crypto;
+
+import java.security.PublicKey;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.Certificate;
+import java.security.cert.PKIXCertPathChecker;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * A PKIXCertPathChecker that checks the revocation status of the certificates of a certificate path
+ * against an X509CRLIndex, instead of the revocation checking of the PKIX CertPathValidator. The
+ * certificate issuer must be covered by a current CRL in the index, the signature of which can be
+ * verified with the public key of the CRL issuer (taken from the certificate path or the trust anchors),
+ * otherwise the revocation status of the certificate is undetermined and the path is rejected, unless a
+ * subclass determines it otherwise in checkUndeterminedRevocationStatus. The revocation status of a trust
+ * anchor certificate in the path is not checked, as it cannot (and need not) be checked.
+ *
+ * Delta CRLs and CRL distribution points are not supported. The revocation status of a certificate of an
+ * issuer that is covered by such a CRL is undetermined.
+ */
+public class X509CRLRevocationChecker extends PKIXCertPathChecker {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(X509CRLRevocationChecker.class);
+
+    private final X509CRLIndex crlIndex;
+    private final Map<X500Principal, PublicKey> trustAnchorKeys = new HashMap<>();
+    private final Map<X500Principal, X509Certificate> trustAnchorCerts = new HashMap<>();
+    private X509Certificate issuerCert;
+
+    public X509CRLRevocationChecker(X509CRLIndex crlIndex, Set<TrustAnchor> trustAnchors) {
+        this.crlIndex = crlIndex;
+        for (TrustAnchor trustAnchor : trustAnchors) {
+            if (trustAnchor.getTrustedCert() != null) {
+                X509Certificate trustedCert = trustAnchor.getTrustedCert();
+                trustAnchorKeys.put(trustedCert.getSubjectX500Principal(), trustedCert.getPublicKey());
+                trustAnchorCerts.put(trustedCert.getSubjectX500Principal(), trustedCert);
+            } else if (trustAnchor.getCA() != null) {
+                trustAnchorKeys.put(trustAnchor.getCA(), trustAnchor.getCAPublicKey());
+            }
+        }
+    }
+
+    @Override
+    public void init(boolean forward) throws CertPathValidatorException {
+        if (forward) {
+            throw new CertPathValidatorException("Forward checking is not supported");
+        }
+        issuerCert = null;
+    }
+
+    @Override
+    public boolean isForwardCheckingSupported() {
+        return false;
+    }
+
+    @Override
+    public Set<String> getSupportedExtensions() {
+        return null;
+    }
+
+    @Override
+    public void check(Certificate certificate, Collection<String> unresolvedCritExts)
+        throws CertPathValidatorException {
+        X509Certificate cert = (X509Certificate) certificate;
+        if (cert.equals(trustAnchorCerts.get(cert.getSubjectX500Principal()))) {
+            issuerCert = cert;
+            return;
+        }
+        X500Principal certificateIssuer = cert.getIssuerX500Principal();
+        Date now = new Date();
+
+        boolean determined = false;
+        for (X509CRLIndex.IndexedCRL indexedCRL : crlIndex.getCRLs(certificateIssuer)) {
+            if (!indexedCRL.isCurrent(now)) {
+                continue;
+            }
+            PublicKey crlIssuerKey = getCRLIssuerKey(indexedCRL.getCRL().getIssuerX500Principal());
+            if (crlIssuerKey == null || !indexedCRL.verify(crlIssuerKey)) {
+                LOG.debug("The CRL of {} could not be verified", indexedCRL.getCRL().getIssuerX500Principal());
+                continue;
+            }
+            if (indexedCRL.isRevoked(certificateIssuer, cert.getSerialNumber())) {
+                throw new CertPathValidatorException(
+                    "Certificate has been revoked", null, null, -1,
+                    CertPathValidatorException.BasicReason.REVOKED
+                );
+            }
+            determined = true;
+        }
+        if (!determined) {
+            checkUndeterminedRevocationStatus(cert, getIssuerCert(certificateIssuer));
+        }
+
+        issuerCert = cert;
+    }
+
+    /**
+     * Check the revocation status of a certificate that could not be determined from the CRLs. The default
+     * implementation rejects the certificate.
+     * @param cert the certificate
+     * @param issuerCert the certificate of the issuer of the certificate, or null if the issuer is a trust
+     * anchor without a certificate
+     * @throws CertPathValidatorException if the certificate is revoked, or its revocation status cannot be
+     * determined
+     */
+    protected void checkUndeterminedRevocationStatus(X509Certificate cert, X509Certificate issuerCert)
+        throws CertPathValidatorException {
+        throw new CertPathValidatorException(
+            "Could not determine revocation status", null, null, -1,
+            CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS
+        );
+    }
+
+    private X509Certificate getIssuerCert(X500Principal certificateIssuer) {
+        if (issuerCert != null && certificateIssuer.equals(issuerCert.getSubjectX500Principal())) {
+            return issuerCert;
+        }
+        return trustAnchorCerts.get(certificateIssuer);
+    }
+
+    private PublicKey getCRLIssuerKey(X500Principal crlIssuer) {
+        if (issuerCert != null && crlIssuer.equals(issuerCert.getSubjectX500Principal())) {
+            return issuerCert.getPublicKey();
+        }
+        return trustAnchorKeys.get(crlIssuer);
+    }
+}
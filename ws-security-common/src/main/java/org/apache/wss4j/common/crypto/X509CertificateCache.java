@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A bounded cache of parsed X.509 certificates and (PkiPath) certificate chains, keyed by the SHA-256
+ * digest of their encoded form. Inbound BinarySecurityTokens (and ds:X509Certificate elements) typically
+ * carry the same few certificates over and over again, and so the parsing of a certificate can be
+ * replaced by a digest of its bytes. The cached certificates are immutable, and so can be shared between
+ * messages, and between the DOM and StAX code.
+ *
+ * Entries are also keyed by the Provider of the CertificateFactory that parsed them. Lookups do not take
+ * a lock. When the cache is full, the least recently used entry is evicted to make room for a new one,
+ * which is found by a scan of the entries - this only happens when a certificate was not cached, and so
+ * had to be parsed anyway.
+ */
+public class X509CertificateCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final X509CertificateCache DEFAULT_CACHE = new X509CertificateCache();
+
+    private final int maxEntries;
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, CacheEntry<X509Certificate>> certificates = new ConcurrentHashMap<>();
+    private final Map<String, CacheEntry<X509Certificate[]>> certificateChains = new ConcurrentHashMap<>();
+
+    public X509CertificateCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public X509CertificateCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get the cache that is used by the CryptoBase implementations unless they are configured otherwise
+     * @return the shared X509CertificateCache instance
+     */
+    public static X509CertificateCache getDefault() {
+        return DEFAULT_CACHE;
+    }
+
+    /**
+     * Get the cached certificate with the given (DER) encoding
+     * @param data the encoded certificate
+     * @param certificateFactory the CertificateFactory that the certificate is parsed with
+     * @return the certificate, or null if it is not cached
+     */
+    public X509Certificate getCertificate(byte[] data, CertificateFactory certificateFactory) {
+        return get(certificates, getKey(data, certificateFactory));
+    }
+
+    /**
+     * Get the cached certificate with the given (DER) encoding, or parse and cache it if it is not cached.
+     * The digest of the encoded certificate is only computed once.
+     * @param data the encoded certificate
+     * @param certificateFactory the CertificateFactory that the certificate is parsed with
+     * @param loader parses the certificate if it is not cached
+     * @return the certificate
+     * @throws WSSecurityException if the certificate cannot be parsed
+     */
+    public X509Certificate getCertificate(
+        byte[] data, CertificateFactory certificateFactory, Loader<X509Certificate> loader
+    ) throws WSSecurityException {
+        String key = getKey(data, certificateFactory);
+        X509Certificate certificate = get(certificates, key);
+        if (certificate == null) {
+            certificate = loader.load();
+            put(certificates, key, certificate);
+        }
+        return certificate;
+    }
+
+    /**
+     * Cache the certificate with the given (DER) encoding
+     * @param data the encoded certificate
+     * @param certificateFactory the CertificateFactory that the certificate was parsed with
+     * @param certificate the parsed certificate
+     */
+    public void putCertificate(byte[] data, CertificateFactory certificateFactory, X509Certificate certificate) {
+        put(certificates, getKey(data, certificateFactory), certificate);
+    }
+
+    /**
+     * Get the cached certificates of the (PkiPath) encoded certificate chain
+     * @param data the encoded certificate chain
+     * @param certificateFactory the CertificateFactory that the certificate chain is parsed with
+     * @return a new array with the certificates of the chain, or null if the chain is not cached
+     */
+    public X509Certificate[] getCertificateChain(byte[] data, CertificateFactory certificateFactory) {
+        X509Certificate[] certs = get(certificateChains, getKey(data, certificateFactory));
+        return certs == null ? null : certs.clone();
+    }
+
+    /**
+     * Get the cached certificates of the (PkiPath) encoded certificate chain, or parse and cache them if
+     * the chain is not cached. The digest of the encoded chain is only computed once.
+     * @param data the encoded certificate chain
+     * @param certificateFactory the CertificateFactory that the certificate chain is parsed with
+     * @param loader parses the certificate chain if it is not cached
+     * @return a new array with the certificates of the chain
+     * @throws WSSecurityException if the certificate chain cannot be parsed
+     */
+    public X509Certificate[] getCertificateChain(
+        byte[] data, CertificateFactory certificateFactory, Loader<X509Certificate[]> loader
+    ) throws WSSecurityException {
+        String key = getKey(data, certificateFactory);
+        X509Certificate[] certs = get(certificateChains, key);
+        if (certs == null) {
+            certs = loader.load();
+            put(certificateChains, key, certs.clone());
+            return certs;
+        }
+        return certs.clone();
+    }
+
+    /**
+     * Cache the certificates of the (PkiPath) encoded certificate chain
+     * @param data the encoded certificate chain
+     * @param certificateFactory the CertificateFactory that the certificate chain was parsed with
+     * @param certs the certificates of the chain
+     */
+    public void putCertificateChain(byte[] data, CertificateFactory certificateFactory, X509Certificate[] certs) {
+        put(certificateChains, getKey(data, certificateFactory), certs.clone());
+    }
+
+    /**
+     * Remove all cached certificates and certificate chains
+     */
+    public void clear() {
+        certificates.clear();
+        certificateChains.clear();
+    }
+
+    /**
+     * Get the number of cached certificates and certificate chains
+     * @return the number of cached certificates and certificate chains
+     */
+    public int size() {
+        return certificates.size() + certificateChains.size();
+    }
+
+    private <T> T get(Map<String, CacheEntry<T>> entries, String key) {
+        CacheEntry<T> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsed = clock.incrementAndGet();
+        return entry.value;
+    }
+
+    private <T> void put(Map<String, CacheEntry<T>> entries, String key, T value) {
+        entries.put(key, new CacheEntry<>(value, clock.incrementAndGet()));
+        if (entries.size() > maxEntries) {
+            evict(entries);
+        }
+    }
+
+    private <T> void evict(Map<String, CacheEntry<T>> entries) {
+        synchronized (entries) {
+            while (entries.size() > maxEntries) {
+                String eldestKey = null;
+                long eldest = Long.MAX_VALUE;
+                for (Map.Entry<String, CacheEntry<T>> entry : entries.entrySet()) {
+                    if (entry.getValue().lastUsed < eldest) {
+                        eldest = entry.getValue().lastUsed;
+                        eldestKey = entry.getKey();
+                    }
+                }
+                if (eldestKey == null) {
+                    return;
+                }
+                entries.remove(eldestKey);
+            }
+        }
+    }
+
+    private static String getKey(byte[] data, CertificateFactory certificateFactory) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return certificateFactory.getProvider().getName() + ":"
+                + Base64.getEncoder().encodeToString(digest.digest(data));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Parses a certificate (chain) that is not cached
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws WSSecurityException;
+    }
+
+    private static final class CacheEntry<T> {
+        private final T value;
+        private volatile long lastUsed;
+
+        CacheEntry(T value, long lastUsed) {
+            this.value = value;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
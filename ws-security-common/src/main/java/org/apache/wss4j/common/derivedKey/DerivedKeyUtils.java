@@ -19,7 +19,10 @@
 package org.apache.wss4j.common.derivedKey;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
 
+import org.apache.wss4j.common.cache.SecurityContextStore;
 import org.apache.wss4j.common.ext.WSSecurityException;
 
 public final class DerivedKeyUtils {
@@ -57,4 +60,31 @@ public final class DerivedKeyUtils {
         }
         return algo.createKey(secret, seed, offset, keyLength);
     }
+
+    /**
+     * Derive a key from the secret of a security context, using the keys cached in the given
+     * SecurityContextStore for the security context. A cached key is only used (and a new key
+     * is only cached) if the store holds the given secret for the security context.
+     *
+     * @param securityContextStore the SecurityContextStore, which may be null
+     * @param contextIdentifier the identifier of the security context, which may be null
+     */
+    public static byte[] deriveKey(
+        SecurityContextStore securityContextStore, String contextIdentifier,
+        String algorithm, String label, int length, byte[] secret, byte[] nonce, int offset
+    ) throws WSSecurityException {
+        if (securityContextStore == null || contextIdentifier == null
+            || !MessageDigest.isEqual(secret, securityContextStore.getSecret(contextIdentifier))) {
+            return deriveKey(algorithm, label, length, secret, nonce, offset);
+        }
+
+        String derivationKey = algorithm + '|' + label + '|' + length + '|' + offset + '|'
+            + Base64.getEncoder().encodeToString(nonce);
+        byte[] derivedKey = securityContextStore.getDerivedKey(contextIdentifier, derivationKey);
+        if (derivedKey == null) {
+            derivedKey = deriveKey(algorithm, label, length, secret, nonce, offset);
+            securityContextStore.addDerivedKey(contextIdentifier, derivationKey, derivedKey);
+        }
+        return derivedKey;
+    }
 }
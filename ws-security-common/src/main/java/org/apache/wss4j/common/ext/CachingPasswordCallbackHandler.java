@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.ext;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+
+/**
+ * A CallbackHandler that caches the passwords returned by another CallbackHandler for a WSPasswordCallback,
+ * keyed by the usage, the (password) type and the identifier of the callback. It can be configured instead
+ * of the wrapped CallbackHandler, so that the password of a UsernameToken of a repeat client is only looked
+ * up once (e.g. from a database or a directory) until the entry expires. By default only USERNAME_TOKEN
+ * callbacks are cached.
+ *
+ * Only the password is cached, and only if the callback handler did not set a key as well. Callbacks for which
+ * a password was supplied by the caller, and all other Callbacks, are always passed on to the wrapped
+ * CallbackHandler. The number of entries is bounded, the least recently used entry being evicted first.
+ */
+public class CachingPasswordCallbackHandler implements CallbackHandler {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL = 300L;
+
+    private final CallbackHandler delegate;
+    private final Map<CacheKey, CachedPassword> passwords;
+    private final Set<Integer> cachedUsages = new HashSet<>();
+    private long ttl = DEFAULT_TTL;
+
+    public CachingPasswordCallbackHandler(CallbackHandler delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES);
+    }
+
+    public CachingPasswordCallbackHandler(CallbackHandler delegate, final int maxEntries) {
+        this.delegate = delegate;
+        this.passwords = new LinkedHashMap<CacheKey, CachedPassword>(16, 0.75f, true) {
+            private static final long serialVersionUID = -4873523960451297612L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedPassword> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        cachedUsages.add(WSPasswordCallback.USERNAME_TOKEN);
+    }
+
+    @Override
+    public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+        Instant now = Instant.now();
+        List<Callback> uncachedCallbacks = new ArrayList<>(callbacks.length);
+        List<CacheKey> keys = new ArrayList<>(callbacks.length);
+        for (Callback callback : callbacks) {
+            CacheKey key = getKey(callback);
+            if (key != null) {
+                String password = getCachedPassword(key, now);
+                if (password != null) {
+                    ((WSPasswordCallback) callback).setPassword(password);
+                    continue;
+                }
+            }
+            uncachedCallbacks.add(callback);
+            keys.add(key);
+        }
+        if (uncachedCallbacks.isEmpty()) {
+            return;
+        }
+
+        delegate.handle(uncachedCallbacks.toArray(new Callback[0]));
+
+        Instant expiry = now.plusSeconds(ttl);
+        for (int i = 0; i < uncachedCallbacks.size(); i++) {
+            CacheKey key = keys.get(i);
+            if (key != null) {
+                WSPasswordCallback passwordCallback = (WSPasswordCallback) uncachedCallbacks.get(i);
+                if (passwordCallback.getPassword() != null && passwordCallback.getKey() == null
+                    && passwordCallback.getKeyObject() == null) {
+                    synchronized (passwords) {
+                        passwords.put(key, new CachedPassword(passwordCallback.getPassword(), expiry));
+                    }
+                }
+            }
+        }
+    }
+
+    private CacheKey getKey(Callback callback) {
+        if (!(callback instanceof WSPasswordCallback)) {
+            return null;
+        }
+        WSPasswordCallback passwordCallback = (WSPasswordCallback) callback;
+        if (!cachedUsages.contains(passwordCallback.getUsage()) || passwordCallback.getIdentifier() == null
+            || passwordCallback.getPassword() != null) {
+            return null;
+        }
+        return new CacheKey(passwordCallback.getIdentifier(), passwordCallback.getType(), passwordCallback.getUsage());
+    }
+
+    private String getCachedPassword(CacheKey key, Instant now) {
+        synchronized (passwords) {
+            CachedPassword cachedPassword = passwords.get(key);
+            if (cachedPassword == null) {
+                return null;
+            }
+            if (!now.isBefore(cachedPassword.expiry)) {
+                passwords.remove(key);
+                return null;
+            }
+            return cachedPassword.password;
+        }
+    }
+
+    /**
+     * Remove the cached passwords for the given identifier, e.g. after a password was changed
+     * @param identifier the identifier (user name)
+     */
+    public void invalidate(String identifier) {
+        synchronized (passwords) {
+            passwords.keySet().removeIf(key -> key.identifier.equals(identifier));
+        }
+    }
+
+    /**
+     * Remove all cached passwords
+     */
+    public void clear() {
+        synchronized (passwords) {
+            passwords.clear();
+        }
+    }
+
+    /**
+     * Set the usages of the WSPasswordCallbacks to cache the passwords of. The default is
+     * WSPasswordCallback.USERNAME_TOKEN.
+     * @param usages the WSPasswordCallback usages
+     */
+    public void setCachedUsages(int... usages) {
+        cachedUsages.clear();
+        for (int usage : usages) {
+            cachedUsages.add(usage);
+        }
+    }
+
+    /**
+     * Get the number of seconds a password is cached for. The default is 300 seconds.
+     * @return the number of seconds a password is cached for
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Set the number of seconds a password is cached for
+     * @param ttl the number of seconds a password is cached for
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    private static final class CacheKey {
+        private final String identifier;
+        private final String type;
+        private final int usage;
+
+        CacheKey(String identifier, String type, int usage) {
+            this.identifier = identifier;
+            this.type = type;
+            this.usage = usage;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return usage == other.usage && identifier.equals(other.identifier) && Objects.equals(type, other.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(identifier, type, usage);
+        }
+    }
+
+    private static final class CachedPassword {
+        private final String password;
+        private final Instant expiry;
+
+        CachedPassword(String password, Instant expiry) {
+            this.password = password;
+            this.expiry = expiry;
+        }
+    }
+}
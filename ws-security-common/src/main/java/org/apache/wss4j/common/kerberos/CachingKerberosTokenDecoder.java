@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.time.Instant;
+
+import javax.security.auth.Subject;
+
+/**
+ * A KerberosTokenDecoder that looks up the session key of the service ticket of the AP-REQ in a shared
+ * KerberosTicketCache, and only asks another KerberosTokenDecoder to decode the ticket if it is not
+ * cached. A client that reuses its service ticket with a fresh authenticator for every message then
+ * only requires the ticket to be decoded once.
+ *
+ * Like other KerberosTokenDecoders, an instance holds the token of a single request, so a new instance
+ * is created for every received token. The KerberosTicketCache, and the wrapped KerberosTokenDecoder,
+ * can be shared. Calls to the wrapped KerberosTokenDecoder are serialized on it.
+ */
+public class CachingKerberosTokenDecoder implements KerberosTokenDecoder {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CachingKerberosTokenDecoder.class);
+
+    private final KerberosTokenDecoder delegate;
+    private final KerberosTicketCache ticketCache;
+
+    private byte[] token;
+    private Subject subject;
+
+    public CachingKerberosTokenDecoder(KerberosTokenDecoder delegate, KerberosTicketCache ticketCache) {
+        this.delegate = delegate;
+        this.ticketCache = ticketCache;
+    }
+
+    @Override
+    public void setToken(byte[] token) {
+        this.token = token;
+    }
+
+    @Override
+    public void setSubject(Subject subject) {
+        this.subject = subject;
+    }
+
+    @Override
+    public byte[] getSessionKey() throws KerberosTokenDecoderException {
+        String ticketDigest = KerberosApReq.parse(token).getTicketDigest();
+
+        byte[] sessionKey = ticketCache.getSessionKey(ticketDigest);
+        if (sessionKey != null) {
+            LOG.debug("Using the cached session key of the Kerberos ticket");
+            return sessionKey;
+        }
+
+        Instant ticketEndTime;
+        synchronized (delegate) {
+            delegate.clear();
+            delegate.setToken(token);
+            delegate.setSubject(subject);
+            try {
+                sessionKey = delegate.getSessionKey();
+                ticketEndTime = delegate.getTicketEndTime();
+            } finally {
+                delegate.clear();
+            }
+        }
+        if (sessionKey != null) {
+            ticketCache.add(ticketDigest, sessionKey, ticketEndTime);
+        }
+        return sessionKey;
+    }
+
+    @Override
+    public void clear() {
+        token = null;
+        subject = null;
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.kerberos;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Splits an AP-REQ Kerberos token (optionally wrapped in a GSS-API initial context token) into its
+ * (encrypted) ticket and authenticator, without decrypting them. Only the outer DER structure is
+ * walked. The ticket identifies a service ticket that may be reused across messages, whereas the
+ * authenticator is unique for each AP-REQ, and so can be used to detect replayed tokens.
+ */
+public final class KerberosApReq {
+
+    private static final int GSS_INITIAL_CONTEXT_TOKEN_TAG = 0x60;
+    private static final int AP_REQ_TAG = 0x6E;
+    private static final int SEQUENCE_TAG = 0x30;
+    private static final int OID_TAG = 0x06;
+    private static final int TICKET_TAG = 0xA3;
+    private static final int AUTHENTICATOR_TAG = 0xA4;
+
+    private final byte[] ticket;
+    private final byte[] authenticator;
+
+    private KerberosApReq(byte[] ticket, byte[] authenticator) {
+        this.ticket = ticket;
+        this.authenticator = authenticator;
+    }
+
+    /**
+     * Parse the given AP-REQ token
+     * @param token the AP-REQ Kerberos token, either raw or wrapped in a GSS-API initial context token
+     * @return the parsed AP-REQ
+     * @throws KerberosTokenDecoderException if the token is not a (Kerberos V5) AP-REQ
+     */
+    public static KerberosApReq parse(byte[] token) throws KerberosTokenDecoderException {
+        if (token == null || token.length == 0) {
+            throw new KerberosTokenDecoderException("Empty Kerberos token");
+        }
+        try {
+            int offset = 0;
+            if ((token[0] & 0xFF) == GSS_INITIAL_CONTEXT_TOKEN_TAG) {
+                offset = contentOffset(token, 0);
+                if ((token[offset] & 0xFF) != OID_TAG) {
+                    throw new KerberosTokenDecoderException("Unexpected GSS-API token");
+                }
+                // Skip the mechanism OID and the two byte token identifier
+                offset = nextOffset(token, offset) + 2;
+            }
+            if ((token[offset] & 0xFF) != AP_REQ_TAG) {
+                throw new KerberosTokenDecoderException("Not an AP-REQ Kerberos token");
+            }
+            offset = contentOffset(token, offset);
+            if ((token[offset] & 0xFF) != SEQUENCE_TAG) {
+                throw new KerberosTokenDecoderException("Not an AP-REQ Kerberos token");
+            }
+            int end = nextOffset(token, offset);
+            offset = contentOffset(token, offset);
+
+            byte[] ticket = null;
+            byte[] authenticator = null;
+            while (offset < end) {
+                int next = nextOffset(token, offset);
+                int tag = token[offset] & 0xFF;
+                if (tag == TICKET_TAG) {
+                    ticket = Arrays.copyOfRange(token, offset, next);
+                } else if (tag == AUTHENTICATOR_TAG) {
+                    authenticator = Arrays.copyOfRange(token, offset, next);
+                }
+                offset = next;
+            }
+            if (ticket == null || authenticator == null) {
+                throw new KerberosTokenDecoderException("Incomplete AP-REQ Kerberos token");
+            }
+            return new KerberosApReq(ticket, authenticator);
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            throw new KerberosTokenDecoderException("Malformed AP-REQ Kerberos token", ex);
+        }
+    }
+
+    /**
+     * Get the DER encoding of the (encrypted) ticket
+     * @return the DER encoding of the ticket
+     */
+    public byte[] getTicket() {
+        return ticket;
+    }
+
+    /**
+     * Get the DER encoding of the (encrypted) authenticator
+     * @return the DER encoding of the authenticator
+     */
+    public byte[] getAuthenticator() {
+        return authenticator;
+    }
+
+    /**
+     * Get a Base64 encoded SHA-256 digest of the ticket
+     * @return a Base64 encoded SHA-256 digest of the ticket
+     */
+    public String getTicketDigest() {
+        return digest(ticket);
+    }
+
+    /**
+     * Get a Base64 encoded SHA-256 digest of the authenticator
+     * @return a Base64 encoded SHA-256 digest of the authenticator
+     */
+    public String getAuthenticatorDigest() {
+        return digest(authenticator);
+    }
+
+    static String digest(byte[] bytes) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(messageDigest.digest(bytes));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Get the offset of the contents of the DER element at the given offset
+     */
+    private static int contentOffset(byte[] der, int offset) throws KerberosTokenDecoderException {
+        int lengthByte = der[offset + 1] & 0xFF;
+        if (lengthByte < 0x80) {
+            return offset + 2;
+        }
+        int lengthBytes = lengthByte & 0x7F;
+        if (lengthBytes == 0 || lengthBytes > 4) {
+            throw new KerberosTokenDecoderException("Unsupported DER length encoding");
+        }
+        return offset + 2 + lengthBytes;
+    }
+
+    /**
+     * Get the offset following the DER element at the given offset
+     */
+    private static int nextOffset(byte[] der, int offset) throws KerberosTokenDecoderException {
+        int lengthByte = der[offset + 1] & 0xFF;
+        int length = lengthByte;
+        if (lengthByte >= 0x80) {
+            int lengthBytes = lengthByte & 0x7F;
+            if (lengthBytes == 0 || lengthBytes > 4) {
+                throw new KerberosTokenDecoderException("Unsupported DER length encoding");
+            }
+            length = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                length = (length << 8) | (der[offset + 2 + i] & 0xFF);
+            }
+        }
+        int next = contentOffset(der, offset) + length;
+        if (length < 0 || next > der.length) {
+            throw new KerberosTokenDecoderException("Truncated DER element");
+        }
+        return next;
+    }
+}
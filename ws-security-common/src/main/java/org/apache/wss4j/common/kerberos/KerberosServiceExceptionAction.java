@@ -25,6 +25,7 @@ import java.security.PrivilegedExceptionAction;
 
 import javax.security.auth.kerberos.KerberosPrincipal;
 
+import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.ietf.jgss.GSSContext;
@@ -57,6 +58,7 @@ public class KerberosServiceExceptionAction implements PrivilegedExceptionAction
     private String serviceName;
     private boolean isUsernameServiceNameForm;
     private boolean spnego;
+    private ReplayCache replayCache;
 
     public KerberosServiceExceptionAction(byte[] ticket, String serviceName, boolean isUsernameServiceNameForm,
                                           boolean spnego) {
@@ -72,6 +74,12 @@ public class KerberosServiceExceptionAction implements PrivilegedExceptionAction
      */
     public KerberosServiceContext run() throws GSSException, WSSecurityException {
 
+        String replayIdentifier = null;
+        if (replayCache != null) {
+            replayIdentifier = getReplayIdentifier();
+            checkReplay(replayIdentifier);
+        }
+
         GSSManager gssManager = GSSManager.getInstance();
 
         GSSContext secContext = null;
@@ -94,6 +102,13 @@ public class KerberosServiceExceptionAction implements PrivilegedExceptionAction
         try {
             byte[] returnedToken = secContext.acceptSecContext(ticket, 0, ticket.length);
 
+            // Only record the authenticator once the GSS-API has verified it, so that a forged AP-REQ
+            // cannot be used to block a genuine one
+            if (replayIdentifier != null) {
+                checkReplay(replayIdentifier);
+                replayCache.add(replayIdentifier);
+            }
+
             krbServiceCtx = new KerberosServiceContext();
 
             if (secContext.getCredDelegState()) {
@@ -138,4 +153,34 @@ public class KerberosServiceExceptionAction implements PrivilegedExceptionAction
         return krbServiceCtx;
     }
 
+    private String getReplayIdentifier() {
+        try {
+            return KerberosApReq.parse(ticket).getAuthenticatorDigest();
+        } catch (KerberosTokenDecoderException ex) {
+            // e.g. a SPNEGO token - fall back to the complete token, which includes the authenticator
+            return KerberosApReq.digest(ticket);
+        }
+    }
+
+    /**
+     * Reject the AP-REQ if its authenticator was already seen. A client may reuse a service ticket,
+     * but must create a new authenticator for every AP-REQ.
+     */
+    private void checkReplay(String identifier) throws WSSecurityException {
+        if (replayCache.contains(identifier)) {
+            throw new WSSecurityException(
+                ErrorCode.INVALID_SECURITY, "empty",
+                new Object[] {"A replay attack has been detected"});
+        }
+    }
+
+    /**
+     * Set the ReplayCache used to detect replayed AP-REQ authenticators. It can be null (the default),
+     * in which case only the replay detection of the GSS-API implementation applies.
+     * @param replayCache the ReplayCache used to detect replayed AP-REQ authenticators
+     */
+    public void setReplayCache(ReplayCache replayCache) {
+        this.replayCache = replayCache;
+    }
+
 }
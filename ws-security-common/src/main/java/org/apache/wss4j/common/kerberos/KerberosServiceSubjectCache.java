@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.kerberos;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+/**
+ * Caches the JAAS Subject of a Kerberos service, so that the JAAS login (which reads the keytab and,
+ * for an initiator, obtains a TGT from the KDC) is only performed once instead of for every received
+ * Kerberos token. Subjects are cached per JAAS login context name and CallbackHandler instance, as the
+ * CallbackHandler may supply the credentials of the login. The CallbackHandlers are only weakly
+ * referenced, so the Subject of a CallbackHandler that is no longer used is eventually dropped. A cached
+ * Subject is refreshed when one of its Kerberos tickets is about to expire, or when it is older than the
+ * maximum lifetime (this also applies to acceptor-only Subjects that only hold keytab keys, so that a
+ * rotated keytab is picked up).
+ *
+ * The same instance can be shared by the DOM KerberosTokenValidator and the streaming Kerberos service
+ * token.
+ */
+public class KerberosServiceSubjectCache {
+
+    public static final long DEFAULT_REFRESH_MARGIN = 60L;
+    public static final long DEFAULT_MAX_LIFETIME = 3600L;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KerberosServiceSubjectCache.class);
+
+    private final Map<String, Map<CallbackHandler, CachedSubject>> subjects = new ConcurrentHashMap<>();
+    private long refreshMargin = DEFAULT_REFRESH_MARGIN;
+    private long maxLifetime = DEFAULT_MAX_LIFETIME;
+
+    /**
+     * Get the Subject for the given JAAS login context name and CallbackHandler, performing a login if
+     * there is no cached Subject or if the cached Subject has expired.
+     *
+     * @param contextName the JAAS login context name
+     * @param callbackHandler the CallbackHandler to use with the LoginContext. It can be null, and is only
+     * used if a login is required.
+     * @return the (cached) Subject
+     * @throws LoginException if the context name is null or the login fails
+     */
+    public Subject getSubject(String contextName, CallbackHandler callbackHandler) throws LoginException {
+        if (contextName == null) {
+            throw new LoginException("No JAAS login context name");
+        }
+        Map<CallbackHandler, CachedSubject> handlerSubjects =
+            subjects.computeIfAbsent(contextName, k -> Collections.synchronizedMap(new WeakHashMap<>()));
+        CachedSubject cachedSubject = handlerSubjects.get(callbackHandler);
+        if (cachedSubject != null && !cachedSubject.isExpired(Instant.now())) {
+            return cachedSubject.getSubject();
+        }
+
+        synchronized (this) {
+            // Another thread might have logged in in the meantime
+            cachedSubject = handlerSubjects.get(callbackHandler);
+            if (cachedSubject != null && !cachedSubject.isExpired(Instant.now())) {
+                return cachedSubject.getSubject();
+            }
+
+            LoginContext loginContext;
+            if (callbackHandler != null) {
+                loginContext = new LoginContext(contextName, callbackHandler);
+            } else {
+                loginContext = new LoginContext(contextName);
+            }
+            loginContext.login();
+            LOG.debug("Successfully logged in using JAAS login context {}", contextName);
+
+            // The previous Subject is not logged out, as it may still be in use by other threads
+            Subject subject = loginContext.getSubject();
+            handlerSubjects.put(callbackHandler, new CachedSubject(subject, getExpiry(subject, Instant.now())));
+            return subject;
+        }
+    }
+
+    /**
+     * Remove the cached Subjects for the given JAAS login context name, e.g. after the validation of
+     * a ticket failed because of an out of date service key.
+     * @param contextName the JAAS login context name
+     */
+    public void invalidate(String contextName) {
+        subjects.remove(contextName);
+    }
+
+    /**
+     * Remove all cached Subjects
+     */
+    public void clear() {
+        subjects.clear();
+    }
+
+    private Instant getExpiry(Subject subject, Instant now) {
+        Instant expiry = now.plusSeconds(maxLifetime);
+        for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+            Date endTime = ticket.getEndTime();
+            if (endTime != null) {
+                Instant ticketExpiry = endTime.toInstant().minusSeconds(refreshMargin);
+                if (ticketExpiry.isBefore(expiry)) {
+                    expiry = ticketExpiry;
+                }
+            }
+        }
+        return expiry;
+    }
+
+    /**
+     * Get the number of seconds before the end time of a Kerberos ticket of the Subject at which
+     * the Subject is refreshed. The default is 60 seconds.
+     * @return the refresh margin in seconds
+     */
+    public long getRefreshMargin() {
+        return refreshMargin;
+    }
+
+    /**
+     * Set the number of seconds before the end time of a Kerberos ticket of the Subject at which
+     * the Subject is refreshed.
+     * @param refreshMargin the refresh margin in seconds
+     */
+    public void setRefreshMargin(long refreshMargin) {
+        this.refreshMargin = refreshMargin;
+    }
+
+    /**
+     * Get the maximum number of seconds a Subject is cached for, irrespective of the lifetime of
+     * its tickets. The default is one hour.
+     * @return the maximum lifetime in seconds
+     */
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * Set the maximum number of seconds a Subject is cached for, irrespective of the lifetime of
+     * its tickets.
+     * @param maxLifetime the maximum lifetime in seconds
+     */
+    public void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    private static final class CachedSubject {
+        private final Subject subject;
+        private final Instant expiry;
+
+        CachedSubject(Subject subject, Instant expiry) {
+            this.subject = subject;
+            this.expiry = expiry;
+        }
+
+        Subject getSubject() {
+            return subject;
+        }
+
+        boolean isExpired(Instant now) {
+            if (!now.isBefore(expiry)) {
+                return true;
+            }
+            for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+                if (ticket.isDestroyed() || !ticket.isCurrent()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
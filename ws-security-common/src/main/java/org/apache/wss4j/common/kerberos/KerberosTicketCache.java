@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe cache of the session keys of Kerberos service tickets, keyed by a digest of the
+ * (encrypted) ticket. One instance is shared between the CachingKerberosTokenDecoders that are created
+ * for the received tokens. Entries are retained for at most the configured time to live, and never beyond
+ * the end time of the ticket if the KerberosTokenDecoder reports it. The number of entries is bounded, the
+ * least recently used entry being evicted first.
+ *
+ * The validity of a ticket is not checked here. A session key is only looked up after the AP-REQ was
+ * accepted by the GSS-API, which rejects expired tickets and verifies the authenticator with the
+ * session key in the ticket.
+ */
+public class KerberosTicketCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL = 300L;
+
+    private final Map<String, CachedTicket> tickets;
+    private volatile long ttl = DEFAULT_TTL;
+
+    public KerberosTicketCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public KerberosTicketCache(final int maxEntries) {
+        this.tickets = new LinkedHashMap<String, CachedTicket>(16, 0.75f, true) {
+            private static final long serialVersionUID = -2456873258163524466L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTicket> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the cached session key of the ticket with the given digest
+     * @param ticketDigest the digest of the ticket
+     * @return a copy of the cached session key, or null if it is not cached or has expired
+     */
+    public byte[] getSessionKey(String ticketDigest) {
+        synchronized (tickets) {
+            CachedTicket cachedTicket = tickets.get(ticketDigest);
+            if (cachedTicket == null) {
+                return null;
+            }
+            if (!Instant.now().isBefore(cachedTicket.expiry)) {
+                tickets.remove(ticketDigest);
+                return null;
+            }
+            return cachedTicket.sessionKey.clone();
+        }
+    }
+
+    /**
+     * Cache the session key of the ticket with the given digest for the configured time to live
+     * @param ticketDigest the digest of the ticket
+     * @param sessionKey the session key of the ticket
+     */
+    public void add(String ticketDigest, byte[] sessionKey) {
+        add(ticketDigest, sessionKey, null);
+    }
+
+    /**
+     * Cache the session key of the ticket with the given digest for the configured time to live, or
+     * until the end time of the ticket if that is earlier
+     * @param ticketDigest the digest of the ticket
+     * @param sessionKey the session key of the ticket
+     * @param ticketEndTime the end time of the ticket (can be null if it is not known)
+     */
+    public void add(String ticketDigest, byte[] sessionKey, Instant ticketEndTime) {
+        Instant now = Instant.now();
+        Instant expiry = now.plusSeconds(ttl);
+        if (ticketEndTime != null && ticketEndTime.isBefore(expiry)) {
+            expiry = ticketEndTime;
+        }
+        if (!now.isBefore(expiry)) {
+            return;
+        }
+        CachedTicket cachedTicket = new CachedTicket(sessionKey.clone(), expiry);
+        synchronized (tickets) {
+            tickets.put(ticketDigest, cachedTicket);
+        }
+    }
+
+    /**
+     * Remove all cached session keys
+     */
+    public void clear() {
+        synchronized (tickets) {
+            tickets.clear();
+        }
+    }
+
+    /**
+     * Get the maximum number of seconds a session key is cached for. The default is 300 seconds.
+     * @return the maximum number of seconds a session key is cached for
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Set the maximum number of seconds a session key is cached for
+     * @param ttl the maximum number of seconds a session key is cached for
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    private static final class CachedTicket {
+        private final byte[] sessionKey;
+        private final Instant expiry;
+
+        CachedTicket(byte[] sessionKey, Instant expiry) {
+            this.sessionKey = sessionKey;
+            this.expiry = expiry;
+        }
+    }
+}
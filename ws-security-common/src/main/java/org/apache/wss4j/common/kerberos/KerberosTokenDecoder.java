@@ -19,6 +19,8 @@
 
 package org.apache.wss4j.common.kerberos;
 
+import java.time.Instant;
+
 import javax.security.auth.Subject;
 
 /**
@@ -47,6 +49,16 @@ public interface KerberosTokenDecoder {
      */
     byte[] getSessionKey() throws KerberosTokenDecoderException;
 
+    /**
+     * Get the end time of the service ticket of the token, once the session key was obtained. A
+     * KerberosTicketCache does not return the session key of a ticket after this time. The default
+     * implementation returns null, meaning that the end time is not known.
+     * @return the end time of the service ticket, or null if it is not known
+     */
+    default Instant getTicketEndTime() {
+        return null;
+    }
+
     /**
      * Clear all internal information
      */
@@ -65,6 +65,8 @@ public final class OpenSAMLUtil {
     private static UnmarshallerFactory unmarshallerFactory;
     private static boolean samlEngineInitialized = false;
 
+    private static volatile XMLObjectBuilder<Signature> signatureBuilder;
+
     private OpenSAMLUtil() {
         // Complete
     }
@@ -98,6 +100,7 @@ public final class OpenSAMLUtil {
 
                 builderFactory = XMLObjectProviderRegistrySupport.getBuilderFactory();
                 marshallerFactory = XMLObjectProviderRegistrySupport.getMarshallerFactory();
+                signatureBuilder = null;
                 unmarshallerFactory = XMLObjectProviderRegistrySupport.getUnmarshallerFactory();
 
                 try {
@@ -191,7 +194,7 @@ public final class OpenSAMLUtil {
         Document doc,
         boolean signObject
     ) throws WSSecurityException {
-        Marshaller marshaller = marshallerFactory.getMarshaller(xmlObject);
+        Marshaller marshaller = getMarshaller(xmlObject);
         Element element = null;
         DocumentFragment frag = doc == null ? null : doc.createDocumentFragment();
         try {
@@ -225,6 +228,19 @@ public final class OpenSAMLUtil {
         return element;
     }
 
+    /**
+     * The MarshallerFactory already holds the registered Marshallers in a map, keyed on the
+     * xsi:type and element QName of the XMLObject, so the lookup is not cached here.
+     */
+    private static Marshaller getMarshaller(XMLObject xmlObject) throws WSSecurityException {
+        Marshaller marshaller = marshallerFactory.getMarshaller(xmlObject);
+        if (marshaller == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
+                new Object[] {"No marshaller available for " + xmlObject.getElementQName()});
+        }
+        return marshaller;
+    }
+
     private static void signXMLObject(XMLObject xmlObject) throws WSSecurityException {
         if (xmlObject instanceof org.opensaml.saml.saml1.core.Response) {
             org.opensaml.saml.saml1.core.Response response =
@@ -278,8 +294,11 @@ public final class OpenSAMLUtil {
     @SuppressWarnings("unchecked")
     public static Signature buildSignature() {
         QName qName = Signature.DEFAULT_ELEMENT_NAME;
-        XMLObjectBuilder<Signature> builder =
-            (XMLObjectBuilder<Signature>)builderFactory.getBuilder(qName);
+        XMLObjectBuilder<Signature> builder = signatureBuilder;
+        if (builder == null) {
+            builder = (XMLObjectBuilder<Signature>)builderFactory.getBuilder(qName);
+            signatureBuilder = builder;
+        }
         if (builder == null) {
             LOG.error(
                 "Unable to retrieve builder for object QName "
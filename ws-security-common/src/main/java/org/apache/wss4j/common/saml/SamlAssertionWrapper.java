@@ -74,6 +74,10 @@ public class SamlAssertionWrapper {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SamlAssertionWrapper.class);
 
+    private static volatile X509KeyInfoGeneratorFactory keyValueKeyInfoGeneratorFactory;
+
+    private static volatile X509KeyInfoGeneratorFactory certificateKeyInfoGeneratorFactory;
+
     /**
      * Raw SAML Object
      */
@@ -557,12 +561,7 @@ public class SamlAssertionWrapper {
 
         signature.setSigningCredential(signingCredential);
 
-        X509KeyInfoGeneratorFactory kiFactory = new X509KeyInfoGeneratorFactory();
-        if (sendKeyValue) {
-            kiFactory.setEmitPublicKeyValue(true);
-        } else {
-            kiFactory.setEmitEntityCertificate(true);
-        }
+        X509KeyInfoGeneratorFactory kiFactory = getKeyInfoGeneratorFactory(sendKeyValue);
         try {
             KeyInfo keyInfo = kiFactory.newInstance().generate(signingCredential);
             signature.setKeyInfo(keyInfo);
@@ -575,6 +574,26 @@ public class SamlAssertionWrapper {
         setSignature(signature, signatureDigestAlgorithm);
     }
 
+    /**
+     * The KeyInfo generator factories are only configured once, and can then be shared by all
+     * the assertions that are signed.
+     */
+    private static X509KeyInfoGeneratorFactory getKeyInfoGeneratorFactory(boolean sendKeyValue) {
+        X509KeyInfoGeneratorFactory kiFactory =
+            sendKeyValue ? keyValueKeyInfoGeneratorFactory : certificateKeyInfoGeneratorFactory;
+        if (kiFactory == null) {
+            kiFactory = new X509KeyInfoGeneratorFactory();
+            if (sendKeyValue) {
+                kiFactory.setEmitPublicKeyValue(true);
+                keyValueKeyInfoGeneratorFactory = kiFactory;
+            } else {
+                kiFactory.setEmitEntityCertificate(true);
+                certificateKeyInfoGeneratorFactory = kiFactory;
+            }
+        }
+        return kiFactory;
+    }
+
     /**
      * Verify the signature of this assertion
      *
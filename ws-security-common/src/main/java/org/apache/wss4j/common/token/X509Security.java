@@ -28,9 +28,6 @@ import org.apache.wss4j.common.ext.WSSecurityException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.ByteArrayInputStream;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 
@@ -92,15 +89,8 @@ public class X509Security extends BinarySecurity {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, "invalidCertData", new Object[] {"0"});
         }
-        try (InputStream in = new ByteArrayInputStream(data)) {
-            cachedCert = certCrypto.loadCertificate(in);
-            return cachedCert;
-        } catch (IOException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "parseError"
-            );
-        }
-
+        cachedCert = certCrypto.loadCertificate(data);
+        return cachedCert;
     }
 
     /**
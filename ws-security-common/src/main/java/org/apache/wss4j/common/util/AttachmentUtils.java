@@ -486,6 +486,17 @@ public final class AttachmentUtils {
     public static InputStream setupAttachmentDecryptionStream(
             final String encAlgo, final Cipher cipher, final Key key, InputStream inputStream)
             throws WSSecurityException {
+        return setupAttachmentDecryptionStream(encAlgo, cipher, key, inputStream, false);
+    }
+
+    /**
+     * Set up a stream to decrypt an attachment. If authenticateBeforeRelease is true and the algorithm is AES-GCM,
+     * the plaintext is buffered (in a temporary file above AuthenticatedDecryptionInputStream.DEFAULT_BUFFER_THRESHOLD)
+     * until the Cipher has verified the authentication tag, so that no unauthenticated plaintext is released.
+     */
+    public static InputStream setupAttachmentDecryptionStream(
+            final String encAlgo, final Cipher cipher, final Key key, InputStream inputStream,
+            boolean authenticateBeforeRelease) throws WSSecurityException {
 
         CipherInputStream cipherInputStream = new CipherInputStream(inputStream, cipher) {
 
@@ -495,9 +506,13 @@ public final class AttachmentUtils {
                 int ivLen = JCEMapper.getIVLengthFromURI(encAlgo) / 8;
                 byte[] ivBytes = new byte[ivLen];
 
-                int read = super.in.read(ivBytes, 0, ivLen);
+                int read = 0;
                 while (read != ivLen) {
-                    read += super.in.read(ivBytes, read, ivLen - read);
+                    int count = super.in.read(ivBytes, read, ivLen - read);
+                    if (count < 0) {
+                        throw new IOException("Truncated attachment ciphertext");
+                    }
+                    read += count;
                 }
 
                 AlgorithmParameterSpec paramSpec =
@@ -554,8 +569,22 @@ public final class AttachmentUtils {
                 }
                 return super.available();
             }
+
+            @Override
+            public void close() throws IOException {
+                if (firstRead) {
+                    // the Cipher was not initialized, so it must not be finished
+                    super.in.close();
+                } else {
+                    super.close();
+                }
+            }
         };
 
+        if (authenticateBeforeRelease && (WSS4JConstants.AES_128_GCM.equals(encAlgo)
+            || WSS4JConstants.AES_192_GCM.equals(encAlgo) || WSS4JConstants.AES_256_GCM.equals(encAlgo))) {
+            return new AuthenticatedDecryptionInputStream(cipherInputStream);
+        }
         return cipherInputStream;
     }
 
@@ -613,6 +642,20 @@ public final class AttachmentUtils {
 
     public static byte[] getBytesFromAttachment(
         String xopUri, CallbackHandler attachmentCallbackHandler, boolean removeAttachments
+    ) throws WSSecurityException {
+        try (InputStream inputStream =
+            getAttachmentStream(xopUri, attachmentCallbackHandler, removeAttachments)) {
+            return JavaUtils.getBytesFromStream(inputStream);
+        } catch (IOException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
+        }
+    }
+
+    /**
+     * Get the source stream of the attachment referenced by the given xop:Include URI
+     */
+    public static InputStream getAttachmentStream(
+        String xopUri, CallbackHandler attachmentCallbackHandler, boolean removeAttachments
     ) throws WSSecurityException {
         if (attachmentCallbackHandler == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
@@ -626,22 +669,19 @@ public final class AttachmentUtils {
 
         try {
             attachmentCallbackHandler.handle(new Callback[]{attachmentRequestCallback});
-
-            List<Attachment> attachments = attachmentRequestCallback.getAttachments();
-            if (attachments == null || attachments.isEmpty()
-                || !attachmentId.equals(attachments.get(0).getId())) {
-                throw new WSSecurityException(
-                    WSSecurityException.ErrorCode.INVALID_SECURITY,
-                    "empty", new Object[] {"Attachment not found: " + xopUri}
-                );
-            }
-            Attachment attachment = attachments.get(0);
-            try (InputStream inputStream = attachment.getSourceStream()) {
-                return JavaUtils.getBytesFromStream(inputStream);
-            }
         } catch (UnsupportedCallbackException | IOException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
         }
+
+        List<Attachment> attachments = attachmentRequestCallback.getAttachments();
+        if (attachments == null || attachments.isEmpty()
+            || !attachmentId.equals(attachments.get(0).getId())) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.INVALID_SECURITY,
+                "empty", new Object[] {"Attachment not found: " + xopUri}
+            );
+        }
+        return attachments.get(0).getSourceStream();
     }
 
     public static String getAttachmentId(String xopUri) throws WSSecurityException {
@@ -661,6 +701,21 @@ public final class AttachmentUtils {
         String attachmentId,
         byte[] bytes,
         CallbackHandler attachmentCallbackHandler
+    ) throws WSSecurityException {
+        storeStreamInAttachment(parentElement, doc, attachmentId, new ByteArrayInputStream(bytes),
+                                attachmentCallbackHandler);
+    }
+
+    /**
+     * Store the given stream in an attachment, and add a xop:Include referencing it to the parent Element.
+     * The stream is not read by this method, and so can produce its bytes as the attachment is written out.
+     */
+    public static void storeStreamInAttachment(
+        Element parentElement,
+        Document doc,
+        String attachmentId,
+        InputStream inputStream,
+        CallbackHandler attachmentCallbackHandler
     ) throws WSSecurityException {
         parentElement.setAttributeNS(XMLUtils.XMLNS_NS, "xmlns:xop", WSS4JConstants.XOP_NS);
         Element xopInclude =
@@ -675,7 +730,7 @@ public final class AttachmentUtils {
         Attachment resultAttachment = new Attachment();
         resultAttachment.setId(attachmentId);
         resultAttachment.setMimeType("application/ciphervalue");
-        resultAttachment.setSourceStream(new ByteArrayInputStream(bytes));
+        resultAttachment.setSourceStream(inputStream);
 
         AttachmentResultCallback attachmentResultCallback = new AttachmentResultCallback();
         attachmentResultCallback.setAttachmentId(attachmentId);
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An InputStream that only releases the plaintext of an AES-GCM encrypted attachment once the JCE
+ * Cipher has verified the authentication tag. When it is first read, the wrapped (CipherInputStream)
+ * stream is read completely, so that Cipher.doFinal is called, and the plaintext is buffered in memory up
+ * to the given threshold and in a temporary file above it. If the authentication fails, the IOException
+ * of the CipherInputStream (caused by an AEADBadTagException) is thrown and the buffered plaintext is
+ * discarded. The temporary file is deleted when this stream is closed. This does not decrypt in constant
+ * memory - it trades the memory of the plaintext for the guarantee that it is authenticated before release.
+ *
+ * Note that the SunJCE provider buffers the complete ciphertext in the Cipher itself when decrypting
+ * with AES-GCM, so that the heap that is used is only bounded with a provider that releases the
+ * plaintext incrementally, such as BouncyCastle.
+ */
+public class AuthenticatedDecryptionInputStream extends InputStream {
+
+    /**
+     * The default number of plaintext bytes that are buffered in memory (1 MB)
+     */
+    public static final long DEFAULT_BUFFER_THRESHOLD = 1024L * 1024L;
+
+    private final InputStream decryptedInputStream;
+    private final ReplayableInputStream bufferedInputStream;
+    private InputStream authenticatedInputStream;
+    private boolean closed;
+
+    public AuthenticatedDecryptionInputStream(InputStream decryptedInputStream) {
+        this(decryptedInputStream, DEFAULT_BUFFER_THRESHOLD);
+    }
+
+    public AuthenticatedDecryptionInputStream(InputStream decryptedInputStream, long threshold) {
+        this.decryptedInputStream = decryptedInputStream;
+        this.bufferedInputStream = new ReplayableInputStream(decryptedInputStream, threshold);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return getAuthenticatedInputStream().read();
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        return getAuthenticatedInputStream().read(bytes, offset, length);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return getAuthenticatedInputStream().skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return getAuthenticatedInputStream().available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (authenticatedInputStream != null) {
+            authenticatedInputStream.close();
+        } else {
+            bufferedInputStream.discard();
+            decryptedInputStream.close();
+        }
+    }
+
+    /**
+     * Get the number of plaintext bytes, which is only known once the stream has been read
+     */
+    public long getLength() {
+        return bufferedInputStream.getLength();
+    }
+
+    private InputStream getAuthenticatedInputStream() throws IOException {
+        if (closed) {
+            throw new IOException("The stream is closed");
+        }
+        if (authenticatedInputStream == null) {
+            try {
+                authenticatedInputStream = bufferedInputStream.getReplayStream();
+            } catch (IOException ex) {
+                closed = true;
+                bufferedInputStream.discard();
+                try {
+                    decryptedInputStream.close();
+                } catch (IOException closeException) {
+                    ex.addSuppressed(closeException);
+                }
+                throw ex;
+            }
+        }
+        return authenticatedInputStream;
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An InputStream that records the bytes read from the wrapped stream, so that they can be read again
+ * via getReplayStream(). This allows a stream (e.g. an attachment) to be consumed once (e.g. to compute
+ * a digest), and then to be handed on, without requiring the wrapped stream to support mark/reset.
+ * The recorded bytes are held in memory up to the given threshold, after which they are written to a
+ * temporary file, which is deleted when the replay stream is closed. A negative threshold means that
+ * the bytes are always held in memory.
+ */
+public class ReplayableInputStream extends FilterInputStream {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ReplayableInputStream.class);
+
+    private final long threshold;
+    private final ExposedByteArrayOutputStream memoryBuffer = new ExposedByteArrayOutputStream();
+    private Path tempFile;
+    private OutputStream fileBuffer;
+    private long length;
+    private boolean replayed;
+
+    public ReplayableInputStream(InputStream in, long threshold) {
+        super(in);
+        this.threshold = threshold;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            record(new byte[] {(byte)b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int len) throws IOException {
+        int read = super.read(bytes, offset, len);
+        if (read > 0) {
+            record(bytes, offset, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // The skipped bytes must be recorded as well
+        byte[] buffer = new byte[(int)Math.min(8192, Math.max(n, 0))];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int)Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // mark is not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * The wrapped stream is only closed by getReplayStream()
+     */
+    @Override
+    public void close() throws IOException {
+        // complete
+    }
+
+    /**
+     * Get the number of bytes read so far
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Read the remainder of the wrapped stream, close it, and return a stream of all of its bytes.
+     * This method may only be called once.
+     */
+    public InputStream getReplayStream() throws IOException {
+        if (replayed) {
+            throw new IOException("The stream has already been replayed");
+        }
+        replayed = true;
+
+        byte[] buffer = new byte[8192];
+        while (read(buffer, 0, buffer.length) != -1) { //NOPMD
+            // drain the stream
+        }
+        super.close();
+
+        if (fileBuffer == null) {
+            return new ByteArrayInputStream(memoryBuffer.getBuffer(), 0, memoryBuffer.size());
+        }
+        fileBuffer.close();
+        return Files.newInputStream(tempFile, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Discard the recorded bytes (e.g. after an error), deleting the temporary file if there is one
+     */
+    public void discard() {
+        replayed = true;
+        memoryBuffer.release();
+        if (fileBuffer != null) {
+            try {
+                fileBuffer.close();
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ex) {
+                LOG.debug("Error deleting temporary file {}: {}", tempFile, ex.getMessage());
+            }
+        }
+    }
+
+    private void record(byte[] bytes, int offset, int len) throws IOException {
+        length += len;
+        if (fileBuffer != null) {
+            fileBuffer.write(bytes, offset, len);
+            return;
+        }
+        if (threshold >= 0 && length > threshold) {
+            tempFile = Files.createTempFile("wss4j-", ".tmp");
+            LOG.debug("Buffering the stream in temporary file {}", tempFile);
+            try {
+                fileBuffer = new BufferedOutputStream(Files.newOutputStream(tempFile));
+                memoryBuffer.writeTo(fileBuffer);
+                fileBuffer.write(bytes, offset, len);
+            } catch (IOException ex) {
+                Files.deleteIfExists(tempFile);
+                throw ex;
+            }
+            memoryBuffer.release();
+            return;
+        }
+        memoryBuffer.write(bytes, offset, len);
+    }
+
+    /**
+     * A ByteArrayOutputStream that gives access to its buffer, to avoid copying it
+     */
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        void release() {
+            buf = new byte[0];
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of UsernameToken derived keys. Deriving a key from a UsernameToken password takes
+ * (by default) 1000 SHA-1 rounds, which are repeated for every message of a client that reuses the same
+ * salt. The entries are keyed by a SHA-256 digest of the password, the salt and the iteration count, so
+ * that neither the password nor the derived key can be looked up without knowing the password, and a
+ * changed password never matches a cached key. The least recently used entry is evicted first.
+ *
+ * There is no cache by default. An instance can be configured for inbound messages with the
+ * ConfigurationConstants.UT_DERIVED_KEY_CACHE_INSTANCE option.
+ */
+public class UsernameTokenDerivedKeyCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final Map<String, byte[]> derivedKeys;
+
+    public UsernameTokenDerivedKeyCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public UsernameTokenDerivedKeyCache(final int maxEntries) {
+        this.derivedKeys = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 2187361563812737421L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the cached derived key for the given password, salt and iteration count
+     * @param password the password
+     * @param salt the salt
+     * @param iteration the iteration count
+     * @return a copy of the cached derived key, or null if it is not cached
+     */
+    public byte[] get(byte[] password, byte[] salt, int iteration) {
+        String key = getKey(password, salt, iteration);
+        synchronized (derivedKeys) {
+            byte[] derivedKey = derivedKeys.get(key);
+            return derivedKey != null ? derivedKey.clone() : null;
+        }
+    }
+
+    /**
+     * Cache the derived key for the given password, salt and iteration count
+     * @param password the password
+     * @param salt the salt
+     * @param iteration the iteration count
+     * @param derivedKey the derived key
+     */
+    public void put(byte[] password, byte[] salt, int iteration, byte[] derivedKey) {
+        String key = getKey(password, salt, iteration);
+        synchronized (derivedKeys) {
+            derivedKeys.put(key, derivedKey.clone());
+        }
+    }
+
+    /**
+     * Remove all cached derived keys
+     */
+    public void clear() {
+        synchronized (derivedKeys) {
+            derivedKeys.clear();
+        }
+    }
+
+    /**
+     * Get the number of cached derived keys
+     * @return the number of cached derived keys
+     */
+    public int size() {
+        synchronized (derivedKeys) {
+            return derivedKeys.size();
+        }
+    }
+
+    private static String getKey(byte[] password, byte[] salt, int iteration) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(ByteBuffer.allocate(8).putInt(iteration).putInt(salt.length).array());
+            messageDigest.update(salt);
+            messageDigest.update(password);
+            return Base64.getEncoder().encodeToString(messageDigest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -58,6 +58,38 @@ public final class UsernameTokenUtil {
         byte[] salt,
         int iteration
     ) throws WSSecurityException {
+        return generateDerivedKey(password, salt, iteration, null);
+    }
+
+    /**
+     * This static method generates a derived key as defined in WSS Username
+     * Token Profile, taking it from (or adding it to) the given cache.
+     *
+     * @param password The password to include in the key generation
+     * @param salt The Salt value
+     * @param iteration The Iteration value. If zero (0) is given the method uses the
+     *                  default value
+     * @param cache The cache of derived keys, or null to derive the key from scratch
+     * @return Returns the derived key a byte array
+     * @throws WSSecurityException
+     */
+    public static byte[] generateDerivedKey(
+        byte[] password,
+        byte[] salt,
+        int iteration,
+        UsernameTokenDerivedKeyCache cache
+    ) throws WSSecurityException {
+        int iter = iteration;
+        if (iter <= 0) {
+            iter = DEFAULT_ITERATION;
+        }
+        if (cache != null) {
+            byte[] derivedKey = cache.get(password, salt, iter);
+            if (derivedKey != null) {
+                return derivedKey;
+            }
+        }
+
         byte[] pwSalt = new byte[salt.length + password.length];
         System.arraycopy(password, 0, pwSalt, 0, password.length);
         System.arraycopy(salt, 0, pwSalt, password.length, salt.length);
@@ -78,13 +110,12 @@ public final class UsernameTokenUtil {
         //
         // Perform the 1st up to iteration-1 hash rounds
         //
-        int iter = iteration;
-        if (iter <= 0) {
-            iter = DEFAULT_ITERATION;
-        }
         for (int i = 1; i < iter; i++) {
             k = sha.digest(k);
         }
+        if (cache != null) {
+            cache.put(password, salt, iter, k);
+        }
         return k;
     }
 
@@ -104,7 +135,28 @@ public final class UsernameTokenUtil {
         byte[] salt,
         int iteration
     ) throws WSSecurityException {
-        return generateDerivedKey(password.getBytes(StandardCharsets.UTF_8), salt, iteration);
+        return generateDerivedKey(password, salt, iteration, null);
+    }
+
+    /**
+     * This static method generates a derived key as defined in WSS Username
+     * Token Profile, taking it from (or adding it to) the given cache.
+     *
+     * @param password The password to include in the key generation
+     * @param salt The Salt value
+     * @param iteration The Iteration value. If zero (0) is given the method uses the
+     *                  default value
+     * @param cache The cache of derived keys, or null to derive the key from scratch
+     * @return Returns the derived key a byte array
+     * @throws WSSecurityException
+     */
+    public static byte[] generateDerivedKey(
+        String password,
+        byte[] salt,
+        int iteration,
+        UsernameTokenDerivedKeyCache cache
+    ) throws WSSecurityException {
+        return generateDerivedKey(password.getBytes(StandardCharsets.UTF_8), salt, iteration, cache);
     }
 
     /**
@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.attachment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.apache.wss4j.common.WSS4JConstants;
+import org.apache.wss4j.common.crypto.WSProviderConfig;
+import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.AuthenticatedDecryptionInputStream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuthenticatedDecryptionInputStreamTest {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        WSProviderConfig.init();
+    }
+
+    @Test
+    public void testDecryption() throws Exception {
+        for (int keySize : new int[] {128, 256}) {
+            SecretKey key = generateKey(keySize);
+            for (int length : new int[] {0, 1, 15, 16, 17, 8191, 8192, 8208, 100_000}) {
+                byte[] plaintext = new byte[length];
+                RANDOM.nextBytes(plaintext);
+                byte[] encrypted = encrypt(key, plaintext);
+
+                assertArrayEquals(plaintext, readFully(decrypt(key, new ByteArrayInputStream(encrypted), 1024), 4096));
+                assertArrayEquals(plaintext, readByteByByte(decrypt(key, new TrickleInputStream(encrypted), 1024)));
+            }
+        }
+    }
+
+    @Test
+    public void testBufferThreshold() throws Exception {
+        SecretKey key = generateKey(128);
+        byte[] plaintext = new byte[20_000];
+        RANDOM.nextBytes(plaintext);
+        byte[] encrypted = encrypt(key, plaintext);
+
+        // Below the threshold the plaintext is kept in memory
+        Set<Path> tempFiles = getTempFiles();
+        AuthenticatedDecryptionInputStream inputStream = decrypt(key, new ByteArrayInputStream(encrypted), 100_000);
+        assertEquals(plaintext[0], (byte) inputStream.read());
+        assertEquals(plaintext.length, inputStream.getLength());
+        assertTrue(getTempFiles().equals(tempFiles));
+        inputStream.close();
+
+        // Above the threshold it is written to a temporary file, which is deleted on close
+        inputStream = decrypt(key, new ByteArrayInputStream(encrypted), 1000);
+        assertArrayEquals(plaintext, readFully(inputStream, 4096));
+        assertEquals(plaintext.length, inputStream.getLength());
+        inputStream.close();
+        assertTrue(getTempFiles().equals(tempFiles));
+    }
+
+    @Test
+    public void testTamperedCiphertext() throws Exception {
+        SecretKey key = generateKey(128);
+        byte[] plaintext = new byte[20_000];
+        RANDOM.nextBytes(plaintext);
+        byte[] encrypted = encrypt(key, plaintext);
+
+        Set<Path> tempFiles = getTempFiles();
+        for (int position : new int[] {12, 5000, encrypted.length - 17, encrypted.length - 1}) {
+            byte[] tampered = encrypted.clone();
+            tampered[position] ^= 1;
+            AuthenticatedDecryptionInputStream inputStream = decrypt(key, new ByteArrayInputStream(tampered), 1000);
+
+            // No plaintext is released before the authentication tag has been verified
+            IOException ex = assertThrows(IOException.class, () -> inputStream.read());
+            assertTrue(ex.getCause() instanceof AEADBadTagException);
+            assertThrows(IOException.class, () -> inputStream.read());
+            inputStream.close();
+        }
+        assertTrue(getTempFiles().equals(tempFiles));
+    }
+
+    @Test
+    public void testTruncatedCiphertext() throws Exception {
+        SecretKey key = generateKey(128);
+        byte[] encrypted = encrypt(key, new byte[100]);
+
+        assertThrows(IOException.class, () -> readFully(decrypt(key,
+            new ByteArrayInputStream(Arrays.copyOf(encrypted, 20)), 1024), 1024));
+        assertThrows(IOException.class, () -> readFully(decrypt(key,
+            new ByteArrayInputStream(Arrays.copyOf(encrypted, 8)), 1024), 1024));
+        assertThrows(IOException.class, () -> readFully(decrypt(key,
+            new ByteArrayInputStream(Arrays.copyOf(encrypted, encrypted.length - 1)), 1024), 1024));
+    }
+
+    @Test
+    public void testSetupAttachmentDecryptionStream() throws Exception {
+        SecretKey key = generateKey(128);
+        byte[] plaintext = new byte[1000];
+        RANDOM.nextBytes(plaintext);
+        byte[] encrypted = encrypt(key, plaintext);
+
+        InputStream inputStream = AttachmentUtils.setupAttachmentDecryptionStream(
+            WSS4JConstants.AES_128_GCM, Cipher.getInstance("AES/GCM/NoPadding"), key,
+            new ByteArrayInputStream(encrypted), true);
+        assertTrue(inputStream instanceof AuthenticatedDecryptionInputStream);
+        assertArrayEquals(plaintext, readFully(inputStream, 100));
+
+        inputStream = AttachmentUtils.setupAttachmentDecryptionStream(
+            WSS4JConstants.AES_128_GCM, Cipher.getInstance("AES/GCM/NoPadding"), key,
+            new ByteArrayInputStream(encrypted), false);
+        assertFalse(inputStream instanceof AuthenticatedDecryptionInputStream);
+        assertArrayEquals(plaintext, readFully(inputStream, 100));
+    }
+
+    private static AuthenticatedDecryptionInputStream decrypt(SecretKey key, InputStream encrypted, long threshold)
+        throws Exception {
+        InputStream cipherInputStream = AttachmentUtils.setupAttachmentDecryptionStream(
+            WSS4JConstants.AES_128_GCM, Cipher.getInstance("AES/GCM/NoPadding"), key, encrypted, false);
+        return new AuthenticatedDecryptionInputStream(cipherInputStream, threshold);
+    }
+
+    private static SecretKey generateKey(int keySize) throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(keySize);
+        return keyGenerator.generateKey();
+    }
+
+    private static byte[] encrypt(SecretKey key, byte[] plaintext) throws Exception {
+        byte[] iv = new byte[12];
+        RANDOM.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        byte[] ciphertext = cipher.doFinal(plaintext);
+
+        byte[] encrypted = new byte[iv.length + ciphertext.length];
+        System.arraycopy(iv, 0, encrypted, 0, iv.length);
+        System.arraycopy(ciphertext, 0, encrypted, iv.length, ciphertext.length);
+        return encrypted;
+    }
+
+    private static byte[] readFully(InputStream inputStream, int bufferSize) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] readByteByByte(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int read;
+        while ((read = inputStream.read()) != -1) {
+            outputStream.write(read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static Set<Path> getTempFiles() throws IOException {
+        Set<Path> tempFiles = new HashSet<>();
+        Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(tempDir, "wss4j-*.tmp")) {
+            for (Path tempFile : directoryStream) {
+                tempFiles.add(tempFile);
+            }
+        }
+        return tempFiles;
+    }
+
+    /**
+     * Returns at most 7 bytes per read, to test ciphertext that doesn't arrive in whole blocks
+     */
+    private static final class TrickleInputStream extends ByteArrayInputStream {
+        TrickleInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] bytes, int offset, int length) {
+            return super.read(bytes, offset, Math.min(length, 7));
+        }
+    }
+}
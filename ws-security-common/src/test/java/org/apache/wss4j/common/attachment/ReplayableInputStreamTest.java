@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.attachment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.apache.wss4j.common.util.ReplayableInputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ReplayableInputStreamTest {
+
+    @Test
+    public void testReplayFromMemory() throws Exception {
+        byte[] bytes = createBytes(10_000);
+        ReplayableInputStream inputStream = new ReplayableInputStream(new ByteArrayInputStream(bytes), -1L);
+
+        // Only read part of the stream, the remainder must be replayed as well
+        byte[] start = new byte[100];
+        assertEquals(100, inputStream.read(start));
+        assertEquals(10, inputStream.skip(10));
+        assertEquals(bytes[110] & 0xFF, inputStream.read());
+
+        try (InputStream replayStream = inputStream.getReplayStream()) {
+            assertArrayEquals(bytes, readFully(replayStream));
+        }
+        assertEquals(bytes.length, inputStream.getLength());
+        assertThrows(IOException.class, inputStream::getReplayStream);
+    }
+
+    @Test
+    public void testReplayFromTemporaryFile() throws Exception {
+        byte[] bytes = createBytes(100_000);
+        long tempFiles = countTempFiles();
+
+        ReplayableInputStream inputStream = new ReplayableInputStream(new ByteArrayInputStream(bytes), 1024L);
+        assertArrayEquals(bytes, readFully(inputStream));
+        assertEquals(tempFiles + 1, countTempFiles());
+
+        try (InputStream replayStream = inputStream.getReplayStream()) {
+            assertArrayEquals(bytes, readFully(replayStream));
+        }
+        assertEquals(tempFiles, countTempFiles());
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        long tempFiles = countTempFiles();
+
+        ReplayableInputStream inputStream =
+            new ReplayableInputStream(new ByteArrayInputStream(createBytes(5000)), 1000L);
+        readFully(inputStream);
+        assertEquals(tempFiles + 1, countTempFiles());
+        inputStream.discard();
+        assertEquals(tempFiles, countTempFiles());
+    }
+
+    private static byte[] createBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static long countTempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(path -> path.getFileName().toString().startsWith("wss4j-")).count();
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[777];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+}
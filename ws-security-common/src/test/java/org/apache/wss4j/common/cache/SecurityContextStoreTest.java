@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+import org.apache.wss4j.common.derivedKey.ConversationConstants;
+import org.apache.wss4j.common.derivedKey.DerivedKeyUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Some unit tests for the MemorySecurityContextStore
+ */
+public class SecurityContextStoreTest {
+
+    private static final byte[] SECRET = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NONCE = "fedcba9876543210".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testAddAndRemove() throws Exception {
+        try (SecurityContextStore store = new MemorySecurityContextStore()) {
+            String identifier = "urn:uuid:" + UUID.randomUUID().toString();
+            assertNull(store.getSecret(identifier));
+
+            store.add(identifier, SECRET);
+            assertArrayEquals(SECRET, store.getSecret(identifier));
+
+            store.addDerivedKey(identifier, "key", new byte[] {1, 2, 3});
+            assertArrayEquals(new byte[] {1, 2, 3}, store.getDerivedKey(identifier, "key"));
+
+            store.remove(identifier);
+            assertNull(store.getSecret(identifier));
+            assertNull(store.getDerivedKey(identifier, "key"));
+        }
+    }
+
+    @Test
+    public void testExpiredContext() throws Exception {
+        try (SecurityContextStore store = new MemorySecurityContextStore()) {
+            String identifier = "urn:uuid:" + UUID.randomUUID().toString();
+            store.add(identifier, SECRET, Instant.now().plusMillis(500L));
+            assertNotNull(store.getSecret(identifier));
+
+            Thread.sleep(1000L);
+            assertNull(store.getSecret(identifier));
+        }
+    }
+
+    @Test
+    public void testDerivedKeyCaching() throws Exception {
+        try (SecurityContextStore store = new MemorySecurityContextStore()) {
+            String identifier = "urn:uuid:" + UUID.randomUUID().toString();
+            byte[] expected =
+                DerivedKeyUtils.deriveKey(ConversationConstants.DerivationAlgorithm.P_SHA_1, null, 16, SECRET, NONCE, 0);
+
+            // The store doesn't hold the context, so the key is not cached
+            byte[] derivedKey = DerivedKeyUtils.deriveKey(store, identifier,
+                ConversationConstants.DerivationAlgorithm.P_SHA_1, null, 16, SECRET, NONCE, 0);
+            assertArrayEquals(expected, derivedKey);
+            assertNull(store.getSecret(identifier));
+
+            store.add(identifier, SECRET);
+            derivedKey = DerivedKeyUtils.deriveKey(store, identifier,
+                ConversationConstants.DerivationAlgorithm.P_SHA_1, null, 16, SECRET, NONCE, 0);
+            assertArrayEquals(expected, derivedKey);
+
+            // The cached key is returned
+            String derivationKey = ConversationConstants.DerivationAlgorithm.P_SHA_1 + "|null|16|0|"
+                + Base64.getEncoder().encodeToString(NONCE);
+            assertArrayEquals(expected, store.getDerivedKey(identifier, derivationKey));
+            store.addDerivedKey(identifier, derivationKey, new byte[16]);
+            derivedKey = DerivedKeyUtils.deriveKey(store, identifier,
+                ConversationConstants.DerivationAlgorithm.P_SHA_1, null, 16, SECRET, NONCE, 0);
+            assertArrayEquals(new byte[16], derivedKey);
+
+            // A different secret for the same context identifier doesn't use the cache
+            byte[] otherSecret = "abcdef0123456789".getBytes(StandardCharsets.UTF_8);
+            derivedKey = DerivedKeyUtils.deriveKey(store, identifier,
+                ConversationConstants.DerivationAlgorithm.P_SHA_1, null, 16, otherSecret, NONCE, 0);
+            assertArrayEquals(
+                DerivedKeyUtils.deriveKey(ConversationConstants.DerivationAlgorithm.P_SHA_1, null, 16, otherSecret, NONCE, 0),
+                derivedKey);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wss4j.common.util.Loader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for the CryptoRegistry and ReloadableCrypto.
+ */
+public class CryptoRegistryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        WSProviderConfig.init();
+    }
+
+    @Test
+    public void testCryptoIsReloadedWhenKeystoreChanges() throws Exception {
+        Path keystore = tempDir.resolve("wss40.jks");
+        try (InputStream is = Merlin.loadInputStream(Loader.getClassLoader(Merlin.class), "keys/wss40.jks")) {
+            Files.copy(is, keystore);
+        }
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.Merlin");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", keystore.toString());
+        Path propertiesFile = tempDir.resolve("crypto.properties");
+        try (OutputStream os = Files.newOutputStream(propertiesFile)) {
+            properties.store(os, null);
+        }
+
+        CryptoRegistry cryptoRegistry = new CryptoRegistry();
+        cryptoRegistry.setCheckInterval(0L);
+        ClassLoader classLoader = Loader.getClassLoader(Merlin.class);
+        Crypto crypto = cryptoRegistry.getCrypto(propertiesFile.toString(), classLoader, (PasswordEncryptor) null);
+        assertSame(crypto, cryptoRegistry.getCrypto(propertiesFile.toString(), classLoader, (PasswordEncryptor) null));
+
+        OCSPResponseCache ocspResponseCache = ((Merlin) crypto).getOCSPResponseCache();
+        Files.setLastModifiedTime(keystore, FileTime.fromMillis(System.currentTimeMillis() + 60_000L));
+        ReloadableCrypto reloadableCrypto = cryptoRegistry.getReloadableCrypto(propertiesFile.toString());
+        reloadableCrypto.setCheckInterval(1L);
+        long timeout = System.currentTimeMillis() + 10_000L;
+        while (reloadableCrypto.getCrypto() == crypto && System.currentTimeMillis() < timeout) {
+            Thread.sleep(100L);
+        }
+        Crypto reloadedCrypto = cryptoRegistry.getCrypto(propertiesFile.toString(), classLoader, (PasswordEncryptor) null);
+        assertNotSame(crypto, reloadedCrypto);
+        assertSame(ocspResponseCache, ((Merlin) reloadedCrypto).getOCSPResponseCache());
+
+        // The previous instance remains usable
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        assertNotNull(crypto.getX509Certificates(cryptoType));
+        assertEquals(crypto.getX509Certificates(cryptoType)[0], reloadedCrypto.getX509Certificates(cryptoType)[0]);
+    }
+
+    @Test
+    public void testFailedReloadKeepsCrypto() throws Exception {
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.Merlin");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", "keys/wss40.jks");
+
+        ReloadableCrypto reloadableCrypto =
+            new ReloadableCrypto(properties, Loader.getClassLoader(Merlin.class), null);
+        Crypto crypto = reloadableCrypto.getCrypto();
+
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "wrong");
+        try {
+            reloadableCrypto.reload();
+        } catch (Exception e) {
+            // expected
+        }
+        assertSame(crypto, reloadableCrypto.getCrypto());
+    }
+
+    @Test
+    public void testCryptoLoaderIsUsedOnReload() throws Exception {
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.Merlin");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", "keys/wss40.jks");
+        Path propertiesFile = tempDir.resolve("crypto.properties");
+        try (OutputStream os = Files.newOutputStream(propertiesFile)) {
+            properties.store(os, null);
+        }
+
+        CryptoRegistry cryptoRegistry = new CryptoRegistry();
+        cryptoRegistry.setCheckInterval(0L);
+        ClassLoader classLoader = Loader.getClassLoader(Merlin.class);
+        AtomicInteger loadCount = new AtomicInteger();
+        ReloadableCrypto.CryptoLoader cryptoLoader = cryptoProperties -> {
+            loadCount.incrementAndGet();
+            return CryptoFactory.getInstance(cryptoProperties, classLoader, null);
+        };
+        Crypto crypto = cryptoRegistry.getCrypto(propertiesFile.toString(), classLoader, cryptoLoader);
+        assertEquals(1, loadCount.get());
+
+        cryptoRegistry.getReloadableCrypto(propertiesFile.toString()).reload();
+        assertEquals(2, loadCount.get());
+        assertNotSame(crypto, cryptoRegistry.getCrypto(propertiesFile.toString(), classLoader, cryptoLoader));
+    }
+
+    @Test
+    public void testConcurrentReloadIsSkipped() throws Exception {
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.Merlin");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", "keys/wss40.jks");
+        Path propertiesFile = tempDir.resolve("crypto.properties");
+        try (OutputStream os = Files.newOutputStream(propertiesFile)) {
+            properties.store(os, null);
+        }
+
+        ClassLoader classLoader = Loader.getClassLoader(Merlin.class);
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ReloadableCrypto reloadableCrypto = new ReloadableCrypto(propertiesFile.toString(), classLoader,
+            cryptoProperties -> {
+                if (loadCount.incrementAndGet() == 2) {
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return CryptoFactory.getInstance(cryptoProperties, classLoader, null);
+            });
+        reloadableCrypto.setCheckInterval(0L);
+        Crypto crypto = reloadableCrypto.getCrypto();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reload = executor.submit(() -> {
+                reloadableCrypto.reload();
+                return null;
+            });
+            loading.await();
+            // A reload while another one is in progress returns without loading the Crypto
+            reloadableCrypto.reload();
+            assertEquals(2, loadCount.get());
+            assertSame(crypto, reloadableCrypto.getCrypto());
+
+            release.countDown();
+            reload.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertNotSame(crypto, reloadableCrypto.getCrypto());
+
+        reloadableCrypto.reload();
+        assertEquals(3, loadCount.get());
+    }
+}
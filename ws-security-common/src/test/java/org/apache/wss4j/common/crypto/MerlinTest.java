@@ -21,12 +21,22 @@ package org.apache.wss4j.common.crypto;
 
 import java.io.InputStream;
 import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 import org.apache.wss4j.common.util.Loader;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
+import org.apache.wss4j.common.ext.WSSecurityException;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 /**
@@ -77,6 +87,53 @@ public class MerlinTest {
         assertNotNull(pkcs12Crypto.getX509Certificates(cryptoType));
     }
 
+    @Test
+    public void testConcurrentVerifyTrustIsCoalesced() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger count = new AtomicInteger();
+        Merlin crypto = new Merlin() {
+            @Override
+            protected void verifyTrust(X509Certificate[] certs, boolean enableRevocation,
+                                       Collection<Pattern> subjectCertConstraints) throws WSSecurityException {
+                count.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await(10L, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.verifyTrust(certs, enableRevocation, subjectCertConstraints);
+            }
+        };
+        crypto.setKeyStore(loadKeyStore("keys/wss40.jks", "security"));
+
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> verifyTrust(crypto, certs));
+        started.await(10L, TimeUnit.SECONDS);
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> verifyTrust(crypto, certs));
+        // Give the second verification the chance to join the pending one
+        Thread.sleep(200L);
+        release.countDown();
+        CompletableFuture.allOf(first, second).get(10L, TimeUnit.SECONDS);
+        assertEquals(1, count.get());
+
+        // Completed verifications are not cached
+        verifyTrust(crypto, certs);
+        assertEquals(2, count.get());
+    }
+
+    private static void verifyTrust(Crypto crypto, X509Certificate[] certs) {
+        try {
+            crypto.verifyTrust(certs, false, null, null);
+        } catch (WSSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static KeyStore loadKeyStore(String path, String password) throws Exception {
         KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
         ClassLoader loader = Loader.getClassLoader(MerlinTest.class);
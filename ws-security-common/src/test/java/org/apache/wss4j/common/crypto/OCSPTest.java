@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Collections;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the OCSP revocation checking of Merlin against a local OCSPTestResponder.
+ */
+public class OCSPTest {
+
+    private OCSPTestResponder responder;
+    private Merlin crypto;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        WSProviderConfig.init();
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        responder = new OCSPTestResponder();
+
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("ca", responder.getCACert());
+        crypto = new Merlin();
+        crypto.setTrustStore(trustStore);
+        crypto.setEnableOCSP(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        responder.close();
+    }
+
+    @Test
+    public void testGoodAndRevokedCertificates() throws Exception {
+        X509Certificate good = responder.issue("CN=good");
+        X509Certificate revoked = responder.issue("CN=revoked");
+        responder.revoke(revoked);
+        assertEquals(responder.getURI(), OCSPClient.getResponderURI(good));
+
+        crypto.verifyTrust(new X509Certificate[] {good}, true, null, null);
+        assertThrows(WSSecurityException.class,
+                     () -> crypto.verifyTrust(new X509Certificate[] {revoked}, true, null, null));
+    }
+
+    @Test
+    public void testResponsesAreCached() throws Exception {
+        X509Certificate good = responder.issue("CN=good");
+
+        crypto.verifyTrust(new X509Certificate[] {good}, true, null, null);
+        int requestCount = responder.getRequestCount();
+        assertTrue(requestCount > 0);
+        crypto.verifyTrust(new X509Certificate[] {good}, true, null, null);
+        assertEquals(requestCount, responder.getRequestCount());
+
+        // Responses without a nextUpdate time are not cached
+        crypto.getOCSPResponseCache().clear();
+        responder.setNextUpdate(null);
+        crypto.verifyTrust(new X509Certificate[] {good}, true, null, null);
+        crypto.verifyTrust(new X509Certificate[] {good}, true, null, null);
+        assertTrue(responder.getRequestCount() > requestCount + 1);
+    }
+
+    @Test
+    public void testPrefetchedResponse() throws Exception {
+        X509Certificate good = responder.issue("CN=good");
+        byte[] response = responder.createResponse(good);
+        assertNotNull(OCSPResponseCache.getNextUpdate(response, good.getSerialNumber()));
+        assertTrue(crypto.getOCSPResponseCache().put(good, response));
+        responder.close();
+
+        // The responder is no longer available, but the pre-fetched response is used
+        crypto.verifyTrust(new X509Certificate[] {good}, true, null, null);
+    }
+
+    @Test
+    public void testExpiredResponseIsNotCached() throws Exception {
+        X509Certificate good = responder.issue("CN=good");
+        responder.setNextUpdate(Duration.ofHours(-1));
+        assertFalse(crypto.getOCSPResponseCache().put(good, responder.createResponse(good)));
+    }
+
+    @Test
+    public void testCRLIndexFallsBackToOCSP() throws Exception {
+        X509Certificate good = responder.issue("CN=good");
+        X509Certificate revoked = responder.issue("CN=revoked");
+        responder.revoke(revoked);
+
+        // The CRL index has no CRL of the CA, so the revocation status is undetermined without OCSP
+        crypto.setCRLIndex(new ReloadableX509CRLIndex(Loader.getClassLoader(Merlin.class),
+                                                      Collections.emptyList(),
+                                                      crypto.getCertificateFactory()));
+        crypto.setEnableOCSP(false);
+        assertThrows(WSSecurityException.class,
+                     () -> crypto.verifyTrust(new X509Certificate[] {good}, true, null, null));
+
+        crypto.setEnableOCSP(true);
+        crypto.verifyTrust(new X509Certificate[] {good}, true, null, null);
+        assertTrue(responder.getRequestCount() > 0);
+        assertThrows(WSSecurityException.class,
+                     () -> crypto.verifyTrust(new X509Certificate[] {revoked}, true, null, null));
+    }
+
+    @Test
+    public void testCRLIndexDeterminesStatus(@TempDir Path tempDir) throws Exception {
+        X509Certificate good = responder.issue("CN=good");
+        X509Certificate revoked = responder.issue("CN=revoked");
+        responder.revoke(revoked);
+        Path crlFile = tempDir.resolve("crl.der");
+        Files.write(crlFile, responder.createCRL().getEncoded());
+        crypto.setCRLIndex(new ReloadableX509CRLIndex(Loader.getClassLoader(Merlin.class),
+                                                      Collections.singletonList(crlFile.toString()),
+                                                      crypto.getCertificateFactory()));
+
+        // The CRL determines the revocation status, so OCSP is not used
+        crypto.verifyTrust(new X509Certificate[] {good}, true, null, null);
+        assertThrows(WSSecurityException.class,
+                     () -> crypto.verifyTrust(new X509Certificate[] {revoked}, true, null, null));
+        assertEquals(0, responder.getRequestCount());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        X509Certificate good = responder.issue("CN=good");
+
+        // A responder that accepts connections, but never answers
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            crypto.setOCSPResponder(URI.create("http://localhost:" + serverSocket.getLocalPort() + "/ocsp"));
+            crypto.getOCSPClient().setTimeout(500);
+
+            long start = System.currentTimeMillis();
+            assertThrows(WSSecurityException.class,
+                         () -> crypto.verifyTrust(new X509Certificate[] {good}, true, null, null));
+            assertTrue(System.currentTimeMillis() - start < OCSPClient.DEFAULT_READ_TIMEOUT);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+/**
+ * A local, in-process OCSP responder for tests. It creates its own CA, issues certificates that name the
+ * responder in their Authority Information Access extension, and answers OCSP requests for them with
+ * responses signed by the CA key.
+ */
+public class OCSPTestResponder implements AutoCloseable {
+
+    private final HttpServer server;
+    private final KeyPair caKeyPair;
+    private final X509Certificate caCert;
+    private final Set<BigInteger> revokedSerialNumbers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger serialNumber = new AtomicInteger(1);
+    private Duration nextUpdate = Duration.ofHours(1);
+
+    public OCSPTestResponder() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        caKeyPair = keyPairGenerator.generateKeyPair();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ocsp", exchange -> {
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                byte[] response = respond(inputStream.readAllBytes());
+                exchange.getResponseHeaders().add("Content-Type", "application/ocsp-response");
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(response);
+                }
+            } catch (Exception e) {
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        X500Name caName = new X500Name("CN=OCSP Test CA, O=Apache WSS4J");
+        JcaX509v3CertificateBuilder builder =
+            new JcaX509v3CertificateBuilder(caName, BigInteger.valueOf(serialNumber.getAndIncrement()),
+                                            Date.from(Instant.now().minusSeconds(3600L)),
+                                            Date.from(Instant.now().plus(Duration.ofDays(1))),
+                                            caName, caKeyPair.getPublic());
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+        builder.addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign));
+        caCert = sign(builder);
+    }
+
+    /**
+     * Issue a certificate for the given subject, naming this responder as its OCSP responder
+     */
+    public X509Certificate issue(String subject) throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        JcaX509v3CertificateBuilder builder =
+            new JcaX509v3CertificateBuilder(caCert, BigInteger.valueOf(serialNumber.getAndIncrement()),
+                                            Date.from(Instant.now().minusSeconds(3600L)),
+                                            Date.from(Instant.now().plus(Duration.ofDays(1))),
+                                            new X500Name(subject), keyPairGenerator.generateKeyPair().getPublic());
+        GeneralName location = new GeneralName(GeneralName.uniformResourceIdentifier, getURI().toString());
+        builder.addExtension(Extension.authorityInfoAccess, false,
+                             new AuthorityInformationAccess(AccessDescription.id_ad_ocsp, location));
+        return sign(builder);
+    }
+
+    public void revoke(X509Certificate cert) {
+        revokedSerialNumbers.add(cert.getSerialNumber());
+    }
+
+    /**
+     * Create a CRL, signed by the CA key, that revokes the revoked certificates and has the given extensions
+     */
+    public X509CRL createCRL(Extension... extensions) throws Exception {
+        Date thisUpdate = Date.from(Instant.now().minusSeconds(3600L));
+        X509v2CRLBuilder builder =
+            new X509v2CRLBuilder(new X509CertificateHolder(caCert.getEncoded()).getSubject(), thisUpdate);
+        builder.setNextUpdate(Date.from(Instant.now().plus(Duration.ofDays(1))));
+        for (BigInteger revokedSerialNumber : revokedSerialNumbers) {
+            builder.addCRLEntry(revokedSerialNumber, thisUpdate, CRLReason.keyCompromise);
+        }
+        for (Extension extension : extensions) {
+            builder.addExtension(extension);
+        }
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(caKeyPair.getPrivate());
+        return new JcaX509CRLConverter().getCRL(builder.build(signer));
+    }
+
+    public X509Certificate getCACert() {
+        return caCert;
+    }
+
+    public URI getURI() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/ocsp");
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Set the time between thisUpdate and nextUpdate of the responses, or null to omit nextUpdate
+     */
+    public void setNextUpdate(Duration nextUpdate) {
+        this.nextUpdate = nextUpdate;
+    }
+
+    /**
+     * Create a signed OCSP response for the given certificate, without an OCSP request
+     */
+    public byte[] createResponse(X509Certificate cert) throws Exception {
+        byte[] request = OCSPClient.createRequest(cert, caCert);
+        return respond(request);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private byte[] respond(byte[] request) throws Exception {
+        requestCount.incrementAndGet();
+        OCSPReq ocspReq = new OCSPReq(request);
+        BasicOCSPRespBuilder builder =
+            new BasicOCSPRespBuilder(new RespID(new X509CertificateHolder(caCert.getEncoded()).getSubject()));
+        Date thisUpdate = new Date();
+        Date next = nextUpdate != null ? Date.from(thisUpdate.toInstant().plus(nextUpdate)) : null;
+        for (Req req : ocspReq.getRequestList()) {
+            CertificateStatus status = CertificateStatus.GOOD;
+            if (revokedSerialNumbers.contains(req.getCertID().getSerialNumber())) {
+                status = new RevokedStatus(new Date(thisUpdate.getTime() - 60_000L), 0);
+            }
+            builder.addResponse(req.getCertID(), status, thisUpdate, next, null);
+        }
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(caKeyPair.getPrivate());
+        BasicOCSPResp basicResponse = builder.build(signer, null, thisUpdate);
+        OCSPResp response = new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, basicResponse);
+        return response.getEncoded();
+    }
+
+    private X509Certificate sign(JcaX509v3CertificateBuilder builder) throws Exception {
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(caKeyPair.getPrivate());
+        return new JcaX509CertificateConverter().getCertificate(builder.build(signer));
+    }
+}
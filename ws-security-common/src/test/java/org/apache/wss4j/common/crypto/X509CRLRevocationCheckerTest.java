@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyStore;
+import java.security.cert.CertStore;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.IssuingDistributionPoint;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the revocation checking of Merlin against an indexed (and reloadable) set of CRLs.
+ */
+public class X509CRLRevocationCheckerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        WSProviderConfig.init();
+    }
+
+    @Test
+    public void testRevokedCertificate() throws Exception {
+        Merlin crypto = new Merlin(getProperties("keys/wss40CACRL.pem"), Loader.getClassLoader(Merlin.class), null);
+        assertNotNull(crypto.getCRLIndex());
+
+        crypto.verifyTrust(getCertificates("keys/wss40.jks", "wss40"), true, null, null);
+        assertThrows(WSSecurityException.class,
+                     () -> crypto.verifyTrust(getCertificates("keys/wss40rev.jks", "wss40rev"), true, null, null));
+
+        // Without revocation checking the revoked certificate is trusted
+        crypto.verifyTrust(getCertificates("keys/wss40rev.jks", "wss40rev"), false, null, null);
+    }
+
+    @Test
+    public void testNoCRLForIssuer() throws Exception {
+        Merlin crypto = new Merlin(getProperties("keys/wss40CACRL.pem"), Loader.getClassLoader(Merlin.class), null);
+        crypto.setCRLIndex(new ReloadableX509CRLIndex(Loader.getClassLoader(Merlin.class),
+                                                      Collections.emptyList(),
+                                                      crypto.getCertificateFactory()));
+
+        assertThrows(WSSecurityException.class,
+                     () -> crypto.verifyTrust(getCertificates("keys/wss40.jks", "wss40"), true, null, null));
+    }
+
+    @Test
+    public void testReloadChangedCRL() throws Exception {
+        Path crlFile = tempDir.resolve("crl.pem");
+        try (InputStream is = Merlin.loadInputStream(Loader.getClassLoader(Merlin.class), "keys/wss40CACRL.pem")) {
+            Files.copy(is, crlFile);
+        }
+        Properties properties = getProperties(crlFile.toString());
+        properties.put("org.apache.wss4j.crypto.merlin.x509crl.reload.interval", "0");
+        Merlin crypto = new Merlin(properties, Loader.getClassLoader(Merlin.class), null);
+        ReloadableX509CRLIndex crlIndex = crypto.getCRLIndex();
+
+        X509CRLIndex index = crlIndex.getIndex();
+        assertSame(index, crlIndex.getIndex());
+        assertEquals(1, index.getCRLs().size());
+        CertStore crlCertStore = crypto.getCRLCertStore();
+        assertSame(index.getCRLs().get(0), crlCertStore.getCRLs(null).iterator().next());
+
+        Files.setLastModifiedTime(crlFile, FileTime.fromMillis(System.currentTimeMillis() + 60_000L));
+        crlIndex.setCheckInterval(1L);
+        long timeout = System.currentTimeMillis() + 10_000L;
+        while (crlIndex.getIndex() == index && System.currentTimeMillis() < timeout) {
+            Thread.sleep(100L);
+        }
+        assertNotSame(index, crlIndex.getIndex());
+
+        // The CRL CertStore is replaced as well
+        assertNotSame(crlCertStore, crypto.getCRLCertStore());
+        assertSame(crlIndex.getIndex().getCRLs().get(0), crypto.getCRLCertStore().getCRLs(null).iterator().next());
+
+        assertThrows(WSSecurityException.class,
+                     () -> crypto.verifyTrust(getCertificates("keys/wss40rev.jks", "wss40rev"), true, null, null));
+    }
+
+    @Test
+    public void testDeltaCRL() throws Exception {
+        try (OCSPTestResponder ca = new OCSPTestResponder()) {
+            X509Certificate cert = ca.issue("CN=good");
+            Merlin crypto = getCrypto(ca);
+
+            crypto.setCRLIndex(getCRLIndex(crypto, ca.createCRL()));
+            crypto.verifyTrust(new X509Certificate[] {cert}, true, null, null);
+
+            // A delta CRL is not supported, so the revocation status is undetermined, even with the complete CRL
+            Extension deltaCRLIndicator =
+                new Extension(Extension.deltaCRLIndicator, true, new CRLNumber(BigInteger.ONE).getEncoded());
+            crypto.setCRLIndex(getCRLIndex(crypto, ca.createCRL(), ca.createCRL(deltaCRLIndicator)));
+            assertThrows(WSSecurityException.class,
+                         () -> crypto.verifyTrust(new X509Certificate[] {cert}, true, null, null));
+        }
+    }
+
+    @Test
+    public void testCriticalIssuingDistributionPoint() throws Exception {
+        try (OCSPTestResponder ca = new OCSPTestResponder()) {
+            X509Certificate cert = ca.issue("CN=good");
+            Merlin crypto = getCrypto(ca);
+
+            // A CRL with an issuing distribution point only covers a part of the certificates of the issuer
+            IssuingDistributionPoint issuingDistributionPoint =
+                new IssuingDistributionPoint(null, true, false, null, false, false);
+            Extension extension =
+                new Extension(Extension.issuingDistributionPoint, true, issuingDistributionPoint.getEncoded());
+            crypto.setCRLIndex(getCRLIndex(crypto, ca.createCRL(extension)));
+            assertThrows(WSSecurityException.class,
+                         () -> crypto.verifyTrust(new X509Certificate[] {cert}, true, null, null));
+        }
+    }
+
+    private static Merlin getCrypto(OCSPTestResponder ca) throws Exception {
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("ca", ca.getCACert());
+        Merlin crypto = new Merlin();
+        crypto.setTrustStore(trustStore);
+        return crypto;
+    }
+
+    private ReloadableX509CRLIndex getCRLIndex(Merlin crypto, X509CRL... crls) throws Exception {
+        List<String> crlLocations = new ArrayList<>();
+        for (X509CRL crl : crls) {
+            Path crlFile = Files.createTempFile(tempDir, "crl", ".der");
+            Files.write(crlFile, crl.getEncoded());
+            crlLocations.add(crlFile.toString());
+        }
+        return new ReloadableX509CRLIndex(Loader.getClassLoader(Merlin.class), crlLocations,
+                                          crypto.getCertificateFactory());
+    }
+
+    private static Properties getProperties(String crlLocation) {
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.Merlin");
+        properties.put("org.apache.wss4j.crypto.merlin.truststore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.truststore.file", "keys/wss40CA.jks");
+        properties.put("org.apache.wss4j.crypto.merlin.x509crl.file", crlLocation);
+        properties.put("org.apache.wss4j.crypto.merlin.x509crl.index", "true");
+        return properties;
+    }
+
+    private static X509Certificate[] getCertificates(String keyStoreLocation, String alias) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream is = Merlin.loadInputStream(Loader.getClassLoader(Merlin.class), keyStoreLocation)) {
+            keyStore.load(is, "security".toCharArray());
+        }
+        return new X509Certificate[] {(X509Certificate) keyStore.getCertificate(alias)};
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the X509CertificateCache, and its use by CryptoBase.
+ */
+public class X509CertificateCacheTest {
+
+    @Test
+    public void testCachedCertificate() throws Exception {
+        Merlin crypto = new Merlin();
+        X509CertificateCache certificateCache = new X509CertificateCache();
+        crypto.setCertificateCache(certificateCache);
+
+        byte[] encoded = getCertificate().getEncoded();
+        X509Certificate certificate = crypto.loadCertificate(encoded);
+        assertEquals(getCertificate(), certificate);
+        assertSame(certificate, crypto.loadCertificate(encoded.clone()));
+        assertEquals(1, certificateCache.size());
+
+        crypto.setCertificateCache(null);
+        assertEquals(certificate, crypto.loadCertificate(encoded));
+        certificateCache.clear();
+        crypto.loadCertificate(encoded);
+        assertEquals(0, certificateCache.size());
+    }
+
+    @Test
+    public void testCachedCertificateChain() throws Exception {
+        Merlin crypto = new Merlin();
+        X509CertificateCache certificateCache = new X509CertificateCache();
+        crypto.setCertificateCache(certificateCache);
+
+        X509Certificate[] certs = new X509Certificate[] {getCertificate()};
+        byte[] encoded = crypto.getBytesFromCertificates(certs);
+        X509Certificate[] chain = crypto.getCertificatesFromBytes(encoded);
+        assertArrayEquals(certs, chain);
+
+        // The returned array is a copy
+        chain[0] = null;
+        X509Certificate[] cachedChain = crypto.getCertificatesFromBytes(encoded);
+        assertArrayEquals(certs, cachedChain);
+        assertEquals(1, certificateCache.size());
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        Merlin crypto = new Merlin();
+        X509CertificateCache certificateCache = new X509CertificateCache(1);
+        crypto.setCertificateCache(certificateCache);
+
+        X509Certificate certificate = getCertificate();
+        crypto.loadCertificate(certificate.getEncoded());
+        crypto.getCertificatesFromBytes(crypto.getBytesFromCertificates(new X509Certificate[] {certificate}));
+        assertEquals(2, certificateCache.size());
+
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40ca");
+        crypto.loadCertificate(getCrypto().getX509Certificates(cryptoType)[0].getEncoded());
+        assertEquals(2, certificateCache.size());
+
+        certificateCache.clear();
+        assertEquals(0, certificateCache.size());
+    }
+
+    @Test
+    public void testOverriddenLoadCertificate() throws Exception {
+        AtomicInteger loaded = new AtomicInteger();
+        Merlin crypto = new Merlin() {
+            @Override
+            public X509Certificate loadCertificate(InputStream in) throws WSSecurityException {
+                loaded.incrementAndGet();
+                return super.loadCertificate(in);
+            }
+        };
+        crypto.setCertificateCache(new X509CertificateCache());
+
+        byte[] encoded = getCertificate().getEncoded();
+        crypto.loadCertificate(encoded);
+        assertEquals(1, loaded.get());
+        crypto.loadCertificate(encoded);
+        assertEquals(1, loaded.get());
+
+        crypto.setCertificateCache(null);
+        crypto.loadCertificate(encoded);
+        assertEquals(2, loaded.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        AtomicInteger loaded = new AtomicInteger();
+        Merlin crypto = new Merlin() {
+            @Override
+            public X509Certificate loadCertificate(InputStream in) throws WSSecurityException {
+                loaded.incrementAndGet();
+                return super.loadCertificate(in);
+            }
+        };
+        crypto.setCertificateCache(new X509CertificateCache(2));
+
+        byte[] first = getCertificate("wss40").getEncoded();
+        byte[] second = getCertificate("wss40ca").getEncoded();
+        byte[] third = getCertificate("wss40ec").getEncoded();
+        crypto.loadCertificate(first);
+        crypto.loadCertificate(second);
+        // Use the first certificate again, so that the second one is evicted for the third one
+        crypto.loadCertificate(first);
+        crypto.loadCertificate(third);
+        assertEquals(3, loaded.get());
+
+        crypto.loadCertificate(first);
+        crypto.loadCertificate(third);
+        assertEquals(3, loaded.get());
+        crypto.loadCertificate(second);
+        assertEquals(4, loaded.get());
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        Merlin crypto = new Merlin();
+        X509CertificateCache certificateCache = new X509CertificateCache(2);
+        crypto.setCertificateCache(certificateCache);
+
+        X509Certificate[] certs =
+            new X509Certificate[] {getCertificate("wss40"), getCertificate("wss40ca"), getCertificate("wss40ec")};
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final int offset = i;
+                results.add(executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        X509Certificate certificate = certs[(offset + j) % certs.length];
+                        if (!certificate.equals(crypto.loadCertificate(certificate.getEncoded()))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(certificateCache.size() <= 2);
+    }
+
+    private static X509Certificate getCertificate() throws Exception {
+        return getCertificate("wss40");
+    }
+
+    private static X509Certificate getCertificate(String alias) throws Exception {
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias(alias);
+        return getCrypto().getX509Certificates(cryptoType)[0];
+    }
+
+    private static Crypto getCrypto() throws Exception {
+        return CryptoFactory.getInstance("wss40.properties");
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.ext;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+
+import org.apache.wss4j.common.WSS4JConstants;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the CachingPasswordCallbackHandler
+ */
+public class CachingPasswordCallbackHandlerTest {
+
+    @Test
+    public void testCachedPassword() throws Exception {
+        CountingCallbackHandler delegate = new CountingCallbackHandler();
+        CachingPasswordCallbackHandler callbackHandler = new CachingPasswordCallbackHandler(delegate);
+
+        assertEquals("alicePassword", getPassword(callbackHandler, "alice", WSPasswordCallback.USERNAME_TOKEN));
+        assertEquals("alicePassword", getPassword(callbackHandler, "alice", WSPasswordCallback.USERNAME_TOKEN));
+        assertEquals(1, delegate.count);
+
+        assertEquals("bobPassword", getPassword(callbackHandler, "bob", WSPasswordCallback.USERNAME_TOKEN));
+        assertEquals(2, delegate.count);
+
+        // Other usages are not cached by default
+        getPassword(callbackHandler, "alice", WSPasswordCallback.SIGNATURE);
+        getPassword(callbackHandler, "alice", WSPasswordCallback.SIGNATURE);
+        assertEquals(4, delegate.count);
+
+        callbackHandler.invalidate("alice");
+        getPassword(callbackHandler, "alice", WSPasswordCallback.USERNAME_TOKEN);
+        assertEquals(5, delegate.count);
+    }
+
+    @Test
+    public void testInvalidateIdentifier() throws Exception {
+        CountingCallbackHandler delegate = new CountingCallbackHandler();
+        CachingPasswordCallbackHandler callbackHandler = new CachingPasswordCallbackHandler(delegate);
+
+        getPassword(callbackHandler, "alice", WSPasswordCallback.USERNAME_TOKEN);
+        getPassword(callbackHandler, "b:alice", WSPasswordCallback.USERNAME_TOKEN);
+        assertEquals(2, delegate.count);
+
+        // Only the entry of the given identifier is removed, not those that end with it
+        callbackHandler.invalidate("alice");
+        assertEquals("b:alicePassword", getPassword(callbackHandler, "b:alice", WSPasswordCallback.USERNAME_TOKEN));
+        assertEquals(2, delegate.count);
+        assertEquals("alicePassword", getPassword(callbackHandler, "alice", WSPasswordCallback.USERNAME_TOKEN));
+        assertEquals(3, delegate.count);
+    }
+
+    @Test
+    public void testExpiredPassword() throws Exception {
+        CountingCallbackHandler delegate = new CountingCallbackHandler();
+        CachingPasswordCallbackHandler callbackHandler = new CachingPasswordCallbackHandler(delegate);
+        callbackHandler.setTtl(0L);
+
+        getPassword(callbackHandler, "alice", WSPasswordCallback.USERNAME_TOKEN);
+        getPassword(callbackHandler, "alice", WSPasswordCallback.USERNAME_TOKEN);
+        assertEquals(2, delegate.count);
+    }
+
+    @Test
+    public void testUnknownUser() throws Exception {
+        CountingCallbackHandler delegate = new CountingCallbackHandler();
+        CachingPasswordCallbackHandler callbackHandler = new CachingPasswordCallbackHandler(delegate);
+
+        assertNull(getPassword(callbackHandler, "mallory", WSPasswordCallback.USERNAME_TOKEN));
+        assertNull(getPassword(callbackHandler, "mallory", WSPasswordCallback.USERNAME_TOKEN));
+        assertEquals(2, delegate.count);
+
+        assertThrows(UnsupportedCallbackException.class,
+            () -> callbackHandler.handle(new Callback[] {new Callback() { }}));
+    }
+
+    private static String getPassword(CallbackHandler callbackHandler, String user, int usage) throws Exception {
+        WSPasswordCallback passwordCallback = new WSPasswordCallback(user, null, WSS4JConstants.PASSWORD_DIGEST, usage);
+        callbackHandler.handle(new Callback[] {passwordCallback});
+        return passwordCallback.getPassword();
+    }
+
+    private static final class CountingCallbackHandler implements CallbackHandler {
+        private int count;
+
+        @Override
+        public void handle(Callback[] callbacks) throws UnsupportedCallbackException {
+            for (Callback callback : callbacks) {
+                if (!(callback instanceof WSPasswordCallback)) {
+                    throw new UnsupportedCallbackException(callback);
+                }
+                count++;
+                WSPasswordCallback passwordCallback = (WSPasswordCallback) callback;
+                if (!"mallory".equals(passwordCallback.getIdentifier())) {
+                    passwordCallback.setPassword(passwordCallback.getIdentifier() + "Password");
+                }
+            }
+        }
+    }
+}
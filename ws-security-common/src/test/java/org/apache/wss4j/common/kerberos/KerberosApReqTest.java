@@ -0,0 +1,289 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivilegedActionException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+
+import org.apache.wss4j.common.cache.MemoryReplayCache;
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Tests for parsing AP-REQ tokens, the KerberosTicketCache and the AP-REQ replay detection.
+ */
+public class KerberosApReqTest {
+
+    private static final byte[] KRB5_OID = {
+        0x06, 0x09, 0x2a, (byte)0x86, 0x48, (byte)0x86, (byte)0xf7, 0x12, 0x01, 0x02, 0x02
+    };
+
+    @Test
+    public void testParseGssWrappedApReq() throws Exception {
+        byte[] ticket = createTicket(new byte[200]);
+        byte[] authenticator = createAuthenticator(new byte[] {1, 2, 3});
+
+        KerberosApReq apReq = KerberosApReq.parse(createApReq(ticket, authenticator, true));
+        assertArrayEquals(ticket, apReq.getTicket());
+        assertArrayEquals(authenticator, apReq.getAuthenticator());
+
+        KerberosApReq rawApReq = KerberosApReq.parse(createApReq(ticket, authenticator, false));
+        assertEquals(apReq.getTicketDigest(), rawApReq.getTicketDigest());
+        assertEquals(apReq.getAuthenticatorDigest(), rawApReq.getAuthenticatorDigest());
+    }
+
+    @Test
+    public void testParseMalformedApReq() throws Exception {
+        byte[] token = createApReq(createTicket(new byte[200]), createAuthenticator(new byte[] {1}), true);
+        assertThrows(KerberosTokenDecoderException.class,
+                     () -> KerberosApReq.parse(Arrays.copyOf(token, token.length - 10)));
+        assertThrows(KerberosTokenDecoderException.class, () -> KerberosApReq.parse(new byte[] {0x30, 0x00}));
+    }
+
+    @Test
+    public void testCachedSessionKey() throws Exception {
+        CountingKerberosTokenDecoder delegate = new CountingKerberosTokenDecoder();
+        KerberosTicketCache ticketCache = new KerberosTicketCache();
+        byte[] ticket = createTicket(new byte[200]);
+
+        byte[] sessionKey = getSessionKey(delegate, ticketCache,
+                                          createApReq(ticket, createAuthenticator(new byte[] {1}), true));
+
+        // The same ticket with a new authenticator
+        assertArrayEquals(sessionKey, getSessionKey(delegate, ticketCache,
+                                                    createApReq(ticket, createAuthenticator(new byte[] {2}), true)));
+        assertEquals(1, delegate.count.get());
+
+        // A different ticket
+        byte[] otherTicket = createTicket(new byte[100]);
+        assertNotEquals(Arrays.toString(sessionKey), Arrays.toString(
+            getSessionKey(delegate, ticketCache, createApReq(otherTicket, createAuthenticator(new byte[] {3}), true))));
+        assertEquals(2, delegate.count.get());
+
+        // An expired entry
+        ticketCache.setTtl(0L);
+        ticketCache.clear();
+        byte[] token = createApReq(ticket, createAuthenticator(new byte[] {4}), true);
+        getSessionKey(delegate, ticketCache, token);
+        getSessionKey(delegate, ticketCache, token);
+        assertEquals(4, delegate.count.get());
+    }
+
+    @Test
+    public void testCachedSessionKeyIsBoundedByTicketEndTime() throws Exception {
+        CountingKerberosTokenDecoder delegate = new CountingKerberosTokenDecoder();
+        KerberosTicketCache ticketCache = new KerberosTicketCache();
+        byte[] token = createApReq(createTicket(new byte[200]), createAuthenticator(new byte[] {1}), true);
+
+        // The session key of an expired ticket is not cached
+        delegate.ticketEndTime = Instant.now().minusSeconds(1L);
+        getSessionKey(delegate, ticketCache, token);
+        getSessionKey(delegate, ticketCache, token);
+        assertEquals(2, delegate.count.get());
+
+        // A ticket that ends after the time to live is cached for the time to live
+        delegate.ticketEndTime = Instant.now().plusSeconds(3600L);
+        getSessionKey(delegate, ticketCache, token);
+        getSessionKey(delegate, ticketCache, token);
+        assertEquals(3, delegate.count.get());
+    }
+
+    @Test
+    public void testConcurrentCachedSessionKeys() throws Exception {
+        CountingKerberosTokenDecoder delegate = new CountingKerberosTokenDecoder();
+        KerberosTicketCache ticketCache = new KerberosTicketCache();
+        int tickets = 8;
+        byte[][] tokens = new byte[tickets][];
+        byte[][] expectedKeys = new byte[tickets][];
+        for (int i = 0; i < tickets; i++) {
+            byte[] cipher = new byte[100];
+            Arrays.fill(cipher, (byte) i);
+            tokens[i] = createApReq(createTicket(cipher), createAuthenticator(new byte[] {(byte) i}), true);
+            expectedKeys[i] = KerberosApReq.parse(tokens[i]).getTicketDigest().getBytes(StandardCharsets.UTF_8);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                final int index = i % tickets;
+                results.add(executor.submit(() -> {
+                    // A new decoder per token, sharing the delegate and the cache
+                    byte[] sessionKey = getSessionKey(delegate, ticketCache, tokens[index]);
+                    return Arrays.equals(expectedKeys[index], sessionKey);
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(delegate.count.get() < 2000);
+    }
+
+    @Test
+    public void testReplayedAuthenticator() throws Exception {
+        byte[] token = createApReq(createTicket(new byte[200]), createAuthenticator(new byte[] {1}), true);
+
+        try (ReplayCache replayCache = new MemoryReplayCache()) {
+            KerberosServiceExceptionAction action =
+                new KerberosServiceExceptionAction(token, "bob@service.ws.apache.org", false, false);
+            action.setReplayCache(replayCache);
+
+            // The token is not accepted without service credentials, and so it is not recorded
+            assertFalse(isReplay(action));
+            assertFalse(isReplay(action));
+
+            // An authenticator that was recorded after a successful validation is rejected
+            replayCache.add(KerberosApReq.parse(token).getAuthenticatorDigest());
+            assertTrue(isReplay(action));
+
+            // The same ticket with a new authenticator is not a replay
+            byte[] newToken =
+                createApReq(createTicket(new byte[200]), createAuthenticator(new byte[] {2}), true);
+            action = new KerberosServiceExceptionAction(newToken, "bob@service.ws.apache.org", false, false);
+            action.setReplayCache(replayCache);
+            assertFalse(isReplay(action));
+        }
+    }
+
+    private static byte[] getSessionKey(KerberosTokenDecoder delegate, KerberosTicketCache ticketCache,
+                                        byte[] token) throws KerberosTokenDecoderException {
+        CachingKerberosTokenDecoder decoder = new CachingKerberosTokenDecoder(delegate, ticketCache);
+        decoder.setToken(token);
+        return decoder.getSessionKey();
+    }
+
+    private static boolean isReplay(KerberosServiceExceptionAction action) {
+        try {
+            Subject.doAs(new Subject(), action);
+            fail("Failure expected without service credentials");
+        } catch (PrivilegedActionException ex) {
+            Throwable cause = ex.getCause();
+            return cause instanceof WSSecurityException
+                && ((WSSecurityException)cause).getErrorCode() == WSSecurityException.ErrorCode.INVALID_SECURITY;
+        }
+        return false;
+    }
+
+    private static byte[] createTicket(byte[] cipher) {
+        return der(0xA3, der(0x61, der(0x30, der(0xA0, new byte[] {0x02, 0x01, 0x05}),
+                                             der(0xA3, der(0x30, der(0xA0, new byte[] {0x02, 0x01, 0x12}),
+                                                                 der(0xA2, der(0x04, cipher)))))));
+    }
+
+    private static byte[] createAuthenticator(byte[] cipher) {
+        return der(0xA4, der(0x30, der(0xA0, new byte[] {0x02, 0x01, 0x12}), der(0xA2, der(0x04, cipher))));
+    }
+
+    private static byte[] createApReq(byte[] ticket, byte[] authenticator, boolean gssWrapped) {
+        byte[] apReq = der(0x6E, der(0x30, der(0xA0, new byte[] {0x02, 0x01, 0x05}),
+                                           der(0xA1, new byte[] {0x02, 0x01, 0x0E}),
+                                           der(0xA2, new byte[] {0x03, 0x05, 0x00, 0x00, 0x00, 0x00, 0x00}),
+                                           ticket, authenticator));
+        if (!gssWrapped) {
+            return apReq;
+        }
+        return der(0x60, KRB5_OID, new byte[] {0x01, 0x00}, apReq);
+    }
+
+    private static byte[] der(int tag, byte[]... contents) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] bytes : contents) {
+            content.write(bytes, 0, bytes.length);
+        }
+        ByteArrayOutputStream der = new ByteArrayOutputStream();
+        der.write(tag);
+        int length = content.size();
+        if (length < 0x80) {
+            der.write(length);
+        } else if (length < 0x100) {
+            der.write(0x81);
+            der.write(length);
+        } else {
+            der.write(0x82);
+            der.write(length >> 8);
+            der.write(length & 0xFF);
+        }
+        der.write(content.toByteArray(), 0, length);
+        return der.toByteArray();
+    }
+
+    /**
+     * A stateful decoder, which returns a session key derived from the ticket of the token
+     */
+    private static final class CountingKerberosTokenDecoder implements KerberosTokenDecoder {
+        private final AtomicInteger count = new AtomicInteger();
+        private byte[] token;
+        private volatile Instant ticketEndTime;
+
+        @Override
+        public void setToken(byte[] token) {
+            this.token = token;
+        }
+
+        @Override
+        public void setSubject(Subject subject) {
+            // complete
+        }
+
+        @Override
+        public byte[] getSessionKey() throws KerberosTokenDecoderException {
+            count.incrementAndGet();
+            byte[] currentToken = token;
+            Thread.yield();
+            if (currentToken != token) {
+                throw new KerberosTokenDecoderException("Concurrent use of the decoder");
+            }
+            return KerberosApReq.parse(token).getTicketDigest().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Instant getTicketEndTime() {
+            return ticketEndTime;
+        }
+
+        @Override
+        public void clear() {
+            token = null;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.LoginException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the KerberosServiceSubjectCache. The service logs in as an acceptor from a local keytab,
+ * so no KDC is required.
+ */
+public class KerberosServiceSubjectCacheTest {
+
+    private static final String SERVICE_PRINCIPAL = "bob/service.ws.apache.org@service.ws.apache.org";
+
+    @TempDir
+    Path tempDir;
+
+    private Configuration oldConfiguration;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Path keytab = tempDir.resolve("bob.keytab");
+        writeKeytab(keytab);
+
+        Map<String, String> options = new HashMap<>();
+        options.put("useKeyTab", "true");
+        options.put("keyTab", keytab.toString());
+        options.put("storeKey", "true");
+        options.put("isInitiator", "false");
+        options.put("doNotPrompt", "true");
+        options.put("principal", SERVICE_PRINCIPAL);
+        AppConfigurationEntry entry =
+            new AppConfigurationEntry("com.sun.security.auth.module.Krb5LoginModule",
+                                      AppConfigurationEntry.LoginModuleControlFlag.REQUIRED, options);
+
+        oldConfiguration = Configuration.getConfiguration();
+        Configuration.setConfiguration(new Configuration() {
+            @Override
+            public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+                return "bob".equals(name) ? new AppConfigurationEntry[] {entry} : null;
+            }
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Configuration.setConfiguration(oldConfiguration);
+    }
+
+    @Test
+    public void testSubjectIsCached() throws Exception {
+        KerberosServiceSubjectCache subjectCache = new KerberosServiceSubjectCache();
+
+        Subject subject = subjectCache.getSubject("bob", null);
+        assertEquals(SERVICE_PRINCIPAL,
+                     subject.getPrincipals(KerberosPrincipal.class).iterator().next().getName());
+        assertSame(subject, subjectCache.getSubject("bob", null));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        KerberosServiceSubjectCache subjectCache = new KerberosServiceSubjectCache();
+
+        Subject subject = subjectCache.getSubject("bob", null);
+        subjectCache.invalidate("bob");
+        assertNotSame(subject, subjectCache.getSubject("bob", null));
+    }
+
+    @Test
+    public void testExpiredSubjectIsRefreshed() throws Exception {
+        KerberosServiceSubjectCache subjectCache = new KerberosServiceSubjectCache();
+        subjectCache.setMaxLifetime(0L);
+
+        Subject subject = subjectCache.getSubject("bob", null);
+        assertNotSame(subject, subjectCache.getSubject("bob", null));
+    }
+
+    @Test
+    public void testUnknownLoginContext() {
+        KerberosServiceSubjectCache subjectCache = new KerberosServiceSubjectCache();
+        assertThrows(LoginException.class, () -> subjectCache.getSubject("alice", null));
+    }
+
+    @Test
+    public void testNoLoginContextName() {
+        KerberosServiceSubjectCache subjectCache = new KerberosServiceSubjectCache();
+        assertThrows(LoginException.class, () -> subjectCache.getSubject(null, null));
+    }
+
+    @Test
+    public void testSubjectIsCachedPerCallbackHandler() throws Exception {
+        KerberosServiceSubjectCache subjectCache = new KerberosServiceSubjectCache();
+        CallbackHandler callbackHandler = callbacks -> { };
+        CallbackHandler otherCallbackHandler = callbacks -> { };
+
+        Subject subject = subjectCache.getSubject("bob", callbackHandler);
+        assertSame(subject, subjectCache.getSubject("bob", callbackHandler));
+        assertNotSame(subject, subjectCache.getSubject("bob", otherCallbackHandler));
+        assertNotSame(subject, subjectCache.getSubject("bob", null));
+    }
+
+    /**
+     * Write a (version 0x502) keytab with a single AES-128 key for the service principal
+     */
+    private static void writeKeytab(Path keytab) throws IOException {
+        String[] principal = SERVICE_PRINCIPAL.split("@");
+        String[] components = principal[0].split("/");
+
+        try (OutputStream outputStream = Files.newOutputStream(keytab);
+            DataOutputStream keytabOutputStream = new DataOutputStream(outputStream)) {
+            keytabOutputStream.writeShort(0x0502);
+
+            ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+            DataOutputStream entry = new DataOutputStream(entryBytes);
+            entry.writeShort(components.length);
+            writeString(entry, principal[1]);
+            for (String component : components) {
+                writeString(entry, component);
+            }
+            entry.writeInt(1);                                      // KRB5_NT_PRINCIPAL
+            entry.writeInt((int)(System.currentTimeMillis() / 1000L));
+            entry.writeByte(1);                                     // key version number
+            entry.writeShort(17);                                   // aes128-cts-hmac-sha1-96
+            entry.writeShort(16);
+            entry.write(new byte[16]);
+            entry.flush();
+
+            keytabOutputStream.writeInt(entryBytes.size());
+            keytabOutputStream.write(entryBytes.toByteArray());
+        }
+    }
+
+    private static void writeString(DataOutputStream outputStream, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeShort(bytes.length);
+        outputStream.write(bytes);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for the UsernameTokenDerivedKeyCache
+ */
+public class UsernameTokenDerivedKeyCacheTest {
+
+    @Test
+    public void testCachedDerivedKey() throws Exception {
+        byte[] password = "verySecret".getBytes(StandardCharsets.UTF_8);
+        byte[] salt = UsernameTokenUtil.generateSalt(true);
+        byte[] derivedKey = UsernameTokenUtil.generateDerivedKey(password, salt, 1000);
+
+        UsernameTokenDerivedKeyCache cache = new UsernameTokenDerivedKeyCache();
+        assertArrayEquals(derivedKey, UsernameTokenUtil.generateDerivedKey(password, salt, 1000, cache));
+        assertEquals(1, cache.size());
+        assertArrayEquals(derivedKey, cache.get(password, salt, 1000));
+        // The default iteration count is used for a count of zero
+        assertArrayEquals(derivedKey, UsernameTokenUtil.generateDerivedKey(password, salt, 0, cache));
+        assertEquals(1, cache.size());
+
+        // A returned key can't modify the cached key
+        UsernameTokenUtil.generateDerivedKey(password, salt, 1000, cache)[0]++;
+        assertArrayEquals(derivedKey, UsernameTokenUtil.generateDerivedKey(password, salt, 1000, cache));
+
+        // A different password, salt or iteration count is not matched
+        assertNull(cache.get("otherSecret".getBytes(StandardCharsets.UTF_8), salt, 1000));
+        assertNull(cache.get(password, UsernameTokenUtil.generateSalt(true), 1000));
+        assertNull(cache.get(password, salt, 1001));
+        assertFalse(Arrays.equals(derivedKey, UsernameTokenUtil.generateDerivedKey(password, salt, 1001, cache)));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testBoundedCache() throws Exception {
+        UsernameTokenDerivedKeyCache cache = new UsernameTokenDerivedKeyCache(2);
+        byte[] salt = UsernameTokenUtil.generateSalt(false);
+        for (int i = 0; i < 5; i++) {
+            UsernameTokenUtil.generateDerivedKey("password" + i, salt, 1000, cache);
+        }
+        assertEquals(2, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
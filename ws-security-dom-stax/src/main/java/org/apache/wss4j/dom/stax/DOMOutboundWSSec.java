@@ -0,0 +1,420 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.dom.stax;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.EncryptionActionToken;
+import org.apache.wss4j.common.SecurityActionToken;
+import org.apache.wss4j.common.SignatureActionToken;
+import org.apache.wss4j.common.SignatureEncryptionActionToken;
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.handler.HandlerAction;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.wss4j.stax.setup.ConfigurationConverter;
+import org.apache.wss4j.stax.setup.OutboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.ext.SecurePart;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants.Action;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Secures a DOM Document with the streaming (StAX) outbound engine, as it is serialized to an
+ * OutputStream. The security actions are given as the HandlerAction list of the DOM code (as returned by
+ * WSSecurityUtil.decodeHandlerAction), together with the same configuration Map that is used by the
+ * WSHandler. The Document must not already contain a wsse:Security header for the actor. The
+ * signature and encryption are computed on the fly as the Document is written, instead of by building
+ * the security header in the DOM tree and signing it with a DOMSignContext.
+ *
+ * The streaming engine has a single set of signature and encryption properties, and so at most one
+ * signature and one encryption action token can be given. The settings of an action token take precedence
+ * over the configuration Map.
+ */
+public class DOMOutboundWSSec {
+
+    private final WSSSecurityProperties securityProperties;
+    private final OutboundWSSec outboundWSSec;
+
+    public DOMOutboundWSSec(List<HandlerAction> actions, Map<String, Object> config) throws WSSecurityException {
+        this.securityProperties = convert(actions, config);
+        this.outboundWSSec = WSSec.getOutboundWSSec(securityProperties);
+    }
+
+    /**
+     * Convert the given HandlerAction list and configuration into WSSSecurityProperties
+     * @param actions the HandlerAction list
+     * @param config the WSHandler configuration (can be null)
+     * @return the WSSSecurityProperties for the streaming outbound engine
+     * @throws WSSecurityException if an action is not supported by the streaming engine
+     */
+    public static WSSSecurityProperties convert(
+        List<HandlerAction> actions, Map<String, Object> config
+    ) throws WSSecurityException {
+        Map<String, Object> configuration = new HashMap<>();
+        if (config != null) {
+            configuration.putAll(config);
+        }
+        // The actions are taken from the HandlerAction list
+        configuration.remove(ConfigurationConstants.ACTION);
+        configuration.remove(ConfigurationConstants.ENABLE_SIGNATURE_CONFIRMATION);
+        WSSSecurityProperties properties = ConfigurationConverter.convert(configuration);
+
+        List<Action> streamingActions = new ArrayList<>(actions.size());
+        SecurityActionToken signatureActionToken = null;
+        SecurityActionToken encryptionActionToken = null;
+        for (HandlerAction handlerAction : actions) {
+            int action = handlerAction.getAction();
+            streamingActions.add(convertAction(action));
+            if (action == WSConstants.UT_NOPASSWORD) {
+                properties.setUsernameTokenPasswordType(WSSConstants.UsernameTokenPasswordType.PASSWORD_NONE);
+            }
+
+            SecurityActionToken actionToken = handlerAction.getActionToken();
+            if (actionToken instanceof SignatureActionToken) {
+                checkActionToken(signatureActionToken, actionToken);
+                signatureActionToken = actionToken;
+                applySignatureActionToken((SignatureActionToken)actionToken, properties);
+            } else if (actionToken instanceof EncryptionActionToken) {
+                checkActionToken(encryptionActionToken, actionToken);
+                encryptionActionToken = actionToken;
+                applyEncryptionActionToken((EncryptionActionToken)actionToken, properties);
+            }
+        }
+        properties.setActions(streamingActions);
+
+        return properties;
+    }
+
+    /**
+     * Secure the given Document, and write it to the given OutputStream
+     * @param document the Document to secure
+     * @param outputStream the OutputStream to write the secured message to
+     * @param encoding the encoding of the output
+     * @throws WSSecurityException if securing the Document fails
+     */
+    public void processOutMessage(
+        Document document, OutputStream outputStream, String encoding
+    ) throws WSSecurityException {
+        processOutMessage(document, outputStream, encoding, new ArrayList<>());
+    }
+
+    /**
+     * Secure the given Document, and write it to the given OutputStream
+     * @param document the Document to secure
+     * @param outputStream the OutputStream to write the secured message to
+     * @param encoding the encoding of the output
+     * @param requestSecurityEvents the SecurityEvents of the request, if this is a response
+     * @throws WSSecurityException if securing the Document fails
+     */
+    public void processOutMessage(
+        Document document, OutputStream outputStream, String encoding, List<SecurityEvent> requestSecurityEvents
+    ) throws WSSecurityException {
+        XMLStreamWriter xmlStreamWriter =
+            outboundWSSec.processOutMessage(outputStream, encoding, requestSecurityEvents);
+        try {
+            xmlStreamWriter.writeStartDocument(encoding, "1.0");
+            writeElement(document.getDocumentElement(), xmlStreamWriter);
+            xmlStreamWriter.writeEndDocument();
+            xmlStreamWriter.close();
+        } catch (XMLStreamException e) {
+            if (e.getCause() instanceof WSSecurityException) {
+                throw (WSSecurityException)e.getCause();
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+    }
+
+    public WSSSecurityProperties getSecurityProperties() {
+        return securityProperties;
+    }
+
+    private static Action convertAction(int action) throws WSSecurityException {
+        switch (action) {
+        case WSConstants.UT:
+        case WSConstants.UT_NOPASSWORD:
+            return WSSConstants.USERNAMETOKEN;
+        case WSConstants.SIGN:
+            return WSSConstants.SIGNATURE;
+        case WSConstants.DKT_SIGN:
+            return WSSConstants.SIGNATURE_WITH_DERIVED_KEY;
+        case WSConstants.ENCR:
+            return WSSConstants.ENCRYPTION;
+        case WSConstants.DKT_ENCR:
+            return WSSConstants.ENCRYPTION_WITH_DERIVED_KEY;
+        case WSConstants.ST_UNSIGNED:
+            return WSSConstants.SAML_TOKEN_UNSIGNED;
+        case WSConstants.ST_SIGNED:
+            return WSSConstants.SAML_TOKEN_SIGNED;
+        case WSConstants.TS:
+            return WSSConstants.TIMESTAMP;
+        case WSConstants.UT_SIGN:
+            return WSSConstants.USERNAMETOKEN_SIGNED;
+        case WSConstants.SC:
+            return WSSConstants.SIGNATURE_CONFIRMATION;
+        case WSConstants.CUSTOM_TOKEN:
+            return WSSConstants.CUSTOM_TOKEN;
+        default:
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
+                                          new Object[] {"Action not supported by the streaming engine: " + action});
+        }
+    }
+
+    /**
+     * The streaming engine only has a single set of signature (or encryption) properties, so reject a
+     * second action token of the same type, rather than letting one token silently override the other.
+     */
+    private static void checkActionToken(
+        SecurityActionToken previousActionToken, SecurityActionToken actionToken
+    ) throws WSSecurityException {
+        if (previousActionToken != null && previousActionToken != actionToken) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
+                                          new Object[] {"Conflicting action tokens are not supported by the "
+                                              + "streaming engine"});
+        }
+    }
+
+    private static void applySignatureActionToken(
+        SignatureActionToken actionToken, WSSSecurityProperties properties
+    ) throws WSSecurityException {
+        if (actionToken.getSignatureAlgorithm() != null) {
+            properties.setSignatureAlgorithm(actionToken.getSignatureAlgorithm());
+        }
+        if (actionToken.getDigestAlgorithm() != null) {
+            properties.setSignatureDigestAlgorithm(actionToken.getDigestAlgorithm());
+        }
+        if (actionToken.getC14nAlgorithm() != null) {
+            properties.setSignatureCanonicalizationAlgorithm(actionToken.getC14nAlgorithm());
+        }
+        properties.setUseSingleCert(actionToken.isUseSingleCert());
+        properties.setIncludeSignatureToken(actionToken.isIncludeToken());
+        applyActionToken(actionToken, properties, true);
+    }
+
+    private static void applyEncryptionActionToken(
+        EncryptionActionToken actionToken, WSSSecurityProperties properties
+    ) throws WSSecurityException {
+        if (actionToken.getSymmetricAlgorithm() != null) {
+            properties.setEncryptionSymAlgorithm(actionToken.getSymmetricAlgorithm());
+        }
+        if (actionToken.getKeyTransportAlgorithm() != null) {
+            properties.setEncryptionKeyTransportAlgorithm(actionToken.getKeyTransportAlgorithm());
+        }
+        if (actionToken.getDigestAlgorithm() != null) {
+            properties.setEncryptionKeyTransportDigestAlgorithm(actionToken.getDigestAlgorithm());
+        }
+        if (actionToken.getMgfAlgorithm() != null) {
+            properties.setEncryptionKeyTransportMGFAlgorithm(actionToken.getMgfAlgorithm());
+        }
+        properties.setEncryptSymmetricEncryptionKey(actionToken.isEncSymmetricEncryptionKey());
+        properties.setIncludeEncryptionToken(actionToken.isIncludeToken());
+        applyActionToken(actionToken, properties, false);
+    }
+
+    private static void applyActionToken(
+        SignatureEncryptionActionToken actionToken, WSSSecurityProperties properties, boolean signature
+    ) throws WSSecurityException {
+        if (actionToken.getUser() != null) {
+            if (signature) {
+                properties.setSignatureUser(actionToken.getUser());
+            } else {
+                properties.setEncryptionUser(actionToken.getUser());
+            }
+        }
+        if (actionToken.getCrypto() != null) {
+            if (signature) {
+                properties.setSignatureCrypto(actionToken.getCrypto());
+            } else {
+                properties.setEncryptionCrypto(actionToken.getCrypto());
+            }
+        }
+        if (actionToken.getKeyIdentifier() != null) {
+            WSSecurityTokenConstants.KeyIdentifier keyIdentifier =
+                ConfigurationConverter.convertKeyIdentifier(actionToken.getKeyIdentifier());
+            if (signature) {
+                properties.setSignatureKeyIdentifier(keyIdentifier);
+            } else {
+                properties.setEncryptionKeyIdentifier(keyIdentifier);
+            }
+        }
+        if (actionToken.getDerivedKeyTokenReference() != null) {
+            properties.setDerivedKeyTokenReference(
+                ConfigurationConverter.convertDerivedReference(actionToken.getDerivedKeyTokenReference())
+            );
+        }
+
+        for (WSEncryptionPart part : actionToken.getParts()) {
+            SecurePart securePart = convertPart(part, signature);
+            if (signature) {
+                securePart.setDigestMethod(properties.getSignatureDigestAlgorithm());
+                properties.addSignaturePart(securePart);
+            } else {
+                properties.addEncryptionPart(securePart);
+            }
+        }
+    }
+
+    private static SecurePart convertPart(WSEncryptionPart part, boolean signature) {
+        SecurePart.Modifier modifier = SecurePart.Modifier.Element;
+        if (!signature && "Content".equals(part.getEncModifier())) {
+            modifier = SecurePart.Modifier.Content;
+        }
+
+        SecurePart securePart;
+        if (part.getName() != null) {
+            securePart = new SecurePart(new QName(part.getNamespace(), part.getName()), modifier);
+        } else if (part.getId() != null && part.getId().startsWith("cid:")) {
+            securePart = new SecurePart(part.getId(), modifier);
+        } else {
+            securePart = new SecurePart(modifier);
+            securePart.setIdToSign(part.getId());
+        }
+        securePart.setRequired(part.isRequired());
+        return securePart;
+    }
+
+    /**
+     * Write the given Element and its descendants to the XMLStreamWriter. Namespaces that are used by an
+     * Element or Attribute, but that are not declared in the DOM tree, are declared as required.
+     */
+    private static void writeElement(Element root, XMLStreamWriter writer) throws XMLStreamException {
+        // The namespace declarations of the open Elements
+        List<Map<String, String>> namespaceScopes = new ArrayList<>();
+        Node node = root;
+        while (node != null) {
+            switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                namespaceScopes.add(new HashMap<>());
+                writeStartElement((Element)node, writer, namespaceScopes);
+                if (node.getFirstChild() != null) {
+                    node = node.getFirstChild();
+                    continue;
+                }
+                writer.writeEndElement();
+                namespaceScopes.remove(namespaceScopes.size() - 1);
+                break;
+            case Node.TEXT_NODE:
+                writer.writeCharacters(node.getNodeValue());
+                break;
+            case Node.CDATA_SECTION_NODE:
+                writer.writeCData(node.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                writer.writeComment(node.getNodeValue());
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                writer.writeProcessingInstruction(node.getNodeName(), node.getNodeValue());
+                break;
+            default:
+                break;
+            }
+
+            // Move to the next sibling, closing the parent Elements as required
+            while (node != root && node.getNextSibling() == null) {
+                node = node.getParentNode();
+                writer.writeEndElement();
+                namespaceScopes.remove(namespaceScopes.size() - 1);
+            }
+            node = node == root ? null : node.getNextSibling();
+        }
+    }
+
+    private static void writeStartElement(
+        Element element, XMLStreamWriter writer, List<Map<String, String>> namespaceScopes
+    ) throws XMLStreamException {
+        Map<String, String> declaredNamespaces = namespaceScopes.get(namespaceScopes.size() - 1);
+        String prefix = element.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : element.getPrefix();
+        String namespace = element.getNamespaceURI() == null ? XMLConstants.NULL_NS_URI : element.getNamespaceURI();
+        String localName = element.getLocalName() == null ? element.getNodeName() : element.getLocalName();
+        writer.writeStartElement(prefix, localName, namespace);
+
+        NamedNodeMap attributes = element.getAttributes();
+        int length = attributes.getLength();
+        for (int i = 0; i < length; i++) {
+            Attr attr = (Attr)attributes.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+                if (XMLConstants.XMLNS_ATTRIBUTE.equals(attr.getLocalName())) {
+                    writer.writeDefaultNamespace(attr.getValue());
+                    declaredNamespaces.put(XMLConstants.DEFAULT_NS_PREFIX, attr.getValue());
+                } else {
+                    writer.writeNamespace(attr.getLocalName(), attr.getValue());
+                    declaredNamespaces.put(attr.getLocalName(), attr.getValue());
+                }
+            }
+        }
+        declareNamespace(prefix, namespace, writer, namespaceScopes);
+
+        for (int i = 0; i < length; i++) {
+            Attr attr = (Attr)attributes.item(i);
+            String attrNamespace = attr.getNamespaceURI();
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attrNamespace)) {
+                continue;
+            }
+            if (attrNamespace == null || attrNamespace.isEmpty()) {
+                String attrName = attr.getLocalName() == null ? attr.getName() : attr.getLocalName();
+                writer.writeAttribute(attrName, attr.getValue());
+            } else {
+                String attrPrefix = attr.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : attr.getPrefix();
+                if (!XMLConstants.XML_NS_URI.equals(attrNamespace)) {
+                    declareNamespace(attrPrefix, attrNamespace, writer, namespaceScopes);
+                }
+                writer.writeAttribute(attrPrefix, attrNamespace, attr.getLocalName(), attr.getValue());
+            }
+        }
+    }
+
+    private static void declareNamespace(
+        String prefix, String namespace, XMLStreamWriter writer, List<Map<String, String>> namespaceScopes
+    ) throws XMLStreamException {
+        String boundNamespace = XMLConstants.NULL_NS_URI;
+        for (int i = namespaceScopes.size() - 1; i >= 0; i--) {
+            if (namespaceScopes.get(i).containsKey(prefix)) {
+                boundNamespace = namespaceScopes.get(i).get(prefix);
+                break;
+            }
+        }
+        if (namespace.equals(boundNamespace)) {
+            return;
+        }
+        namespaceScopes.get(namespaceScopes.size() - 1).put(prefix, namespace);
+        if (prefix.isEmpty()) {
+            writer.writeDefaultNamespace(namespace);
+        } else {
+            writer.writeNamespace(prefix, namespace);
+        }
+    }
+}
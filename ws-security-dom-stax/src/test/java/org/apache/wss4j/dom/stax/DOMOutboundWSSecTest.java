@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.dom.stax;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.SignatureActionToken;
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.handler.HandlerAction;
+import org.apache.wss4j.dom.handler.WSHandlerConstants;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.test.AbstractTestBase;
+import org.apache.wss4j.stax.test.CallbackHandlerImpl;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for securing a DOM Document with a DOM action plan via the streaming outbound engine.
+ */
+public class DOMOutboundWSSecTest extends AbstractTestBase {
+
+    @Test
+    public void testTimestampSignature() throws Exception {
+        String action = WSHandlerConstants.TIMESTAMP + " " + WSHandlerConstants.SIGNATURE;
+        List<HandlerAction> actions = WSSecurityUtil.decodeHandlerAction(action, null);
+
+        DOMOutboundWSSec domOutboundWSSec = new DOMOutboundWSSec(actions, getConfig());
+        assertEquals(2, domOutboundWSSec.getSecurityProperties().getActions().size());
+        assertEquals(WSSConstants.TIMESTAMP, domOutboundWSSec.getSecurityProperties().getActions().get(0));
+        assertEquals(WSSConstants.SIGNATURE, domOutboundWSSec.getSecurityProperties().getActions().get(1));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        domOutboundWSSec.processOutMessage(getSourceDocument(), baos, StandardCharsets.UTF_8.name());
+
+        Document document =
+            documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(baos.toByteArray()));
+        NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_dsig_Signature.getNamespaceURI(),
+                                                            WSSConstants.TAG_dsig_Signature.getLocalPart());
+        assertEquals(1, nodeList.getLength());
+        assertEquals(WSSConstants.TAG_WSSE_SECURITY.getLocalPart(), nodeList.item(0).getParentNode().getLocalName());
+
+        doInboundSecurityWithWSS4J(document, action);
+    }
+
+    @Test
+    public void testSignatureActionToken() throws Exception {
+        SignatureActionToken actionToken = new SignatureActionToken();
+        actionToken.setDigestAlgorithm(WSConstants.SHA256);
+        actionToken.setKeyIdentifier("DirectReference");
+        WSEncryptionPart part = new WSEncryptionPart("Body", WSConstants.URI_SOAP11_ENV, "Element");
+        actionToken.setParts(Collections.singletonList(part));
+
+        List<HandlerAction> actions =
+            Collections.singletonList(new HandlerAction(WSConstants.SIGN, actionToken));
+        DOMOutboundWSSec domOutboundWSSec = new DOMOutboundWSSec(actions, getConfig());
+        WSSSecurityProperties properties = domOutboundWSSec.getSecurityProperties();
+        assertEquals(WSConstants.SHA256, properties.getSignatureDigestAlgorithm());
+        assertEquals(1, properties.getSignatureSecureParts().size());
+        assertEquals("Body", properties.getSignatureSecureParts().get(0).getName().getLocalPart());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        domOutboundWSSec.processOutMessage(getSourceDocument(), baos, StandardCharsets.UTF_8.name());
+
+        Document document =
+            documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(baos.toByteArray()));
+        NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_dsig_DigestMethod.getNamespaceURI(),
+                                                            WSSConstants.TAG_dsig_DigestMethod.getLocalPart());
+        assertEquals(1, nodeList.getLength());
+        assertEquals(WSConstants.SHA256, ((Element)nodeList.item(0)).getAttributeNS(null, "Algorithm"));
+
+        doInboundSecurityWithWSS4J(document, WSHandlerConstants.SIGNATURE);
+    }
+
+    @Test
+    public void testSignatureActionTokenDigestAlgorithm() throws Exception {
+        SignatureActionToken actionToken = new SignatureActionToken();
+        actionToken.setDigestAlgorithm(WSConstants.SHA256);
+        WSEncryptionPart part = new WSEncryptionPart("Body", WSConstants.URI_SOAP11_ENV, "Element");
+        actionToken.setParts(Collections.singletonList(part));
+
+        Map<String, Object> config = getConfig();
+        config.put(ConfigurationConstants.SIG_DIGEST_ALGO, WSConstants.SHA512);
+        List<HandlerAction> actions =
+            Collections.singletonList(new HandlerAction(WSConstants.SIGN, actionToken));
+        WSSSecurityProperties properties = DOMOutboundWSSec.convert(actions, config);
+        assertEquals(WSConstants.SHA256, properties.getSignatureDigestAlgorithm());
+        assertEquals(WSConstants.SHA256, properties.getSignatureSecureParts().get(0).getDigestMethod());
+    }
+
+    @Test
+    public void testConflictingActionTokens() throws Exception {
+        SignatureActionToken actionToken = new SignatureActionToken();
+        actionToken.setDigestAlgorithm(WSConstants.SHA256);
+        SignatureActionToken secondActionToken = new SignatureActionToken();
+        secondActionToken.setDigestAlgorithm(WSConstants.SHA512);
+
+        List<HandlerAction> actions =
+            Arrays.asList(new HandlerAction(WSConstants.SIGN, actionToken),
+                          new HandlerAction(WSConstants.SIGN, secondActionToken));
+        assertThrows(WSSecurityException.class, () -> new DOMOutboundWSSec(actions, getConfig()));
+    }
+
+    @Test
+    public void testUnsupportedAction() throws Exception {
+        List<HandlerAction> actions = Collections.singletonList(new HandlerAction(0x100000));
+        assertThrows(WSSecurityException.class, () -> new DOMOutboundWSSec(actions, getConfig()));
+    }
+
+    private Document getSourceDocument() throws Exception {
+        return documentBuilderFactory.newDocumentBuilder().parse(
+            this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml"));
+    }
+
+    private static Map<String, Object> getConfig() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConfigurationConstants.USER, "transmitter");
+        config.put(ConfigurationConstants.PW_CALLBACK_REF, new CallbackHandlerImpl());
+        config.put(ConfigurationConstants.SIG_PROP_FILE, "transmitter-crypto.properties");
+        return config;
+    }
+}
@@ -33,7 +33,6 @@ package org.apache.wss4j.dom;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -57,7 +56,7 @@ public class WSDocInfo {
     // creation or validation
     private final Map<String, TokenValue> tokens = new HashMap<>();
 
-    private final List<WSSecurityEngineResult> results = new LinkedList<>();
+    private final List<WSSecurityEngineResult> results = new ArrayList<>();
     private final Map<Integer, List<WSSecurityEngineResult>> actionResults = new HashMap<>();
     private CallbackLookup callbackLookup;
     private Element securityHeader;
@@ -214,12 +213,7 @@ public class WSDocInfo {
         results.add(result);
         Integer resultTag = (Integer)result.get(WSSecurityEngineResult.TAG_ACTION);
         if (resultTag != null) {
-            List<WSSecurityEngineResult> storedResults = actionResults.get(resultTag);
-            if (storedResults == null) {
-                storedResults = new ArrayList<>();
-            }
-            storedResults.add(result);
-            actionResults.put(resultTag, storedResults);
+            actionResults.computeIfAbsent(resultTag, k -> new ArrayList<>(2)).add(result);
         }
     }
 
@@ -143,6 +143,7 @@ public class EncryptionAction implements Action {
 
         wsEncrypt.setAttachmentCallbackHandler(reqData.getAttachmentCallbackHandler());
         wsEncrypt.setStoreBytesInAttachment(reqData.isStoreBytesInAttachment());
+        wsEncrypt.setStreamBytesInAttachment(reqData.isStreamBytesInAttachment());
 
         try {
             wsEncrypt.build(encryptionToken.getCrypto(), symmetricKey);
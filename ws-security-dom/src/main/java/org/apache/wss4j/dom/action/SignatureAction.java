@@ -62,6 +62,7 @@ public class SignatureAction implements Action {
         wsSign.setAddInclusivePrefixes(reqData.isAddInclusivePrefixes());
         wsSign.setWsDocInfo(reqData.getWsDocInfo());
         wsSign.setExpandXopInclude(reqData.isExpandXopInclude());
+        wsSign.setStreamXopInclude(reqData.isStreamXopInclude());
         wsSign.setSignatureProvider(reqData.getSignatureProvider());
 
         if (signatureToken.getKeyIdentifierId() != 0) {
@@ -105,6 +106,7 @@ public class SignatureAction implements Action {
 
         wsSign.setAttachmentCallbackHandler(reqData.getAttachmentCallbackHandler());
         wsSign.setStoreBytesInAttachment(reqData.isStoreBytesInAttachment());
+        wsSign.setAttachmentBufferThreshold(reqData.getAttachmentBufferThreshold());
 
         try {
             wsSign.prepare(signatureToken.getCrypto());
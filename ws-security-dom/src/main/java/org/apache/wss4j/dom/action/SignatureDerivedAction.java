@@ -67,6 +67,7 @@ public class SignatureDerivedAction extends AbstractDerivedAction implements Act
         wsSign.setAddInclusivePrefixes(reqData.isAddInclusivePrefixes());
         wsSign.setWsDocInfo(reqData.getWsDocInfo());
         wsSign.setExpandXopInclude(reqData.isExpandXopInclude());
+        wsSign.setStreamXopInclude(reqData.isStreamXopInclude());
 
         if (signatureToken.getSignatureAlgorithm() != null) {
             wsSign.setSignatureAlgorithm(signatureToken.getSignatureAlgorithm());
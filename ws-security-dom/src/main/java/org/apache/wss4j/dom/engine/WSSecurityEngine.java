@@ -19,8 +19,8 @@
 
 package org.apache.wss4j.dom.engine;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -317,7 +317,7 @@ public class WSSecurityEngine {
         final WSSConfig cfg = getWssConfig();
         Node node = securityHeader.getFirstChild();
 
-        List<WSSecurityEngineResult> returnResults = new LinkedList<>();
+        List<WSSecurityEngineResult> returnResults = new ArrayList<>();
         boolean foundTimestamp = false;
         while (node != null) {
             Node nextSibling = node.getNextSibling();
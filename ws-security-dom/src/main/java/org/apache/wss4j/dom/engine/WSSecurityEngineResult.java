@@ -27,12 +27,28 @@ import org.apache.wss4j.dom.message.token.SignatureConfirmation;
 import org.apache.wss4j.dom.message.token.Timestamp;
 import org.apache.wss4j.dom.message.token.UsernameToken;
 
+import java.io.Serializable;
 import java.security.Principal;
 import java.security.cert.X509Certificate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
+import org.w3c.dom.Element;
 
-public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
+/**
+ * The result of processing a security token or operation. The values of the TAG_* keys defined here
+ * are stored in a fixed array of slots, rather than in hash table entries, as a message with several
+ * tokens results in a number of results with a handful of values each. Other keys are stored in a
+ * HashMap that is only created when such a key is put. The Map view of the result (entrySet, keySet,
+ * values) is created on demand.
+ */
+public class WSSecurityEngineResult extends AbstractMap<String, Object> implements Serializable {
 
     //
     // Tokens
@@ -41,7 +57,7 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
     /**
      *
      */
-    private static final long serialVersionUID = 8877354445092724300L;
+    private static final long serialVersionUID = 5177665024544649988L;
 
     /**
      * Tag denoting the SAML Assertion found, if applicable.
@@ -235,6 +251,51 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
      */
     public static final String TAG_ID = "id";
 
+    private static final int SLOT_ACTION = 0;
+    private static final int SLOT_SAML_ASSERTION = 1;
+    private static final int SLOT_TIMESTAMP = 2;
+    private static final int SLOT_SECURITY_CONTEXT_TOKEN = 3;
+    private static final int SLOT_USERNAME_TOKEN = 4;
+    private static final int SLOT_DERIVED_KEY_TOKEN = 5;
+    private static final int SLOT_SIGNATURE_CONFIRMATION = 6;
+    private static final int SLOT_BINARY_SECURITY_TOKEN = 7;
+    private static final int SLOT_TRANSFORMED_TOKEN = 8;
+    private static final int SLOT_VALIDATED_TOKEN = 9;
+    private static final int SLOT_TOKEN_ELEMENT = 10;
+    private static final int SLOT_X509_CERTIFICATE = 11;
+    private static final int SLOT_SIGNATURE_VALUE = 12;
+    private static final int SLOT_X509_CERTIFICATES = 13;
+    private static final int SLOT_X509_REFERENCE_TYPE = 14;
+    private static final int SLOT_ENCRYPTED_EPHEMERAL_KEY = 15;
+    private static final int SLOT_SECRET = 16;
+    private static final int SLOT_PUBLIC_KEY = 17;
+    private static final int SLOT_PRINCIPAL = 18;
+    private static final int SLOT_SUBJECT = 19;
+    private static final int SLOT_DATA_REF_URIS = 20;
+    private static final int SLOT_ENCRYPTED_KEY_TRANSPORT_METHOD = 21;
+    private static final int SLOT_SIGNATURE_METHOD = 22;
+    private static final int SLOT_CANONICALIZATION_METHOD = 23;
+    private static final int SLOT_DELEGATION_CREDENTIAL = 24;
+    private static final int SLOT_ID = 25;
+
+    private static final String[] SLOT_KEYS = {
+        TAG_ACTION, TAG_SAML_ASSERTION, TAG_TIMESTAMP, TAG_SECURITY_CONTEXT_TOKEN, TAG_USERNAME_TOKEN,
+        TAG_DERIVED_KEY_TOKEN, TAG_SIGNATURE_CONFIRMATION, TAG_BINARY_SECURITY_TOKEN, TAG_TRANSFORMED_TOKEN,
+        TAG_VALIDATED_TOKEN, TAG_TOKEN_ELEMENT, TAG_X509_CERTIFICATE, TAG_SIGNATURE_VALUE, TAG_X509_CERTIFICATES,
+        TAG_X509_REFERENCE_TYPE, TAG_ENCRYPTED_EPHEMERAL_KEY, TAG_SECRET, TAG_PUBLIC_KEY, TAG_PRINCIPAL,
+        TAG_SUBJECT, TAG_DATA_REF_URIS, TAG_ENCRYPTED_KEY_TRANSPORT_METHOD, TAG_SIGNATURE_METHOD,
+        TAG_CANONICALIZATION_METHOD, TAG_DELEGATION_CREDENTIAL, TAG_ID,
+    };
+
+    // The values of the TAG_* keys, and a bit mask of the slots that hold a (possibly null) value
+    private final Object[] slots = new Object[SLOT_KEYS.length];
+    private int present;
+
+    // The values of any other keys, created on demand
+    private Map<String, Object> others;
+
+    private transient Set<Map.Entry<String, Object>> entrySet;
+
     public WSSecurityEngineResult(int act) {
         put(TAG_ACTION, act);
     }
@@ -358,5 +419,309 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
         put(TAG_TOKEN_ELEMENT, token.getElement());
     }
 
+    /**
+     * Get the cryptographic operation performed
+     * @return the action, or 0 if it has been removed
+     */
+    public int getAction() {
+        Integer action = (Integer)slots[SLOT_ACTION];
+        return action == null ? 0 : action;
+    }
+
+    /**
+     * Get the (wsu) Id of the token corresponding to this result
+     * @return the Id, or null if it is not set
+     */
+    public String getId() {
+        return (String)slots[SLOT_ID];
+    }
+
+    /**
+     * Get the DOM Element of the processed token
+     * @return the token element, or null if it is not set
+     */
+    public Element getTokenElement() {
+        return (Element)slots[SLOT_TOKEN_ELEMENT];
+    }
+
+    /**
+     * Get the security principal found
+     * @return the principal, or null if it is not set
+     */
+    public Principal getPrincipal() {
+        return (Principal)slots[SLOT_PRINCIPAL];
+    }
+
+    /**
+     * Get the X.509 certificate chain found
+     * @return the certificate chain, or null if it is not set
+     */
+    public X509Certificate[] getX509Certificates() {
+        return (X509Certificate[])slots[SLOT_X509_CERTIFICATES];
+    }
+
+    /**
+     * Get the references to the elements that have been cryptographically protected
+     * @return the data references, or null if they are not set
+     */
+    @SuppressWarnings("unchecked")
+    public List<WSDataRef> getDataRefs() {
+        return (List<WSDataRef>)slots[SLOT_DATA_REF_URIS];
+    }
+
+    /**
+     * Get whether the token has been validated by a Validator implementation
+     * @return whether the token has been validated
+     */
+    public boolean isValidatedToken() {
+        return Boolean.TRUE.equals(slots[SLOT_VALIDATED_TOKEN]);
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = slot(key);
+        if (slot >= 0) {
+            return slots[slot];
+        }
+        return others == null ? null : others.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = slot(key);
+        if (slot >= 0) {
+            return (present & (1 << slot)) != 0;
+        }
+        return others != null && others.containsKey(key);
+    }
 
+    @Override
+    public Object put(String key, Object value) {
+        int slot = slot(key);
+        if (slot >= 0) {
+            Object oldValue = slots[slot];
+            slots[slot] = value;
+            present |= 1 << slot;
+            return oldValue;
+        }
+        if (others == null) {
+            others = new HashMap<>();
+        }
+        return others.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int slot = slot(key);
+        if (slot >= 0) {
+            Object oldValue = slots[slot];
+            slots[slot] = null;
+            present &= ~(1 << slot);
+            return oldValue;
+        }
+        return others == null ? null : others.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return Integer.bitCount(present) + (others == null ? 0 : others.size());
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+        present = 0;
+        others = null;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private static int slot(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        switch ((String)key) {
+        case TAG_ACTION:
+            return SLOT_ACTION;
+        case TAG_SAML_ASSERTION:
+            return SLOT_SAML_ASSERTION;
+        case TAG_TIMESTAMP:
+            return SLOT_TIMESTAMP;
+        case TAG_SECURITY_CONTEXT_TOKEN:
+            return SLOT_SECURITY_CONTEXT_TOKEN;
+        case TAG_USERNAME_TOKEN:
+            return SLOT_USERNAME_TOKEN;
+        case TAG_DERIVED_KEY_TOKEN:
+            return SLOT_DERIVED_KEY_TOKEN;
+        case TAG_SIGNATURE_CONFIRMATION:
+            return SLOT_SIGNATURE_CONFIRMATION;
+        case TAG_BINARY_SECURITY_TOKEN:
+            return SLOT_BINARY_SECURITY_TOKEN;
+        case TAG_TRANSFORMED_TOKEN:
+            return SLOT_TRANSFORMED_TOKEN;
+        case TAG_VALIDATED_TOKEN:
+            return SLOT_VALIDATED_TOKEN;
+        case TAG_TOKEN_ELEMENT:
+            return SLOT_TOKEN_ELEMENT;
+        case TAG_X509_CERTIFICATE:
+            return SLOT_X509_CERTIFICATE;
+        case TAG_SIGNATURE_VALUE:
+            return SLOT_SIGNATURE_VALUE;
+        case TAG_X509_CERTIFICATES:
+            return SLOT_X509_CERTIFICATES;
+        case TAG_X509_REFERENCE_TYPE:
+            return SLOT_X509_REFERENCE_TYPE;
+        case TAG_ENCRYPTED_EPHEMERAL_KEY:
+            return SLOT_ENCRYPTED_EPHEMERAL_KEY;
+        case TAG_SECRET:
+            return SLOT_SECRET;
+        case TAG_PUBLIC_KEY:
+            return SLOT_PUBLIC_KEY;
+        case TAG_PRINCIPAL:
+            return SLOT_PRINCIPAL;
+        case TAG_SUBJECT:
+            return SLOT_SUBJECT;
+        case TAG_DATA_REF_URIS:
+            return SLOT_DATA_REF_URIS;
+        case TAG_ENCRYPTED_KEY_TRANSPORT_METHOD:
+            return SLOT_ENCRYPTED_KEY_TRANSPORT_METHOD;
+        case TAG_SIGNATURE_METHOD:
+            return SLOT_SIGNATURE_METHOD;
+        case TAG_CANONICALIZATION_METHOD:
+            return SLOT_CANONICALIZATION_METHOD;
+        case TAG_DELEGATION_CREDENTIAL:
+            return SLOT_DELEGATION_CREDENTIAL;
+        case TAG_ID:
+            return SLOT_ID;
+        default:
+            return -1;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return WSSecurityEngineResult.this.size();
+        }
+
+        @Override
+        public void clear() {
+            WSSecurityEngineResult.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+        private int nextSlot = nextSlot(0);
+        private int lastSlot = -1;
+        private Iterator<Map.Entry<String, Object>> othersIterator;
+
+        @Override
+        public boolean hasNext() {
+            if (nextSlot < slots.length) {
+                return true;
+            }
+            if (othersIterator == null) {
+                if (others == null) {
+                    return false;
+                }
+                othersIterator = others.entrySet().iterator();
+            }
+            return othersIterator.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (nextSlot < slots.length) {
+                lastSlot = nextSlot;
+                nextSlot = nextSlot(nextSlot + 1);
+                return new SlotEntry(lastSlot);
+            }
+            lastSlot = -1;
+            return othersIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (lastSlot >= 0) {
+                WSSecurityEngineResult.this.remove(SLOT_KEYS[lastSlot]);
+                lastSlot = -1;
+            } else if (othersIterator != null) {
+                othersIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+
+        private int nextSlot(int from) {
+            int slot = from;
+            while (slot < slots.length && (present & (1 << slot)) == 0) {
+                slot++;
+            }
+            return slot;
+        }
+    }
+
+    private final class SlotEntry implements Map.Entry<String, Object> {
+        private final int slot;
+
+        SlotEntry(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public String getKey() {
+            return SLOT_KEYS[slot];
+        }
+
+        @Override
+        public Object getValue() {
+            return slots[slot];
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object oldValue = slots[slot];
+            slots[slot] = value;
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>)o;
+            Object value = slots[slot];
+            return getKey().equals(entry.getKey())
+                && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = slots[slot];
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + slots[slot];
+        }
+    }
 }
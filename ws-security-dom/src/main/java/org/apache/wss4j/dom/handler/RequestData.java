@@ -37,15 +37,18 @@ import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextStore;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.UsernameTokenDerivedKeyCache;
 import org.apache.wss4j.dom.SOAPConstants;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.transform.AttachmentContentSignatureTransform;
 import org.apache.wss4j.dom.validate.Validator;
 import org.apache.xml.security.encryption.Serializer;
 
@@ -75,6 +78,9 @@ public class RequestData {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private ReplayCache kerberosReplayCache;
+    private SecurityContextStore securityContextStore;
+    private UsernameTokenDerivedKeyCache usernameTokenDerivedKeyCache;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
     private final List<BSPRule> ignoredBSPRules = new LinkedList<>();
@@ -93,6 +99,7 @@ public class RequestData {
     private final List<String> audienceRestrictions = new ArrayList<>();
     private boolean requireTimestampExpires;
     private boolean storeBytesInAttachment;
+    private boolean streamBytesInAttachment;
     private Serializer encryptionSerializer;
     private WSDocInfo wsDocInfo;
     private Provider signatureProvider;
@@ -196,6 +203,10 @@ public class RequestData {
     private boolean validateSamlSubjectConfirmation = true;
 
     private boolean expandXopInclude;
+    private boolean streamXopInclude;
+    private boolean authenticateAttachmentBeforeRelease;
+    private long attachmentBufferThreshold =
+        AttachmentContentSignatureTransform.DEFAULT_ATTACHMENT_BUFFER_THRESHOLD;
 
     public Object getMsgContext() {
         return msgContext;
@@ -446,6 +457,49 @@ public class RequestData {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the replay cache for the authenticators of Kerberos AP-REQ tokens
+     */
+    public void setKerberosReplayCache(ReplayCache newCache) {
+        kerberosReplayCache = newCache;
+    }
+
+    /**
+     * Get the replay cache for the authenticators of Kerberos AP-REQ tokens
+     */
+    public ReplayCache getKerberosReplayCache() {
+        return kerberosReplayCache;
+    }
+
+    /**
+     * Set the store of the secrets of established security contexts, which is consulted before
+     * the CallbackHandler when processing SecurityContextTokens and DerivedKeyTokens
+     */
+    public void setSecurityContextStore(SecurityContextStore securityContextStore) {
+        this.securityContextStore = securityContextStore;
+    }
+
+    /**
+     * Get the store of the secrets of established security contexts
+     */
+    public SecurityContextStore getSecurityContextStore() {
+        return securityContextStore;
+    }
+
+    /**
+     * Set the cache of the keys derived from received UsernameTokens
+     */
+    public void setUsernameTokenDerivedKeyCache(UsernameTokenDerivedKeyCache usernameTokenDerivedKeyCache) {
+        this.usernameTokenDerivedKeyCache = usernameTokenDerivedKeyCache;
+    }
+
+    /**
+     * Get the cache of the keys derived from received UsernameTokens
+     */
+    public UsernameTokenDerivedKeyCache getUsernameTokenDerivedKeyCache() {
+        return usernameTokenDerivedKeyCache;
+    }
+
     /**
      * Set the Signature Subject Cert Constraints
      */
@@ -729,6 +783,14 @@ public class RequestData {
         this.storeBytesInAttachment = storeBytesInAttachment;
     }
 
+    public boolean isStreamBytesInAttachment() {
+        return streamBytesInAttachment;
+    }
+
+    public void setStreamBytesInAttachment(boolean streamBytesInAttachment) {
+        this.streamBytesInAttachment = streamBytesInAttachment;
+    }
+
     public boolean isExpandXopInclude() {
         return expandXopInclude;
     }
@@ -737,6 +799,39 @@ public class RequestData {
         this.expandXopInclude = expandXopInclude;
     }
 
+    public boolean isStreamXopInclude() {
+        return streamXopInclude;
+    }
+
+    public void setStreamXopInclude(boolean streamXopInclude) {
+        this.streamXopInclude = streamXopInclude;
+    }
+
+    public boolean isAuthenticateAttachmentBeforeRelease() {
+        return authenticateAttachmentBeforeRelease;
+    }
+
+    /**
+     * Whether to buffer the plaintext of AES-GCM encrypted attachments in a temporary file (above 1 MB)
+     * until the Cipher has verified the authentication tag
+     */
+    public void setAuthenticateAttachmentBeforeRelease(boolean authenticateAttachmentBeforeRelease) {
+        this.authenticateAttachmentBeforeRelease = authenticateAttachmentBeforeRelease;
+    }
+
+    public long getAttachmentBufferThreshold() {
+        return attachmentBufferThreshold;
+    }
+
+    /**
+     * Set the size above which an attachment is buffered in a temporary file rather than in memory,
+     * while it is digested for signing or signature verification. The default is 1 MB. A negative value
+     * means that it is always buffered in memory.
+     */
+    public void setAttachmentBufferThreshold(long attachmentBufferThreshold) {
+        this.attachmentBufferThreshold = attachmentBufferThreshold;
+    }
+
     public Serializer getEncryptionSerializer() {
         return encryptionSerializer;
     }
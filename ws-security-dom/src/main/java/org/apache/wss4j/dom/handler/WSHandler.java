@@ -36,14 +36,19 @@ import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.SignatureEncryptionActionToken;
 import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextStore;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoRegistry;
 import org.apache.wss4j.common.crypto.JasyptPasswordEncryptor;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
+import org.apache.wss4j.common.crypto.ReloadableCrypto;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.Loader;
+import org.apache.wss4j.common.util.UsernameTokenDerivedKeyCache;
 import org.apache.wss4j.dom.message.WSSecHeader;
 import org.apache.wss4j.dom.message.token.SignatureConfirmation;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
@@ -58,6 +63,7 @@ public abstract class WSHandler {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(WSHandler.class);
     protected Map<String, Crypto> cryptos = new ConcurrentHashMap<>();
+    private CryptoRegistry cryptoRegistry;
 
     /**
      * Performs all defined security actions to set-up the SOAP request.
@@ -122,6 +128,11 @@ public abstract class WSHandler {
                 decodeBooleanConfigValue(mc, WSHandlerConstants.STORE_BYTES_IN_ATTACHMENT, false);
             reqData.setStoreBytesInAttachment(storeBytesInAttachment);
         }
+        if (!reqData.isStreamBytesInAttachment()) {
+            boolean streamBytesInAttachment =
+                decodeBooleanConfigValue(mc, WSHandlerConstants.STREAM_BYTES_IN_ATTACHMENT, false);
+            reqData.setStreamBytesInAttachment(streamBytesInAttachment);
+        }
 
         // Perform configuration
         boolean encryptionFound = false;
@@ -364,6 +375,55 @@ public abstract class WSHandler {
         reqData.setRequireTimestampExpires(
             decodeBooleanConfigValue(mc, WSHandlerConstants.REQUIRE_TIMESTAMP_EXPIRES, false)
         );
+        reqData.setAuthenticateAttachmentBeforeRelease(
+            decodeBooleanConfigValue(mc, WSHandlerConstants.AUTHENTICATE_ATTACHMENT_BEFORE_RELEASE, false)
+        );
+
+        if (reqData.getKerberosReplayCache() == null) {
+            reqData.setKerberosReplayCache(getKerberosReplayCache(mc));
+        }
+        if (reqData.getSecurityContextStore() == null) {
+            reqData.setSecurityContextStore(getSecurityContextStore(mc));
+        }
+        if (reqData.getUsernameTokenDerivedKeyCache() == null) {
+            reqData.setUsernameTokenDerivedKeyCache(getUsernameTokenDerivedKeyCache(mc));
+        }
+    }
+
+    protected ReplayCache getKerberosReplayCache(Object mc) {
+        Object o = getOption(WSHandlerConstants.KERBEROS_REPLAY_CACHE_INSTANCE);
+        if (o instanceof ReplayCache) {
+            return (ReplayCache) o;
+        }
+        o = getProperty(mc, WSHandlerConstants.KERBEROS_REPLAY_CACHE_INSTANCE);
+        if (o instanceof ReplayCache) {
+            return (ReplayCache) o;
+        }
+        return null;
+    }
+
+    protected SecurityContextStore getSecurityContextStore(Object mc) {
+        Object o = getOption(WSHandlerConstants.SECURITY_CONTEXT_STORE_INSTANCE);
+        if (o instanceof SecurityContextStore) {
+            return (SecurityContextStore) o;
+        }
+        o = getProperty(mc, WSHandlerConstants.SECURITY_CONTEXT_STORE_INSTANCE);
+        if (o instanceof SecurityContextStore) {
+            return (SecurityContextStore) o;
+        }
+        return null;
+    }
+
+    protected UsernameTokenDerivedKeyCache getUsernameTokenDerivedKeyCache(Object mc) {
+        Object o = getOption(WSHandlerConstants.UT_DERIVED_KEY_CACHE_INSTANCE);
+        if (o instanceof UsernameTokenDerivedKeyCache) {
+            return (UsernameTokenDerivedKeyCache) o;
+        }
+        o = getProperty(mc, WSHandlerConstants.UT_DERIVED_KEY_CACHE_INSTANCE);
+        if (o instanceof UsernameTokenDerivedKeyCache) {
+            return (UsernameTokenDerivedKeyCache) o;
+        }
+        return null;
     }
 
     protected boolean checkReceiverResults(
@@ -633,6 +693,10 @@ public abstract class WSHandler {
             );
             reqData.setExpandXopInclude(expandXOP);
         }
+
+        boolean streamXOP =
+            decodeBooleanConfigValue(reqData.getMsgContext(), WSHandlerConstants.STREAM_XOP_INCLUDE, false);
+        reqData.setStreamXopInclude(streamXOP);
     }
 
     protected void decodeAlgorithmSuite(RequestData reqData) throws WSSecurityException {
@@ -972,10 +1036,14 @@ public abstract class WSHandler {
         //
         String refId = getString(cryptoPropertyRefId, mc);
         if (refId != null) {
-            crypto = cryptos.get(refId);
+            crypto = cryptoRegistry == null ? cryptos.get(refId) : null;
             if (crypto == null) {
                 Object obj = getProperty(mc, refId);
-                if (obj instanceof Properties) {
+                if (obj instanceof Properties && cryptoRegistry != null) {
+                    crypto = cryptoRegistry.getCrypto(refId, (Properties)obj,
+                                                      Loader.getClassLoader(CryptoFactory.class),
+                                                      getPasswordEncryptor(requestData));
+                } else if (obj instanceof Properties) {
                     crypto = CryptoFactory.getInstance((Properties)obj,
                                                        Loader.getClassLoader(CryptoFactory.class),
                                                        getPasswordEncryptor(requestData));
@@ -997,7 +1065,17 @@ public abstract class WSHandler {
         //
         if (crypto == null) {
             String propFile = getString(cryptoPropertyFile, mc);
-            if (propFile != null) {
+            if (propFile != null && cryptoRegistry != null) {
+                ReloadableCrypto reloadableCrypto = cryptoRegistry.getReloadableCrypto(propFile);
+                if (reloadableCrypto != null) {
+                    crypto = reloadableCrypto.getCrypto();
+                } else {
+                    // The loader outlives the message, and so must not hold on to its RequestData
+                    PasswordEncryptor passwordEncryptor = getPasswordEncryptor(requestData);
+                    crypto = cryptoRegistry.getCrypto(propFile, getClassLoader(),
+                        properties -> loadCryptoFromPropertiesFile(propFile, getCryptoLoaderData(passwordEncryptor)));
+                }
+            } else if (propFile != null) {
                 crypto = cryptos.get(propFile);
                 if (crypto == null) {
                     crypto = loadCryptoFromPropertiesFile(propFile, requestData);
@@ -1034,6 +1112,16 @@ public abstract class WSHandler {
             );
     }
 
+    /**
+     * Get the RequestData that is passed to loadCryptoFromPropertiesFile when a CryptoRegistry (re)loads a
+     * Crypto instance. It carries no message context, only the PasswordEncryptor.
+     */
+    private static RequestData getCryptoLoaderData(PasswordEncryptor passwordEncryptor) {
+        RequestData cryptoLoaderData = new RequestData();
+        cryptoLoaderData.setPasswordEncryptor(passwordEncryptor);
+        return cryptoLoaderData;
+    }
+
     /**
      * Get a CallbackHandler instance. First try to get an instance via the
      * callbackHandlerRef on the message context. Failing that, try to load a new
@@ -1470,6 +1558,30 @@ public abstract class WSHandler {
         }
     }
 
+    /**
+     * Get the CryptoRegistry used to load Crypto instances from crypto properties files and references
+     * to crypto properties
+     * @return the CryptoRegistry, or null if Crypto instances are cached by this handler
+     */
+    public CryptoRegistry getCryptoRegistry() {
+        return cryptoRegistry;
+    }
+
+    /**
+     * Set the CryptoRegistry used to load Crypto instances from crypto properties files and references
+     * to crypto properties. The Crypto instances are then rebuilt by the registry when their keystore,
+     * truststore or CRL files change, instead of being cached by this handler for its lifetime. The Crypto
+     * instance retrieved for a message is kept in the RequestData, and so is used for the whole message.
+     * The registry loads the Crypto instances of crypto properties files, also on a reload, with the
+     * {@link #loadCryptoFromPropertiesFile} hook. As the loaded Crypto instance outlives the message, the hook
+     * is not passed the RequestData of the message, but one without a message context that only carries the
+     * PasswordEncryptor of the message for which the Crypto instance was first retrieved.
+     * @param cryptoRegistry the CryptoRegistry
+     */
+    public void setCryptoRegistry(CryptoRegistry cryptoRegistry) {
+        this.cryptoRegistry = cryptoRegistry;
+    }
+
     /**
      * Returns the classloader to be used for loading the callback class
      * @return class loader
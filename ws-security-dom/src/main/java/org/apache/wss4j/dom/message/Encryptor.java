@@ -19,7 +19,10 @@
 
 package org.apache.wss4j.dom.message;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -28,6 +31,7 @@ import java.util.Map;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.SecretKey;
 import javax.security.auth.callback.Callback;
@@ -46,6 +50,7 @@ import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.WsuIdAllocator;
 import org.apache.wss4j.dom.callback.CallbackLookup;
 import org.apache.wss4j.dom.callback.DOMCallbackLookup;
+import org.apache.wss4j.dom.util.DOMSerializingInputStream;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.encryption.AbstractSerializer;
@@ -76,6 +81,7 @@ public class Encryptor {
     private CallbackLookup callbackLookup;
     private CallbackHandler attachmentCallbackHandler;
     private boolean storeBytesInAttachment;
+    private boolean streamBytesInAttachment;
     private Serializer encryptionSerializer;
     private boolean expandXopInclude;
     private WSDocInfo wsDocInfo;
@@ -130,6 +136,7 @@ public class Encryptor {
             if (expandXopInclude) {
                 for (Element elementToEncrypt : elementsToEncrypt) {
                     Element encrElement = elementToEncrypt;
+                    boolean streamXopInclude = false;
 
                     // Look for xop:Include Nodes
                     List<Element> includeElements =
@@ -158,6 +165,9 @@ public class Encryptor {
                                     }
                                 }
                             }
+                        } else if (storeBytesInAttachment && streamBytesInAttachment) {
+                            // The attachment bytes are streamed into the encrypted attachment instead
+                            streamXopInclude = true;
                         } else {
                             // Here we didn't find an already expanded Element, so inline the attachment bytes
                             WSSecurityUtil.inlineAttachments(includeElements, attachmentCallbackHandler, true);
@@ -167,7 +177,8 @@ public class Encryptor {
                     if (storeBytesInAttachment) {
                         try {
                             String id =
-                                encryptElementInAttachment(keyInfo, secretKey, encryptionAlgorithm, encPart, encrElement);
+                                encryptElementInAttachment(keyInfo, secretKey, encryptionAlgorithm, encPart, encrElement,
+                                                           streamXopInclude);
                             encPart.setEncId(id);
                             encDataRef.add("#" + id);
                         } catch (Exception ex) {
@@ -184,7 +195,8 @@ public class Encryptor {
                 for (Element elementToEncrypt : elementsToEncrypt) {
                     try {
                         String id =
-                            encryptElementInAttachment(keyInfo, secretKey, encryptionAlgorithm, encPart, elementToEncrypt);
+                            encryptElementInAttachment(keyInfo, secretKey, encryptionAlgorithm, encPart, elementToEncrypt,
+                                                       false);
                         encPart.setEncId(id);
                         encDataRef.add("#" + id);
                     } catch (Exception ex) {
@@ -238,7 +250,8 @@ public class Encryptor {
         SecretKey secretKey,
         String encryptionAlgorithm,
         WSEncryptionPart encryptionPart,
-        Element elementToEncrypt
+        Element elementToEncrypt,
+        boolean streamXopInclude
    ) throws Exception {
 
         String type = EncryptionConstants.TYPE_ELEMENT;
@@ -275,36 +288,55 @@ public class Encryptor {
 
         Cipher cipher = createCipher(encryptionAlgorithm, secretKey);
 
-        // Serialize and encrypt the element
-        AbstractSerializer serializer = new TransformSerializer(true);
-
-        byte[] serializedOctets = null;
-        if (type.equals(EncryptionConstants.TYPE_CONTENT)) {
-            NodeList children = elementToEncrypt.getChildNodes();
-            if (null != children) {
-                serializedOctets = serializer.serializeToByteArray(children);
+        InputStream attachmentStream = null;
+        if (streamBytesInAttachment) {
+            // Serialize and encrypt the element as the attachment is read
+            List<Node> nodesToEncrypt = new ArrayList<>();
+            if (type.equals(EncryptionConstants.TYPE_CONTENT)) {
+                for (Node child = elementToEncrypt.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    nodesToEncrypt.add(child);
+                }
             } else {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION,
-                                              "Element has no content.");
+                nodesToEncrypt.add(elementToEncrypt);
             }
+            InputStream serializedStream =
+                new DOMSerializingInputStream(nodesToEncrypt, streamXopInclude ? attachmentCallbackHandler : null, true);
+            attachmentStream =
+                new SequenceInputStream(new ByteArrayInputStream(cipher.getIV()),
+                                        new CipherInputStream(serializedStream, cipher));
         } else {
-            serializedOctets = serializer.serializeToByteArray(elementToEncrypt);
-        }
+            // Serialize and encrypt the element
+            AbstractSerializer serializer = new TransformSerializer(true);
+
+            byte[] serializedOctets = null;
+            if (type.equals(EncryptionConstants.TYPE_CONTENT)) {
+                NodeList children = elementToEncrypt.getChildNodes();
+                if (null != children) {
+                    serializedOctets = serializer.serializeToByteArray(children);
+                } else {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION,
+                                                  "Element has no content.");
+                }
+            } else {
+                serializedOctets = serializer.serializeToByteArray(elementToEncrypt);
+            }
 
-        byte[] encryptedBytes = null;
-        try {
-            encryptedBytes = cipher.doFinal(serializedOctets);
-        } catch (IllegalBlockSizeException ibse) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ibse);
-        } catch (BadPaddingException bpe) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, bpe);
-        }
+            byte[] encryptedBytes = null;
+            try {
+                encryptedBytes = cipher.doFinal(serializedOctets);
+            } catch (IllegalBlockSizeException ibse) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ibse);
+            } catch (BadPaddingException bpe) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, bpe);
+            }
 
-        // Now build up to a properly XML Encryption encoded octet stream
-        byte[] iv = cipher.getIV();
-        byte[] finalEncryptedBytes = new byte[iv.length + encryptedBytes.length];
-        System.arraycopy(iv, 0, finalEncryptedBytes, 0, iv.length);
-        System.arraycopy(encryptedBytes, 0, finalEncryptedBytes, iv.length, encryptedBytes.length);
+            // Now build up to a properly XML Encryption encoded octet stream
+            byte[] iv = cipher.getIV();
+            byte[] finalEncryptedBytes = new byte[iv.length + encryptedBytes.length];
+            System.arraycopy(iv, 0, finalEncryptedBytes, 0, iv.length);
+            System.arraycopy(encryptedBytes, 0, finalEncryptedBytes, iv.length, encryptedBytes.length);
+            attachmentStream = new ByteArrayInputStream(finalEncryptedBytes);
+        }
 
         if ("Content".equals(encryptionPart.getEncModifier())) {
             Node child = elementToEncrypt.getFirstChild();
@@ -318,8 +350,8 @@ public class Encryptor {
             elementToEncrypt.getParentNode().replaceChild(encryptedData, elementToEncrypt);
         }
 
-        AttachmentUtils.storeBytesInAttachment(cipherValue, doc, attachmentId,
-                                              finalEncryptedBytes, attachmentCallbackHandler);
+        AttachmentUtils.storeStreamInAttachment(cipherValue, doc, attachmentId,
+                                                attachmentStream, attachmentCallbackHandler);
 
         return encEncryptedDataId;
     }
@@ -567,6 +599,19 @@ public class Encryptor {
         this.storeBytesInAttachment = storeBytesInAttachment;
     }
 
+    public boolean isStreamBytesInAttachment() {
+        return streamBytesInAttachment;
+    }
+
+    /**
+     * Whether to serialize and encrypt an Element that is stored in an attachment as the attachment is
+     * read, instead of encrypting it into a byte array up front. This only applies if storeBytesInAttachment
+     * is true.
+     */
+    public void setStreamBytesInAttachment(boolean streamBytesInAttachment) {
+        this.streamBytesInAttachment = streamBytesInAttachment;
+    }
+
     public Serializer getEncryptionSerializer() {
         return encryptionSerializer;
     }
@@ -47,7 +47,9 @@ public class WSSecBase {
     protected CallbackLookup callbackLookup;
     protected CallbackHandler attachmentCallbackHandler;
     protected boolean storeBytesInAttachment;
+    protected boolean streamBytesInAttachment;
     protected boolean expandXopInclude;
+    protected boolean streamXopInclude;
     protected boolean addWSUNamespace;
 
     private WsuIdAllocator idAllocator;
@@ -141,6 +143,15 @@ public class WSSecBase {
         this.storeBytesInAttachment = storeBytesInAttachment;
     }
 
+    /**
+     * Whether to serialize and encrypt an Element that is stored in an attachment as the attachment is
+     * read. This only applies if storeBytesInAttachment is true. Serialization and encryption errors are
+     * then thrown as an IOException by the attachment stream, instead of by build().
+     */
+    public void setStreamBytesInAttachment(boolean streamBytesInAttachment) {
+        this.streamBytesInAttachment = streamBytesInAttachment;
+    }
+
     /**
      * Looks up or adds a body id. <p/> First try to locate the
      * <code>wsu:Id</code> in the SOAP body element. If one is found, the
@@ -234,6 +245,19 @@ public class WSSecBase {
         this.expandXopInclude = expandXopInclude;
     }
 
+    public boolean isStreamXopInclude() {
+        return streamXopInclude;
+    }
+
+    /**
+     * Whether to stream the BASE-64 encoded bytes of the attachments referenced by xop:Include Elements
+     * into the digest of a signed Element, instead of inlining them into a copy of the Element. This only
+     * applies if expandXopInclude is true.
+     */
+    public void setStreamXopInclude(boolean streamXopInclude) {
+        this.streamXopInclude = streamXopInclude;
+    }
+
     public WSDocInfo getWsDocInfo() {
         return wsDocInfo;
     }
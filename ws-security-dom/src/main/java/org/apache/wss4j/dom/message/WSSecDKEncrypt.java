@@ -138,6 +138,7 @@ public class WSSecDKEncrypt extends WSSecDerivedKeyBase {
         encryptor.setCallbackLookup(callbackLookup);
         encryptor.setAttachmentCallbackHandler(attachmentCallbackHandler);
         encryptor.setStoreBytesInAttachment(storeBytesInAttachment);
+        encryptor.setStreamBytesInAttachment(streamBytesInAttachment);
         encryptor.setEncryptionSerializer(encryptionSerializer);
         encryptor.setWsDocInfo(getWsDocInfo());
         List<String> encDataRefs =
@@ -44,10 +44,12 @@ import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.callback.DOMCallbackLookup;
+import org.apache.wss4j.dom.transform.AttachmentContentSignatureTransform;
 import org.apache.wss4j.dom.transform.AttachmentTransformParameterSpec;
 import org.apache.wss4j.dom.transform.STRTransform;
 import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.apache.wss4j.dom.util.XopIncludeCanonicalizer;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -61,6 +63,8 @@ public class WSSecSignatureBase extends WSSecBase {
         org.slf4j.LoggerFactory.getLogger(WSSecSignatureBase.class);
 
     private List<Element> clonedElements = new ArrayList<>();
+    private long attachmentBufferThreshold =
+        AttachmentContentSignatureTransform.DEFAULT_ATTACHMENT_BUFFER_THRESHOLD;
 
     public WSSecSignatureBase(WSSecHeader securityHeader) {
         super(securityHeader);
@@ -150,22 +154,22 @@ public class WSSecSignatureBase extends WSSecBase {
                                 transformSpec
                             );
                     }
+                    byte[] digestValue = null;
                     if (element != null) {
-                        cloneElement(element);
+                        if (!"STRTransform".equals(elemName)) {
+                            digestValue = digestXopIncludes(element, transform, digestAlgo);
+                        }
+                        if (digestValue == null) {
+                            cloneElement(element);
+                        }
 
                         wsDocInfo.addTokenElement(element, false);
                     } else if (!encPart.isRequired()) {
                         continue;
                     }
-                    javax.xml.crypto.dsig.Reference reference =
-                        signatureFactory.newReference(
-                            "#" + idToSign,
-                            digestMethod,
-                            Collections.singletonList(transform),
-                            null,
-                            null
-                        );
-                    referenceList.add(reference);
+                    referenceList.add(
+                        newReference(signatureFactory, "#" + idToSign, digestMethod, transform, digestValue)
+                    );
                 } else {
                     String nmSpace = encPart.getNamespace();
                     List<Element> elementsToSign = null;
@@ -189,8 +193,6 @@ public class WSSecSignatureBase extends WSSecBase {
                     for (Element elementToSign : elementsToSign) {
                         String wsuId = setWsuId(elementToSign);
 
-                        cloneElement(elementToSign);
-
                         TransformParameterSpec transformSpec = null;
                         if (addInclusivePrefixes) {
                             List<String> prefixes = getInclusivePrefixes(elementToSign);
@@ -203,15 +205,14 @@ public class WSSecSignatureBase extends WSSecBase {
                                 WSConstants.C14N_EXCL_OMIT_COMMENTS,
                                 transformSpec
                             );
-                        javax.xml.crypto.dsig.Reference reference =
-                            signatureFactory.newReference(
-                                "#" + wsuId,
-                                digestMethod,
-                                Collections.singletonList(transform),
-                                null,
-                                null
-                            );
-                        referenceList.add(reference);
+
+                        byte[] digestValue = digestXopIncludes(elementToSign, transform, digestAlgo);
+                        if (digestValue == null) {
+                            cloneElement(elementToSign);
+                        }
+                        referenceList.add(
+                            newReference(signatureFactory, "#" + wsuId, digestMethod, transform, digestValue)
+                        );
                         wsDocInfo.addTokenElement(elementToSign, false);
                     }
                 }
@@ -230,6 +231,47 @@ public class WSSecSignatureBase extends WSSecBase {
         return referenceList;
     }
 
+    private static javax.xml.crypto.dsig.Reference newReference(
+        XMLSignatureFactory signatureFactory,
+        String uri,
+        DigestMethod digestMethod,
+        Transform transform,
+        byte[] digestValue
+    ) {
+        if (digestValue != null) {
+            return signatureFactory.newReference(
+                uri, digestMethod, Collections.singletonList(transform), null, null, digestValue
+            );
+        }
+        return signatureFactory.newReference(
+            uri, digestMethod, Collections.singletonList(transform), null, null
+        );
+    }
+
+    /**
+     * If streamXopInclude is enabled, and the given Element contains xop:Include Elements, then compute
+     * the digest of the Element with the attachment bytes streamed in place of the xop:Include Elements.
+     * This avoids cloning the Element and inlining the BASE-64 encoded attachments into the DOM tree.
+     * @return the digest value, or null if the Element is to be digested by the signature itself
+     */
+    private byte[] digestXopIncludes(Element element, Transform transform, String digestAlgo)
+        throws WSSecurityException {
+        if (!(expandXopInclude && streamXopInclude)) {
+            return null;
+        }
+        List<Element> includeElements =
+            XMLUtils.findElements(element.getFirstChild(), "Include", WSConstants.XOP_NS);
+        if (includeElements == null || includeElements.isEmpty()) {
+            return null;
+        }
+
+        List<String> inclusivePrefixes = null;
+        if (transform.getParameterSpec() instanceof ExcC14NParameterSpec) {
+            inclusivePrefixes = ((ExcC14NParameterSpec)transform.getParameterSpec()).getPrefixList();
+        }
+        return XopIncludeCanonicalizer.digest(element, inclusivePrefixes, digestAlgo, attachmentCallbackHandler);
+    }
+
     private void cloneElement(Element element) throws WSSecurityException {
         if (expandXopInclude) {
             // Look for xop:Include Nodes
@@ -280,7 +322,7 @@ public class WSSecSignatureBase extends WSSecBase {
 
                     AttachmentTransformParameterSpec attachmentTransformParameterSpec =
                         new AttachmentTransformParameterSpec(
-                            attachmentCallbackHandler, attachment
+                            attachmentCallbackHandler, attachment, attachmentBufferThreshold
                         );
 
                     String attachmentSignatureTransform = WSConstants.SWA_ATTACHMENT_CONTENT_SIG_TRANS;
@@ -344,6 +386,19 @@ public class WSSecSignatureBase extends WSSecBase {
         return transformParam;
     }
 
+    public long getAttachmentBufferThreshold() {
+        return attachmentBufferThreshold;
+    }
+
+    /**
+     * Set the size above which a signed attachment is buffered in a temporary file rather than in memory,
+     * while it is digested. The default is 1 MB. A negative value means that it is always buffered in
+     * memory.
+     */
+    public void setAttachmentBufferThreshold(long attachmentBufferThreshold) {
+        this.attachmentBufferThreshold = attachmentBufferThreshold;
+    }
+
     protected void cleanup() {
         if (!clonedElements.isEmpty()) {
             for (Element clonedElement : clonedElements) {
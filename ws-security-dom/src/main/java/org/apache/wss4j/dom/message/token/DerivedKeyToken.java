@@ -30,6 +30,7 @@ import javax.xml.namespace.QName;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
+import org.apache.wss4j.common.cache.SecurityContextStore;
 import org.apache.wss4j.common.derivedKey.ConversationConstants;
 import org.apache.wss4j.common.derivedKey.DerivedKeyUtils;
 import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
@@ -566,9 +567,25 @@ public class DerivedKeyToken {
      * @throws WSSecurityException
      */
     public byte[] deriveKey(int length, byte[] secret) throws WSSecurityException {
+        return deriveKey(length, secret, null, null);
+    }
+
+    /**
+     * Derive a key from this DerivedKeyToken instance, using the keys cached for the given
+     * security context in the SecurityContextStore
+     * @param length
+     * @param secret
+     * @param securityContextStore the SecurityContextStore, which may be null
+     * @param contextIdentifier the identifier of the security context the secret belongs to, which may be null
+     * @throws WSSecurityException
+     */
+    public byte[] deriveKey(
+        int length, byte[] secret, SecurityContextStore securityContextStore, String contextIdentifier
+    ) throws WSSecurityException {
         try {
             byte[] nonce = org.apache.xml.security.utils.XMLUtils.decode(getNonce());
-            return DerivedKeyUtils.deriveKey(getAlgorithm(), getLabel(), length, secret, nonce, getOffset());
+            return DerivedKeyUtils.deriveKey(securityContextStore, contextIdentifier,
+                                             getAlgorithm(), getLabel(), length, secret, nonce, getOffset());
         } catch (Exception e) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, e
@@ -36,6 +36,7 @@ import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.principal.WSUsernameTokenPrincipalImpl;
 import org.apache.wss4j.common.util.DOM2Writer;
 import org.apache.wss4j.common.util.DateUtil;
+import org.apache.wss4j.common.util.UsernameTokenDerivedKeyCache;
 import org.apache.wss4j.common.util.UsernameTokenUtil;
 import org.apache.wss4j.common.util.WSCurrentTimeSource;
 import org.apache.wss4j.common.util.WSTimeSource;
@@ -579,6 +580,21 @@ public class UsernameToken {
      * @throws WSSecurityException
      */
     public byte[] getDerivedKey(BSPEnforcer bspEnforcer, String rawPassword) throws WSSecurityException {
+        return getDerivedKey(bspEnforcer, rawPassword, null);
+    }
+
+    /**
+     * This method gets a derived key as defined in WSS Username Token Profile, taking it from (or
+     * adding it to) the given cache.
+     *
+     * @param rawPassword The raw password to use to derive the key
+     * @param cache The cache of derived keys, or null to derive the key from scratch
+     * @return Returns the derived key as a byte array
+     * @throws WSSecurityException
+     */
+    public byte[] getDerivedKey(
+        BSPEnforcer bspEnforcer, String rawPassword, UsernameTokenDerivedKeyCache cache
+    ) throws WSSecurityException {
         if (rawPassword == null) {
             LOG.warn("The raw password was null");
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
@@ -608,9 +624,9 @@ public class UsernameToken {
         byte[] salt = getSalt();
         if (passwordsAreEncoded) {
             return UsernameTokenUtil.generateDerivedKey(org.apache.xml.security.utils.XMLUtils.decode(rawPassword),
-                                                        salt, iteration);
+                                                        salt, iteration, cache);
         } else {
-            return UsernameTokenUtil.generateDerivedKey(rawPassword, salt, iteration);
+            return UsernameTokenUtil.generateDerivedKey(rawPassword, salt, iteration, cache);
         }
     }
 
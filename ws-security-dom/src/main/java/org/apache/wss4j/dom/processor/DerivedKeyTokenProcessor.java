@@ -25,11 +25,15 @@ import java.util.List;
 import org.w3c.dom.Element;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.common.cache.SecurityContextStore;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.token.SecurityTokenReference;
+import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.DerivedKeyToken;
+import org.apache.wss4j.dom.message.token.SecurityContextToken;
 import org.apache.wss4j.dom.str.DerivedKeyTokenSTRParser;
 import org.apache.wss4j.dom.str.STRParser;
 import org.apache.wss4j.dom.str.STRParserParameters;
@@ -77,7 +81,14 @@ public class DerivedKeyTokenProcessor implements Processor {
                                           new Object[] {"Missing wsc:Nonce value"});
         }
         int length = dkt.getLength();
-        byte[] keyBytes = dkt.deriveKey(length, secret);
+        byte[] keyBytes;
+        SecurityContextStore securityContextStore = data.getSecurityContextStore();
+        if (securityContextStore != null) {
+            String contextIdentifier = getSecurityContextIdentifier(secRefElement, data);
+            keyBytes = dkt.deriveKey(length, secret, securityContextStore, contextIdentifier);
+        } else {
+            keyBytes = dkt.deriveKey(length, secret);
+        }
         WSSecurityEngineResult result =
             new WSSecurityEngineResult(WSConstants.DKT, null, keyBytes, null);
         data.getWsDocInfo().addTokenElement(elem);
@@ -92,5 +103,27 @@ public class DerivedKeyTokenProcessor implements Processor {
         return Collections.singletonList(result);
     }
 
+    /**
+     * Get the identifier of the security context referenced by the DerivedKeyToken, either via a
+     * SecurityContextToken in the security header, or via an external reference to the identifier
+     */
+    private String getSecurityContextIdentifier(Element secRefElement, RequestData data) throws WSSecurityException {
+        SecurityTokenReference secRef = new SecurityTokenReference(secRefElement, data.getBSPEnforcer());
+        if (secRef.getReference() == null) {
+            return null;
+        }
+        String uri = XMLUtils.getIDFromReference(secRef.getReference().getURI());
+        WSSecurityEngineResult result = data.getWsDocInfo().getResult(uri);
+        if (result == null) {
+            return uri;
+        }
+        Integer action = (Integer)result.get(WSSecurityEngineResult.TAG_ACTION);
+        if (action != null && WSConstants.SCT == action.intValue()) {
+            SecurityContextToken sct =
+                (SecurityContextToken)result.get(WSSecurityEngineResult.TAG_SECURITY_CONTEXT_TOKEN);
+            return sct != null ? sct.getIdentifier() : null;
+        }
+        return null;
+    }
 
 }
@@ -166,7 +166,8 @@ public class EncryptedDataProcessor implements Processor {
 
         WSDataRef dataRef = EncryptionUtils.decryptEncryptedData(
                 elem.getOwnerDocument(), encryptedDataId, elem, key, symEncAlgo,
-                data.getAttachmentCallbackHandler(), data.getEncryptionSerializer());
+                data.getAttachmentCallbackHandler(), data.getEncryptionSerializer(),
+                data.isAuthenticateAttachmentBeforeRelease());
 
         WSSecurityEngineResult result =
                 new WSSecurityEngineResult(WSConstants.ENCR, Collections.singletonList(dataRef));
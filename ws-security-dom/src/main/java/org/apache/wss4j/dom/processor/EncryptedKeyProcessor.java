@@ -19,9 +19,6 @@
 
 package org.apache.wss4j.dom.processor;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.security.*;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
@@ -613,15 +610,9 @@ public class EncryptedKeyProcessor implements Processor {
                         throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidCertData",
                                                       new Object[] {"0"});
                     }
-                    try (InputStream in = new ByteArrayInputStream(token)) {
-                        X509Certificate cert = data.getDecCrypto().loadCertificate(in);
-                        if (cert != null) {
-                            return new X509Certificate[]{cert};
-                        }
-                    } catch (IOException e) {
-                        throw new WSSecurityException(
-                            WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "parseError"
-                        );
+                    X509Certificate cert = data.getDecCrypto().loadCertificate(token);
+                    if (cert != null) {
+                        return new X509Certificate[]{cert};
                     }
                 }
             }
@@ -736,7 +727,7 @@ public class EncryptedKeyProcessor implements Processor {
 
         return EncryptionUtils.decryptEncryptedData(
             doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
-            data.getEncryptionSerializer()
+            data.getEncryptionSerializer(), data.isAuthenticateAttachmentBeforeRelease()
         );
     }
 
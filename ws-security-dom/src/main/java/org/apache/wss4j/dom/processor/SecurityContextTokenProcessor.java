@@ -21,6 +21,7 @@ package org.apache.wss4j.dom.processor;
 
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.common.cache.SecurityContextStore;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.XMLUtils;
@@ -70,14 +71,23 @@ public class SecurityContextTokenProcessor implements Processor {
             String id = sct.getID();
             id = XMLUtils.getIDFromReference(id);
 
+            SecurityContextStore securityContextStore = data.getSecurityContextStore();
             byte[] secret = null;
-            try {
-                secret = getSecret(data.getCallbackHandler(), sct.getIdentifier());
-            } catch (WSSecurityException ex) {
-                secret = getSecret(data.getCallbackHandler(), id);
+            if (securityContextStore != null) {
+                secret = securityContextStore.getSecret(sct.getIdentifier());
             }
-            if (secret == null || secret.length == 0) {
-                secret = getSecret(data.getCallbackHandler(), id);
+            if (secret == null) {
+                try {
+                    secret = getSecret(data.getCallbackHandler(), sct.getIdentifier());
+                } catch (WSSecurityException ex) {
+                    secret = getSecret(data.getCallbackHandler(), id);
+                }
+                if (secret == null || secret.length == 0) {
+                    secret = getSecret(data.getCallbackHandler(), id);
+                }
+                if (securityContextStore != null && secret != null && secret.length > 0) {
+                    securityContextStore.add(sct.getIdentifier(), secret);
+                }
             }
             result.put(WSSecurityEngineResult.TAG_ID, sct.getID());
             result.put(WSSecurityEngineResult.TAG_SECRET, secret);
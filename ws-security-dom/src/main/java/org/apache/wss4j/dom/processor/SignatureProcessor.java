@@ -29,7 +29,6 @@ import java.security.spec.AlgorithmParameterSpec;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import javax.xml.crypto.Data;
 import javax.xml.crypto.NodeSetData;
@@ -360,6 +359,8 @@ public class SignatureProcessor implements Processor {
 
         context.setProperty(AttachmentContentSignatureTransform.ATTACHMENT_CALLBACKHANDLER,
                             data.getAttachmentCallbackHandler());
+        context.setProperty(AttachmentContentSignatureTransform.ATTACHMENT_BUFFER_THRESHOLD,
+                            data.getAttachmentBufferThreshold());
 
         try {
             XMLSignature xmlSignature = signatureFactory.unmarshalXMLSignature(context);
@@ -463,16 +464,12 @@ public class SignatureProcessor implements Processor {
     }
 
     private void handleXopInclude(Element element, WSDocInfo wsDocInfo) {
-        Map<Integer, List<WSSecurityEngineResult>> actionResults = wsDocInfo.getActionResults();
-        if (actionResults != null && actionResults.containsKey(WSConstants.BST)) {
-            for (WSSecurityEngineResult result : actionResults.get(WSConstants.BST)) {
-                Element token = (Element)result.get(WSSecurityEngineResult.TAG_TOKEN_ELEMENT);
-                if (element.equals(token)) {
-                    BinarySecurity binarySecurity =
-                        (BinarySecurity)result.get(WSSecurityEngineResult.TAG_BINARY_SECURITY_TOKEN);
-                    binarySecurity.encodeRawToken();
-                    return;
-                }
+        for (WSSecurityEngineResult result : wsDocInfo.getResultsByTag(WSConstants.BST)) {
+            if (element.equals(result.getTokenElement())) {
+                BinarySecurity binarySecurity =
+                    (BinarySecurity)result.get(WSSecurityEngineResult.TAG_BINARY_SECURITY_TOKEN);
+                binarySecurity.encodeRawToken();
+                return;
             }
         }
     }
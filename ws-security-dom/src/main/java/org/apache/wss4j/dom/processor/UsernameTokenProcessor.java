@@ -71,7 +71,8 @@ public class UsernameTokenProcessor implements Processor {
                 String rawPassword =
                     UsernameTokenUtil.getRawPassword(data.getCallbackHandler(), token.getName(),
                                                      token.getPassword(), token.getPasswordType());
-                secretKey = token.getDerivedKey(data.getBSPEnforcer(), rawPassword);
+                secretKey =
+                    token.getDerivedKey(data.getBSPEnforcer(), rawPassword, data.getUsernameTokenDerivedKeyCache());
             }
         }
         WSSecurityEngineResult result = new WSSecurityEngineResult(action, token);
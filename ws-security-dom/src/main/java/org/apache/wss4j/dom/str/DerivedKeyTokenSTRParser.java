@@ -133,9 +133,15 @@ public class DerivedKeyTokenSTRParser implements STRParser {
         RequestData data = parameters.getData();
 
         if (secRef.containsReference()) {
-            // Now use the callback and get it
-            byte[] secretKey =
-                STRParserUtil.getSecretKeyFromToken(uri, null, WSPasswordCallback.SECURITY_CONTEXT_TOKEN, data);
+            byte[] secretKey = null;
+            if (data.getSecurityContextStore() != null) {
+                secretKey = data.getSecurityContextStore().getSecret(uri);
+            }
+            if (secretKey == null) {
+                // Now use the callback and get it
+                secretKey =
+                    STRParserUtil.getSecretKeyFromToken(uri, null, WSPasswordCallback.SECURITY_CONTEXT_TOKEN, data);
+            }
             if (secretKey == null || secretKey.length == 0) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.FAILED_CHECK, "unsupportedKeyId",
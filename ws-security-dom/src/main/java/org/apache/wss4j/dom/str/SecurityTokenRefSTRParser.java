@@ -152,7 +152,9 @@ public class SecurityTokenRefSTRParser implements STRParser {
             String rawPassword =
                 UsernameTokenUtil.getRawPassword(data.getCallbackHandler(), usernameToken.getName(),
                                                  usernameToken.getPassword(), usernameToken.getPasswordType());
-            byte[] secretKey = usernameToken.getDerivedKey(data.getBSPEnforcer(), rawPassword);
+            byte[] secretKey = usernameToken.getDerivedKey(
+                data.getBSPEnforcer(), rawPassword, data.getUsernameTokenDerivedKeyCache()
+            );
             parserResult.setSecretKey(secretKey);
         }
 
@@ -72,8 +72,8 @@ public class AttachmentCompleteSignatureTransform extends AttachmentContentSigna
             if (outputStream == null) {
                 outputStream = new ByteArrayOutputStream(); //NOPMD
             }
-            AttachmentUtils.canonizeMimeHeaders(os, attachment.getHeaders());
-            processAttachment(context, os, attachmentUri, attachment);
+            AttachmentUtils.canonizeMimeHeaders(outputStream, attachment.getHeaders());
+            processAttachment(context, outputStream, attachmentUri, attachment);
 
             if (os == null) {
                 String mimeType = attachment.getMimeType();
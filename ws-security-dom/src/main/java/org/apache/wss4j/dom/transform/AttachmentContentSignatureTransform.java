@@ -25,6 +25,7 @@ import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
 import org.apache.wss4j.common.util.CRLFOutputStream;
+import org.apache.wss4j.common.util.ReplayableInputStream;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.xml.security.c14n.CanonicalizationException;
 import org.apache.xml.security.c14n.Canonicalizer;
@@ -44,7 +45,6 @@ import javax.xml.crypto.dsig.TransformException;
 import javax.xml.crypto.dsig.TransformService;
 import javax.xml.crypto.dsig.spec.TransformParameterSpec;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FilterInputStream;
@@ -59,6 +59,13 @@ public class AttachmentContentSignatureTransform extends TransformService {
 
     public static final String TRANSFORM_URI = WSConstants.SWA_ATTACHMENT_CONTENT_SIG_TRANS;
     public static final String ATTACHMENT_CALLBACKHANDLER = "AttachmentContentTransform.attachmentCallbackHandler";
+    public static final String ATTACHMENT_BUFFER_THRESHOLD = "AttachmentContentTransform.attachmentBufferThreshold";
+
+    /**
+     * The default size (1 MB) above which an attachment that is read for signing or verification is
+     * buffered in a temporary file
+     */
+    public static final long DEFAULT_ATTACHMENT_BUFFER_THRESHOLD = 1024L * 1024L;
 
     private AttachmentTransformParameterSpec attachmentTransformParameterSpec;
 
@@ -160,22 +167,45 @@ public class AttachmentContentSignatureTransform extends TransformService {
         }
     }
 
+    /**
+     * Get the size above which an attachment that is read for signing or verification is buffered in a
+     * temporary file rather than in memory, so that it can be handed on via the AttachmentResultCallback.
+     * The default is 1 MB. A negative value means that the attachment is always buffered in memory.
+     */
+    protected long getAttachmentBufferThreshold(XMLCryptoContext context) {
+        if (attachmentTransformParameterSpec != null) {
+            return attachmentTransformParameterSpec.getAttachmentBufferThreshold();
+        }
+        Object threshold = context.getProperty(ATTACHMENT_BUFFER_THRESHOLD);
+        if (threshold instanceof Number) {
+            return ((Number) threshold).longValue();
+        }
+        return DEFAULT_ATTACHMENT_BUFFER_THRESHOLD;
+    }
+
     @SuppressWarnings("resource")
     protected Data processAttachment(XMLCryptoContext context, OutputStream os, String attachmentUri,
                                      Attachment attachment) throws TransformException {
+        ReplayableInputStream replayableInputStream = null;
         try {
-            //try to reuse the inputStream in the hope that the provided inputStream is backed by a disk storage
-            InputStream inputStream = attachment.getSourceStream(); //NOPMD
-            if (!inputStream.markSupported()) {
-                inputStream = new BufferedInputStream(inputStream);
+            final InputStream sourceStream = attachment.getSourceStream(); //NOPMD
+            InputStream inputStream;
+            if (sourceStream.markSupported()) {
+                //try to reuse the inputStream in the hope that the provided inputStream is backed by a disk storage
+                sourceStream.mark(Integer.MAX_VALUE); //we can process at maximum 2G with the standard jdk streams
+                inputStream = new FilterInputStream(sourceStream) {
+                    @Override
+                    public void close() throws IOException {
+                        //I hate stuff which are closing _my_ streams!
+                    }
+                };
+            } else {
+                //the attachment is only read once: it is transformed (and digested) while a copy is recorded,
+                //which is handed on in the result callback
+                replayableInputStream =
+                    new ReplayableInputStream(sourceStream, getAttachmentBufferThreshold(context));
+                inputStream = replayableInputStream;
             }
-            inputStream.mark(Integer.MAX_VALUE); //we can process at maximum 2G with the standard jdk streams
-            inputStream = new FilterInputStream(inputStream) {
-                @Override
-                public void close() throws IOException {
-                    //I hate stuff which are closing _my_ streams!
-                }
-            };
 
             OutputStream outputStream = os;
             if (outputStream == null) {
@@ -219,8 +249,13 @@ public class AttachmentContentSignatureTransform extends TransformService {
                 }
             }
 
-            //reset the inputStream to be able to reuse it
-            inputStream.reset();
+            if (replayableInputStream != null) {
+                inputStream = replayableInputStream.getReplayStream();
+                replayableInputStream = null;
+            } else {
+                //reset the inputStream to be able to reuse it
+                inputStream.reset();
+            }
 
             //create a new attachment and do the result callback
             final Attachment resultAttachment = new Attachment();
@@ -241,6 +276,10 @@ public class AttachmentContentSignatureTransform extends TransformService {
         } catch (IOException | InvalidCanonicalizerException | CanonicalizationException
             | XMLParserException e) {
             throw new TransformException(e);
+        } finally {
+            if (replayableInputStream != null) {
+                replayableInputStream.discard();
+            }
         }
     }
 
@@ -27,6 +27,8 @@ public class AttachmentTransformParameterSpec implements TransformParameterSpec
 
     private CallbackHandler attachmentCallbackHandler;
     private Attachment attachment;
+    private long attachmentBufferThreshold =
+        AttachmentContentSignatureTransform.DEFAULT_ATTACHMENT_BUFFER_THRESHOLD;
 
     public AttachmentTransformParameterSpec(
             CallbackHandler attachmentCallbackHandler,
@@ -35,6 +37,14 @@ public class AttachmentTransformParameterSpec implements TransformParameterSpec
         this.attachment = attachment;
     }
 
+    public AttachmentTransformParameterSpec(
+            CallbackHandler attachmentCallbackHandler,
+            Attachment attachment,
+            long attachmentBufferThreshold) {
+        this(attachmentCallbackHandler, attachment);
+        this.attachmentBufferThreshold = attachmentBufferThreshold;
+    }
+
     public CallbackHandler getAttachmentCallbackHandler() {
         return attachmentCallbackHandler;
     }
@@ -42,4 +52,8 @@ public class AttachmentTransformParameterSpec implements TransformParameterSpec
     public Attachment getAttachment() {
         return attachment;
     }
+
+    public long getAttachmentBufferThreshold() {
+        return attachmentBufferThreshold;
+    }
 }
@@ -218,10 +218,9 @@ public class STRTransform extends TransformService {
                 return null;
             }
 
-            try (ByteArrayOutputStream writer = new ByteArrayOutputStream()) {
-                canon.canonicalizeSubtree(dereferencedToken, "#default", true, writer);
-                return new OctetStreamData(new ByteArrayInputStream(writer.toByteArray()));
-            }
+            OctetStreamBuffer writer = new OctetStreamBuffer();
+            canon.canonicalizeSubtree(dereferencedToken, "#default", true, writer);
+            return new OctetStreamData(writer.toInputStream());
         } catch (Exception ex) {
             throw new TransformException(ex);
         }
@@ -250,4 +249,14 @@ public class STRTransform extends TransformService {
         }
     }
 
+    /**
+     * A ByteArrayOutputStream that can be read back without copying its buffer
+     */
+    private static final class OctetStreamBuffer extends ByteArrayOutputStream {
+
+        ByteArrayInputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
 }
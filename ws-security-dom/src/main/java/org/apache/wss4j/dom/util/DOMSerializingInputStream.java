@@ -0,0 +1,394 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * An InputStream that serializes a list of DOM Nodes as it is read, instead of serializing them into
+ * a byte array up front. The output is equivalent to the physical canonical form that is produced by
+ * the TransformSerializer used for encryption: the Nodes are written as they are, with the namespace
+ * declarations that are physically present on the Elements (so no declarations are added for prefixes
+ * that are declared on an ancestor), with the attributes in canonical order, and with the canonical
+ * escaping of text and attribute values.
+ *
+ * If an attachment CallbackHandler is given, then xop:Include Elements are replaced by the BASE-64
+ * encoded bytes of the attachments they reference, in the same form as WSSecurityUtil.inlineAttachments.
+ * The attachments are requested when the stream is created, and are read as the stream is read.
+ *
+ * The Nodes must not be modified while the stream is read.
+ */
+public class DOMSerializingInputStream extends InputStream {
+
+    private static final int TEXT_CHUNK_SIZE = 4096;
+    private static final int ATTACHMENT_CHUNK_SIZE = 3072;
+
+    private static final Comparator<Node> NAMESPACE_ORDER =
+        Comparator.comparing(attribute -> "xmlns".equals(attribute.getNodeName()) ? "" : getLocalName(attribute));
+    private static final Comparator<Node> ATTRIBUTE_ORDER =
+        Comparator.comparing((Node attribute) -> attribute.getNamespaceURI() == null ? "" : attribute.getNamespaceURI())
+            .thenComparing(DOMSerializingInputStream::getLocalName);
+
+    private final Iterator<Node> roots;
+    private final Map<Node, InputStream> attachmentStreams = new IdentityHashMap<>();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    private byte[] buffer = new byte[0];
+    private int position;
+    private boolean finished;
+
+    private Node root;
+    private Node current;
+    private boolean visitChildren;
+    private String text;
+    private int textOffset;
+    private InputStream attachmentStream;
+    private OutputStream attachmentEncodingStream;
+
+    /**
+     * @param nodes the Nodes to serialize
+     * @param attachmentCallbackHandler the CallbackHandler to retrieve the attachments referenced by xop:Include
+     * Elements with, or null if xop:Include Elements are serialized as they are
+     * @param removeAttachments whether to remove the attachments referenced by xop:Include Elements from the message
+     * @throws WSSecurityException if an attachment can't be retrieved
+     */
+    public DOMSerializingInputStream(
+        List<Node> nodes, CallbackHandler attachmentCallbackHandler, boolean removeAttachments
+    ) throws WSSecurityException {
+        this.roots = nodes.iterator();
+        if (attachmentCallbackHandler != null) {
+            try {
+                for (Node node : nodes) {
+                    if (isXopInclude(node)) {
+                        addAttachmentStream((Element)node, attachmentCallbackHandler, removeAttachments);
+                    } else if (node.getFirstChild() != null) {
+                        for (Element includeElement
+                            : XMLUtils.findElements(node.getFirstChild(), "Include", WSConstants.XOP_NS)) {
+                            addAttachmentStream(includeElement, attachmentCallbackHandler, removeAttachments);
+                        }
+                    }
+                }
+            } catch (WSSecurityException e) {
+                closeAttachmentStreams();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(len, buffer.length - position);
+        System.arraycopy(buffer, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        buffer = new byte[0];
+        position = 0;
+        if (attachmentStream != null) {
+            attachmentStream.close();
+            attachmentStream = null;
+        }
+        closeAttachmentStreams();
+    }
+
+    private boolean fill() throws IOException {
+        while (position == buffer.length) {
+            if (finished) {
+                return false;
+            }
+            step();
+            if (pending.size() > 0) {
+                buffer = pending.toByteArray();
+                position = 0;
+                pending.reset();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the next piece of the serialization to the pending buffer
+     */
+    private void step() throws IOException {
+        if (attachmentStream != null) {
+            writeAttachmentChunk();
+            return;
+        }
+        if (text != null) {
+            writeTextChunk();
+            return;
+        }
+        if (current == null) {
+            if (!roots.hasNext()) {
+                finished = true;
+                closeAttachmentStreams();
+                return;
+            }
+            root = roots.next();
+            current = root;
+            visitChildren = start(current);
+            return;
+        }
+
+        if (visitChildren) {
+            visitChildren = false;
+            Node child = current.getFirstChild();
+            if (child != null) {
+                current = child;
+                visitChildren = start(current);
+                return;
+            }
+            end(current);
+        }
+
+        Node node = current;
+        while (node != root) {
+            Node sibling = node.getNextSibling();
+            if (sibling != null) {
+                current = sibling;
+                visitChildren = start(current);
+                return;
+            }
+            node = node.getParentNode();
+            end(node);
+        }
+        current = null;
+    }
+
+    /**
+     * Write the start of the given Node
+     * @return whether the children of the Node are to be serialized
+     */
+    private boolean start(Node node) throws IOException {
+        switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+            InputStream inputStream = attachmentStreams.remove(node);
+            if (inputStream != null) {
+                attachmentStream = inputStream;
+                attachmentEncodingStream = XopIncludeCanonicalizer.newBase64EncodingStream(pending);
+                return false;
+            }
+            StringBuilder startTag = new StringBuilder();
+            startTag.append('<').append(node.getNodeName());
+            // Namespace declarations are written before the other attributes
+            NamedNodeMap attributes = node.getAttributes();
+            writeAttributes(attributes, true, startTag);
+            writeAttributes(attributes, false, startTag);
+            startTag.append('>');
+            write(startTag);
+            return true;
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+            text = node.getNodeValue();
+            textOffset = 0;
+            return false;
+        case Node.COMMENT_NODE:
+            write(new StringBuilder("<!--").append(node.getNodeValue()).append("-->"));
+            return false;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            StringBuilder pi = new StringBuilder("<?").append(node.getNodeName());
+            String data = node.getNodeValue();
+            if (data != null && !data.isEmpty()) {
+                pi.append(' ').append(data);
+            }
+            write(pi.append("?>"));
+            return false;
+        case Node.ENTITY_REFERENCE_NODE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private void end(Node node) throws IOException {
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+            write(new StringBuilder("</").append(node.getNodeName()).append('>'));
+        }
+    }
+
+    private void writeTextChunk() throws IOException {
+        int end = Math.min(text.length(), textOffset + TEXT_CHUNK_SIZE);
+        if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        StringBuilder escapedText = new StringBuilder(end - textOffset + 16);
+        for (int i = textOffset; i < end; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '&':
+                escapedText.append("&amp;");
+                break;
+            case '<':
+                escapedText.append("&lt;");
+                break;
+            case '>':
+                escapedText.append("&gt;");
+                break;
+            case '\r':
+                escapedText.append("&#xD;");
+                break;
+            default:
+                escapedText.append(c);
+            }
+        }
+        write(escapedText);
+        textOffset = end;
+        if (textOffset == text.length()) {
+            text = null;
+        }
+    }
+
+    private void writeAttachmentChunk() throws IOException {
+        byte[] chunk = new byte[ATTACHMENT_CHUNK_SIZE];
+        int read = attachmentStream.read(chunk);
+        if (read == -1) {
+            attachmentEncodingStream.close();
+            attachmentStream.close();
+            attachmentStream = null;
+            attachmentEncodingStream = null;
+        } else {
+            attachmentEncodingStream.write(chunk, 0, read);
+        }
+    }
+
+    private void write(StringBuilder serialization) throws IOException {
+        pending.write(serialization.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write the namespace declarations or the other attributes in canonical order: namespace declarations
+     * by prefix (the default namespace first), and attributes by namespace URI (none first) and local name
+     */
+    private static void writeAttributes(NamedNodeMap attributes, boolean namespaceDeclarations,
+                                        StringBuilder builder) {
+        List<Node> sortedAttributes = new ArrayList<>(attributes.getLength());
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            if (namespaceDeclarations == WSConstants.XMLNS_NS.equals(attribute.getNamespaceURI())) {
+                sortedAttributes.add(attribute);
+            }
+        }
+        sortedAttributes.sort(namespaceDeclarations ? NAMESPACE_ORDER : ATTRIBUTE_ORDER);
+        for (Node attribute : sortedAttributes) {
+            builder.append(' ').append(attribute.getNodeName()).append("=\"");
+            escapeAttributeValue(attribute.getNodeValue(), builder);
+            builder.append('"');
+        }
+    }
+
+    private static String getLocalName(Node attribute) {
+        String localName = attribute.getLocalName();
+        return localName != null ? localName : attribute.getNodeName();
+    }
+
+    private static void escapeAttributeValue(String value, StringBuilder builder) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '&':
+                builder.append("&amp;");
+                break;
+            case '<':
+                builder.append("&lt;");
+                break;
+            case '"':
+                builder.append("&quot;");
+                break;
+            case '\t':
+                builder.append("&#x9;");
+                break;
+            case '\n':
+                builder.append("&#xA;");
+                break;
+            case '\r':
+                builder.append("&#xD;");
+                break;
+            default:
+                builder.append(c);
+            }
+        }
+    }
+
+    private static boolean isXopInclude(Node node) {
+        return node.getNodeType() == Node.ELEMENT_NODE
+            && "Include".equals(node.getLocalName()) && WSConstants.XOP_NS.equals(node.getNamespaceURI());
+    }
+
+    private void addAttachmentStream(
+        Element includeElement, CallbackHandler attachmentCallbackHandler, boolean removeAttachments
+    ) throws WSSecurityException {
+        String xopURI = includeElement.getAttributeNS(null, "href");
+        if (xopURI != null) {
+            attachmentStreams.put(
+                includeElement,
+                AttachmentUtils.getAttachmentStream(xopURI, attachmentCallbackHandler, removeAttachments)
+            );
+        }
+    }
+
+    private void closeAttachmentStreams() {
+        for (InputStream inputStream : attachmentStreams.values()) {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        attachmentStreams.clear();
+    }
+}
@@ -138,6 +138,34 @@ public final class EncryptionUtils {
         CallbackHandler attachmentCallbackHandler,
         Serializer encryptionSerializer
     ) throws WSSecurityException {
+        return decryptEncryptedData(doc, dataRefURI, encData, symmetricKey,
+                                    symEncAlgo, attachmentCallbackHandler, encryptionSerializer, false);
+    }
+
+    /**
+     * Decrypt the EncryptedData argument using a SecretKey.
+     * @param doc The (document) owner of EncryptedData
+     * @param dataRefURI The URI of EncryptedData
+     * @param encData The EncryptedData element
+     * @param symmetricKey The SecretKey with which to decrypt EncryptedData
+     * @param symEncAlgo The symmetric encryption algorithm to use
+     * @param attachmentCallbackHandler The CallbackHandler from which to get attachments
+     * @param encryptionSerializer The Serializer to use to parse the decrypted content
+     * @param authenticateAttachmentBeforeRelease Whether to buffer the plaintext of AES-GCM encrypted attachments
+     *        in a temporary file until the authentication tag has been verified
+     * @throws WSSecurityException
+     */
+    public static WSDataRef
+    decryptEncryptedData(
+        Document doc,
+        String dataRefURI,
+        Element encData,
+        SecretKey symmetricKey,
+        String symEncAlgo,
+        CallbackHandler attachmentCallbackHandler,
+        Serializer encryptionSerializer,
+        boolean authenticateAttachmentBeforeRelease
+    ) throws WSSecurityException {
 
         // See if it is an attachment, and handle that differently
         String typeStr = encData.getAttributeNS(null, "Type");
@@ -156,7 +184,8 @@ public final class EncryptionUtils {
             }
             String uri = cipherReference.getAttributeNS(null, "URI");
 
-            return decryptAttachment(dataRefURI, uri, encData, symmetricKey, symEncAlgo, attachmentCallbackHandler);
+            return decryptAttachment(dataRefURI, uri, encData, symmetricKey, symEncAlgo, attachmentCallbackHandler,
+                                     authenticateAttachmentBeforeRelease);
         }
 
         WSDataRef dataRef = new WSDataRef();
@@ -282,7 +311,8 @@ public final class EncryptionUtils {
         Element encData,
         SecretKey symmetricKey,
         String symEncAlgo,
-        CallbackHandler attachmentCallbackHandler
+        CallbackHandler attachmentCallbackHandler,
+        boolean authenticateAttachmentBeforeRelease
     ) throws WSSecurityException {
         WSDataRef dataRef = new WSDataRef();
         dataRef.setWsuId(dataRefURI);
@@ -321,7 +351,7 @@ public final class EncryptionUtils {
 
             InputStream attachmentInputStream = //NOPMD
                     AttachmentUtils.setupAttachmentDecryptionStream(
-                            encAlgo, cipher, symmetricKey, attachment.getSourceStream());
+                            encAlgo, cipher, symmetricKey, attachment.getSourceStream(), authenticateAttachmentBeforeRelease);
 
             Attachment resultAttachment = new Attachment();
             resultAttachment.setId(attachment.getId());
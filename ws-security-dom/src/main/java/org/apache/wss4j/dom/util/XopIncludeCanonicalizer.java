@@ -0,0 +1,310 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.apache.xml.security.c14n.CanonicalizationException;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.c14n.InvalidCanonicalizerException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Canonicalizes an Element that contains xop:Include Elements as if the (BASE-64 encoded) bytes of the
+ * referenced attachments were inlined, without inserting them into the DOM tree. Each xop:Include Element
+ * is temporarily replaced by a short placeholder Text Node, which is replaced by the BASE-64 encoding of the
+ * attachment as the canonical form is written out. The output is the same as the exclusive canonical form
+ * of the Element after a call to WSSecurityUtil.inlineAttachments.
+ */
+public final class XopIncludeCanonicalizer {
+
+    private XopIncludeCanonicalizer() {
+        // complete
+    }
+
+    /**
+     * Digest the exclusive canonical form (omitting comments) of the given Element, with the xop:Include
+     * Elements expanded.
+     *
+     * @param element the Element to digest
+     * @param inclusivePrefixes the InclusiveNamespaces PrefixList of the transform, or null
+     * @param digestAlgorithm the digest algorithm URI
+     * @param attachmentCallbackHandler the CallbackHandler to retrieve the attachments with
+     * @return the digest value
+     * @throws WSSecurityException
+     */
+    public static byte[] digest(
+        Element element,
+        List<String> inclusivePrefixes,
+        String digestAlgorithm,
+        CallbackHandler attachmentCallbackHandler
+    ) throws WSSecurityException {
+        String jceAlgorithm = JCEMapper.translateURItoJCEID(digestAlgorithm);
+        if (jceAlgorithm == null) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, "unknownAlgorithm",
+                new Object[] {digestAlgorithm}
+            );
+        }
+
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(jceAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, e);
+        }
+
+        try (OutputStream outputStream = new DigestOutputStream(OutputStream.nullOutputStream(), messageDigest)) {
+            canonicalizeSubtree(element, inclusivePrefixes, attachmentCallbackHandler, false, outputStream);
+        } catch (IOException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_SIGNATURE, e);
+        }
+        return messageDigest.digest();
+    }
+
+    /**
+     * Write the exclusive canonical form (omitting comments) of the given Element to the OutputStream,
+     * with the xop:Include Elements expanded. The DOM tree is left unchanged.
+     *
+     * @param element the Element to canonicalize
+     * @param inclusivePrefixes the InclusiveNamespaces PrefixList, or null
+     * @param attachmentCallbackHandler the CallbackHandler to retrieve the attachments with
+     * @param removeAttachments whether to remove the attachments from the message
+     * @param outputStream the OutputStream to write the canonical form to
+     * @throws WSSecurityException
+     */
+    public static void canonicalizeSubtree(
+        Element element,
+        List<String> inclusivePrefixes,
+        CallbackHandler attachmentCallbackHandler,
+        boolean removeAttachments,
+        OutputStream outputStream
+    ) throws WSSecurityException {
+        String marker = "{" + UUID.randomUUID().toString() + ":";
+        List<Element> includeElements =
+            XMLUtils.findElements(element.getFirstChild(), "Include", WSConstants.XOP_NS);
+        List<String> xopURIs = new ArrayList<>();
+        List<Node> placeholders = new ArrayList<>();
+        List<Element> replacedElements = new ArrayList<>();
+
+        try {
+            for (Element includeElement : includeElements) {
+                String xopURI = includeElement.getAttributeNS(null, "href");
+                if (xopURI != null) {
+                    Node placeholder =
+                        includeElement.getOwnerDocument().createTextNode(marker + xopURIs.size() + "}");
+                    includeElement.getParentNode().replaceChild(placeholder, includeElement);
+                    xopURIs.add(xopURI);
+                    placeholders.add(placeholder);
+                    replacedElements.add(includeElement);
+                }
+            }
+
+            XopIncludeOutputStream xopIncludeOutputStream =
+                new XopIncludeOutputStream(outputStream, marker.getBytes(StandardCharsets.US_ASCII), xopURIs,
+                                           attachmentCallbackHandler, removeAttachments);
+            try {
+                Canonicalizer canonicalizer =
+                    Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+                String prefixList = null;
+                if (inclusivePrefixes != null && !inclusivePrefixes.isEmpty()) {
+                    prefixList = String.join(" ", inclusivePrefixes);
+                }
+                canonicalizer.canonicalizeSubtree(element, prefixList, xopIncludeOutputStream);
+                xopIncludeOutputStream.finish();
+            } catch (InvalidCanonicalizerException | CanonicalizationException | IOException e) {
+                if (xopIncludeOutputStream.failure != null) {
+                    throw xopIncludeOutputStream.failure;
+                }
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_SIGNATURE, e);
+            }
+        } finally {
+            for (int i = 0; i < placeholders.size(); i++) {
+                Node placeholder = placeholders.get(i);
+                placeholder.getParentNode().replaceChild(replacedElements.get(i), placeholder);
+            }
+        }
+    }
+
+    /**
+     * Get an OutputStream that writes the BASE-64 encoding of the bytes written to it as XML text to the
+     * given OutputStream, in the same form as WSSecurityUtil.inlineAttachments followed by canonicalization.
+     * Closing the returned stream writes the final BASE-64 characters, but does not close the given stream.
+     */
+    static OutputStream newBase64EncodingStream(OutputStream outputStream) {
+        Base64.Encoder encoder = org.apache.xml.security.utils.XMLUtils.isIgnoreLineBreaks()
+            ? Base64.getEncoder() : Base64.getMimeEncoder();
+        return encoder.wrap(new CarriageReturnEscapingOutputStream(outputStream));
+    }
+
+    /**
+     * Replaces the placeholders in the canonical form with the BASE-64 encoding of the attachments.
+     * The marker starts with the only '{' character that it contains, so a partial match can be
+     * restarted at the current byte.
+     */
+    private static final class XopIncludeOutputStream extends FilterOutputStream {
+
+        private final byte[] marker;
+        private final List<String> xopURIs;
+        private final CallbackHandler attachmentCallbackHandler;
+        private final boolean removeAttachments;
+        private int matched;
+        private boolean readingIndex;
+        private int index;
+        private WSSecurityException failure;
+
+        XopIncludeOutputStream(OutputStream out, byte[] marker, List<String> xopURIs,
+                               CallbackHandler attachmentCallbackHandler, boolean removeAttachments) {
+            super(out);
+            this.marker = marker;
+            this.xopURIs = xopURIs;
+            this.attachmentCallbackHandler = attachmentCallbackHandler;
+            this.removeAttachments = removeAttachments;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (readingIndex) {
+                if (b == '}') {
+                    readingIndex = false;
+                    writeAttachment(xopURIs.get(index));
+                    index = 0;
+                } else {
+                    index = index * 10 + (b - '0');
+                }
+                return;
+            }
+            if (b == marker[matched]) {
+                matched++;
+                if (matched == marker.length) {
+                    matched = 0;
+                    readingIndex = true;
+                }
+                return;
+            }
+            if (matched > 0) {
+                out.write(marker, 0, matched);
+                matched = 0;
+                if (b == marker[0]) {
+                    matched = 1;
+                    return;
+                }
+            }
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int end = off + len;
+            int start = off;
+            for (int i = off; i < end; i++) {
+                if (b[i] == marker[0] || matched > 0 || readingIndex) {
+                    if (i > start) {
+                        out.write(b, start, i - start);
+                    }
+                    write(b[i]);
+                    start = i + 1;
+                }
+            }
+            if (end > start) {
+                out.write(b, start, end - start);
+            }
+        }
+
+        void finish() throws IOException {
+            if (matched > 0) {
+                out.write(marker, 0, matched);
+                matched = 0;
+            }
+            out.flush();
+        }
+
+        private void writeAttachment(String xopURI) throws IOException {
+            try (InputStream inputStream =
+                    AttachmentUtils.getAttachmentStream(xopURI, attachmentCallbackHandler, removeAttachments);
+                OutputStream encodingStream = newBase64EncodingStream(out)) {
+                inputStream.transferTo(encodingStream);
+            } catch (WSSecurityException e) {
+                failure = e;
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * Escapes the carriage returns of the BASE-64 line breaks as required in canonical XML text, and
+     * does not close the wrapped stream.
+     */
+    private static final class CarriageReturnEscapingOutputStream extends FilterOutputStream {
+
+        private static final byte[] ESCAPED_CARRIAGE_RETURN = "&#xD;".getBytes(StandardCharsets.US_ASCII);
+
+        CarriageReturnEscapingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (b == '\r') {
+                out.write(ESCAPED_CARRIAGE_RETURN);
+            } else {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int end = off + len;
+            int start = off;
+            for (int i = off; i < end; i++) {
+                if (b[i] == '\r') {
+                    out.write(b, start, i - start);
+                    out.write(ESCAPED_CARRIAGE_RETURN);
+                    start = i + 1;
+                }
+            }
+            out.write(b, start, end - start);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -31,8 +31,11 @@ import javax.security.auth.login.LoginException;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
+import org.apache.wss4j.common.kerberos.CachingKerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosServiceContext;
 import org.apache.wss4j.common.kerberos.KerberosServiceExceptionAction;
+import org.apache.wss4j.common.kerberos.KerberosServiceSubjectCache;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoderException;
 import org.apache.wss4j.common.token.BinarySecurity;
@@ -50,8 +53,10 @@ public class KerberosTokenValidator implements Validator {
     private CallbackHandler callbackHandler;
     private String contextName;
     private KerberosTokenDecoder kerberosTokenDecoder;
+    private KerberosTicketCache kerberosTicketCache;
     private boolean isUsernameServiceNameForm;
     private boolean spnego;
+    private KerberosServiceSubjectCache subjectCache;
 
     /**
      * Get the JAAS Login context name to use.
@@ -121,6 +126,23 @@ public class KerberosTokenValidator implements Validator {
         this.kerberosTokenDecoder = kerberosTokenDecoder;
     }
 
+    /**
+     * Get the cache of the session keys obtained from the KerberosTokenDecoder
+     * @return the cache of the session keys obtained from the KerberosTokenDecoder
+     */
+    public KerberosTicketCache getKerberosTicketCache() {
+        return kerberosTicketCache;
+    }
+
+    /**
+     * Set the cache of the session keys obtained from the KerberosTokenDecoder. If it is set, a
+     * service ticket that is reused by a client is only decoded once. It can be null (the default).
+     * @param kerberosTicketCache the cache of the session keys obtained from the KerberosTokenDecoder
+     */
+    public void setKerberosTicketCache(KerberosTicketCache kerberosTicketCache) {
+        this.kerberosTicketCache = kerberosTicketCache;
+    }
+
     /**
      * Validate the credential argument. It must contain a non-null BinarySecurityToken.
      *
@@ -149,31 +171,11 @@ public class KerberosTokenValidator implements Validator {
             }
         }
 
-        // Get a TGT from the KDC using JAAS
-        LoginContext loginContext = null;
-        try {
-            if (callbackHandler != null) {
-                loginContext = new LoginContext(getContextName(), callbackHandler);
-            } else if (data.getCallbackHandler() != null) {
-                loginContext = new LoginContext(getContextName(), data.getCallbackHandler());
-            } else {
-                loginContext = new LoginContext(getContextName());
-            }
-            loginContext.login();
-        } catch (LoginException ex) {
-            LOG.debug(ex.getMessage(), ex);
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, ex,
-                "kerberosLoginError",
-                new Object[] {ex.getMessage()}
-            );
-        }
-        LOG.debug("Successfully authenticated to the TGT");
+        Subject subject = getSubject(data);
 
         byte[] token = binarySecurity.getToken();
 
         // Get the service name to use - fall back on the principal
-        Subject subject = loginContext.getSubject();
         String service = serviceName;
         if (service == null) {
             Set<Principal> principals = subject.getPrincipals();
@@ -190,6 +192,7 @@ public class KerberosTokenValidator implements Validator {
         KerberosServiceExceptionAction action =
             new KerberosServiceExceptionAction(token, service,
                                                isUsernameServiceNameForm(), spnego);
+        action.setReplayCache(data.getKerberosReplayCache());
         KerberosServiceContext krbServiceCtx = null;
         try {
             krbServiceCtx = Subject.doAs(subject, action);
@@ -221,11 +224,15 @@ public class KerberosTokenValidator implements Validator {
         // available
         if (null == credential.getSecretKey() && kerberosTokenDecoder != null) {
             LOG.debug("KerberosTokenDecoder is set.Trying to obtain the session key from it.");
-            kerberosTokenDecoder.clear();
-            kerberosTokenDecoder.setToken(token);
-            kerberosTokenDecoder.setSubject(subject);
+            KerberosTokenDecoder decoder = kerberosTokenDecoder;
+            if (kerberosTicketCache != null) {
+                decoder = new CachingKerberosTokenDecoder(kerberosTokenDecoder, kerberosTicketCache);
+            }
+            decoder.clear();
+            decoder.setToken(token);
+            decoder.setSubject(subject);
             try {
-                byte[] key = kerberosTokenDecoder.getSessionKey();
+                byte[] key = decoder.getSessionKey();
                 if (null != key) {
                     LOG.debug("Session key obtained from the KerberosTokenDecoder.");
                     credential.setSecretKey(key);
@@ -245,6 +252,42 @@ public class KerberosTokenValidator implements Validator {
         return credential;
     }
 
+    private Subject getSubject(RequestData data) throws WSSecurityException {
+        CallbackHandler handler = callbackHandler != null ? callbackHandler : data.getCallbackHandler();
+        if (subjectCache != null) {
+            try {
+                return subjectCache.getSubject(getContextName(), handler);
+            } catch (LoginException ex) {
+                LOG.debug(ex.getMessage(), ex);
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE, ex,
+                    "kerberosLoginError",
+                    new Object[] {ex.getMessage()}
+                );
+            }
+        }
+
+        // Get a TGT from the KDC using JAAS
+        LoginContext loginContext = null;
+        try {
+            if (handler != null) {
+                loginContext = new LoginContext(getContextName(), handler);
+            } else {
+                loginContext = new LoginContext(getContextName());
+            }
+            loginContext.login();
+        } catch (LoginException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, ex,
+                "kerberosLoginError",
+                new Object[] {ex.getMessage()}
+            );
+        }
+        LOG.debug("Successfully authenticated to the TGT");
+        return loginContext.getSubject();
+    }
+
     /**
      * SPN can be configured to be in either <b>"hostbased"</b> or <b>"username"</b> form.<br/>
      *     - <b>"hostbased"</b> - specifies that the service principal name should be interpreted as a "host-based" name as specified in GSS API Rfc, section "4.1: Host-Based Service Name Form" - The service name, as it is specified in LDAP/AD, as it is listed in the KDC.<br/>
@@ -277,4 +320,22 @@ public class KerberosTokenValidator implements Validator {
     public void setSpnego(boolean spnego) {
         this.spnego = spnego;
     }
+
+    /**
+     * Get the cache of the JAAS Subject of the service. If it is null (the default), a JAAS
+     * login is performed for every received Kerberos token.
+     * @return the cache of the JAAS Subject of the service
+     */
+    public KerberosServiceSubjectCache getSubjectCache() {
+        return subjectCache;
+    }
+
+    /**
+     * Set the cache of the JAAS Subject of the service, so that the JAAS login is only performed
+     * when there is no cached Subject or when it has expired.
+     * @param subjectCache the cache of the JAAS Subject of the service
+     */
+    public void setSubjectCache(KerberosServiceSubjectCache subjectCache) {
+        this.subjectCache = subjectCache;
+    }
 }
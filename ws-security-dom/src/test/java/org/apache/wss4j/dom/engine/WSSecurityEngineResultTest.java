@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.wss4j.dom.WSConstants;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the Map view of a WSSecurityEngineResult.
+ */
+public class WSSecurityEngineResultTest {
+
+    @Test
+    public void testTagsAndOtherKeys() {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.SIGN);
+        assertEquals(WSConstants.SIGN, result.getAction());
+        assertEquals(WSConstants.SIGN, result.get(WSSecurityEngineResult.TAG_ACTION));
+        assertEquals(1, result.size());
+
+        result.put(WSSecurityEngineResult.TAG_ID, "id-1");
+        result.put(WSSecurityEngineResult.TAG_PRINCIPAL, null);
+        result.put("custom", "value");
+        assertEquals("id-1", result.getId());
+        assertTrue(result.containsKey(WSSecurityEngineResult.TAG_PRINCIPAL));
+        assertNull(result.get(WSSecurityEngineResult.TAG_PRINCIPAL));
+        assertFalse(result.containsKey(WSSecurityEngineResult.TAG_SECRET));
+        assertEquals("value", result.get("custom"));
+        assertEquals(4, result.size());
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put(WSSecurityEngineResult.TAG_ACTION, WSConstants.SIGN);
+        expected.put(WSSecurityEngineResult.TAG_ID, "id-1");
+        expected.put(WSSecurityEngineResult.TAG_PRINCIPAL, null);
+        expected.put("custom", "value");
+        assertEquals(expected, result);
+        assertEquals(result, expected);
+        assertEquals(expected.hashCode(), result.hashCode());
+
+        assertEquals("id-1", result.remove(WSSecurityEngineResult.TAG_ID));
+        assertEquals("value", result.remove("custom"));
+        assertEquals(2, result.size());
+        assertFalse(result.containsKey(WSSecurityEngineResult.TAG_ID));
+    }
+
+    @Test
+    public void testEntrySetIterator() {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.TS);
+        result.put(WSSecurityEngineResult.TAG_VALIDATED_TOKEN, Boolean.FALSE);
+        result.put("custom", "value");
+
+        for (Map.Entry<String, Object> entry : result.entrySet()) {
+            if (WSSecurityEngineResult.TAG_VALIDATED_TOKEN.equals(entry.getKey())) {
+                entry.setValue(Boolean.TRUE);
+            }
+        }
+        assertTrue(result.isValidatedToken());
+
+        Iterator<Map.Entry<String, Object>> iterator = result.entrySet().iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next().getKey();
+            if (!WSSecurityEngineResult.TAG_ACTION.equals(key)) {
+                iterator.remove();
+            }
+        }
+        assertEquals(1, result.size());
+        assertEquals(WSConstants.TS, result.getAction());
+        assertEquals(1, result.keySet().size());
+        assertTrue(result.containsValue(WSConstants.TS));
+
+        result.clear();
+        assertTrue(result.isEmpty());
+        assertEquals(0, result.getAction());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.UT);
+        result.put(WSSecurityEngineResult.TAG_ID, "id-1");
+        result.put(WSSecurityEngineResult.TAG_VALIDATED_TOKEN, Boolean.TRUE);
+        result.put("custom", "value");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(result);
+        }
+        WSSecurityEngineResult deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            deserialized = (WSSecurityEngineResult)in.readObject();
+        }
+
+        assertEquals(result, deserialized);
+        assertEquals(WSConstants.UT, deserialized.getAction());
+        assertEquals("id-1", deserialized.getId());
+        assertTrue(deserialized.isValidatedToken());
+        assertEquals("value", deserialized.get("custom"));
+    }
+}
@@ -21,6 +21,10 @@ package org.apache.wss4j.dom.handler;
 
 import java.util.Collections;
 
+import org.apache.wss4j.common.cache.MemoryReplayCache;
+import org.apache.wss4j.common.cache.MemorySecurityContextStore;
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextStore;
 import org.apache.wss4j.common.util.SOAPUtil;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.common.CustomHandler;
@@ -34,6 +38,7 @@ import org.w3c.dom.Document;
 
 import javax.security.auth.callback.CallbackHandler;
 
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -124,4 +129,52 @@ public class CallbackRefTest {
         assertTrue(outputString.contains("securityPassword"));
     }
 
-}
\ No newline at end of file
+    /**
+     * The ReplayCache for Kerberos AP-REQ authenticators is obtained from the handler options or
+     * the message context.
+     */
+    @Test
+    public void
+    testKerberosReplayCacheRef() throws Exception {
+        try (ReplayCache replayCache = new MemoryReplayCache()) {
+            CustomHandler handler = new CustomHandler();
+            java.util.Map<String, Object> messageContext = new java.util.TreeMap<>();
+            messageContext.put(WSHandlerConstants.KERBEROS_REPLAY_CACHE_INSTANCE, replayCache);
+
+            RequestData reqData = new RequestData();
+            reqData.setMsgContext(messageContext);
+            handler.receive(Collections.singletonList(WSConstants.BST), reqData);
+            assertSame(replayCache, reqData.getKerberosReplayCache());
+
+            handler.setOption(WSHandlerConstants.KERBEROS_REPLAY_CACHE_INSTANCE, replayCache);
+            reqData = new RequestData();
+            reqData.setMsgContext(new java.util.TreeMap<String, Object>());
+            handler.receive(Collections.singletonList(WSConstants.BST), reqData);
+            assertSame(replayCache, reqData.getKerberosReplayCache());
+        }
+    }
+
+    /**
+     * The SecurityContextStore is obtained from the handler options or the message context.
+     */
+    @Test
+    public void
+    testSecurityContextStoreRef() throws Exception {
+        try (SecurityContextStore securityContextStore = new MemorySecurityContextStore()) {
+            CustomHandler handler = new CustomHandler();
+            java.util.Map<String, Object> messageContext = new java.util.TreeMap<>();
+            messageContext.put(WSHandlerConstants.SECURITY_CONTEXT_STORE_INSTANCE, securityContextStore);
+
+            RequestData reqData = new RequestData();
+            reqData.setMsgContext(messageContext);
+            handler.receive(Collections.singletonList(WSConstants.SCT), reqData);
+            assertSame(securityContextStore, reqData.getSecurityContextStore());
+
+            handler.setOption(WSHandlerConstants.SECURITY_CONTEXT_STORE_INSTANCE, securityContextStore);
+            reqData = new RequestData();
+            reqData.setMsgContext(new java.util.TreeMap<String, Object>());
+            handler.receive(Collections.singletonList(WSConstants.SCT), reqData);
+            assertSame(securityContextStore, reqData.getSecurityContextStore());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoRegistry;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for loading Crypto instances through a CryptoRegistry in the WSHandler.
+ */
+public class WSHandlerCryptoRegistryTest {
+
+    @Test
+    public void testLoadCryptoFromPropertiesFileHook() throws Exception {
+        final List<String> loadedFiles = new ArrayList<>();
+        CustomHandler handler = new CustomHandler() {
+            @Override
+            protected Crypto loadCryptoFromPropertiesFile(String propFilename, RequestData reqData)
+                throws WSSecurityException {
+                loadedFiles.add(propFilename);
+                return super.loadCryptoFromPropertiesFile(propFilename, reqData);
+            }
+        };
+        CryptoRegistry cryptoRegistry = new CryptoRegistry();
+        cryptoRegistry.setCheckInterval(0L);
+        handler.setCryptoRegistry(cryptoRegistry);
+
+        RequestData reqData = new RequestData();
+        Map<String, Object> messageContext = new TreeMap<>();
+        messageContext.put(WSHandlerConstants.SIG_PROP_FILE, "wss40.properties");
+        reqData.setMsgContext(messageContext);
+
+        Crypto crypto = handler.loadSignatureCrypto(reqData);
+        assertNotNull(crypto);
+        assertSame(crypto, handler.loadSignatureCrypto(reqData));
+        assertEquals(Collections.singletonList("wss40.properties"), loadedFiles);
+
+        // A reload of the registry goes through the hook as well
+        cryptoRegistry.getReloadableCrypto("wss40.properties").reload();
+        assertNotSame(crypto, handler.loadSignatureCrypto(reqData));
+        assertEquals(2, loadedFiles.size());
+    }
+}
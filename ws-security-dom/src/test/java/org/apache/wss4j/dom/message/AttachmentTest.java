@@ -206,6 +206,71 @@ public class AttachmentTest {
         }
     }
 
+    @Test
+    public void testAttachmentContentSignatureBelowBufferThreshold() throws Exception {
+        // The attachment is replayed from memory
+        assertTrue(signAndVerifyBufferedAttachment(64 * 1024, 128 * 1024) instanceof ByteArrayInputStream);
+    }
+
+    @Test
+    public void testAttachmentContentSignatureAboveBufferThreshold() throws Exception {
+        // The attachment is replayed from a temporary file
+        assertFalse(signAndVerifyBufferedAttachment(64 * 1024, 1024) instanceof ByteArrayInputStream);
+    }
+
+    /**
+     * Sign and verify a (non-markable) binary attachment with the given attachment buffer threshold,
+     * and return the stream of the attachment that is handed on after verification
+     */
+    private InputStream signAndVerifyBufferedAttachment(int size, long threshold) throws Exception {
+        byte[] content = new byte[size];
+        new java.util.Random(42).nextBytes(content);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        builder.setAttachmentBufferThreshold(threshold);
+        builder.getParts().add(new WSEncryptionPart("cid:Attachments", "Content"));
+
+        final String attachmentId = UUID.randomUUID().toString();
+        final Attachment attachment = new Attachment();
+        attachment.setMimeType("application/octet-stream");
+        attachment.addHeaders(getHeaders(attachmentId));
+        attachment.setId(attachmentId);
+        attachment.setSourceStream(new PushbackInputStream(new ByteArrayInputStream(content)));
+
+        AttachmentCallbackHandler attachmentCallbackHandler =
+            new AttachmentCallbackHandler(Collections.singletonList(attachment));
+        builder.setAttachmentCallbackHandler(attachmentCallbackHandler);
+        Document signedDoc = builder.build(crypto);
+
+        // The signed attachment is handed on unchanged
+        Attachment signedAttachment = attachmentCallbackHandler.getResponseAttachments().get(0);
+        assertTrue(Arrays.equals(content, readInputStream(signedAttachment.getSourceStream())));
+
+        attachment.setSourceStream(new PushbackInputStream(new ByteArrayInputStream(content)));
+        attachmentCallbackHandler = new AttachmentCallbackHandler(Collections.singletonList(attachment));
+
+        RequestData requestData = new RequestData();
+        requestData.setAttachmentCallbackHandler(attachmentCallbackHandler);
+        requestData.setSigVerCrypto(crypto);
+        requestData.setAttachmentBufferThreshold(threshold);
+        secEngine.processSecurityHeader(signedDoc, requestData);
+
+        assertFalse(attachmentCallbackHandler.getResponseAttachments().isEmpty());
+        Attachment responseAttachment = attachmentCallbackHandler.getResponseAttachments().get(0);
+        InputStream responseStream = responseAttachment.getSourceStream();
+        try {
+            assertTrue(Arrays.equals(content, readInputStream(responseStream)));
+        } finally {
+            responseStream.close();
+        }
+        return responseStream;
+    }
+
     @Test
     public void testXMLAttachmentCompleteSignature() throws Exception {
         Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
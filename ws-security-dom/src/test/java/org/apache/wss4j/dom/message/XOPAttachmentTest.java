@@ -24,7 +24,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
@@ -57,7 +59,9 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -236,6 +240,45 @@ public class XOPAttachmentTest {
         assertTrue(processedDoc.contains(SOAP_BODY));
     }
 
+    @Test
+    public void testEncryptedSOAPBodyStreamed() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        encrypt.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+
+        AttachmentCallbackHandler outboundAttachmentCallback = new AttachmentCallbackHandler();
+        encrypt.setAttachmentCallbackHandler(outboundAttachmentCallback);
+        encrypt.setStoreBytesInAttachment(true);
+        encrypt.setStreamBytesInAttachment(true);
+
+        encrypt.getParts().add(new WSEncryptionPart("Body", "http://schemas.xmlsoap.org/soap/envelope/", "Content"));
+
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128_GCM);
+        SecretKey symmetricKey = keyGen.generateKey();
+        encrypt.setSymmetricEncAlgorithm(WSConstants.AES_128_GCM);
+        Document encryptedDoc = encrypt.build(crypto, symmetricKey);
+
+        List<Attachment> encryptedAttachments = outboundAttachmentCallback.getResponseAttachments();
+        assertNotNull(encryptedAttachments);
+        assertTrue(encryptedAttachments.size() == 2);
+
+        if (LOG.isDebugEnabled()) {
+            String outputString = XMLUtils.prettyDocumentToString(encryptedDoc);
+            LOG.debug(outputString);
+        }
+
+        AttachmentCallbackHandler inboundAttachmentCallback =
+            new AttachmentCallbackHandler(encryptedAttachments);
+        verify(encryptedDoc, inboundAttachmentCallback);
+
+        String processedDoc = XMLUtils.prettyDocumentToString(encryptedDoc);
+        assertTrue(processedDoc.contains(SOAP_BODY));
+    }
+
     // See https://issues.apache.org/jira/browse/CXF-8061
     @Test
     public void testEncryptedSOAPBodyURLEncoding() throws Exception {
@@ -736,6 +779,114 @@ public class XOPAttachmentTest {
         verify(signedDoc, inboundAttachmentCallback);
     }
 
+    // Sign a SOAP Body containing a xop:Include, streaming the attachment bytes into the digest
+    @Test
+    public void testSignedXOPIncludeStreamed() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        byte[] attachmentBytes = new byte[4096];
+        new SecureRandom().nextBytes(attachmentBytes);
+        String attachmentId = UUID.randomUUID().toString();
+
+        Element body = WSSecurityUtil.findBodyElement(doc);
+        Element bodyChild = XMLUtils.findElement(body, "add", "http://ws.apache.org/counter/counter_port_type");
+        XMLUtils.setNamespace(bodyChild, WSS4JConstants.XOP_NS, "xop");
+        Element xopInclude = doc.createElementNS(WSConstants.XOP_NS, "xop:Include");
+        xopInclude.setAttributeNS(null, "href", "cid:" + attachmentId);
+        bodyChild.appendChild(xopInclude);
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        builder.setExpandXopInclude(true);
+        builder.setStreamXopInclude(true);
+
+        Attachment outboundAttachment = new Attachment();
+        outboundAttachment.setId(attachmentId);
+        outboundAttachment.setSourceStream(new ByteArrayInputStream(attachmentBytes));
+        builder.setAttachmentCallbackHandler(
+            new AttachmentCallbackHandler(Collections.singletonList(outboundAttachment)));
+
+        Document signedDoc = builder.build(crypto);
+
+        // The xop:Include is not expanded in the signed message
+        assertNotNull(XMLUtils.findElement(body, "Include", WSConstants.XOP_NS));
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("After Signing....");
+            String outputString =
+                XMLUtils.prettyDocumentToString(signedDoc);
+            LOG.debug(outputString);
+        }
+
+        Attachment inboundAttachment = new Attachment();
+        inboundAttachment.setId(attachmentId);
+        inboundAttachment.setSourceStream(new ByteArrayInputStream(attachmentBytes));
+        verify(signedDoc, new AttachmentCallbackHandler(Collections.singletonList(inboundAttachment)));
+    }
+
+    // Encrypt a SOAP Body containing a xop:Include into an attachment, streaming the attachment bytes
+    // into the encrypted attachment
+    @Test
+    public void testEncryptedXOPIncludeStreamed() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        byte[] attachmentBytes = new byte[10000];
+        new SecureRandom().nextBytes(attachmentBytes);
+        String attachmentId = UUID.randomUUID().toString();
+
+        Element body = WSSecurityUtil.findBodyElement(doc);
+        Element bodyChild = XMLUtils.findElement(body, "add", "http://ws.apache.org/counter/counter_port_type");
+        XMLUtils.setNamespace(bodyChild, WSS4JConstants.XOP_NS, "xop");
+        Element xopInclude = doc.createElementNS(WSConstants.XOP_NS, "xop:Include");
+        xopInclude.setAttributeNS(null, "href", "cid:" + attachmentId);
+        bodyChild.appendChild(xopInclude);
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        encrypt.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        encrypt.setExpandXopInclude(true);
+        encrypt.setStoreBytesInAttachment(true);
+        encrypt.setStreamBytesInAttachment(true);
+
+        Attachment outboundAttachment = new Attachment();
+        outboundAttachment.setId(attachmentId);
+        outboundAttachment.setSourceStream(new ByteArrayInputStream(attachmentBytes));
+        AttachmentCallbackHandler outboundAttachmentCallback =
+            new AttachmentCallbackHandler(Collections.singletonList(outboundAttachment));
+        encrypt.setAttachmentCallbackHandler(outboundAttachmentCallback);
+
+        encrypt.getParts().add(new WSEncryptionPart("Body", "http://schemas.xmlsoap.org/soap/envelope/", "Content"));
+
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128_GCM);
+        SecretKey symmetricKey = keyGen.generateKey();
+        encrypt.setSymmetricEncAlgorithm(WSConstants.AES_128_GCM);
+        Document encryptedDoc = encrypt.build(crypto, symmetricKey);
+
+        // The referenced attachment is replaced by the encrypted attachment
+        List<Attachment> encryptedAttachments = outboundAttachmentCallback.getResponseAttachments();
+        assertTrue(encryptedAttachments.size() == 1);
+        assertFalse(attachmentId.equals(encryptedAttachments.get(0).getId()));
+
+        if (LOG.isDebugEnabled()) {
+            String outputString = XMLUtils.prettyDocumentToString(encryptedDoc);
+            LOG.debug(outputString);
+        }
+
+        verify(encryptedDoc, new AttachmentCallbackHandler(encryptedAttachments));
+
+        // The decrypted Body contains the BASE-64 encoded attachment bytes instead of the xop:Include
+        body = WSSecurityUtil.findBodyElement(encryptedDoc);
+        assertNull(XMLUtils.findElement(body, "Include", WSConstants.XOP_NS));
+        bodyChild = XMLUtils.findElement(body, "add", "http://ws.apache.org/counter/counter_port_type");
+        String encodedBytes = bodyChild.getLastChild().getNodeValue().replaceAll("\\s", "");
+        assertTrue(Arrays.equals(attachmentBytes, Base64.getDecoder().decode(encodedBytes)));
+    }
+
     /**
      * Verifies the soap envelope.
      * This method verifies all the signature generated.
@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.dom.transform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import javax.xml.crypto.NodeSetData;
+import javax.xml.crypto.OctetStreamData;
+import javax.xml.crypto.dom.DOMCryptoContext;
+import javax.xml.crypto.dom.DOMStructure;
+
+import org.apache.wss4j.common.token.X509Security;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the output of the STR-Transform, both when it is returned and when it is written to an OutputStream
+ */
+public class STRTransformTest {
+
+    private static final String BST_ID = "X509-1";
+
+    public STRTransformTest() {
+        WSSConfig.init();
+    }
+
+    @Test
+    public void testTransformOutput() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        Element securityHeader = secHeader.insertSecurityHeader();
+
+        Element bst = doc.createElementNS(WSConstants.WSSE_NS, "wsse:BinarySecurityToken");
+        bst.setAttributeNS(WSConstants.WSU_NS, "wsu:Id", BST_ID);
+        bst.setAttributeNS(null, "ValueType", X509Security.X509_V3_TYPE);
+        bst.setAttributeNS(null, "EncodingType", WSConstants.BASE64_ENCODING);
+        bst.appendChild(doc.createTextNode("AAAA"));
+        securityHeader.appendChild(bst);
+
+        Element str = doc.createElementNS(WSConstants.WSSE_NS, "wsse:SecurityTokenReference");
+        Element reference = doc.createElementNS(WSConstants.WSSE_NS, "wsse:Reference");
+        reference.setAttributeNS(null, "URI", "#" + BST_ID);
+        reference.setAttributeNS(null, "ValueType", X509Security.X509_V3_TYPE);
+        str.appendChild(reference);
+        securityHeader.appendChild(str);
+
+        WSDocInfo wsDocInfo = new WSDocInfo(doc);
+        wsDocInfo.addTokenElement(bst);
+
+        byte[] canonicalToken = transform(doc, str, wsDocInfo, false);
+        assertTrue(new String(canonicalToken, StandardCharsets.UTF_8).contains("AAAA"));
+        assertArrayEquals(canonicalToken, transform(doc, str, wsDocInfo, true));
+
+        // The token is modified: the output reflects the current state of the token
+        bst.getFirstChild().setNodeValue("BBBB");
+        canonicalToken = transform(doc, str, wsDocInfo, false);
+        assertTrue(new String(canonicalToken, StandardCharsets.UTF_8).contains("BBBB"));
+        assertArrayEquals(canonicalToken, transform(doc, str, wsDocInfo, true));
+
+        bst.setAttributeNS(null, "EncodingType", "urn:encoding");
+        assertFalse(new String(transform(doc, str, wsDocInfo, false), StandardCharsets.UTF_8).contains("Base64Binary"));
+    }
+
+    private static byte[] transform(
+        Document doc, Element str, WSDocInfo wsDocInfo, boolean toOutputStream
+    ) throws Exception {
+        Element transformElement = doc.createElementNS(WSConstants.SIG_NS, "ds:Transform");
+        transformElement.setAttributeNS(null, "Algorithm", STRTransform.TRANSFORM_URI);
+        Element transformParameters =
+            doc.createElementNS(WSConstants.WSSE_NS, "wsse:TransformationParameters");
+        Element canonicalizationMethod = doc.createElementNS(WSConstants.SIG_NS, "ds:CanonicalizationMethod");
+        canonicalizationMethod.setAttributeNS(null, "Algorithm", WSConstants.C14N_EXCL_OMIT_COMMENTS);
+        transformParameters.appendChild(canonicalizationMethod);
+        transformElement.appendChild(transformParameters);
+
+        DOMCryptoContext context = new DOMCryptoContext() { };
+        context.setProperty(STRTransform.TRANSFORM_WS_DOC_INFO, wsDocInfo);
+
+        STRTransform transform = new STRTransform();
+        transform.init(new DOMStructure(transformElement), context);
+        NodeSetData<Node> data = () -> Collections.<Node>singletonList(str).iterator();
+        if (toOutputStream) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            assertNull(transform.transform(data, context, outputStream));
+            return outputStream.toByteArray();
+        }
+        OctetStreamData result = (OctetStreamData) transform.transform(data, context);
+        try (InputStream inputStream = result.getOctetStream()) {
+            return inputStream.readAllBytes();
+        }
+    }
+}
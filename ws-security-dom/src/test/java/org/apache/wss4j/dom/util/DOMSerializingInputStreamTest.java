@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.dom.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.wss4j.common.crypto.WSProviderConfig;
+import org.apache.wss4j.common.ext.Attachment;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.message.AttachmentCallbackHandler;
+import org.apache.xml.security.encryption.TransformSerializer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compare the output of DOMSerializingInputStream with the TransformSerializer, which is used to serialize
+ * Elements for encryption if the encrypted bytes are not streamed.
+ */
+public class DOMSerializingInputStreamTest {
+
+    private static final String SAMPLE_XML =
+        "<ns1:root xmlns:ns1=\"urn:ns1\" xmlns:ns2=\"urn:ns2\" xmlns=\"urn:default\">"
+        + "<ns1:parent ns2:attr=\"a &amp; b &lt; &quot;c&quot;&#9;&#10;&#13;\" attr=\"x\">"
+        + "text &amp; &lt;more&gt; text&#13;\n"
+        + "<ns2:child>child text</ns2:child>"
+        + "<child xmlns:ns3=\"urn:ns3\" ns3:attr=\"y\">default namespace</child>"
+        + "<ns1:ordered xmlns:z=\"urn:a\" xmlns:a=\"urn:z\" a:attr=\"1\" z:attr=\"2\" b=\"3\"/>"
+        + "<!-- a comment -->"
+        + "<?pi some data?>"
+        + "<![CDATA[cdata & text]]>"
+        + "</ns1:parent>"
+        + "</ns1:root>";
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        WSProviderConfig.init();
+    }
+
+    @Test
+    public void testElementWithInheritedNamespaces() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SAMPLE_XML);
+        Element parent = XMLUtils.findElement(doc.getDocumentElement(), "parent", "urn:ns1");
+
+        byte[] expected = new TransformSerializer(true).serializeToByteArray(parent);
+        byte[] streamed = serialize(Collections.singletonList(parent), null);
+        assertEquals(new String(expected, StandardCharsets.UTF_8), new String(streamed, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testContentWithInheritedNamespaces() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SAMPLE_XML);
+        Element parent = XMLUtils.findElement(doc.getDocumentElement(), "parent", "urn:ns1");
+
+        List<Node> children = new ArrayList<>();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            children.add(child);
+        }
+
+        byte[] expected = new TransformSerializer(true).serializeToByteArray(parent.getChildNodes());
+        byte[] streamed = serialize(children, null);
+        assertEquals(new String(expected, StandardCharsets.UTF_8), new String(streamed, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testElementWithoutNamespaceDeclarations() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart("<ns1:root xmlns:ns1=\"urn:ns1\"/>");
+        Element parent = doc.createElementNS("urn:ns1", "ns1:parent");
+        doc.getDocumentElement().appendChild(parent);
+        Element child = doc.createElementNS("urn:ns2", "ns2:child");
+        child.setAttributeNS("urn:ns3", "ns3:attr", "value");
+        child.appendChild(doc.createTextNode("child text"));
+        parent.appendChild(child);
+
+        byte[] expected = new TransformSerializer(true).serializeToByteArray(parent);
+        byte[] streamed = serialize(Collections.singletonList(parent), null);
+        assertEquals(new String(expected, StandardCharsets.UTF_8), new String(streamed, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testXopInclude() throws Exception {
+        byte[] attachmentBytes = new byte[10000];
+        for (int i = 0; i < attachmentBytes.length; i++) {
+            attachmentBytes[i] = (byte) i;
+        }
+        String xml =
+            "<ns1:root xmlns:ns1=\"urn:ns1\"><ns1:parent>"
+            + "<ns1:data><xop:Include xmlns:xop=\"" + WSConstants.XOP_NS + "\" href=\"cid:attachment1\"/></ns1:data>"
+            + "</ns1:parent></ns1:root>";
+
+        // The expected serialization is that of the Element with the attachment inlined
+        Document doc = SOAPUtil.toSOAPPart(xml);
+        Element parent = XMLUtils.findElement(doc.getDocumentElement(), "parent", "urn:ns1");
+        WSSecurityUtil.inlineAttachments(
+            XMLUtils.findElements(parent, "Include", WSConstants.XOP_NS),
+            new AttachmentCallbackHandler(Collections.singletonList(createAttachment(attachmentBytes))), false);
+        byte[] expected = new TransformSerializer(true).serializeToByteArray(parent);
+
+        doc = SOAPUtil.toSOAPPart(xml);
+        parent = XMLUtils.findElement(doc.getDocumentElement(), "parent", "urn:ns1");
+        AttachmentCallbackHandler attachmentCallbackHandler =
+            new AttachmentCallbackHandler(Collections.singletonList(createAttachment(attachmentBytes)));
+        byte[] streamed = serialize(Collections.singletonList(parent), attachmentCallbackHandler);
+        assertEquals(new String(expected, StandardCharsets.UTF_8), new String(streamed, StandardCharsets.UTF_8));
+
+        // The xop:Include Element is serialized as it is without a CallbackHandler
+        assertArrayEquals(new TransformSerializer(true).serializeToByteArray(parent),
+                          serialize(Collections.singletonList(parent), null));
+    }
+
+    private static Attachment createAttachment(byte[] attachmentBytes) {
+        Attachment attachment = new Attachment();
+        attachment.setId("attachment1");
+        attachment.setMimeType("application/octet-stream");
+        attachment.setSourceStream(new ByteArrayInputStream(attachmentBytes));
+        return attachment;
+    }
+
+    private static byte[] serialize(List<Node> nodes, AttachmentCallbackHandler attachmentCallbackHandler)
+        throws Exception {
+        try (InputStream inputStream = new DOMSerializingInputStream(nodes, attachmentCallbackHandler, false)) {
+            return readFully(inputStream);
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+}
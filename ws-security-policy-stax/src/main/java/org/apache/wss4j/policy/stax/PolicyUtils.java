@@ -18,7 +18,10 @@
  */
 package org.apache.wss4j.policy.stax;
 
+import org.apache.wss4j.policy.model.Header;
 import org.apache.wss4j.policy.model.XPath;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.utils.ElementPathTrie;
 
 import javax.xml.namespace.QName;
 import java.util.ArrayList;
@@ -51,4 +54,15 @@ public final class PolicyUtils {
         }
         return elements;
     }
+
+    /**
+     * Add the element path of the given SOAP header to the ElementPathTrie. A header without a name
+     * matches any header element with its namespace.
+     */
+    public static ElementPathTrie.Node addHeaderPath(ElementPathTrie elementPathTrie, Header header, boolean soap12) {
+        List<QName> headerPath =
+            new ArrayList<>(soap12 ? WSSConstants.SOAP_12_HEADER_PATH : WSSConstants.SOAP_11_HEADER_PATH);
+        headerPath.add(new QName(header.getNamespace(), header.getName() == null ? "" : header.getName()));
+        return elementPathTrie.add(headerPath, header.getName() == null);
+    }
 }
@@ -31,12 +31,11 @@ import org.apache.wss4j.policy.stax.DummyPolicyAsserter;
 import org.apache.wss4j.policy.stax.PolicyAsserter;
 import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
+import org.apache.wss4j.stax.utils.ElementPathTrie;
 import org.apache.wss4j.stax.utils.WSSUtils;
 
 import javax.xml.namespace.QName;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -44,7 +43,7 @@ import java.util.List;
  */
 public class ContentEncryptedElementsAssertionState extends AssertionState implements Assertable {
 
-    private final List<List<QName>> pathElements = new ArrayList<>();
+    private final ElementPathTrie pathElements = new ElementPathTrie();
     private PolicyAsserter policyAsserter;
 
     public ContentEncryptedElementsAssertionState(AbstractSecurityAssertion assertion,
@@ -80,22 +79,18 @@ public class ContentEncryptedElementsAssertionState extends AssertionState imple
     public boolean assertEvent(SecurityEvent securityEvent) throws WSSPolicyException {
         ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent = (ContentEncryptedElementSecurityEvent) securityEvent;
 
-        Iterator<List<QName>> pathElementIterator = pathElements.iterator();
-        while (pathElementIterator.hasNext()) {
-            List<QName> pathElements = pathElementIterator.next();
-            if (WSSUtils.pathMatches(pathElements, contentEncryptedElementSecurityEvent.getElementPath())) {
-                if (contentEncryptedElementSecurityEvent.isEncrypted()) {
-                    setAsserted(true);
-                    policyAsserter.assertPolicy(getAssertion());
-                    return true;
-                } else {
-                    //an element must be encrypted but isn't
-                    setAsserted(false);
-                    setErrorMessage("Content of element " + WSSUtils.pathAsString(contentEncryptedElementSecurityEvent.getElementPath())
-                        + " must be encrypted");
-                    policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
-                    return false;
-                }
+        if (pathElements.matches(contentEncryptedElementSecurityEvent.getElementPath())) {
+            if (contentEncryptedElementSecurityEvent.isEncrypted()) {
+                setAsserted(true);
+                policyAsserter.assertPolicy(getAssertion());
+                return true;
+            } else {
+                //an element must be encrypted but isn't
+                setAsserted(false);
+                setErrorMessage("Content of element " + WSSUtils.pathAsString(contentEncryptedElementSecurityEvent.getElementPath())
+                    + " must be encrypted");
+                policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
+                return false;
             }
         }
         //if we return false here other encrypted elements will trigger a PolicyViolationException
@@ -22,22 +22,17 @@ import org.apache.wss4j.policy.AssertionState;
 import org.apache.wss4j.common.WSSPolicyException;
 import org.apache.wss4j.policy.model.AbstractSecurityAssertion;
 import org.apache.wss4j.policy.model.EncryptedParts;
-import org.apache.wss4j.policy.model.Header;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
 import org.apache.wss4j.policy.stax.Assertable;
 import org.apache.wss4j.policy.stax.DummyPolicyAsserter;
 import org.apache.wss4j.policy.stax.PolicyAsserter;
-import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.securityEvent.EncryptedPartSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
+import org.apache.wss4j.stax.utils.ElementPathTrie;
 import org.apache.wss4j.stax.utils.WSSUtils;
 
-import javax.xml.namespace.QName;
-
-import java.util.LinkedList;
-import java.util.List;
-
 /**
  * WSP1.3, 4.2.1 EncryptedParts Assertion
  */
@@ -47,7 +42,7 @@ public class EncryptedPartsAssertionState extends AssertionState implements Asse
     private int encryptedAttachmentCount;
     private boolean encryptedAttachmentRequired;
     private PolicyAsserter policyAsserter;
-    private final boolean soap12;
+    private final ElementPathTrie headerPaths = new ElementPathTrie();
 
     public EncryptedPartsAssertionState(
         AbstractSecurityAssertion assertion,
@@ -65,7 +60,10 @@ public class EncryptedPartsAssertionState extends AssertionState implements Asse
             policyAsserter.assertPolicy(getAssertion());
         }
 
-        this.soap12 = soap12;
+        EncryptedParts encryptedParts = (EncryptedParts) assertion;
+        for (int i = 0; i < encryptedParts.getHeaders().size(); i++) {
+            PolicyUtils.addHeaderPath(headerPaths, encryptedParts.getHeaders().get(i), soap12);
+        }
     }
 
     @Override
@@ -105,29 +103,16 @@ public class EncryptedPartsAssertionState extends AssertionState implements Asse
             }
         }
         //body processed above. so this must be a header element
-        for (int i = 0; i < encryptedParts.getHeaders().size(); i++) {
-            Header header = encryptedParts.getHeaders().get(i);
-            QName headerQName = new QName(header.getNamespace(), header.getName() == null ? "" : header.getName());
-
-            List<QName> headerPath = new LinkedList<>();
-            if (soap12) {
-                headerPath.addAll(WSSConstants.SOAP_12_HEADER_PATH);
+        if (headerPaths.matches(encryptedPartSecurityEvent.getElementPath())) {
+            if (encryptedPartSecurityEvent.isEncrypted()) {
+                setAsserted(true);
+                policyAsserter.assertPolicy(getAssertion());
+                return true;
             } else {
-                headerPath.addAll(WSSConstants.SOAP_11_HEADER_PATH);
-            }
-            headerPath.add(headerQName);
-
-            if (WSSUtils.pathMatches(headerPath, encryptedPartSecurityEvent.getElementPath(), header.getName() == null)) {
-                if (encryptedPartSecurityEvent.isEncrypted()) {
-                    setAsserted(true);
-                    policyAsserter.assertPolicy(getAssertion());
-                    return true;
-                } else {
-                    setAsserted(false);
-                    setErrorMessage("Element " + WSSUtils.pathAsString(encryptedPartSecurityEvent.getElementPath()) + " must be encrypted");
-                    policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
-                    return false;
-                }
+                setAsserted(false);
+                setErrorMessage("Element " + WSSUtils.pathAsString(encryptedPartSecurityEvent.getElementPath()) + " must be encrypted");
+                policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
+                return false;
             }
         }
 
@@ -31,6 +31,7 @@ import org.apache.wss4j.policy.stax.PolicyAsserter;
 import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.securityEvent.RequiredElementSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
+import org.apache.wss4j.stax.utils.ElementPathTrie;
 import org.apache.wss4j.stax.utils.WSSUtils;
 
 import javax.xml.namespace.QName;
@@ -45,7 +46,8 @@ import java.util.Map;
  */
 public class RequiredElementsAssertionState extends AssertionState implements Assertable {
 
-    private final Map<List<QName>, Boolean> pathElements = new HashMap<>();
+    private final ElementPathTrie elementPathTrie = new ElementPathTrie();
+    private final Map<ElementPathTrie.Node, Boolean> pathElements = new HashMap<>();
     private PolicyAsserter policyAsserter;
 
     public RequiredElementsAssertionState(AbstractSecurityAssertion assertion,
@@ -58,7 +60,7 @@ public class RequiredElementsAssertionState extends AssertionState implements As
             for (int i = 0; i < requiredElements.getXPaths().size(); i++) {
                 XPath xPath = requiredElements.getXPaths().get(i);
                 List<QName> elements = PolicyUtils.getElementPath(xPath);
-                pathElements.put(elements, Boolean.FALSE);
+                pathElements.put(elementPathTrie.add(elements), Boolean.FALSE);
             }
         }
 
@@ -73,7 +75,7 @@ public class RequiredElementsAssertionState extends AssertionState implements As
     }
 
     public void addElement(List<QName> pathElement) {
-        this.pathElements.put(pathElement, Boolean.FALSE);
+        this.pathElements.put(elementPathTrie.add(pathElement), Boolean.FALSE);
     }
 
     @Override
@@ -87,14 +89,9 @@ public class RequiredElementsAssertionState extends AssertionState implements As
     public boolean assertEvent(SecurityEvent securityEvent) throws WSSPolicyException {
         RequiredElementSecurityEvent requiredElementSecurityEvent = (RequiredElementSecurityEvent) securityEvent;
 
-        Iterator<Map.Entry<List<QName>, Boolean>> elementMapIterator = pathElements.entrySet().iterator();
-        while (elementMapIterator.hasNext()) {
-            Map.Entry<List<QName>, Boolean> next = elementMapIterator.next();
-            List<QName> qNameList = next.getKey();
-            if (WSSUtils.pathMatches(qNameList, requiredElementSecurityEvent.getElementPath())) {
-                next.setValue(Boolean.TRUE);
-                break;
-            }
+        ElementPathTrie.Node pathElement = elementPathTrie.match(requiredElementSecurityEvent.getElementPath());
+        if (pathElement != null) {
+            pathElements.put(pathElement, Boolean.TRUE);
         }
         //if we return false here other required elements will trigger a PolicyViolationException
         policyAsserter.assertPolicy(getAssertion());
@@ -104,11 +101,11 @@ public class RequiredElementsAssertionState extends AssertionState implements As
     @Override
     public boolean isAsserted() {
         clearErrorMessage();
-        Iterator<Map.Entry<List<QName>, Boolean>> elementMapIterator = pathElements.entrySet().iterator();
+        Iterator<Map.Entry<ElementPathTrie.Node, Boolean>> elementMapIterator = pathElements.entrySet().iterator();
         while (elementMapIterator.hasNext()) {
-            Map.Entry<List<QName>, Boolean> next = elementMapIterator.next();
+            Map.Entry<ElementPathTrie.Node, Boolean> next = elementMapIterator.next();
             if (Boolean.FALSE.equals(next.getValue())) {
-                setErrorMessage("Element " + WSSUtils.pathAsString(next.getKey()) + " must be present");
+                setErrorMessage("Element " + WSSUtils.pathAsString(next.getKey().getPath()) + " must be present");
                 policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
                 return false;
             }
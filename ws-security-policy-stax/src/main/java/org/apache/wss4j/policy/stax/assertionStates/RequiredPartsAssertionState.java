@@ -28,12 +28,10 @@ import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
 import org.apache.wss4j.policy.stax.Assertable;
 import org.apache.wss4j.policy.stax.DummyPolicyAsserter;
 import org.apache.wss4j.policy.stax.PolicyAsserter;
-import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.securityEvent.RequiredPartSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
-import org.apache.wss4j.stax.utils.WSSUtils;
-
-import javax.xml.namespace.QName;
+import org.apache.wss4j.stax.utils.ElementPathTrie;
 
 import java.util.*;
 
@@ -43,8 +41,9 @@ import java.util.*;
 public class RequiredPartsAssertionState extends AssertionState implements Assertable {
 
     private final Map<Header, Boolean> headers = new HashMap<>();
+    private final Map<Header, ElementPathTrie.Node> headerPaths = new HashMap<>();
+    private final ElementPathTrie elementPathTrie = new ElementPathTrie();
     private PolicyAsserter policyAsserter;
-    private final boolean soap12;
 
     public RequiredPartsAssertionState(AbstractSecurityAssertion assertion,
                                        PolicyAsserter policyAsserter,
@@ -56,6 +55,7 @@ public class RequiredPartsAssertionState extends AssertionState implements Asser
         for (int i = 0; i < requiredParts.getHeaders().size(); i++) {
             Header header = requiredParts.getHeaders().get(i);
             headers.put(header, Boolean.FALSE);
+            headerPaths.put(header, PolicyUtils.addHeaderPath(elementPathTrie, header, soap12));
         }
 
         this.policyAsserter = policyAsserter;
@@ -66,8 +66,6 @@ public class RequiredPartsAssertionState extends AssertionState implements Asser
         if (asserted) {
             policyAsserter.assertPolicy(getAssertion());
         }
-
-        this.soap12 = soap12;
     }
 
     @Override
@@ -81,23 +79,15 @@ public class RequiredPartsAssertionState extends AssertionState implements Asser
     public boolean assertEvent(SecurityEvent securityEvent) throws WSSPolicyException {
         RequiredPartSecurityEvent requiredPartSecurityEvent = (RequiredPartSecurityEvent) securityEvent;
 
-        Iterator<Map.Entry<Header, Boolean>> elementMapIterator = headers.entrySet().iterator();
-        while (elementMapIterator.hasNext()) {
-            Map.Entry<Header, Boolean> next = elementMapIterator.next();
-            Header header = next.getKey();
-            QName headerQName = new QName(header.getNamespace(), header.getName() == null ? "" : header.getName());
-
-            List<QName> headerPath = new LinkedList<>();
-            if (soap12) {
-                headerPath.addAll(WSSConstants.SOAP_12_HEADER_PATH);
-            } else {
-                headerPath.addAll(WSSConstants.SOAP_11_HEADER_PATH);
-            }
-            headerPath.add(headerQName);
-
-            if (WSSUtils.pathMatches(headerPath, requiredPartSecurityEvent.getElementPath(), header.getName() == null)) {
-                next.setValue(Boolean.TRUE);
-                break;
+        ElementPathTrie.Node headerPath = elementPathTrie.match(requiredPartSecurityEvent.getElementPath());
+        if (headerPath != null) {
+            Iterator<Map.Entry<Header, ElementPathTrie.Node>> headerPathIterator = headerPaths.entrySet().iterator();
+            while (headerPathIterator.hasNext()) {
+                Map.Entry<Header, ElementPathTrie.Node> next = headerPathIterator.next();
+                if (next.getValue() == headerPath) {
+                    headers.put(next.getKey(), Boolean.TRUE);
+                    break;
+                }
             }
         }
         //if we return false here other required elements will trigger a PolicyViolationException
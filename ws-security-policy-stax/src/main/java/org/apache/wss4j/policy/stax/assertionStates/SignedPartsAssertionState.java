@@ -21,21 +21,21 @@ package org.apache.wss4j.policy.stax.assertionStates;
 import org.apache.wss4j.policy.AssertionState;
 import org.apache.wss4j.common.WSSPolicyException;
 import org.apache.wss4j.policy.model.AbstractSecurityAssertion;
-import org.apache.wss4j.policy.model.Header;
 import org.apache.wss4j.policy.model.SignedParts;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
 import org.apache.wss4j.policy.stax.Assertable;
 import org.apache.wss4j.policy.stax.DummyPolicyAsserter;
 import org.apache.wss4j.policy.stax.PolicyAsserter;
+import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.securityEvent.SignedPartSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
+import org.apache.wss4j.stax.utils.ElementPathTrie;
 import org.apache.wss4j.stax.utils.WSSUtils;
 
 import javax.xml.namespace.QName;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -48,6 +48,7 @@ public class SignedPartsAssertionState extends AssertionState implements Asserta
     private boolean signedAttachmentRequired;
     private PolicyAsserter policyAsserter;
     private final boolean soap12;
+    private final ElementPathTrie headerPaths = new ElementPathTrie();
 
     public SignedPartsAssertionState(
         AbstractSecurityAssertion assertion, PolicyAsserter policyAsserter,
@@ -66,6 +67,13 @@ public class SignedPartsAssertionState extends AssertionState implements Asserta
         }
 
         this.soap12 = soap12;
+
+        if (assertion instanceof SignedParts) {
+            SignedParts signedParts = (SignedParts) assertion;
+            for (int i = 0; i < signedParts.getHeaders().size(); i++) {
+                PolicyUtils.addHeaderPath(headerPaths, signedParts.getHeaders().get(i), soap12);
+            }
+        }
     }
 
     @Override
@@ -118,29 +126,16 @@ public class SignedPartsAssertionState extends AssertionState implements Asserta
                 return false;
             }
         } else {
-            for (int i = 0; i < signedParts.getHeaders().size(); i++) {
-                Header header = signedParts.getHeaders().get(i);
-                QName headerQName = new QName(header.getNamespace(), header.getName() == null ? "" : header.getName());
-
-                List<QName> headerPath = new LinkedList<>();
-                if (soap12) {
-                    headerPath.addAll(WSSConstants.SOAP_12_HEADER_PATH);
+            if (headerPaths.matches(signedPartSecurityEvent.getElementPath())) {
+                if (signedPartSecurityEvent.isSigned()) {
+                    setAsserted(true);
+                    policyAsserter.assertPolicy(getAssertion());
+                    return true;
                 } else {
-                    headerPath.addAll(WSSConstants.SOAP_11_HEADER_PATH);
-                }
-                headerPath.add(headerQName);
-
-                if (WSSUtils.pathMatches(headerPath, signedPartSecurityEvent.getElementPath(), header.getName() == null)) {
-                    if (signedPartSecurityEvent.isSigned()) {
-                        setAsserted(true);
-                        policyAsserter.assertPolicy(getAssertion());
-                        return true;
-                    } else {
-                        setAsserted(false);
-                        setErrorMessage("Element " + WSSUtils.pathAsString(signedPartSecurityEvent.getElementPath()) + " must be signed");
-                        policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
-                        return false;
-                    }
+                    setAsserted(false);
+                    setErrorMessage("Element " + WSSUtils.pathAsString(signedPartSecurityEvent.getElementPath()) + " must be signed");
+                    policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
+                    return false;
                 }
             }
         }
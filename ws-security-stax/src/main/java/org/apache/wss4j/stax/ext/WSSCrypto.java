@@ -27,6 +27,7 @@ import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
+import org.apache.wss4j.common.crypto.ReloadableCrypto;
 import org.apache.wss4j.common.util.Loader;
 import org.apache.xml.security.stax.config.ConfigurationProperties;
 
@@ -45,9 +46,14 @@ class WSSCrypto {
     private KeyStore keyStore;
     private CertStore crlCertStore;
     private PasswordEncryptor passwordEncryptor;
+    private ReloadableCrypto reloadableCrypto;
 
     public Crypto getCrypto() throws WSSConfigurationException {
 
+        if (reloadableCrypto != null) {
+            return reloadableCrypto.getCrypto();
+        }
+
         if (keyStore == cachedKeyStore && cachedCrypto != null) {
             return cachedCrypto;
         }
@@ -83,6 +89,7 @@ class WSSCrypto {
     }
 
     public void setCrypto(Crypto crypto) {
+        reloadableCrypto = null;
         cachedCrypto = crypto;
         if (crypto instanceof Merlin) {
             keyStore = ((Merlin)crypto).getKeyStore();
@@ -90,6 +97,27 @@ class WSSCrypto {
         }
     }
 
+    public ReloadableCrypto getReloadableCrypto() {
+        return reloadableCrypto;
+    }
+
+    public void setReloadableCrypto(ReloadableCrypto reloadableCrypto) {
+        this.reloadableCrypto = reloadableCrypto;
+    }
+
+    /**
+     * Returns a WSSCrypto that holds the current Crypto instance of the ReloadableCrypto, or this
+     * WSSCrypto if no ReloadableCrypto is set.
+     */
+    WSSCrypto resolveReloadableCrypto() {
+        if (reloadableCrypto == null) {
+            return this;
+        }
+        WSSCrypto wssCrypto = new WSSCrypto();
+        wssCrypto.setCrypto(reloadableCrypto.getCrypto());
+        return wssCrypto;
+    }
+
     public Class<? extends Merlin> getCryptoClass() {
         return cryptoClass;
     }
@@ -39,10 +39,15 @@ import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextStore;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
+import org.apache.wss4j.common.crypto.ReloadableCrypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosServiceSubjectCache;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
+import org.apache.wss4j.common.util.UsernameTokenDerivedKeyCache;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.validate.Validator;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
@@ -108,7 +113,15 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private ReplayCache kerberosReplayCache;
+    private KerberosServiceSubjectCache kerberosServiceSubjectCache;
+    private KerberosTicketCache kerberosTicketCache;
+    private SecurityContextStore securityContextStore;
+    private UsernameTokenDerivedKeyCache usernameTokenDerivedKeyCache;
     private boolean validateSamlSubjectConfirmation = true;
+    private boolean streamingSamlTokenProcessing = false;
+    private boolean authenticateAttachmentBeforeRelease = false;
+    private long decryptionMemoryBudget = -1L;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
     private List<String> audienceRestrictions = new ArrayList<>();
@@ -164,12 +177,20 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.timestampReplayCache = wssSecurityProperties.timestampReplayCache;
         this.nonceReplayCache = wssSecurityProperties.nonceReplayCache;
         this.samlOneTimeUseReplayCache = wssSecurityProperties.samlOneTimeUseReplayCache;
+        this.kerberosReplayCache = wssSecurityProperties.kerberosReplayCache;
+        this.kerberosServiceSubjectCache = wssSecurityProperties.kerberosServiceSubjectCache;
+        this.kerberosTicketCache = wssSecurityProperties.kerberosTicketCache;
+        this.securityContextStore = wssSecurityProperties.securityContextStore;
+        this.usernameTokenDerivedKeyCache = wssSecurityProperties.usernameTokenDerivedKeyCache;
         this.allowRSA15KeyTransportAlgorithm = wssSecurityProperties.allowRSA15KeyTransportAlgorithm;
         this.derivedKeyIterations = wssSecurityProperties.derivedKeyIterations;
         this.useDerivedKeyForMAC = wssSecurityProperties.useDerivedKeyForMAC;
         this.addUsernameTokenNonce = wssSecurityProperties.addUsernameTokenNonce;
         this.addUsernameTokenCreated = wssSecurityProperties.addUsernameTokenCreated;
         this.validateSamlSubjectConfirmation = wssSecurityProperties.validateSamlSubjectConfirmation;
+        this.streamingSamlTokenProcessing = wssSecurityProperties.streamingSamlTokenProcessing;
+        this.authenticateAttachmentBeforeRelease = wssSecurityProperties.authenticateAttachmentBeforeRelease;
+        this.decryptionMemoryBudget = wssSecurityProperties.decryptionMemoryBudget;
         this.encryptSymmetricEncrytionKey = wssSecurityProperties.encryptSymmetricEncrytionKey;
         this.subjectDNPatterns = wssSecurityProperties.subjectDNPatterns;
         this.issuerDNPatterns = wssSecurityProperties.issuerDNPatterns;
@@ -181,6 +202,39 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.documentCreator = wssSecurityProperties.documentCreator;
     }
 
+    /**
+     * Returns WSSSecurityProperties in which the current Crypto instance of each ReloadableCrypto is fixed,
+     * so that a message is processed with the same Crypto instances throughout, even if a ReloadableCrypto
+     * is reloaded in the meantime. The InboundWSSec and OutboundWSSec call this once per message.
+     *
+     * @return a copy of these WSSSecurityProperties with the Crypto instances of the ReloadableCryptos fixed,
+     * or these WSSSecurityProperties if no ReloadableCrypto is set
+     */
+    public WSSSecurityProperties resolveReloadableCryptos() {
+        if (!hasReloadableCrypto(signatureWSSCrypto) && !hasReloadableCrypto(signatureVerificationWSSCrypto)
+            && !hasReloadableCrypto(decryptionWSSCrypto) && !hasReloadableCrypto(encryptionWSSCrypto)) {
+            return this;
+        }
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties(this);
+        if (hasReloadableCrypto(signatureWSSCrypto)) {
+            securityProperties.signatureWSSCrypto = signatureWSSCrypto.resolveReloadableCrypto();
+        }
+        if (hasReloadableCrypto(signatureVerificationWSSCrypto)) {
+            securityProperties.signatureVerificationWSSCrypto = signatureVerificationWSSCrypto.resolveReloadableCrypto();
+        }
+        if (hasReloadableCrypto(decryptionWSSCrypto)) {
+            securityProperties.decryptionWSSCrypto = decryptionWSSCrypto.resolveReloadableCrypto();
+        }
+        if (hasReloadableCrypto(encryptionWSSCrypto)) {
+            securityProperties.encryptionWSSCrypto = encryptionWSSCrypto.resolveReloadableCrypto();
+        }
+        return securityProperties;
+    }
+
+    private static boolean hasReloadableCrypto(WSSCrypto wssCrypto) {
+        return wssCrypto != null && wssCrypto.getReloadableCrypto() != null;
+    }
+
     /**
      * returns the password callback handler
      *
@@ -379,6 +433,20 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         signatureWSSCrypto.setCrypto(sigCrypto);
     }
 
+    /**
+     * Set a ReloadableCrypto for signature creation. The current Crypto instance of the ReloadableCrypto is
+     * retrieved once per message, see {@link #resolveReloadableCryptos()}, so that a rebuilt Crypto instance
+     * is picked up by the next message.
+     *
+     * @param reloadableCrypto the ReloadableCrypto
+     */
+    public void setSignatureReloadableCrypto(ReloadableCrypto reloadableCrypto) {
+        if (signatureWSSCrypto == null) {
+            signatureWSSCrypto = new WSSCrypto();
+        }
+        signatureWSSCrypto.setReloadableCrypto(reloadableCrypto);
+    }
+
     public KeyStore getSignatureVerificationKeyStore() {
         if (signatureVerificationWSSCrypto != null) {
             return signatureVerificationWSSCrypto.getKeyStore();
@@ -456,6 +524,20 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         signatureVerificationWSSCrypto.setCrypto(sigVerCrypto);
     }
 
+    /**
+     * Set a ReloadableCrypto for signature verification. The current Crypto instance of the ReloadableCrypto is
+     * retrieved once per message, see {@link #resolveReloadableCryptos()}, so that a rebuilt Crypto instance
+     * is picked up by the next message.
+     *
+     * @param reloadableCrypto the ReloadableCrypto
+     */
+    public void setSignatureVerificationReloadableCrypto(ReloadableCrypto reloadableCrypto) {
+        if (signatureVerificationWSSCrypto == null) {
+            signatureVerificationWSSCrypto = new WSSCrypto();
+        }
+        signatureVerificationWSSCrypto.setReloadableCrypto(reloadableCrypto);
+    }
+
     /**
      * Returns the decryption keystore
      *
@@ -550,6 +632,20 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         decryptionWSSCrypto.setCrypto(decCrypto);
     }
 
+    /**
+     * Set a ReloadableCrypto for decryption. The current Crypto instance of the ReloadableCrypto is
+     * retrieved once per message, see {@link #resolveReloadableCryptos()}, so that a rebuilt Crypto instance
+     * is picked up by the next message.
+     *
+     * @param reloadableCrypto the ReloadableCrypto
+     */
+    public void setDecryptionReloadableCrypto(ReloadableCrypto reloadableCrypto) {
+        if (decryptionWSSCrypto == null) {
+            decryptionWSSCrypto = new WSSCrypto();
+        }
+        decryptionWSSCrypto.setReloadableCrypto(reloadableCrypto);
+    }
+
     /**
      * Returns the encryption keystore
      *
@@ -645,6 +741,20 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         encryptionWSSCrypto.setCrypto(encCrypto);
     }
 
+    /**
+     * Set a ReloadableCrypto for encryption. The current Crypto instance of the ReloadableCrypto is
+     * retrieved once per message, see {@link #resolveReloadableCryptos()}, so that a rebuilt Crypto instance
+     * is picked up by the next message.
+     *
+     * @param reloadableCrypto the ReloadableCrypto
+     */
+    public void setEncryptionReloadableCrypto(ReloadableCrypto reloadableCrypto) {
+        if (encryptionWSSCrypto == null) {
+            encryptionWSSCrypto = new WSSCrypto();
+        }
+        encryptionWSSCrypto.setReloadableCrypto(reloadableCrypto);
+    }
+
     /**
      * Returns the alias for the encryption key in the keystore
      *
@@ -764,6 +874,79 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the replay cache for the authenticators of Kerberos AP-REQ tokens
+     */
+    public void setKerberosReplayCache(ReplayCache newCache) {
+        kerberosReplayCache = newCache;
+    }
+
+    /**
+     * Get the replay cache for the authenticators of Kerberos AP-REQ tokens
+     */
+    public ReplayCache getKerberosReplayCache() {
+        return kerberosReplayCache;
+    }
+
+    /**
+     * Set the store of the secrets of established security contexts, which is consulted before
+     * the CallbackHandler when processing SecurityContextTokens and DerivedKeyTokens
+     */
+    public void setSecurityContextStore(SecurityContextStore securityContextStore) {
+        this.securityContextStore = securityContextStore;
+    }
+
+    /**
+     * Get the store of the secrets of established security contexts
+     */
+    public SecurityContextStore getSecurityContextStore() {
+        return securityContextStore;
+    }
+
+    /**
+     * Set the cache of the keys derived from received UsernameTokens
+     */
+    public void setUsernameTokenDerivedKeyCache(UsernameTokenDerivedKeyCache usernameTokenDerivedKeyCache) {
+        this.usernameTokenDerivedKeyCache = usernameTokenDerivedKeyCache;
+    }
+
+    /**
+     * Get the cache of the keys derived from received UsernameTokens
+     */
+    public UsernameTokenDerivedKeyCache getUsernameTokenDerivedKeyCache() {
+        return usernameTokenDerivedKeyCache;
+    }
+
+    /**
+     * Set the cache of the JAAS Subject used to validate received Kerberos tokens. If it is not set,
+     * a JAAS login is performed for every received Kerberos token.
+     */
+    public void setKerberosServiceSubjectCache(KerberosServiceSubjectCache kerberosServiceSubjectCache) {
+        this.kerberosServiceSubjectCache = kerberosServiceSubjectCache;
+    }
+
+    /**
+     * Get the cache of the JAAS Subject used to validate received Kerberos tokens
+     */
+    public KerberosServiceSubjectCache getKerberosServiceSubjectCache() {
+        return kerberosServiceSubjectCache;
+    }
+
+    /**
+     * Set the cache of the session keys that the KerberosTokenDecoder obtained from received service
+     * tickets. If it is not set, the ticket of every received Kerberos token is decoded.
+     */
+    public void setKerberosTicketCache(KerberosTicketCache kerberosTicketCache) {
+        this.kerberosTicketCache = kerberosTicketCache;
+    }
+
+    /**
+     * Get the cache of the session keys that the KerberosTokenDecoder obtained from received service tickets
+     */
+    public KerberosTicketCache getKerberosTicketCache() {
+        return kerberosTicketCache;
+    }
+
     public boolean isDisableBSPEnforcement() {
         return disableBSPEnforcement;
     }
@@ -828,6 +1011,47 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.validateSamlSubjectConfirmation = validateSamlSubjectConfirmation;
     }
 
+    public boolean isStreamingSamlTokenProcessing() {
+        return streamingSamlTokenProcessing;
+    }
+
+    /**
+     * Whether to process a received SAML Assertion on the streamed XMLSecEvents instead of building
+     * a DOM Element and OpenSAML object for it. A custom SamlTokenValidator must implement
+     * StreamingSamlTokenValidator to benefit from this, otherwise the OpenSAML object is created for it.
+     */
+    public void setStreamingSamlTokenProcessing(boolean streamingSamlTokenProcessing) {
+        this.streamingSamlTokenProcessing = streamingSamlTokenProcessing;
+    }
+
+    public boolean isAuthenticateAttachmentBeforeRelease() {
+        return authenticateAttachmentBeforeRelease;
+    }
+
+    /**
+     * Whether to buffer the plaintext of received AES-GCM encrypted attachments (in a temporary file above
+     * 1 MB) until the Cipher has verified the authentication tag. This is not needed if a
+     * decryptionMemoryBudget is set, as the decrypted attachments are then buffered anyway.
+     */
+    public void setAuthenticateAttachmentBeforeRelease(boolean authenticateAttachmentBeforeRelease) {
+        this.authenticateAttachmentBeforeRelease = authenticateAttachmentBeforeRelease;
+    }
+
+    public long getDecryptionMemoryBudget() {
+        return decryptionMemoryBudget;
+    }
+
+    /**
+     * Set the maximum number of decrypted attachment bytes of a message that are buffered in memory.
+     * If it is zero or more, each decrypted attachment is read (and authenticated) completely before it
+     * is passed to the attachment CallbackHandler, and is written to a temporary file once the budget is
+     * used up. The default of -1 disables the buffering. Only (SwA) attachments count against the budget,
+     * decrypted XML content is not buffered and is not counted.
+     */
+    public void setDecryptionMemoryBudget(long decryptionMemoryBudget) {
+        this.decryptionMemoryBudget = decryptionMemoryBudget;
+    }
+
     public boolean isMustUnderstand() {
         return mustUnderstand;
     }
@@ -42,6 +42,7 @@ import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.ReplayableInputStream;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -248,7 +249,9 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
             inboundSecurityToken.getSecretKey(encAlgo, XMLSecurityConstants.Enc, encryptedDataType.getId());
 
         return
-            AttachmentUtils.setupAttachmentDecryptionStream(encAlgo, cipher, symmetricKey, attachment.getSourceStream());
+            AttachmentUtils.setupAttachmentDecryptionStream(
+                encAlgo, cipher, symmetricKey, attachment.getSourceStream(),
+                ((WSSSecurityProperties) getSecurityProperties()).isAuthenticateAttachmentBeforeRelease());
     }
 
     @Override
@@ -354,8 +357,16 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
             final Key symmetricKey =
                 inboundSecurityToken.getSecretKey(encAlgo, XMLSecurityConstants.Enc, encryptedDataType.getId());
 
+            // The decryption memory budget buffers the authenticated plaintext itself
+            WSSSecurityProperties securityProperties = (WSSSecurityProperties) getSecurityProperties();
+            boolean bufferAttachment = securityProperties.getDecryptionMemoryBudget() >= 0;
             InputStream attachmentInputStream = //NOPMD
-                AttachmentUtils.setupAttachmentDecryptionStream(encAlgo, cipher, symmetricKey, attachment.getSourceStream());
+                AttachmentUtils.setupAttachmentDecryptionStream(
+                    encAlgo, cipher, symmetricKey, attachment.getSourceStream(),
+                    securityProperties.isAuthenticateAttachmentBeforeRelease() && !bufferAttachment);
+            if (bufferAttachment) {
+                attachmentInputStream = bufferDecryptedAttachment(inputProcessorChain, attachmentInputStream);
+            }
 
             Attachment resultAttachment = new Attachment();
             resultAttachment.setId(attachment.getId());
@@ -391,6 +402,38 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
         }
     }
 
+    /**
+     * Decrypt the complete attachment, so that a decryption failure (e.g. an invalid authentication tag)
+     * is reported before the attachment is passed on. The decrypted bytes are kept in memory within the
+     * remaining memory budget of the message, and are written to a temporary file otherwise. The budget
+     * only accounts for attachments - decrypted XML content is streamed to the next processor and is not
+     * counted against it.
+     */
+    private InputStream bufferDecryptedAttachment(InputProcessorChain inputProcessorChain,
+                                                  InputStream decryptedInputStream) throws WSSecurityException {
+        InboundSecurityContext securityContext = inputProcessorChain.getSecurityContext();
+        Long remainingMemoryBudget = securityContext.get(WSSConstants.PROP_DECRYPTION_MEMORY_BUDGET);
+        if (remainingMemoryBudget == null) {
+            remainingMemoryBudget = ((WSSSecurityProperties) getSecurityProperties()).getDecryptionMemoryBudget();
+        }
+
+        ReplayableInputStream replayableInputStream =
+            new ReplayableInputStream(decryptedInputStream, remainingMemoryBudget);
+        try {
+            InputStream replayStream = replayableInputStream.getReplayStream();
+            long length = replayableInputStream.getLength();
+            if (length <= remainingMemoryBudget) {
+                securityContext.put(WSSConstants.PROP_DECRYPTION_MEMORY_BUDGET, remainingMemoryBudget - length);
+            } else {
+                LOG.debug("Decrypted attachment exceeds the memory budget, it is buffered in a temporary file");
+            }
+            return replayStream;
+        } catch (IOException e) {
+            replayableInputStream.discard();
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
+        }
+    }
+
     private static final class DeferredAttachment {
 
         private EncryptedDataType encryptedDataType;
@@ -130,7 +130,13 @@ public class DerivedKeyTokenInputHandler extends AbstractInputSecurityHeaderHand
                         if (derivedKeyAlgorithm == null) {
                             derivedKeyAlgorithm = WSSConstants.P_SHA_1;
                         }
+                        String contextIdentifier = null;
+                        if (WSSecurityTokenConstants.SECURITY_CONTEXT_TOKEN.equals(referencedSecurityToken.getTokenType())) {
+                            contextIdentifier = referencedSecurityToken.getId();
+                        }
                         byte[] keyBytes = DerivedKeyUtils.deriveKey(
+                                ((WSSSecurityProperties) securityProperties).getSecurityContextStore(),
+                                contextIdentifier,
                                 derivedKeyAlgorithm,
                                 derivedKeyTokenType.getLabel(),
                                 derivedKeyTokenType.getLength().intValue(),
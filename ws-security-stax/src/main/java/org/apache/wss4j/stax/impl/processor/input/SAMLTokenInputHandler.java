@@ -56,6 +56,8 @@ import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.utils.WSSUtils;
 import org.apache.wss4j.stax.validate.SamlTokenValidator;
 import org.apache.wss4j.stax.validate.SamlTokenValidatorImpl;
+import org.apache.wss4j.stax.validate.StreamingSamlAssertion;
+import org.apache.wss4j.stax.validate.StreamingSamlTokenValidator;
 import org.apache.wss4j.stax.validate.TokenContext;
 import org.apache.xml.security.binding.xmldsig.KeyInfoType;
 import org.apache.xml.security.binding.xmldsig.KeyValueType;
@@ -103,9 +105,24 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
     public void handle(final InputProcessorChain inputProcessorChain, final XMLSecurityProperties securityProperties,
                        Deque<XMLSecEvent> eventQueue, Integer index) throws XMLSecurityException {
 
+        final WSSSecurityProperties wssSecurityProperties = (WSSSecurityProperties) securityProperties;
+        if (wssSecurityProperties.isStreamingSamlTokenProcessing()) {
+            final List<XMLSecEvent> xmlSecEvents = getResponsibleXMLSecEvents(eventQueue, index);
+            SamlTokenValidator samlTokenValidator =
+                wssSecurityProperties.getValidator(xmlSecEvents.get(0).asStartElement().getName());
+            if (samlTokenValidator == null) {
+                samlTokenValidator = new SamlTokenValidatorImpl();
+            }
+            if (samlTokenValidator instanceof StreamingSamlTokenValidator
+                && ((StreamingSamlTokenValidator) samlTokenValidator).isStreamingValidationSupported()) {
+                handleStreaming(inputProcessorChain, wssSecurityProperties, eventQueue, index, xmlSecEvents,
+                                (StreamingSamlTokenValidator) samlTokenValidator);
+                return;
+            }
+        }
+
         final Document samlTokenDocument = (Document) parseStructure(eventQueue, index, securityProperties);
 
-        final WSSSecurityProperties wssSecurityProperties = (WSSSecurityProperties) securityProperties;
         final WSInboundSecurityContext wsInboundSecurityContext = (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
         final Element samlElement = samlTokenDocument.getDocumentElement();
         final SamlAssertionWrapper samlAssertionWrapper = new SamlAssertionWrapper(samlElement);
@@ -158,17 +175,7 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
         final InboundSecurityToken subjectSecurityToken;
 
         List<String> methods = samlAssertionWrapper.getConfirmationMethods();
-        boolean holderOfKey = false;
-        if (methods != null) {
-            for (String method : methods) {
-                if (OpenSAMLUtil.isMethodHolderOfKey(method)) {
-                    holderOfKey = true;
-                    break;
-                }
-            }
-        }
-
-        if (holderOfKey) {
+        if (isHolderOfKey(methods)) {
             int subjectKeyInfoIndex = getSubjectKeyInfoIndex(eventQueue);
             if (subjectKeyInfoIndex < 0) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, "noKeyInSAMLToken");
@@ -190,6 +197,79 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
         final SamlSecurityToken samlSecurityToken =
                 samlTokenValidator.validate(samlAssertionWrapper, subjectSecurityToken, tokenContext);
 
+        registerSamlToken(inputProcessorChain, wssSecurityProperties, samlSecurityToken, samlAssertionWrapper.getId(),
+                          methods, subjectSecurityToken, elementPath);
+    }
+
+    /**
+     * Process the Assertion directly on the XMLSecEvents of the security header. The signature is verified
+     * on the events and the OpenSAML object is only created if it is requested later on from the
+     * SamlSecurityToken.
+     */
+    private void handleStreaming(final InputProcessorChain inputProcessorChain,
+                                 final WSSSecurityProperties wssSecurityProperties,
+                                 Deque<XMLSecEvent> eventQueue, int index, List<XMLSecEvent> xmlSecEvents,
+                                 StreamingSamlTokenValidator samlTokenValidator) throws XMLSecurityException {
+
+        final WSInboundSecurityContext wsInboundSecurityContext = (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
+        final StreamingSamlAssertion samlAssertion =
+            new StreamingSamlAssertion(xmlSecEvents, index, wssSecurityProperties.getDocumentCreator());
+
+        //important: check the signature before we do other processing...
+        if (samlAssertion.isSigned()) {
+            int sigKeyInfoIdx = samlAssertion.toQueueIndex(samlAssertion.getSignatureKeyInfoIndex());
+            if (sigKeyInfoIdx < 0) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, "noKeyInSAMLToken");
+            }
+            InboundSecurityToken sigSecurityToken =
+                parseKeyInfo(inputProcessorChain, wssSecurityProperties, eventQueue, sigKeyInfoIdx);
+
+            if (sigSecurityToken == null) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, "noKeyInSAMLToken");
+            }
+
+            samlTokenValidator.validate(sigSecurityToken, wssSecurityProperties);
+
+            new StreamingSamlSignatureVerifier(samlAssertion).verify(sigSecurityToken);
+        }
+
+        final InboundSecurityToken subjectSecurityToken;
+
+        List<String> methods = samlAssertion.getConfirmationMethods();
+        if (isHolderOfKey(methods)) {
+            int subjectKeyInfoIndex = samlAssertion.toQueueIndex(samlAssertion.getSubjectKeyInfoIndex());
+            if (subjectKeyInfoIndex < 0) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, "noKeyInSAMLToken");
+            }
+
+            subjectSecurityToken =
+                parseKeyInfo(inputProcessorChain, wssSecurityProperties, eventQueue, subjectKeyInfoIndex);
+            if (subjectSecurityToken == null) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, "noKeyInSAMLToken");
+            }
+        } else {
+            subjectSecurityToken = null;
+        }
+
+        final List<QName> elementPath = getElementPath(eventQueue);
+        final TokenContext tokenContext =
+            new TokenContext(wssSecurityProperties, wsInboundSecurityContext, xmlSecEvents, elementPath);
+
+        final SamlSecurityToken samlSecurityToken =
+            samlTokenValidator.validate(samlAssertion, subjectSecurityToken, tokenContext);
+
+        registerSamlToken(inputProcessorChain, wssSecurityProperties, samlSecurityToken, samlAssertion.getId(),
+                          methods, subjectSecurityToken, elementPath);
+    }
+
+    private void registerSamlToken(final InputProcessorChain inputProcessorChain,
+                                   final WSSSecurityProperties wssSecurityProperties,
+                                   final SamlSecurityToken samlSecurityToken, final String id,
+                                   List<String> confirmationMethods, InboundSecurityToken subjectSecurityToken,
+                                   List<QName> elementPath) throws XMLSecurityException {
+
+        final WSInboundSecurityContext wsInboundSecurityContext = (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
+
         SecurityTokenProvider<InboundSecurityToken> subjectSecurityTokenProvider =
                 new SecurityTokenProvider<InboundSecurityToken>() {
 
@@ -200,16 +280,16 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
 
             @Override
             public String getId() {
-                return samlAssertionWrapper.getId();
+                return id;
             }
         };
 
-        wsInboundSecurityContext.registerSecurityTokenProvider(samlAssertionWrapper.getId(), subjectSecurityTokenProvider);
+        wsInboundSecurityContext.registerSecurityTokenProvider(id, subjectSecurityTokenProvider);
 
         //fire a tokenSecurityEvent
         SamlTokenSecurityEvent samlTokenSecurityEvent = new SamlTokenSecurityEvent();
         samlTokenSecurityEvent.setSecurityToken((SamlSecurityToken)subjectSecurityTokenProvider.getSecurityToken());
-        samlTokenSecurityEvent.setCorrelationID(samlAssertionWrapper.getId());
+        samlTokenSecurityEvent.setCorrelationID(id);
         wsInboundSecurityContext.registerSecurityEvent(samlTokenSecurityEvent);
 
         if (wssSecurityProperties.isValidateSamlSubjectConfirmation()) {
@@ -219,13 +299,24 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
             }
             SAMLTokenVerifierInputProcessor samlTokenVerifierInputProcessor =
                     new SAMLTokenVerifierInputProcessor(
-                            securityProperties, samlAssertionWrapper, subjectSecurityTokenProvider, subjectSecurityToken,
-                            soap12);
+                            wssSecurityProperties, confirmationMethods, subjectSecurityTokenProvider,
+                            subjectSecurityToken, soap12);
             wsInboundSecurityContext.addSecurityEventListener(samlTokenVerifierInputProcessor);
             inputProcessorChain.addProcessor(samlTokenVerifierInputProcessor);
         }
     }
 
+    private static boolean isHolderOfKey(List<String> methods) {
+        if (methods != null) {
+            for (String method : methods) {
+                if (OpenSAMLUtil.isMethodHolderOfKey(method)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private int getSubjectKeyInfoIndex(Deque<XMLSecEvent> eventQueue) {
         int idx = -1;
         Iterator<XMLSecEvent> xmlSecEventIterator = eventQueue.descendingIterator();
@@ -527,7 +618,7 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
      */
     static class SAMLTokenVerifierInputProcessor extends AbstractInputProcessor implements SecurityEventListener {
 
-        private SamlAssertionWrapper samlAssertionWrapper;
+        private List<String> confirmationMethods;
         private SecurityTokenProvider<InboundSecurityToken> securityTokenProvider;
         private InboundSecurityToken subjectSecurityToken;
         private List<SignedElementSecurityEvent> samlTokenSignedElementSecurityEvents = new ArrayList<>();
@@ -538,14 +629,14 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
         private final List<QName> saml2TokenPath;
 
         SAMLTokenVerifierInputProcessor(XMLSecurityProperties securityProperties,
-                                        SamlAssertionWrapper samlAssertionWrapper,
+                                        List<String> confirmationMethods,
                                         SecurityTokenProvider<InboundSecurityToken> securityTokenProvider,
                                         InboundSecurityToken subjectSecurityToken,
                                         boolean soap12) {
             super(securityProperties);
             this.setPhase(XMLSecurityConstants.Phase.POSTPROCESSING);
             this.addAfterProcessor(OperationInputProcessor.class.getName());
-            this.samlAssertionWrapper = samlAssertionWrapper;
+            this.confirmationMethods = confirmationMethods;
             this.securityTokenProvider = securityTokenProvider;
             this.subjectSecurityToken = subjectSecurityToken;
 
@@ -600,14 +691,14 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
                 List<QName> elementPath = xmlSecStartElement.getElementPath();
                 if (elementPath.size() == 3 && WSSUtils.isInSOAPBody(elementPath)) {
                     inputProcessorChain.removeProcessor(this);
-                    checkPossessionOfKey(inputProcessorChain, samlAssertionWrapper, subjectSecurityToken);
+                    checkPossessionOfKey(inputProcessorChain, confirmationMethods, subjectSecurityToken);
                 }
             }
             return xmlSecEvent;
         }
 
         private void checkPossessionOfKey(
-                InputProcessorChain inputProcessorChain, SamlAssertionWrapper samlAssertionWrapper,
+                InputProcessorChain inputProcessorChain, List<String> confirmationMethods,
                 InboundSecurityToken subjectSecurityToken) throws WSSecurityException {
 
             boolean methodNotSatisfied = false;
@@ -617,7 +708,6 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
                 List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
                         inputProcessorChain.getSecurityContext().getRegisteredSecurityTokenProviders();
 
-                List<String> confirmationMethods = samlAssertionWrapper.getConfirmationMethods();
                 for (int i = 0; i < confirmationMethods.size(); i++) {
                     String confirmationMethod = confirmationMethods.get(i);
                     if (OpenSAMLUtil.isMethodHolderOfKey(confirmationMethod)) {
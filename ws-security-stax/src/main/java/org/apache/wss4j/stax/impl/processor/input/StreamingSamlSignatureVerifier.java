@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl.processor.input;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.utils.WSSUtils;
+import org.apache.wss4j.stax.validate.StreamingSamlAssertion;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.config.JCEAlgorithmMapper;
+import org.apache.xml.security.stax.ext.Transformer;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.impl.algorithms.SignatureAlgorithm;
+import org.apache.xml.security.stax.impl.algorithms.SignatureAlgorithmFactory;
+import org.apache.xml.security.stax.impl.transformer.canonicalizer.Canonicalizer20010315_Excl;
+import org.apache.xml.security.stax.impl.util.DigestOutputStream;
+import org.apache.xml.security.stax.impl.util.SignerOutputStream;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.apache.xml.security.utils.UnsyncBufferedOutputStream;
+import org.apache.xml.security.utils.XMLUtils;
+
+/**
+ * Verifies the enveloped signature of a SAML Assertion directly on the XMLSecEvents of the
+ * Assertion, without unmarshalling it to OpenSAML objects. The SAML signature profile is
+ * enforced: a single Reference to the Assertion, and only the enveloped signature and
+ * exclusive canonicalization transforms.
+ */
+class StreamingSamlSignatureVerifier {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(StreamingSamlSignatureVerifier.class);
+
+    private final StreamingSamlAssertion samlAssertion;
+
+    StreamingSamlSignatureVerifier(StreamingSamlAssertion samlAssertion) {
+        this.samlAssertion = samlAssertion;
+    }
+
+    public void verify(InboundSecurityToken securityToken) throws XMLSecurityException {
+        if (samlAssertion.getSignedInfoStartIndex() < 0 || samlAssertion.getSignedInfoEndIndex() < 0
+            || samlAssertion.getSignatureEndIndex() < 0 || samlAssertion.getSignatureValue() == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN,
+                "empty", new Object[] {"no signature to validate"});
+        }
+        checkSignatureProfile();
+        verifyDigest();
+        verifySignatureValue(securityToken);
+    }
+
+    private void checkSignatureProfile() throws WSSecurityException {
+        if (samlAssertion.getReferenceCount() != 1) {
+            LOG.debug("SAML Signature must contain exactly one Reference");
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+        }
+        String uri = samlAssertion.getReferenceURI();
+        if (uri != null && !uri.isEmpty() && !uri.equals("#" + samlAssertion.getId())) {
+            LOG.debug("SAML Signature Reference URI does not match the Assertion ID");
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+        }
+        boolean enveloped = false;
+        for (String transform : samlAssertion.getTransforms()) {
+            if (WSSConstants.NS_XMLDSIG_ENVELOPED_SIGNATURE.equals(transform)) {
+                enveloped = true;
+            } else if (!WSSConstants.NS_C14N_EXCL_OMIT_COMMENTS.equals(transform)
+                && !WSSConstants.NS_C14N_EXCL_WITH_COMMENTS.equals(transform)) {
+                LOG.debug("Unsupported SAML Signature Transform: " + transform);
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+            }
+        }
+        if (!enveloped) {
+            LOG.debug("SAML Signature must use the enveloped signature transform");
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+        }
+    }
+
+    private void verifyDigest() throws XMLSecurityException {
+        String digestAlgorithm = samlAssertion.getDigestMethod();
+        if (digestAlgorithm == null || samlAssertion.getDigestValue() == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+        }
+
+        MessageDigest messageDigest;
+        try {
+            String jceName = JCEAlgorithmMapper.translateURItoJCEID(digestAlgorithm);
+            String jceProvider = JCEAlgorithmMapper.getJCEProviderFromURI(digestAlgorithm);
+            if (jceName == null) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM,
+                    "unknownAlgorithm", new Object[] {digestAlgorithm});
+            }
+            if (jceProvider != null) {
+                messageDigest = MessageDigest.getInstance(jceName, jceProvider);
+            } else {
+                messageDigest = MessageDigest.getInstance(jceName);
+            }
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
+        }
+
+        DigestOutputStream digestOutputStream = new DigestOutputStream(messageDigest);
+        String c14nAlgorithm = WSSConstants.NS_C14N_EXCL_OMIT_COMMENTS;
+        if (samlAssertion.getTransforms().contains(WSSConstants.NS_C14N_EXCL_WITH_COMMENTS)) {
+            c14nAlgorithm = WSSConstants.NS_C14N_EXCL_WITH_COMMENTS;
+        }
+
+        // The enveloped signature transform is applied by skipping the events of the ds:Signature element
+        List<XMLSecEvent> xmlSecEvents = samlAssertion.getXmlSecEvents();
+        try (UnsyncBufferedOutputStream bufferedDigestOutputStream =
+                new UnsyncBufferedOutputStream(digestOutputStream)) {
+            Transformer transformer =
+                getCanonicalizer(c14nAlgorithm, samlAssertion.getTransformPrefixList(), bufferedDigestOutputStream);
+            for (int i = 0; i < xmlSecEvents.size(); i++) {
+                if (i == samlAssertion.getSignatureStartIndex()) {
+                    i = samlAssertion.getSignatureEndIndex();
+                    continue;
+                }
+                transformer.transform(xmlSecEvents.get(i));
+            }
+            transformer.doFinal();
+        } catch (IOException | XMLStreamException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
+        }
+
+        byte[] calculatedDigest = digestOutputStream.getDigestValue();
+        byte[] storedDigest = XMLUtils.decode(samlAssertion.getDigestValue());
+        if (!MessageDigest.isEqual(storedDigest, calculatedDigest)) {
+            LOG.debug("Calculated digest of the SAML Assertion does not match the stored digest");
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK,
+                "empty", new Object[] {"SAML signature validation failed"});
+        }
+    }
+
+    private void verifySignatureValue(InboundSecurityToken securityToken) throws XMLSecurityException {
+        String signatureAlgorithmURI = samlAssertion.getSignatureMethod();
+        if (signatureAlgorithmURI == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+        }
+
+        Key verifyKey;
+        if (securityToken.isAsymmetric()) {
+            verifyKey = securityToken.getPublicKey(
+                signatureAlgorithmURI, XMLSecurityConstants.Asym_Sig, samlAssertion.getId());
+        } else {
+            verifyKey = securityToken.getSecretKey(
+                signatureAlgorithmURI, XMLSecurityConstants.Sym_Sig, samlAssertion.getId());
+        }
+        if (verifyKey == null) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity",
+                new Object[] {"cannot get certificate or key"});
+        }
+
+        SignatureAlgorithm signatureAlgorithm;
+        try {
+            signatureAlgorithm =
+                SignatureAlgorithmFactory.getInstance().getSignatureAlgorithm(signatureAlgorithmURI);
+        } catch (NoSuchProviderException | NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
+        }
+        signatureAlgorithm.engineInitVerify(verifyKey);
+
+        SignerOutputStream signerOutputStream = new SignerOutputStream(signatureAlgorithm);
+        String c14nAlgorithm = samlAssertion.getCanonicalizationMethod();
+        if (c14nAlgorithm == null) {
+            c14nAlgorithm = WSSConstants.NS_C14N_EXCL_OMIT_COMMENTS;
+        }
+        List<XMLSecEvent> xmlSecEvents = samlAssertion.getXmlSecEvents();
+        try (UnsyncBufferedOutputStream bufferedSignerOutputStream =
+                new UnsyncBufferedOutputStream(signerOutputStream)) {
+            Transformer transformer = getCanonicalizer(
+                c14nAlgorithm, samlAssertion.getCanonicalizationPrefixList(), bufferedSignerOutputStream);
+            for (int i = samlAssertion.getSignedInfoStartIndex(); i <= samlAssertion.getSignedInfoEndIndex(); i++) {
+                transformer.transform(xmlSecEvents.get(i));
+            }
+            transformer.doFinal();
+        } catch (IOException | XMLStreamException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
+        }
+
+        if (!signerOutputStream.verify(XMLUtils.decode(samlAssertion.getSignatureValue()))) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK,
+                "empty", new Object[] {"SAML signature validation failed"});
+        }
+    }
+
+    private static Transformer getCanonicalizer(String c14nAlgorithm, List<String> prefixList,
+                                                OutputStream outputStream) throws XMLSecurityException {
+        Map<String, Object> transformerProperties = null;
+        if (prefixList != null) {
+            transformerProperties = new HashMap<>();
+            transformerProperties.put(Canonicalizer20010315_Excl.INCLUSIVE_NAMESPACES_PREFIX_LIST, prefixList);
+        }
+        return WSSUtils.getTransformer(
+            null, outputStream, transformerProperties, c14nAlgorithm, XMLSecurityConstants.DIRECTION.IN);
+    }
+}
@@ -50,6 +50,10 @@ import org.apache.xml.security.stax.impl.processor.output.FinalOutputProcessor;
  * means that the timestamp is below the signature in the sec-header. Because of the highly dynamic nature
  * of the processor chain (and encryption makes it far more worse) we have to order the headers afterwards.
  * So that is what this processor does, the final header reordering...
+ *
+ * The headers of the last configured action which are not encrypted (except the signatures) always come first
+ * in the final order, in the order in which they are written. So they are passed on directly, and only the other
+ * headers are buffered until the end of the security header.
  */
 public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
 
@@ -58,6 +62,9 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
 
     private int securityHeaderIndex;
     private Deque<XMLSecEvent> currentDeque;
+    private XMLSecurityConstants.Action directOutputAction;
+    private boolean directOutput;
+    private boolean directOutputWritten;
 
     public SecurityHeaderReorderProcessor() throws XMLSecurityException {
         super();
@@ -70,6 +77,9 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
         super.init(outputProcessorChain);
 
         List<XMLSecurityConstants.Action> outActions = getSecurityProperties().getActions();
+        if (!outActions.isEmpty()) {
+            directOutputAction = outActions.get(outActions.size() - 1);
+        }
         for (int i = outActions.size() - 1; i >= 0; i--) {
             XMLSecurityConstants.Action outAction = outActions.get(i);
             actionEventMap.put(outAction, new TreeMap<SecurityHeaderOrder, Deque<XMLSecEvent>>(new Comparator<SecurityHeaderOrder>() {
@@ -109,7 +119,9 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
                 while (iterator.hasNext()) {
                     Map.Entry<XMLSecurityConstants.Action, Map<SecurityHeaderOrder, Deque<XMLSecEvent>>> next = iterator.next();
 
-                    boolean encryptAction = false;
+                    //the headers of an encryption action might have been passed on directly already
+                    boolean encryptAction = directOutputWritten && next.getKey().equals(directOutputAction)
+                        && directOutputAction.getName().contains("Encrypt");
                     Iterator<Map.Entry<SecurityHeaderOrder, Deque<XMLSecEvent>>> entryIterator = next.getValue().entrySet().iterator();
                     while (entryIterator.hasNext()) {
                         Map.Entry<SecurityHeaderOrder, Deque<XMLSecEvent>> entry = entryIterator.next();
@@ -168,12 +180,28 @@ public class SecurityHeaderReorderProcessor extends AbstractOutputProcessor {
                                 + " but got " + xmlSecStartElement.getName()});
             }
 
-            Map<SecurityHeaderOrder, Deque<XMLSecEvent>> map = actionEventMap.get(securityHeaderOrder.getAction());
-            currentDeque = new ArrayDeque<>();
-            map.put(securityHeaderOrder, currentDeque);
-
             securityHeaderIndex++;
+
+            directOutput = isDirectOutput(securityHeaderOrder);
+            if (directOutput) {
+                directOutputWritten = true;
+                currentDeque = null;
+            } else {
+                Map<SecurityHeaderOrder, Deque<XMLSecEvent>> map = actionEventMap.get(securityHeaderOrder.getAction());
+                currentDeque = new ArrayDeque<>();
+                map.put(securityHeaderOrder, currentDeque);
+            }
         }
-        currentDeque.offer(xmlSecEvent);
+        if (directOutput) {
+            outputProcessorChain.processEvent(xmlSecEvent);
+        } else {
+            currentDeque.offer(xmlSecEvent);
+        }
+    }
+
+    private boolean isDirectOutput(SecurityHeaderOrder securityHeaderOrder) {
+        return securityHeaderOrder.getAction().equals(directOutputAction)
+            && !securityHeaderOrder.isEncrypted()
+            && !WSSConstants.TAG_dsig_Signature.equals(securityHeaderOrder.getSecurityHeaderElementName());
     }
 }
@@ -31,11 +31,15 @@ import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
 
+import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
+import org.apache.wss4j.common.kerberos.CachingKerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
 import org.apache.wss4j.common.kerberos.KerberosServiceContext;
 import org.apache.wss4j.common.kerberos.KerberosServiceExceptionAction;
+import org.apache.wss4j.common.kerberos.KerberosServiceSubjectCache;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoderException;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -53,6 +57,9 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
     private String kerberosTokenValueType;
 
     private KerberosTokenDecoder kerberosTokenDecoder;
+    private KerberosTicketCache kerberosTicketCache;
+    private KerberosServiceSubjectCache subjectCache;
+    private ReplayCache replayCache;
     private Subject subject;
     private Principal principal;
     private byte[] sessionKey;
@@ -91,11 +98,16 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "kerberosCallbackServiceNameNotSupplied");
             }
 
-            LoginContext loginContext = new LoginContext(contextAndServiceNameCallback.getContextName(), callbackHandler);
-            loginContext.login();
+            if (subjectCache != null) {
+                this.subject = subjectCache.getSubject(contextAndServiceNameCallback.getContextName(), callbackHandler);
+            } else {
+                LoginContext loginContext =
+                    new LoginContext(contextAndServiceNameCallback.getContextName(), callbackHandler);
+                loginContext.login();
+                this.subject = loginContext.getSubject();
+            }
 
             // Get the service name to use - fall back on the principal
-            this.subject = loginContext.getSubject();
 
             String service = contextAndServiceNameCallback.getServiceName();
             if (service == null) {
@@ -115,6 +127,7 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
                                                    service,
                                                    contextAndServiceNameCallback.isUsernameServiceNameForm(),
                                                    false);
+            action.setReplayCache(replayCache);
             KerberosServiceContext krbServiceCtx = null;
             try {
                 krbServiceCtx = Subject.doAs(subject, action);
@@ -135,10 +148,14 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
             if (key != null) {
                 sessionKey = key.getEncoded();
             } else if (kerberosTokenDecoder != null) {
-                kerberosTokenDecoder.clear();
-                kerberosTokenDecoder.setToken(binaryContent);
-                kerberosTokenDecoder.setSubject(subject);
-                sessionKey = kerberosTokenDecoder.getSessionKey();
+                KerberosTokenDecoder decoder = kerberosTokenDecoder;
+                if (kerberosTicketCache != null) {
+                    decoder = new CachingKerberosTokenDecoder(kerberosTokenDecoder, kerberosTicketCache);
+                }
+                decoder.clear();
+                decoder.setToken(binaryContent);
+                decoder.setSubject(subject);
+                sessionKey = decoder.getSessionKey();
             }
 
             return sessionKey;
@@ -200,4 +217,54 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
     public void setKerberosTokenDecoder(KerberosTokenDecoder kerberosTokenDecoder) {
         this.kerberosTokenDecoder = kerberosTokenDecoder;
     }
+
+    /**
+     * Get the cache of the session keys obtained from the KerberosTokenDecoder
+     * @return the cache of the session keys obtained from the KerberosTokenDecoder
+     */
+    public KerberosTicketCache getKerberosTicketCache() {
+        return kerberosTicketCache;
+    }
+
+    /**
+     * Set the cache of the session keys obtained from the KerberosTokenDecoder. If it is set, a
+     * service ticket that is reused by a client is only decoded once. It can be null (the default).
+     * @param kerberosTicketCache the cache of the session keys obtained from the KerberosTokenDecoder
+     */
+    public void setKerberosTicketCache(KerberosTicketCache kerberosTicketCache) {
+        this.kerberosTicketCache = kerberosTicketCache;
+    }
+
+    /**
+     * Get the cache of the JAAS Subject of the service
+     * @return the cache of the JAAS Subject of the service
+     */
+    public KerberosServiceSubjectCache getSubjectCache() {
+        return subjectCache;
+    }
+
+    /**
+     * Set the cache of the JAAS Subject of the service. If it is null, a JAAS login is performed
+     * for every received Kerberos token.
+     * @param subjectCache the cache of the JAAS Subject of the service
+     */
+    public void setSubjectCache(KerberosServiceSubjectCache subjectCache) {
+        this.subjectCache = subjectCache;
+    }
+
+    /**
+     * Get the ReplayCache used to detect replayed AP-REQ authenticators
+     * @return the ReplayCache used to detect replayed AP-REQ authenticators
+     */
+    public ReplayCache getReplayCache() {
+        return replayCache;
+    }
+
+    /**
+     * Set the ReplayCache used to detect replayed AP-REQ authenticators. It can be null.
+     * @param replayCache the ReplayCache used to detect replayed AP-REQ authenticators
+     */
+    public void setReplayCache(ReplayCache replayCache) {
+        this.replayCache = replayCache;
+    }
 }
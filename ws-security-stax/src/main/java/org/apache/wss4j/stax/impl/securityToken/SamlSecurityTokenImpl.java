@@ -47,6 +47,7 @@ import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.securityToken.SamlSecurityToken;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.wss4j.stax.validate.StreamingSamlAssertion;
 import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
@@ -56,7 +57,11 @@ import org.opensaml.saml.common.SAMLVersion;
 
 public class SamlSecurityTokenImpl extends AbstractInboundSecurityToken implements SamlSecurityToken {
 
-    private final SamlAssertionWrapper samlAssertionWrapper;
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SamlSecurityTokenImpl.class);
+
+    private SamlAssertionWrapper samlAssertionWrapper;
+    private StreamingSamlAssertion streamingSamlAssertion;
     private InboundSecurityToken subjectSecurityToken;
     private Crypto crypto;
     private WSSSecurityProperties securityProperties;
@@ -125,6 +130,17 @@ public class SamlSecurityTokenImpl extends AbstractInboundSecurityToken implemen
         this.securityProperties = securityProperties;
     }
 
+    public SamlSecurityTokenImpl(StreamingSamlAssertion streamingSamlAssertion, InboundSecurityToken subjectSecurityToken,
+                                 WSInboundSecurityContext wsInboundSecurityContext, Crypto crypto,
+                                 WSSecurityTokenConstants.KeyIdentifier keyIdentifier,
+                                 WSSSecurityProperties securityProperties) {
+        super(wsInboundSecurityContext, streamingSamlAssertion.getId(), keyIdentifier, true);
+        this.streamingSamlAssertion = streamingSamlAssertion;
+        this.crypto = crypto;
+        this.subjectSecurityToken = subjectSecurityToken;
+        this.securityProperties = securityProperties;
+    }
+
     @Override
     public boolean isAsymmetric() throws XMLSecurityException {
         if (this.subjectSecurityToken != null && this.subjectSecurityToken.isAsymmetric()) {
@@ -190,17 +206,24 @@ public class SamlSecurityTokenImpl extends AbstractInboundSecurityToken implemen
     public void verify() throws XMLSecurityException {
         //todo revisit verify for every security token incl. public-key
         //todo should we call verify implicit when accessing the keys?
-        if (samlAssertionWrapper == null) {
+        List<String> methods;
+        boolean signed;
+        if (streamingSamlAssertion != null) {
+            methods = streamingSamlAssertion.getConfirmationMethods();
+            signed = streamingSamlAssertion.isSigned();
+        } else if (samlAssertionWrapper != null) {
+            methods = samlAssertionWrapper.getConfirmationMethods();
+            signed = samlAssertionWrapper.isSigned();
+        } else {
             return;
         }
         String confirmMethod = null;
-        List<String> methods = samlAssertionWrapper.getConfirmationMethods();
         if (methods != null && !methods.isEmpty()) {
             confirmMethod = methods.get(0);
         }
         // If HOK + Token is signed then we don't need to verify the subject cert, as we
         // indirectly trust it
-        if (!OpenSAMLUtil.isMethodHolderOfKey(confirmMethod) && !samlAssertionWrapper.isSigned()) {
+        if (!OpenSAMLUtil.isMethodHolderOfKey(confirmMethod) && !signed) {
             X509Certificate[] x509Certificates = getX509Certificates();
             if (x509Certificates != null && x509Certificates.length > 0) {
                 boolean enableRevocation = false;
@@ -223,11 +246,15 @@ public class SamlSecurityTokenImpl extends AbstractInboundSecurityToken implemen
 
     @Override
     public WSSecurityTokenConstants.TokenType getTokenType() {
-        if (samlAssertionWrapper != null
-            && samlAssertionWrapper.getSamlVersion() == SAMLVersion.VERSION_10) {
+        SAMLVersion samlVersion = null;
+        if (streamingSamlAssertion != null) {
+            samlVersion = streamingSamlAssertion.getSamlVersion();
+        } else if (samlAssertionWrapper != null) {
+            samlVersion = samlAssertionWrapper.getSamlVersion();
+        }
+        if (samlVersion == SAMLVersion.VERSION_10) {
             return WSSecurityTokenConstants.SAML_10_TOKEN;
-        } else if (samlAssertionWrapper != null
-            && samlAssertionWrapper.getSamlVersion() == SAMLVersion.VERSION_11) {
+        } else if (samlVersion == SAMLVersion.VERSION_11) {
             return WSSecurityTokenConstants.SAML_11_TOKEN;
         }
         return WSSecurityTokenConstants.SAML_20_TOKEN;
@@ -244,16 +271,22 @@ public class SamlSecurityTokenImpl extends AbstractInboundSecurityToken implemen
             this.principal = new SAMLTokenPrincipal() {
                 @Override
                 public SamlAssertionWrapper getToken() {
-                    return samlAssertionWrapper;
+                    return getSamlAssertionWrapper();
                 }
 
                 @Override
                 public String getName() {
+                    if (streamingSamlAssertion != null) {
+                        return streamingSamlAssertion.getSubjectName();
+                    }
                     return samlAssertionWrapper.getSubjectName();
                 }
 
                 @Override
                 public String getId() {
+                    if (streamingSamlAssertion != null) {
+                        return streamingSamlAssertion.getId();
+                    }
                     return samlAssertionWrapper.getId();
                 }
             };
@@ -263,6 +296,14 @@ public class SamlSecurityTokenImpl extends AbstractInboundSecurityToken implemen
 
     @Override
     public SamlAssertionWrapper getSamlAssertionWrapper() {
+        if (samlAssertionWrapper == null && streamingSamlAssertion != null) {
+            // The OpenSAML object is only built on demand if the Assertion was processed in streaming mode
+            try {
+                samlAssertionWrapper = streamingSamlAssertion.getSamlAssertionWrapper();
+            } catch (WSSecurityException e) {
+                LOG.warn("Unable to create the SAML Assertion from the streamed events", e);
+            }
+        }
         return samlAssertionWrapper;
     }
 }
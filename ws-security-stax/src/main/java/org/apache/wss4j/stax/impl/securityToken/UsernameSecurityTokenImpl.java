@@ -27,6 +27,7 @@ import javax.security.auth.Subject;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.principal.UsernameTokenPrincipal;
+import org.apache.wss4j.common.util.UsernameTokenDerivedKeyCache;
 import org.apache.wss4j.common.util.UsernameTokenUtil;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -51,6 +52,7 @@ public class UsernameSecurityTokenImpl extends AbstractInboundSecurityToken impl
     private final WSInboundSecurityContext wsInboundSecurityContext;
     private Subject subject;
     private Principal principal;
+    private UsernameTokenDerivedKeyCache derivedKeyCache;
 
     public UsernameSecurityTokenImpl(WSSConstants.UsernameTokenPasswordType usernameTokenPasswordType,  //NOPMD
                                      String username, String password, String createdTime, byte[] nonce,
@@ -125,7 +127,15 @@ public class UsernameSecurityTokenImpl extends AbstractInboundSecurityToken impl
         }
 
         int iterationCount = iteration != null ? iteration.intValue() : (int)DEFAULT_ITERATION;
-        return UsernameTokenUtil.generateDerivedKey(password, salt, iterationCount);
+        return UsernameTokenUtil.generateDerivedKey(password, salt, iterationCount, derivedKeyCache);
+    }
+
+    /**
+     * Set the cache of derived keys used by generateDerivedKey
+     * @param derivedKeyCache the cache of derived keys, or null to derive the key from scratch
+     */
+    public void setDerivedKeyCache(UsernameTokenDerivedKeyCache derivedKeyCache) {
+        this.derivedKeyCache = derivedKeyCache;
     }
 
     @Override
@@ -18,14 +18,7 @@
  */
 package org.apache.wss4j.stax.impl.securityToken;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.security.cert.CertPath;
-import java.security.cert.Certificate;
-import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.Iterator;
-import java.util.List;
 
 import javax.security.auth.callback.CallbackHandler;
 
@@ -35,7 +28,6 @@ import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.xml.security.exceptions.XMLSecurityException;
-import org.apache.xml.security.utils.UnsyncByteArrayInputStream;
 
 public class X509PKIPathv1SecurityTokenImpl extends X509SecurityTokenImpl {
 
@@ -49,20 +41,15 @@ public class X509PKIPathv1SecurityTokenImpl extends X509SecurityTokenImpl {
         super(WSSecurityTokenConstants.X509PkiPathV1Token, wsInboundSecurityContext, crypto,
                 callbackHandler, id, keyIdentifier, securityProperties, true);
 
-        try (InputStream in = new UnsyncByteArrayInputStream(binaryContent)) {
-            CertPath certPath = getCrypto().getCertificateFactory().generateCertPath(in);
-            List<? extends Certificate> l = certPath.getCertificates();
-            X509Certificate[] certs = new X509Certificate[l.size()];
-            Iterator<? extends Certificate> iterator = l.iterator();
-            for (int i = 0; i < l.size(); i++) {
-                certs[i] = (X509Certificate) iterator.next();
-            }
-            if (certs.length > 0) {
-                setX509Certificates(certs);
-            }
-        } catch (CertificateException | IOException e) {
+        X509Certificate[] certs;
+        try {
+            certs = getCrypto().getCertificatesFromBytes(binaryContent);
+        } catch (WSSecurityException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e, "parseError");
         }
+        if (certs.length > 0) {
+            setX509Certificates(certs);
+        }
     }
 
     @Override
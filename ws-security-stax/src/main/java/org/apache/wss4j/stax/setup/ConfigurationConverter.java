@@ -32,12 +32,15 @@ import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.ConfigurationConstants;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextStore;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.JasyptPasswordEncryptor;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.common.util.Loader;
+import org.apache.wss4j.common.util.UsernameTokenDerivedKeyCache;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSConstants.UsernameTokenPasswordType;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -58,7 +61,7 @@ public final class ConfigurationConverter {
         // complete
     }
 
-    public static WSSSecurityProperties convert(Map<String, Object> config) {
+    public static WSSSecurityProperties convert(Map<String, Object> config) throws WSSecurityException {
         WSSSecurityProperties properties = new WSSSecurityProperties();
 
         if (config == null) {
@@ -390,7 +393,7 @@ public final class ConfigurationConverter {
     public static void parseBooleanProperties(
         Map<String, Object> config,
         WSSSecurityProperties properties
-    ) {
+    ) throws WSSecurityException {
         //outbound sigConf is configured as an Action, see parseActions()
         boolean sigConf =
             decodeBooleanConfigValue(ConfigurationConstants.ENABLE_SIGNATURE_CONFIRMATION, false, config);
@@ -448,6 +451,27 @@ public final class ConfigurationConverter {
             decodeBooleanConfigValue(ConfigurationConstants.VALIDATE_SAML_SUBJECT_CONFIRMATION, true, config);
         properties.setValidateSamlSubjectConfirmation(validateSamlSubjectConf);
 
+        boolean streamingSamlTokenProcessing =
+            decodeBooleanConfigValue(ConfigurationConstants.STREAMING_SAML_TOKEN_PROCESSING, false, config);
+        properties.setStreamingSamlTokenProcessing(streamingSamlTokenProcessing);
+
+        boolean authenticateAttachmentBeforeRelease =
+            decodeBooleanConfigValue(ConfigurationConstants.AUTHENTICATE_ATTACHMENT_BEFORE_RELEASE, false, config);
+        properties.setAuthenticateAttachmentBeforeRelease(authenticateAttachmentBeforeRelease);
+
+        String decryptionMemoryBudget = getString(ConfigurationConstants.DECRYPTION_MEMORY_BUDGET, config);
+        if (decryptionMemoryBudget != null) {
+            try {
+                properties.setDecryptionMemoryBudget(Long.parseLong(decryptionMemoryBudget.trim()));
+            } catch (NumberFormatException e) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e,
+                        "empty",
+                        new Object[] {"Invalid " + ConfigurationConstants.DECRYPTION_MEMORY_BUDGET + ": "
+                        + decryptionMemoryBudget}
+                );
+            }
+        }
+
         boolean includeSignatureToken =
             decodeBooleanConfigValue(ConfigurationConstants.INCLUDE_SIGNATURE_TOKEN, false, config);
         properties.setIncludeSignatureToken(includeSignatureToken);
@@ -594,6 +618,30 @@ public final class ConfigurationConverter {
             properties.setSamlOneTimeUseReplayCache(samlOneTimeUseCache);
         }
 
+        ReplayCache kerberosReplayCache = //NOPMD
+            (ReplayCache)config.get(ConfigurationConstants.KERBEROS_REPLAY_CACHE_INSTANCE);
+        if (kerberosReplayCache != null) {
+            properties.setKerberosReplayCache(kerberosReplayCache);
+        }
+
+        KerberosTicketCache kerberosTicketCache = //NOPMD
+            (KerberosTicketCache)config.get(ConfigurationConstants.KERBEROS_TICKET_CACHE_INSTANCE);
+        if (kerberosTicketCache != null) {
+            properties.setKerberosTicketCache(kerberosTicketCache);
+        }
+
+        SecurityContextStore securityContextStore = //NOPMD
+            (SecurityContextStore)config.get(ConfigurationConstants.SECURITY_CONTEXT_STORE_INSTANCE);
+        if (securityContextStore != null) {
+            properties.setSecurityContextStore(securityContextStore);
+        }
+
+        UsernameTokenDerivedKeyCache usernameTokenDerivedKeyCache = //NOPMD
+            (UsernameTokenDerivedKeyCache)config.get(ConfigurationConstants.UT_DERIVED_KEY_CACHE_INSTANCE);
+        if (usernameTokenDerivedKeyCache != null) {
+            properties.setUsernameTokenDerivedKeyCache(usernameTokenDerivedKeyCache);
+        }
+
         String derivedSignatureKeyLength = getString(ConfigurationConstants.DERIVED_SIGNATURE_KEY_LENGTH, config);
         if (derivedSignatureKeyLength != null) {
             int sigLength = Integer.parseInt(derivedSignatureKeyLength);
@@ -181,6 +181,21 @@ public class InboundWSSec {
             XMLStreamReader xmlStreamReader, List<SecurityEvent> requestSecurityEvents,
             List<SecurityEventListener> securityEventListeners) throws XMLStreamException, WSSecurityException {
 
+        if (securityProperties.getDocumentCreator() == null) {
+            try {
+                securityProperties.setDocumentCreator(new DocumentCreatorImpl());
+            } catch (ParserConfigurationException e) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
+            }
+        }
+
+        WSSSecurityProperties messageSecurityProperties = securityProperties.resolveReloadableCryptos();
+        if (messageSecurityProperties != securityProperties) {
+            // The message is processed with the current Crypto instances of the ReloadableCryptos throughout
+            return new InboundWSSec(messageSecurityProperties, initiator, returnSecurityError)
+                .processInMessage(xmlStreamReader, requestSecurityEvents, securityEventListeners);
+        }
+
         if (requestSecurityEvents == null) {
             requestSecurityEvents = Collections.emptyList();
         }
@@ -197,14 +212,6 @@ public class InboundWSSec {
         securityContextImpl.setAllowRSA15KeyTransportAlgorithm(this.securityProperties.isAllowRSA15KeyTransportAlgorithm());
         securityContextImpl.setSoap12(this.securityProperties.isSoap12());
 
-        if (securityProperties.getDocumentCreator() == null) {
-            try {
-                securityProperties.setDocumentCreator(new DocumentCreatorImpl());
-            } catch (ParserConfigurationException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
-            }
-        }
-
         if (!requestSecurityEvents.isEmpty()) {
             try {
                 Iterator<SecurityEvent> securityEventIterator = requestSecurityEvents.iterator();
@@ -168,6 +168,13 @@ public class OutboundWSSec {
             Object output, String encoding, OutboundSecurityContext outboundSecurityContext
         ) throws WSSecurityException {
 
+        WSSSecurityProperties messageSecurityProperties = securityProperties.resolveReloadableCryptos();
+        if (messageSecurityProperties != securityProperties) {
+            // The message is processed with the current Crypto instances of the ReloadableCryptos throughout
+            return new OutboundWSSec(messageSecurityProperties).processOutMessage(
+                output, encoding, outboundSecurityContext);
+        }
+
         final DocumentContextImpl documentContext = new DocumentContextImpl();
         documentContext.setEncoding(encoding);
 
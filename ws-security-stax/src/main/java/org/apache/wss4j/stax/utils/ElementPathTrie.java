@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+/**
+ * A trie of element paths, in which every distinct path is represented by a single (interned) Node with
+ * an integer id. The configured paths (e.g. those of a policy assertion) are added to the trie, whereas the
+ * element paths of the (untrusted) inbound events are only looked up, so that the trie does not grow with the
+ * processed messages. Matching an element path is then a hash lookup per level, independent of the number of
+ * configured paths, and two matched paths are equal if their nodes are identical.
+ *
+ * As for {@link WSSUtils#pathMatches(List, List, boolean)}, the last element of a path can be added as a wildcard,
+ * which matches any element with the same namespace. An exact match takes precedence over a wildcard match.
+ *
+ * A trie is not thread-safe while paths are added to it.
+ */
+public class ElementPathTrie {
+
+    private final Node root = new Node(null, null, 0);
+    private int nodeCount = 1;
+
+    /**
+     * Add the given element path
+     * @param path the element path
+     * @return the Node of the element path
+     */
+    public Node add(List<QName> path) {
+        return add(path, false);
+    }
+
+    /**
+     * Add the given element path
+     * @param path the element path
+     * @param lastElementWildCard whether the last element matches any element with the same namespace
+     * @return the Node of the element path
+     */
+    public Node add(List<QName> path, boolean lastElementWildCard) {
+        Node node = root;
+        Iterator<QName> iterator = path.iterator();
+        while (iterator.hasNext()) {
+            QName name = iterator.next();
+            Node child;
+            if (lastElementWildCard && !iterator.hasNext()) {
+                child = node.wildcardChildren.get(name.getNamespaceURI());
+                if (child == null) {
+                    child = new Node(node, name, nodeCount++);
+                    if (node.wildcardChildren.isEmpty()) {
+                        node.wildcardChildren = new HashMap<>(4);
+                    }
+                    node.wildcardChildren.put(name.getNamespaceURI(), child);
+                }
+            } else {
+                child = node.children.get(name);
+                if (child == null) {
+                    child = new Node(node, name, nodeCount++);
+                    if (node.children.isEmpty()) {
+                        node.children = new HashMap<>(4);
+                    }
+                    node.children.put(name, child);
+                }
+            }
+            node = child;
+        }
+        node.added = true;
+        return node;
+    }
+
+    /**
+     * Get the added element path that matches the given element path
+     * @param path the element path to match
+     * @return the Node of the matching (added) element path, or null if no added element path matches
+     */
+    public Node match(List<QName> path) {
+        if (path == null) {
+            return null;
+        }
+        Node node = root;
+        Iterator<QName> iterator = path.iterator();
+        while (iterator.hasNext()) {
+            QName name = iterator.next();
+            Node child = node.children.get(name);
+            if (!iterator.hasNext()) {
+                if (child == null || !child.added) {
+                    child = node.wildcardChildren.get(name.getNamespaceURI());
+                }
+                return child != null && child.added ? child : null;
+            }
+            if (child == null) {
+                return null;
+            }
+            node = child;
+        }
+        return root.added ? root : null;
+    }
+
+    /**
+     * Get whether an added element path matches the given element path
+     * @param path the element path to match
+     * @return whether an added element path matches the given element path
+     */
+    public boolean matches(List<QName> path) {
+        return match(path) != null;
+    }
+
+    /**
+     * Get whether no element path has been added
+     * @return whether no element path has been added
+     */
+    public boolean isEmpty() {
+        return root.children.isEmpty() && root.wildcardChildren.isEmpty() && !root.added;
+    }
+
+    /**
+     * An interned element path
+     */
+    public static final class Node {
+        private final Node parent;
+        private final QName name;
+        private final int id;
+        private Map<QName, Node> children = Collections.emptyMap();
+        // The wildcard children, keyed by their namespace
+        private Map<String, Node> wildcardChildren = Collections.emptyMap();
+        private boolean added;
+
+        private Node(Node parent, QName name, int id) {
+            this.parent = parent;
+            this.name = name;
+            this.id = id;
+        }
+
+        /**
+         * Get the id of the element path, which is unique within the trie
+         * @return the id of the element path
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Get the name of the last element of the path
+         * @return the name of the last element, or null for the empty path
+         */
+        public QName getName() {
+            return name;
+        }
+
+        /**
+         * Get the parent element path
+         * @return the parent element path, or null for the empty path
+         */
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * Get the element path
+         * @return a new list with the names of the elements of the path
+         */
+        public List<QName> getPath() {
+            List<QName> path = new ArrayList<>();
+            for (Node node = this; node.parent != null; node = node.parent) {
+                path.add(0, node.name);
+            }
+            return path;
+        }
+    }
+}
@@ -92,6 +92,12 @@ public class BinarySecurityTokenValidatorImpl implements BinarySecurityTokenVali
                         binarySecurityTokenType.getId(),
                         WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE
                 );
+                kerberosServiceSecurityToken.setSubjectCache(
+                        tokenContext.getWssSecurityProperties().getKerberosServiceSubjectCache());
+                kerberosServiceSecurityToken.setReplayCache(
+                        tokenContext.getWssSecurityProperties().getKerberosReplayCache());
+                kerberosServiceSecurityToken.setKerberosTicketCache(
+                        tokenContext.getWssSecurityProperties().getKerberosTicketCache());
                 kerberosServiceSecurityToken.setElementPath(tokenContext.getElementPath());
                 kerberosServiceSecurityToken.setXMLSecEvent(tokenContext.getFirstXMLSecEvent());
                 return kerberosServiceSecurityToken;
@@ -34,7 +34,7 @@ import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
 import org.opensaml.saml.common.SAMLVersion;
 
-public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implements SamlTokenValidator {
+public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implements StreamingSamlTokenValidator {
 
     private static final transient org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SamlTokenValidatorImpl.class);
@@ -145,14 +145,68 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
         return token;
     }
 
+    /**
+     * The streamed Assertion is only validated by this class itself. A subclass may override the
+     * checks on the SamlAssertionWrapper, which would be bypassed on the streamed events, so it has
+     * to opt in explicitly by overriding this method. The streamed signature verification always
+     * enforces the SAML signature profile, so the Assertion is not streamed if
+     * validateSignatureAgainstProfile is disabled.
+     */
+    @Override
+    public boolean isStreamingValidationSupported() {
+        return getClass() == SamlTokenValidatorImpl.class && validateSignatureAgainstProfile;
+    }
+
+    @Override
+    public <T extends SamlSecurityToken & InboundSecurityToken> T validate(final StreamingSamlAssertion samlAssertion,
+                                                 final InboundSecurityToken subjectSecurityToken,
+                                                 final TokenContext tokenContext) throws WSSecurityException {
+        // Check conditions
+        checkConditions(samlAssertion,
+                        tokenContext.getWssSecurityProperties().getAudienceRestrictions());
+
+        // Check the AuthnStatements of the assertion (if any)
+        checkAuthnStatements(samlAssertion);
+
+        // Check the Subject Confirmation requirements
+        verifySubjectConfirmationMethod(samlAssertion.getConfirmationMethods(), samlAssertion.isSigned());
+
+        // Check OneTimeUse Condition
+        checkOneTimeUse(samlAssertion,
+                        tokenContext.getWssSecurityProperties().getSamlOneTimeUseReplayCache());
+
+        // The signature profile was already enforced when the signature was verified on the XMLSecEvents
+
+        Crypto sigVerCrypto = null;
+        if (samlAssertion.isSigned()) {
+            sigVerCrypto = tokenContext.getWssSecurityProperties().getSignatureVerificationCrypto();
+        }
+        SamlSecurityTokenImpl securityToken = new SamlSecurityTokenImpl(
+                samlAssertion, subjectSecurityToken,
+                tokenContext.getWsSecurityContext(),
+                sigVerCrypto,
+                WSSecurityTokenConstants.KeyIdentifier_NoKeyInfo,
+                tokenContext.getWssSecurityProperties());
+
+        securityToken.setElementPath(tokenContext.getElementPath());
+        securityToken.setXMLSecEvent(tokenContext.getFirstXMLSecEvent());
+        @SuppressWarnings("unchecked")
+        T token = (T)securityToken;
+        return token;
+    }
+
     /**
      * Check the Subject Confirmation method requirements
      */
     protected void verifySubjectConfirmationMethod(
         SamlAssertionWrapper samlAssertion
     ) throws WSSecurityException {
+        verifySubjectConfirmationMethod(samlAssertion.getConfirmationMethods(), samlAssertion.isSigned());
+    }
 
-        List<String> methods = samlAssertion.getConfirmationMethods();
+    private void verifySubjectConfirmationMethod(
+        List<String> methods, boolean signed
+    ) throws WSSecurityException {
         if (methods == null || methods.isEmpty()) {
             if (requiredSubjectConfirmationMethod != null) {
                 LOG.warn("A required subject confirmation method was not present");
@@ -165,7 +219,6 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
             }
         }
 
-        boolean signed = samlAssertion.isSigned();
         boolean requiredMethodFound = false;
         boolean standardMethodFound = false;
         if (methods != null) {
@@ -267,6 +320,51 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
         }
     }
 
+    /**
+     * Check the Conditions of the streamed Assertion.
+     */
+    protected void checkConditions(
+        StreamingSamlAssertion samlAssertion, List<String> audienceRestrictions
+    ) throws WSSecurityException {
+        samlAssertion.checkConditions(futureTTL);
+        samlAssertion.checkIssueInstant(futureTTL, ttl);
+        samlAssertion.checkAudienceRestrictions(audienceRestrictions);
+    }
+
+    /**
+     * Check the AuthnStatements of the streamed Assertion (if any)
+     */
+    protected void checkAuthnStatements(StreamingSamlAssertion samlAssertion) throws WSSecurityException {
+        samlAssertion.checkAuthnStatements(futureTTL);
+    }
+
+    /**
+     * Check the "OneTimeUse" Condition of the streamed Assertion.
+     */
+    protected void checkOneTimeUse(
+        StreamingSamlAssertion samlAssertion, ReplayCache replayCache
+    ) throws WSSecurityException {
+        if (replayCache != null
+            && samlAssertion.getSamlVersion().equals(SAMLVersion.VERSION_20)
+            && samlAssertion.isOneTimeUse()) {
+            String identifier = samlAssertion.getId();
+
+            if (replayCache.contains(identifier)) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.INVALID_SECURITY,
+                    "badSamlToken",
+                    new Object[] {"A replay attack has been detected"});
+            }
+
+            Instant expires = samlAssertion.getNotOnOrAfter();
+            if (expires != null) {
+                replayCache.add(identifier, expires);
+            } else {
+                replayCache.add(identifier);
+            }
+        }
+    }
+
     /**
      * Validate the samlAssertion against schemas/profiles
      */
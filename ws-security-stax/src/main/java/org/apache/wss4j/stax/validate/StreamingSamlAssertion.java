@@ -0,0 +1,613 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.validate;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.events.Attribute;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.util.InetAddressUtils;
+import org.apache.wss4j.stax.ext.DocumentCreator;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.impl.processor.input.SAMLTokenInputHandler;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.opensaml.saml.common.SAMLVersion;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * The information WSS4J needs from a SAML 1.1 or 2.0 Assertion, extracted in a single pass
+ * directly from the XMLSecEvents of the security header. The OpenSAML object (and the
+ * DOM it is unmarshalled from) is only created if it is explicitly requested via
+ * getSamlAssertionWrapper().
+ */
+public class StreamingSamlAssertion {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(StreamingSamlAssertion.class);
+
+    private enum Capture {
+        ISSUER, AUDIENCE, NAME_ID, CONFIRMATION_METHOD, DIGEST_VALUE, SIGNATURE_VALUE
+    }
+
+    private final List<XMLSecEvent> xmlSecEvents;
+    private final int offset;
+    private final DocumentCreator documentCreator;
+    private SamlAssertionWrapper samlAssertionWrapper;
+
+    private SAMLVersion samlVersion;
+    private String id;
+    private String issuer;
+    private Instant issueInstant;
+    private boolean conditionsPresent;
+    private Instant notBefore;
+    private Instant notOnOrAfter;
+    private boolean audienceRestrictionPresent;
+    private final List<String> audiences = new ArrayList<>();
+    private boolean oneTimeUse;
+    private String subjectName;
+    private final List<String> confirmationMethods = new ArrayList<>();
+    private final List<Instant> authnInstants = new ArrayList<>();
+    private final List<Instant> sessionNotOnOrAfters = new ArrayList<>();
+    private final List<String> subjectLocalityAddresses = new ArrayList<>();
+    private int subjectKeyInfoIndex = -1;
+
+    private boolean signed;
+    private int signatureStartIndex = -1;
+    private int signatureEndIndex = -1;
+    private int signedInfoStartIndex = -1;
+    private int signedInfoEndIndex = -1;
+    private int signatureKeyInfoIndex = -1;
+    private String canonicalizationMethod;
+    private List<String> canonicalizationPrefixList;
+    private String signatureMethod;
+    private int referenceCount;
+    private String referenceURI;
+    private final List<String> transforms = new ArrayList<>();
+    private List<String> transformPrefixList;
+    private String digestMethod;
+    private String digestValue;
+    private String signatureValue;
+
+    /**
+     * Extract the Assertion information from the given events.
+     * @param xmlSecEvents the events of the Assertion, in document order, starting with the
+     *                     Assertion start element
+     * @param offset the position of the Assertion start element in the security header event queue
+     * @param documentCreator used to create the DOM Document if the OpenSAML object is requested
+     */
+    public StreamingSamlAssertion(List<XMLSecEvent> xmlSecEvents, int offset,
+                                  DocumentCreator documentCreator) throws WSSecurityException {
+        this.xmlSecEvents = xmlSecEvents;
+        this.offset = offset;
+        this.documentCreator = documentCreator;
+        parse();
+    }
+
+    private void parse() throws WSSecurityException {
+        Deque<QName> path = new ArrayDeque<>();
+        StringBuilder text = new StringBuilder();
+        Capture capture = null;
+        int captureDepth = -1;
+        String namespace = null;
+
+        for (int i = 0; i < xmlSecEvents.size(); i++) {
+            XMLSecEvent xmlSecEvent = xmlSecEvents.get(i);
+            switch (xmlSecEvent.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    XMLSecStartElement startElement = xmlSecEvent.asStartElement();
+                    QName name = startElement.getName();
+                    Capture elementCapture = null;
+                    if (path.isEmpty()) {
+                        namespace = name.getNamespaceURI();
+                        parseAssertionElement(startElement);
+                    } else if (WSSConstants.NS_DSIG.equals(name.getNamespaceURI())) {
+                        elementCapture = parseDSigElement(startElement, path, i);
+                    } else if (WSSConstants.TAG_c14nExcl_InclusiveNamespaces.equals(name)) {
+                        parseInclusiveNamespaces(startElement, path);
+                    } else if (namespace.equals(name.getNamespaceURI())) {
+                        elementCapture = parseSamlElement(startElement, path);
+                    }
+                    path.push(name);
+                    if (elementCapture != null && capture == null) {
+                        capture = elementCapture;
+                        captureDepth = path.size();
+                        text.setLength(0);
+                    }
+                    break;
+                }
+                case XMLStreamConstants.END_ELEMENT: {
+                    if (capture != null && captureDepth == path.size()) {
+                        storeCapturedText(capture, text.toString().trim());
+                        capture = null;
+                        captureDepth = -1;
+                    }
+                    QName name = path.pop();
+                    if (path.size() == 1 && WSSConstants.TAG_dsig_Signature.equals(name)) {
+                        signatureEndIndex = i;
+                    } else if (path.size() == 2 && WSSConstants.TAG_dsig_SignedInfo.equals(name)) {
+                        signedInfoEndIndex = i;
+                    }
+                    break;
+                }
+                case XMLStreamConstants.CHARACTERS:
+                    if (capture != null) {
+                        text.append(xmlSecEvent.asCharacters().getText());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (id == null || id.isEmpty()) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN,
+                "empty", new Object[] {"SAML Assertion has no ID"});
+        }
+    }
+
+    private void parseAssertionElement(XMLSecStartElement startElement) throws WSSecurityException {
+        QName name = startElement.getName();
+        if (WSSConstants.TAG_SAML2_ASSERTION.equals(name)) {
+            samlVersion = SAMLVersion.VERSION_20;
+            id = getAttributeValue(startElement, WSSConstants.ATT_NULL_ID);
+        } else if (WSSConstants.TAG_SAML_ASSERTION.equals(name)) {
+            // As in SamlAssertionWrapper, every SAML 1.x Assertion is treated as a SAML 1.1 Assertion
+            samlVersion = SAMLVersion.VERSION_11;
+            id = getAttributeValue(startElement, WSSConstants.ATT_NULL_ASSERTION_ID);
+            issuer = getAttributeValue(startElement, new QName(null, "Issuer"));
+        } else {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN,
+                "empty", new Object[] {"Unexpected SAML element " + name});
+        }
+        issueInstant = parseInstant(getAttributeValue(startElement, new QName(null, "IssueInstant")));
+    }
+
+    private Capture parseSamlElement(XMLSecStartElement startElement, Deque<QName> path)
+        throws WSSecurityException {
+        String localName = startElement.getName().getLocalPart();
+        String parent = path.peek().getLocalPart();
+        int depth = path.size();
+        boolean saml2 = samlVersion == SAMLVersion.VERSION_20;
+
+        if (depth == 1) {
+            switch (localName) {
+                case "Issuer":
+                    return saml2 ? Capture.ISSUER : null;
+                case "Conditions":
+                    conditionsPresent = true;
+                    notBefore = parseInstant(getAttributeValue(startElement, new QName(null, "NotBefore")));
+                    notOnOrAfter = parseInstant(getAttributeValue(startElement, new QName(null, "NotOnOrAfter")));
+                    return null;
+                case "AuthnStatement":
+                    if (saml2) {
+                        authnInstants.add(
+                            parseInstant(getAttributeValue(startElement, new QName(null, "AuthnInstant"))));
+                        sessionNotOnOrAfters.add(
+                            parseInstant(getAttributeValue(startElement, new QName(null, "SessionNotOnOrAfter"))));
+                        subjectLocalityAddresses.add(null);
+                    }
+                    return null;
+                case "AuthenticationStatement":
+                    if (!saml2) {
+                        authnInstants.add(
+                            parseInstant(getAttributeValue(startElement, new QName(null, "AuthenticationInstant"))));
+                        sessionNotOnOrAfters.add(null);
+                        subjectLocalityAddresses.add(null);
+                    }
+                    return null;
+                default:
+                    return null;
+            }
+        }
+
+        if ("Conditions".equals(parent) && depth == 2) {
+            if ("AudienceRestriction".equals(localName) || "AudienceRestrictionCondition".equals(localName)) {
+                audienceRestrictionPresent = true;
+            } else if (saml2 && "OneTimeUse".equals(localName)) {
+                oneTimeUse = true;
+            }
+        } else if ("Audience".equals(localName) && depth == 3 && isAudienceRestriction(path)) {
+            return Capture.AUDIENCE;
+        } else if ("SubjectLocality".equals(localName) && depth == 2 && !subjectLocalityAddresses.isEmpty()) {
+            String address = saml2
+                ? getAttributeValue(startElement, new QName(null, "Address"))
+                : getAttributeValue(startElement, new QName(null, "IPAddress"));
+            subjectLocalityAddresses.set(subjectLocalityAddresses.size() - 1, address);
+        } else if ("Subject".equals(parent) && (saml2 && depth == 2 || !saml2 && depth == 3)) {
+            if (subjectName == null && ("NameID".equals(localName) || "NameIdentifier".equals(localName))) {
+                return Capture.NAME_ID;
+            } else if (saml2 && "SubjectConfirmation".equals(localName)) {
+                confirmationMethods.add(getAttributeValue(startElement, new QName(null, "Method")));
+            }
+        } else if (!saml2 && "ConfirmationMethod".equals(localName) && "SubjectConfirmation".equals(parent)
+            && depth == 4) {
+            return Capture.CONFIRMATION_METHOD;
+        }
+        return null;
+    }
+
+    private Capture parseDSigElement(XMLSecStartElement startElement, Deque<QName> path, int index) {
+        QName name = startElement.getName();
+        int depth = path.size();
+
+        if (depth == 1 && WSSConstants.TAG_dsig_Signature.equals(name)) {
+            signed = true;
+            signatureStartIndex = index;
+        } else if (WSSConstants.TAG_dsig_KeyInfo.equals(name)) {
+            if (depth == 2 && WSSConstants.TAG_dsig_Signature.equals(path.peek())) {
+                signatureKeyInfoIndex = index;
+            } else if (subjectKeyInfoIndex < 0 && isSubjectConfirmationKeyInfo(path)) {
+                subjectKeyInfoIndex = index;
+            }
+        } else if (isInsideSignature()) {
+            if (depth == 2 && WSSConstants.TAG_dsig_SignedInfo.equals(name)) {
+                signedInfoStartIndex = index;
+            } else if (depth == 2 && WSSConstants.TAG_dsig_SignatureValue.equals(name)) {
+                return Capture.SIGNATURE_VALUE;
+            } else if (depth == 3 && WSSConstants.TAG_dsig_CanonicalizationMethod.equals(name)) {
+                canonicalizationMethod = getAttributeValue(startElement, WSSConstants.ATT_NULL_Algorithm);
+            } else if (depth == 3 && WSSConstants.TAG_dsig_SignatureMethod.equals(name)) {
+                signatureMethod = getAttributeValue(startElement, WSSConstants.ATT_NULL_Algorithm);
+            } else if (depth == 3 && WSSConstants.TAG_dsig_Reference.equals(name)) {
+                referenceCount++;
+                referenceURI = getAttributeValue(startElement, WSSConstants.ATT_NULL_URI);
+            } else if (depth == 4 && WSSConstants.TAG_dsig_DigestMethod.equals(name)) {
+                digestMethod = getAttributeValue(startElement, WSSConstants.ATT_NULL_Algorithm);
+            } else if (depth == 4 && WSSConstants.TAG_dsig_DigestValue.equals(name)) {
+                return Capture.DIGEST_VALUE;
+            } else if (depth == 5 && WSSConstants.TAG_dsig_Transform.equals(name)) {
+                transforms.add(getAttributeValue(startElement, WSSConstants.ATT_NULL_Algorithm));
+            }
+        }
+        return null;
+    }
+
+    private void parseInclusiveNamespaces(XMLSecStartElement startElement, Deque<QName> path) {
+        if (!isInsideSignature()) {
+            return;
+        }
+        List<String> prefixList =
+            parsePrefixList(getAttributeValue(startElement, WSSConstants.ATT_NULL_PrefixList));
+        QName parent = path.peek();
+        if (WSSConstants.TAG_dsig_CanonicalizationMethod.equals(parent)) {
+            canonicalizationPrefixList = prefixList;
+        } else if (WSSConstants.TAG_dsig_Transform.equals(parent)) {
+            transformPrefixList = prefixList;
+        }
+    }
+
+    /**
+     * Whether the parent of the current element is an AudienceRestriction(Condition) of the Conditions.
+     * The Audiences of a SAML 2.0 ProxyRestriction are not audience restrictions of the Assertion.
+     */
+    private boolean isAudienceRestriction(Deque<QName> path) {
+        Iterator<QName> ancestors = path.iterator();
+        QName parent = ancestors.next();
+        QName grandParent = ancestors.next();
+        String namespace = samlVersion == SAMLVersion.VERSION_20 ? WSSConstants.NS_SAML2 : WSSConstants.NS_SAML;
+        return namespace.equals(parent.getNamespaceURI())
+            && ("AudienceRestriction".equals(parent.getLocalPart())
+                || "AudienceRestrictionCondition".equals(parent.getLocalPart()))
+            && namespace.equals(grandParent.getNamespaceURI())
+            && "Conditions".equals(grandParent.getLocalPart());
+    }
+
+    private boolean isInsideSignature() {
+        return signatureStartIndex >= 0 && signatureEndIndex < 0;
+    }
+
+    private boolean isSubjectConfirmationKeyInfo(Deque<QName> path) {
+        List<QName> ancestors = new ArrayList<>(path);
+        if (ancestors.size() >= 3
+            && "SubjectConfirmationData".equals(ancestors.get(0).getLocalPart())
+            && "SubjectConfirmation".equals(ancestors.get(1).getLocalPart())
+            && "Subject".equals(ancestors.get(2).getLocalPart())) {
+            return true;
+        }
+        return ancestors.size() >= 2
+            && "SubjectConfirmation".equals(ancestors.get(0).getLocalPart())
+            && "Subject".equals(ancestors.get(1).getLocalPart());
+    }
+
+    private void storeCapturedText(Capture capture, String value) {
+        switch (capture) {
+            case ISSUER:
+                issuer = value;
+                break;
+            case AUDIENCE:
+                audiences.add(value);
+                break;
+            case NAME_ID:
+                subjectName = value;
+                break;
+            case CONFIRMATION_METHOD:
+                confirmationMethods.add(value);
+                break;
+            case DIGEST_VALUE:
+                digestValue = value;
+                break;
+            case SIGNATURE_VALUE:
+                signatureValue = value;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String getAttributeValue(XMLSecStartElement startElement, QName name) {
+        Attribute attribute = startElement.getAttributeByName(name);
+        return attribute != null ? attribute.getValue() : null;
+    }
+
+    private static List<String> parsePrefixList(String prefixList) {
+        if (prefixList == null || prefixList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> prefixes = new ArrayList<>();
+        for (String prefix : prefixList.trim().split("\\s+")) {
+            prefixes.add(prefix);
+        }
+        return prefixes;
+    }
+
+    private static Instant parseInstant(String value) throws WSSecurityException {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, e);
+        }
+    }
+
+    /**
+     * Return the OpenSAML representation of this Assertion. The DOM Element and the OpenSAML
+     * object are created on first access from the buffered XMLSecEvents.
+     */
+    public synchronized SamlAssertionWrapper getSamlAssertionWrapper() throws WSSecurityException {
+        if (samlAssertionWrapper == null) {
+            Document document;
+            try {
+                document = documentCreator.newDocument();
+            } catch (ParserConfigurationException e) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, e);
+            }
+            SAMLTokenInputHandler samlTokenInputHandler = new SAMLTokenInputHandler();
+            Node currentNode = document;
+            for (int i = 0; i < xmlSecEvents.size(); i++) {
+                currentNode = samlTokenInputHandler.parseXMLEvent(xmlSecEvents.get(i), currentNode, document);
+            }
+            samlAssertionWrapper = new SamlAssertionWrapper(document.getDocumentElement());
+        }
+        return samlAssertionWrapper;
+    }
+
+    /**
+     * Check the Conditions of the Assertion.
+     */
+    public void checkConditions(int futureTTL) throws WSSecurityException {
+        if (notBefore != null && notBefore.isAfter(Instant.now().plusSeconds(futureTTL))) {
+            LOG.warn("SAML Token condition (Not Before) not met");
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+        }
+
+        if (notOnOrAfter != null && notOnOrAfter.isBefore(Instant.now())) {
+            LOG.warn("SAML Token condition (Not On Or After) not met");
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+        }
+    }
+
+    /**
+     * Check the IssueInstant value of the Assertion.
+     */
+    public void checkIssueInstant(int futureTTL, int ttl) throws WSSecurityException {
+        if (!conditionsPresent || issueInstant == null) {
+            return;
+        }
+
+        // Check the IssueInstant is not in the future, subject to the future TTL
+        Instant currentTime = Instant.now().plusSeconds(futureTTL);
+        if (issueInstant.isAfter(currentTime)) {
+            LOG.warn("SAML Token IssueInstant not met");
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+        }
+
+        // If there is no NotOnOrAfter, then impose a TTL on the IssueInstant.
+        if (notOnOrAfter == null && issueInstant.isBefore(currentTime.minusSeconds(ttl))) {
+            LOG.warn("SAML Token IssueInstant not met. The assertion was created too long ago.");
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+        }
+    }
+
+    /**
+     * Check the AudienceRestrictions of the Assertion
+     */
+    public void checkAudienceRestrictions(List<String> audienceRestrictions) throws WSSecurityException {
+        if (audienceRestrictions == null || audienceRestrictions.isEmpty() || !audienceRestrictionPresent) {
+            return;
+        }
+        for (String audience : audiences) {
+            if (audienceRestrictions.contains(audience)) {
+                return;
+            }
+        }
+        throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+    }
+
+    /**
+     * Check the various attributes of the AuthnStatements of the assertion (if any)
+     */
+    public void checkAuthnStatements(int futureTTL) throws WSSecurityException {
+        for (int i = 0; i < authnInstants.size(); i++) {
+            // AuthnInstant in the future
+            Instant authnInstant = authnInstants.get(i);
+            if (authnInstant == null || authnInstant.isAfter(Instant.now().plusSeconds(futureTTL))) {
+                LOG.warn("SAML Token AuthnInstant not met");
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+            }
+
+            // Stale SessionNotOnOrAfter
+            Instant sessionNotOnOrAfter = sessionNotOnOrAfters.get(i);
+            if (sessionNotOnOrAfter != null && sessionNotOnOrAfter.isBefore(Instant.now())) {
+                LOG.warn("SAML Token SessionNotOnOrAfter not met");
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+            }
+
+            // Check that the SubjectLocality address is an IP address
+            String subjectLocalityAddress = subjectLocalityAddresses.get(i);
+            if (subjectLocalityAddress != null
+                && !(InetAddressUtils.isIPv4Address(subjectLocalityAddress)
+                    || InetAddressUtils.isIPv6Address(subjectLocalityAddress))) {
+                LOG.warn("SAML Token SubjectLocality address is not valid: " + subjectLocalityAddress);
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity");
+            }
+        }
+    }
+
+    /**
+     * Translate a position within the Assertion events to a position within the security header event queue
+     */
+    public int toQueueIndex(int index) {
+        return index < 0 ? index : offset + index;
+    }
+
+    public List<XMLSecEvent> getXmlSecEvents() {
+        return xmlSecEvents;
+    }
+
+    public SAMLVersion getSamlVersion() {
+        return samlVersion;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getIssuerString() {
+        return issuer;
+    }
+
+    public Instant getIssueInstant() {
+        return issueInstant;
+    }
+
+    public Instant getNotBefore() {
+        return notBefore;
+    }
+
+    public Instant getNotOnOrAfter() {
+        return notOnOrAfter;
+    }
+
+    public boolean isOneTimeUse() {
+        return oneTimeUse;
+    }
+
+    public String getSubjectName() {
+        return subjectName;
+    }
+
+    public List<String> getConfirmationMethods() {
+        return confirmationMethods;
+    }
+
+    public int getSubjectKeyInfoIndex() {
+        return subjectKeyInfoIndex;
+    }
+
+    public boolean isSigned() {
+        return signed;
+    }
+
+    public int getSignatureStartIndex() {
+        return signatureStartIndex;
+    }
+
+    public int getSignatureEndIndex() {
+        return signatureEndIndex;
+    }
+
+    public int getSignedInfoStartIndex() {
+        return signedInfoStartIndex;
+    }
+
+    public int getSignedInfoEndIndex() {
+        return signedInfoEndIndex;
+    }
+
+    public int getSignatureKeyInfoIndex() {
+        return signatureKeyInfoIndex;
+    }
+
+    public String getCanonicalizationMethod() {
+        return canonicalizationMethod;
+    }
+
+    public List<String> getCanonicalizationPrefixList() {
+        return canonicalizationPrefixList;
+    }
+
+    public String getSignatureMethod() {
+        return signatureMethod;
+    }
+
+    public int getReferenceCount() {
+        return referenceCount;
+    }
+
+    public String getReferenceURI() {
+        return referenceURI;
+    }
+
+    public List<String> getTransforms() {
+        return transforms;
+    }
+
+    public List<String> getTransformPrefixList() {
+        return transformPrefixList;
+    }
+
+    public String getDigestMethod() {
+        return digestMethod;
+    }
+
+    public String getDigestValue() {
+        return digestValue;
+    }
+
+    public String getSignatureValue() {
+        return signatureValue;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.validate;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.stax.securityToken.SamlSecurityToken;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+
+/**
+ * A SamlTokenValidator that is able to validate a SAML Assertion which was extracted from the
+ * XMLSecEvents of the security header, without the Assertion being unmarshalled to OpenSAML objects.
+ * This is used if streaming SAML token processing is enabled.
+ */
+public interface StreamingSamlTokenValidator extends SamlTokenValidator {
+
+    /**
+     * Whether the Assertion may be processed on the streamed events and validated with
+     * {@link #validate(StreamingSamlAssertion, InboundSecurityToken, TokenContext)}. If this returns
+     * false, the Assertion is unmarshalled and validated with
+     * {@link #validate(org.apache.wss4j.common.saml.SamlAssertionWrapper, InboundSecurityToken, TokenContext)}
+     * instead.
+     */
+    boolean isStreamingValidationSupported();
+
+    <T extends SamlSecurityToken & InboundSecurityToken> T validate(
+            StreamingSamlAssertion samlAssertion, InboundSecurityToken subjectSecurityToken,
+            TokenContext tokenContext) throws WSSecurityException;
+}
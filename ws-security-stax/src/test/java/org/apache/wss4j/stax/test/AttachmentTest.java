@@ -24,12 +24,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.crypto.KeyGenerator;
@@ -1337,4 +1343,146 @@ public class AttachmentTest extends AbstractTestBase {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testDecryptionMemoryBudget() throws Exception {
+        assumeFalse(isIBMJdK);
+
+        byte[] content = createAttachmentContent(2000);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        List<Attachment> encryptedAttachments = encryptAttachments(Arrays.asList(content, content), baos);
+
+        Set<Path> tempFiles = getTempFiles();
+        AttachmentCallbackHandler attachmentCallbackHandler =
+            decryptAttachments(baos.toByteArray(), encryptedAttachments, 3000L);
+        List<Attachment> responseAttachments = attachmentCallbackHandler.getResponseAttachments();
+        assertEquals(2, responseAttachments.size());
+
+        // The first attachment fits into the budget, the second one does not
+        assertTrue(responseAttachments.get(0).getSourceStream() instanceof ByteArrayInputStream);
+        assertFalse(responseAttachments.get(1).getSourceStream() instanceof ByteArrayInputStream);
+
+        for (Attachment responseAttachment : responseAttachments) {
+            try (InputStream inputStream = responseAttachment.getSourceStream()) {
+                assertTrue(Arrays.equals(content, readInputStream(inputStream)));
+            }
+        }
+
+        // The temporary file is deleted when the decrypted attachment is closed
+        assertEquals(tempFiles, getTempFiles());
+    }
+
+    @Test
+    public void testDecryptionMemoryBudgetExceeded() throws Exception {
+        assumeFalse(isIBMJdK);
+
+        byte[] content = createAttachmentContent(100000);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        List<Attachment> encryptedAttachments = encryptAttachments(Collections.singletonList(content), baos);
+
+        Set<Path> tempFiles = getTempFiles();
+        AttachmentCallbackHandler attachmentCallbackHandler =
+            decryptAttachments(baos.toByteArray(), encryptedAttachments, 0L);
+        Attachment responseAttachment = attachmentCallbackHandler.getResponseAttachments().get(0);
+        assertFalse(responseAttachment.getSourceStream() instanceof ByteArrayInputStream);
+
+        try (InputStream inputStream = responseAttachment.getSourceStream()) {
+            assertTrue(Arrays.equals(content, readInputStream(inputStream)));
+        }
+        assertEquals(tempFiles, getTempFiles());
+    }
+
+    @Test
+    public void testDecryptionMemoryBudgetInvalidAttachment() throws Exception {
+        assumeFalse(isIBMJdK);
+
+        byte[] content = createAttachmentContent(100000);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        List<Attachment> encryptedAttachments = encryptAttachments(Collections.singletonList(content), baos);
+
+        // Modify the ciphertext, so that the authentication tag is not valid
+        byte[] encryptedBytes = readInputStream(encryptedAttachments.get(0).getSourceStream());
+        encryptedBytes[encryptedBytes.length / 2] ^= 0x01;
+        encryptedAttachments.get(0).setSourceStream(new ByteArrayInputStream(encryptedBytes));
+
+        Set<Path> tempFiles = getTempFiles();
+        try {
+            decryptAttachments(baos.toByteArray(), encryptedAttachments, 0L);
+            fail("Exception expected");
+        } catch (XMLStreamException e) {
+            assertTrue(e.getCause() instanceof WSSecurityException);
+            assertEquals(WSSecurityException.ErrorCode.FAILED_CHECK,
+                         ((WSSecurityException) e.getCause()).getErrorCode());
+        }
+
+        // No (partly) decrypted attachment is left behind on disk
+        assertEquals(tempFiles, getTempFiles());
+    }
+
+    private byte[] createAttachmentContent(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        return content;
+    }
+
+    private List<Attachment> encryptAttachments(List<byte[]> contents, ByteArrayOutputStream baos) throws Exception {
+        List<Attachment> attachments = new ArrayList<>();
+        for (byte[] content : contents) {
+            final String attachmentId = UUID.randomUUID().toString();
+            final Attachment attachment = new Attachment();
+            attachment.setMimeType("text/xml");
+            attachment.addHeaders(getHeaders(attachmentId));
+            attachment.setId(attachmentId);
+            attachment.setSourceStream(new ByteArrayInputStream(content));
+            attachments.add(attachment);
+        }
+        AttachmentCallbackHandler attachmentCallbackHandler = new AttachmentCallbackHandler(attachments);
+
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        List<WSSConstants.Action> actions = new ArrayList<>();
+        actions.add(WSSConstants.ENCRYPTION);
+        securityProperties.setActions(actions);
+        securityProperties.loadEncryptionKeystore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+        securityProperties.setEncryptionUser("receiver");
+        securityProperties.addEncryptionPart(new SecurePart(new QName("http://schemas.xmlsoap.org/soap/envelope/", "Body"), SecurePart.Modifier.Content));
+        securityProperties.addEncryptionPart(new SecurePart("cid:Attachments", SecurePart.Modifier.Content));
+        securityProperties.setAttachmentCallbackHandler(attachmentCallbackHandler);
+        securityProperties.setEncryptionSymAlgorithm(WSSConstants.NS_XENC11_AES128_GCM);
+
+        OutboundWSSec wsSecOut = WSSec.getOutboundWSSec(securityProperties);
+        XMLStreamWriter xmlStreamWriter = wsSecOut.processOutMessage(baos, StandardCharsets.UTF_8.name(), new ArrayList<SecurityEvent>());
+        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml"));
+        XmlReaderToWriter.writeAll(xmlStreamReader, xmlStreamWriter);
+        xmlStreamWriter.close();
+
+        return attachmentCallbackHandler.getResponseAttachments();
+    }
+
+    private AttachmentCallbackHandler decryptAttachments(byte[] message, List<Attachment> encryptedAttachments,
+                                                         long decryptionMemoryBudget) throws Exception {
+        AttachmentCallbackHandler attachmentCallbackHandler = new AttachmentCallbackHandler(encryptedAttachments);
+
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+        securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+        securityProperties.setAttachmentCallbackHandler(attachmentCallbackHandler);
+        securityProperties.setDecryptionMemoryBudget(decryptionMemoryBudget);
+
+        InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+        XMLStreamReader xmlStreamReader = wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(message)));
+        StAX2DOM.readDoc(documentBuilderFactory.newDocumentBuilder(), xmlStreamReader);
+        return attachmentCallbackHandler;
+    }
+
+    private static Set<Path> getTempFiles() throws IOException {
+        Set<Path> tempFiles = new HashSet<>();
+        Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(tempDir, "wss4j-*.tmp")) {
+            for (Path tempFile : directoryStream) {
+                tempFiles.add(tempFile);
+            }
+        }
+        return tempFiles;
+    }
+}
@@ -22,6 +22,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSConstants.UsernameTokenPasswordType;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -34,6 +36,8 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -263,4 +267,29 @@ public class ConfigurationConverterTest extends AbstractTestBase {
         WSSec.validateAndApplyDefaultsToInboundSecurityProperties(properties);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testKerberosTicketCacheConfiguration() throws Exception {
+        KerberosTicketCache ticketCache = new KerberosTicketCache();
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConfigurationConstants.ACTION, ConfigurationConstants.TIMESTAMP);
+        config.put(ConfigurationConstants.KERBEROS_TICKET_CACHE_INSTANCE, ticketCache);
+
+        WSSSecurityProperties properties = ConfigurationConverter.convert(config);
+        assertSame(ticketCache, properties.getKerberosTicketCache());
+        assertSame(ticketCache, new WSSSecurityProperties(properties).getKerberosTicketCache());
+    }
+
+    @Test
+    public void testDecryptionMemoryBudgetConfiguration() throws Exception {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConfigurationConstants.ACTION, ConfigurationConstants.ENCRYPTION);
+        config.put(ConfigurationConstants.DECRYPTION_MEMORY_BUDGET, "1048576");
+
+        WSSSecurityProperties properties = ConfigurationConverter.convert(config);
+        assertEquals(1048576L, properties.getDecryptionMemoryBudget());
+
+        config.put(ConfigurationConstants.DECRYPTION_MEMORY_BUDGET, "1MB");
+        assertThrows(WSSecurityException.class, () -> ConfigurationConverter.convert(config));
+    }
+
+}
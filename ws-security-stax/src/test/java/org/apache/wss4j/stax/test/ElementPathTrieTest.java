@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.utils.ElementPathTrie;
+import org.apache.wss4j.stax.utils.WSSUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the ElementPathTrie
+ */
+public class ElementPathTrieTest {
+
+    private static final String NS = "urn:test";
+
+    @Test
+    public void testExactMatch() {
+        ElementPathTrie elementPathTrie = new ElementPathTrie();
+        assertTrue(elementPathTrie.isEmpty());
+
+        ElementPathTrie.Node body = elementPathTrie.add(WSSConstants.SOAP_11_BODY_PATH);
+        List<QName> timestampPath = path(WSSConstants.SOAP_11_HEADER_PATH, WSSConstants.TAG_WSU_TIMESTAMP);
+        ElementPathTrie.Node timestamp = elementPathTrie.add(timestampPath);
+        assertFalse(elementPathTrie.isEmpty());
+
+        assertSame(body, elementPathTrie.match(new ArrayList<>(WSSConstants.SOAP_11_BODY_PATH)));
+        assertSame(timestamp, elementPathTrie.match(timestampPath));
+        assertSame(body, elementPathTrie.add(new ArrayList<>(WSSConstants.SOAP_11_BODY_PATH)));
+        assertEquals(WSSConstants.SOAP_11_BODY_PATH, body.getPath());
+
+        // The parent of an added path is not matched unless it was added itself
+        assertNull(elementPathTrie.match(WSSConstants.SOAP_11_HEADER_PATH));
+        assertNull(elementPathTrie.match(WSSConstants.SOAP_12_BODY_PATH));
+        assertNull(elementPathTrie.match(path(WSSConstants.SOAP_11_BODY_PATH, new QName(NS, "a"))));
+        assertNull(elementPathTrie.match(null));
+    }
+
+    @Test
+    public void testWildcardMatch() {
+        ElementPathTrie elementPathTrie = new ElementPathTrie();
+        List<QName> wildcardPath = path(WSSConstants.SOAP_11_HEADER_PATH, new QName(NS, ""));
+        ElementPathTrie.Node wildcard = elementPathTrie.add(wildcardPath, true);
+        List<QName> exactPath = path(WSSConstants.SOAP_11_HEADER_PATH, new QName(NS, "b"));
+        ElementPathTrie.Node exact = elementPathTrie.add(exactPath);
+
+        assertSame(exact, elementPathTrie.match(exactPath));
+        List<QName> otherPath = path(WSSConstants.SOAP_11_HEADER_PATH, new QName(NS, "a"));
+        assertSame(wildcard, elementPathTrie.match(otherPath));
+        assertNull(elementPathTrie.match(path(WSSConstants.SOAP_11_HEADER_PATH, new QName("urn:other", "a"))));
+
+        // Same semantics as WSSUtils.pathMatches
+        assertTrue(WSSUtils.pathMatches(wildcardPath, otherPath, true));
+        assertFalse(WSSUtils.pathMatches(wildcardPath, otherPath, false));
+    }
+
+    @Test
+    public void testElementPathsDoNotGrowTrie() {
+        ElementPathTrie elementPathTrie = new ElementPathTrie();
+        ElementPathTrie.Node node = elementPathTrie.add(Arrays.asList(new QName(NS, "a"), new QName(NS, "b")));
+        for (int i = 0; i < 100; i++) {
+            assertNull(elementPathTrie.match(Arrays.asList(new QName(NS, "a"), new QName(NS, "c" + i))));
+        }
+        assertEquals(3, elementPathTrie.add(Arrays.asList(new QName(NS, "a"), new QName(NS, "d"))).getId());
+        assertEquals(2, node.getId());
+    }
+
+    private static List<QName> path(List<QName> parent, QName name) {
+        List<QName> path = new ArrayList<>(parent);
+        path.add(name);
+        return path;
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.impl.SecurityHeaderOrder;
+import org.apache.wss4j.stax.impl.processor.output.SecurityHeaderReorderProcessor;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.AbstractOutputProcessor;
+import org.apache.xml.security.stax.ext.OutputProcessorChain;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.stax.XMLSecAttribute;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.apache.xml.security.stax.impl.OutboundSecurityContextImpl;
+import org.apache.xml.security.stax.impl.OutputProcessorChainImpl;
+import org.apache.xml.security.stax.impl.stax.XMLSecAttributeImpl;
+import org.apache.xml.security.stax.impl.stax.XMLSecEndElementImpl;
+import org.apache.xml.security.stax.impl.stax.XMLSecStartElementImpl;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the final security header order of the SecurityHeaderReorderProcessor, and which headers it passes on
+ * directly (before the end of the security header) instead of buffering them.
+ */
+public class SecurityHeaderReorderProcessorTest {
+
+    private static final QName TAG_SOAP_ENVELOPE = new QName(WSSConstants.NS_SOAP11, "Envelope");
+    private static final QName TAG_SOAP_HEADER = new QName(WSSConstants.NS_SOAP11, WSSConstants.TAG_SOAP_HEADER_LN);
+
+    @Test
+    public void testSignatureThenEncryption() throws Exception {
+        List<String> passedOn = new ArrayList<>();
+        List<String> headers = reorder(
+            Arrays.asList(WSSConstants.SIGNATURE, WSSConstants.ENCRYPTION), passedOn,
+            header("sigBST", WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN, WSSConstants.SIGNATURE, false),
+            header("signature", WSSConstants.TAG_dsig_Signature, WSSConstants.SIGNATURE, false),
+            header("encBST", WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN, WSSConstants.ENCRYPTION, false),
+            header("encryptedKey", WSSConstants.TAG_xenc_EncryptedKey, WSSConstants.ENCRYPTION, false)
+        );
+
+        // The last action is encryption: its headers are passed on directly, and come first
+        assertEquals(Arrays.asList("encBST", "encryptedKey"), passedOn);
+        assertEquals(Arrays.asList("encBST", "encryptedKey", "sigBST", "signature"), headers);
+    }
+
+    @Test
+    public void testSignatureThenEncryptionOfTheSignature() throws Exception {
+        List<String> passedOn = new ArrayList<>();
+        List<String> headers = reorder(
+            Arrays.asList(WSSConstants.SIGNATURE, WSSConstants.ENCRYPTION), passedOn,
+            header("sigBST", WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN, WSSConstants.SIGNATURE, false),
+            header("encryptedKey", WSSConstants.TAG_xenc_EncryptedKey, WSSConstants.ENCRYPTION, false),
+            header("signature", WSSConstants.TAG_dsig_Signature, WSSConstants.SIGNATURE, true),
+            header("referenceList", WSSConstants.TAG_xenc_ReferenceList, WSSConstants.ENCRYPTION, false)
+        );
+
+        assertEquals(Arrays.asList("encryptedKey", "referenceList"), passedOn);
+        assertEquals(Arrays.asList("encryptedKey", "referenceList", "sigBST", "signature"), headers);
+    }
+
+    @Test
+    public void testEncryptionThenSignature() throws Exception {
+        List<String> passedOn = new ArrayList<>();
+        List<String> headers = reorder(
+            Arrays.asList(WSSConstants.ENCRYPTION, WSSConstants.SIGNATURE), passedOn,
+            header("encBST", WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN, WSSConstants.ENCRYPTION, false),
+            header("encryptedKey", WSSConstants.TAG_xenc_EncryptedKey, WSSConstants.ENCRYPTION, false),
+            header("sigBST", WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN, WSSConstants.SIGNATURE, false),
+            header("signature", WSSConstants.TAG_dsig_Signature, WSSConstants.SIGNATURE, false)
+        );
+
+        // The signature itself is always buffered, as it must follow the headers of its action
+        assertEquals(Collections.singletonList("sigBST"), passedOn);
+        assertEquals(Arrays.asList("sigBST", "signature", "encBST", "encryptedKey"), headers);
+    }
+
+    @Test
+    public void testUsernameTokenSignedAndEncrypted() throws Exception {
+        List<String> passedOn = new ArrayList<>();
+        List<String> headers = reorder(
+            Arrays.asList(WSSConstants.USERNAMETOKEN, WSSConstants.SIGNATURE, WSSConstants.ENCRYPTION), passedOn,
+            header("usernameToken", WSSConstants.TAG_WSSE_USERNAME_TOKEN, WSSConstants.USERNAMETOKEN, true),
+            header("signature", WSSConstants.TAG_dsig_Signature, WSSConstants.SIGNATURE, false),
+            header("encryptedKey", WSSConstants.TAG_xenc_EncryptedKey, WSSConstants.ENCRYPTION, false)
+        );
+
+        assertEquals(Collections.singletonList("encryptedKey"), passedOn);
+        assertEquals(Arrays.asList("encryptedKey", "signature", "usernameToken"), headers);
+    }
+
+    @Test
+    public void testRepeatedSignatureAction() throws Exception {
+        List<String> passedOn = new ArrayList<>();
+        List<String> headers = reorder(
+            Arrays.asList(WSSConstants.SIGNATURE, WSSConstants.ENCRYPTION, WSSConstants.SIGNATURE), passedOn,
+            header("sigBST1", WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN, WSSConstants.SIGNATURE, false),
+            header("signature1", WSSConstants.TAG_dsig_Signature, WSSConstants.SIGNATURE, false),
+            header("encryptedKey", WSSConstants.TAG_xenc_EncryptedKey, WSSConstants.ENCRYPTION, false),
+            header("sigBST2", WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN, WSSConstants.SIGNATURE, false),
+            header("signature2", WSSConstants.TAG_dsig_Signature, WSSConstants.SIGNATURE, false)
+        );
+
+        // Both signature actions share the headers of the last configured action
+        assertEquals(Arrays.asList("sigBST1", "sigBST2"), passedOn);
+        assertEquals(Arrays.asList("sigBST1", "sigBST2", "signature1", "signature2", "encryptedKey"), headers);
+    }
+
+    @Test
+    public void testRepeatedEncryptionAction() throws Exception {
+        List<String> passedOn = new ArrayList<>();
+        List<String> headers = reorder(
+            Arrays.asList(WSSConstants.ENCRYPTION, WSSConstants.SIGNATURE, WSSConstants.ENCRYPTION), passedOn,
+            header("encryptedKey1", WSSConstants.TAG_xenc_EncryptedKey, WSSConstants.ENCRYPTION, false),
+            header("sigBST", WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN, WSSConstants.SIGNATURE, false),
+            header("signature", WSSConstants.TAG_dsig_Signature, WSSConstants.SIGNATURE, true),
+            header("encryptedKey2", WSSConstants.TAG_xenc_EncryptedKey, WSSConstants.ENCRYPTION, false)
+        );
+
+        assertEquals(Arrays.asList("encryptedKey1", "encryptedKey2"), passedOn);
+        assertEquals(Arrays.asList("encryptedKey1", "encryptedKey2", "sigBST", "signature"), headers);
+    }
+
+    private static SecurityHeaderOrder header(
+        String id, QName name, XMLSecurityConstants.Action action, boolean encrypted
+    ) {
+        return new LabelledSecurityHeaderOrder(id, name, action, encrypted);
+    }
+
+    /**
+     * Write the given headers into a security header, and return the ids of the headers in the order in which
+     * they are output. The ids of the headers that are output before the end of the security header is written
+     * are added to passedOn.
+     */
+    private static List<String> reorder(
+        List<XMLSecurityConstants.Action> actions, List<String> passedOn, SecurityHeaderOrder... headers
+    ) throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.setActions(actions);
+
+        OutboundSecurityContextImpl securityContext = new OutboundSecurityContextImpl();
+        for (SecurityHeaderOrder header : headers) {
+            securityContext.putAsList(SecurityHeaderOrder.class, header);
+        }
+
+        OutputProcessorChainImpl outputProcessorChain = new OutputProcessorChainImpl(securityContext);
+        SecurityHeaderReorderProcessor reorderProcessor = new SecurityHeaderReorderProcessor();
+        reorderProcessor.setXMLSecurityProperties(securityProperties);
+        reorderProcessor.init(outputProcessorChain);
+        RecordingOutputProcessor recordingProcessor = new RecordingOutputProcessor();
+        recordingProcessor.setXMLSecurityProperties(securityProperties);
+        recordingProcessor.init(outputProcessorChain);
+
+        XMLSecStartElement envelope = new XMLSecStartElementImpl(TAG_SOAP_ENVELOPE, null, null, null);
+        XMLSecStartElement soapHeader = new XMLSecStartElementImpl(TAG_SOAP_HEADER, null, null, envelope);
+        XMLSecStartElement securityHeader =
+            new XMLSecStartElementImpl(WSSConstants.TAG_WSSE_SECURITY, null, null, soapHeader);
+        process(outputProcessorChain, envelope);
+        process(outputProcessorChain, soapHeader);
+        process(outputProcessorChain, securityHeader);
+
+        for (SecurityHeaderOrder header : headers) {
+            QName name = header.isEncrypted() ? WSSConstants.TAG_xenc_EncryptedData : header.getSecurityHeaderElementName();
+            List<XMLSecAttribute> attributes = new ArrayList<>();
+            attributes.add(new XMLSecAttributeImpl(WSSConstants.ATT_WSU_ID, ((LabelledSecurityHeaderOrder) header).id));
+            XMLSecStartElement element = new XMLSecStartElementImpl(name, attributes, null, securityHeader);
+            process(outputProcessorChain, element);
+            process(outputProcessorChain, new XMLSecEndElementImpl(name, element));
+        }
+        passedOn.addAll(recordingProcessor.headers);
+
+        process(outputProcessorChain, new XMLSecEndElementImpl(WSSConstants.TAG_WSSE_SECURITY, securityHeader));
+        process(outputProcessorChain, new XMLSecEndElementImpl(TAG_SOAP_HEADER, soapHeader));
+        process(outputProcessorChain, new XMLSecEndElementImpl(TAG_SOAP_ENVELOPE, envelope));
+        return recordingProcessor.headers;
+    }
+
+    private static void process(OutputProcessorChain outputProcessorChain, XMLSecEvent xmlSecEvent)
+        throws XMLStreamException, XMLSecurityException {
+        outputProcessorChain.reset();
+        outputProcessorChain.processEvent(xmlSecEvent);
+    }
+
+    private static final class LabelledSecurityHeaderOrder extends SecurityHeaderOrder {
+        private final String id;
+
+        LabelledSecurityHeaderOrder(String id, QName name, XMLSecurityConstants.Action action, boolean encrypted) {
+            super(name, action, encrypted);
+            this.id = id;
+        }
+    }
+
+    /**
+     * Records the ids of the security header elements that reach the end of the chain
+     */
+    private static final class RecordingOutputProcessor extends AbstractOutputProcessor {
+        private final List<String> headers = new ArrayList<>();
+
+        RecordingOutputProcessor() throws XMLSecurityException {
+            super();
+            setPhase(XMLSecurityConstants.Phase.POSTPROCESSING);
+            addAfterProcessor(SecurityHeaderReorderProcessor.class);
+        }
+
+        @Override
+        public void processEvent(XMLSecEvent xmlSecEvent, OutputProcessorChain outputProcessorChain) {
+            if (xmlSecEvent.isStartElement() && xmlSecEvent.getDocumentLevel() == 4) {
+                headers.add(xmlSecEvent.asStartElement().getAttributeByName(WSSConstants.ATT_WSU_ID).getValue());
+            }
+        }
+    }
+}
@@ -47,6 +47,7 @@ import javax.xml.xpath.XPathExpression;
 import org.apache.wss4j.common.ConfigurationConstants;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.ReloadableCrypto;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.WSConstants;
@@ -1702,4 +1703,51 @@ public class SignatureTest extends AbstractTestBase {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReloadableCryptoSwappedDuringProcessing() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            String action = WSHandlerConstants.SIGNATURE;
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, new Properties());
+
+            javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+
+        //done signature; now test sig-verification:
+        {
+            Properties cryptoProperties =
+                CryptoFactory.getProperties("receiver-crypto.properties", this.getClass().getClassLoader());
+            ReloadableCrypto reloadableCrypto =
+                new ReloadableCrypto(cryptoProperties, this.getClass().getClassLoader(), null);
+            reloadableCrypto.setCheckInterval(0L);
+
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.setSignatureVerificationReloadableCrypto(reloadableCrypto);
+            InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+            XMLStreamReader xmlStreamReader = wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+
+            // Swap the Crypto for one that does not trust the signer, while the message is being processed
+            cryptoProperties.put("org.apache.wss4j.crypto.merlin.keystore.file", "keys/wss40rev.jks");
+            cryptoProperties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+            reloadableCrypto.reload();
+
+            // The message is still processed with the Crypto it started with
+            Document document = StAX2DOM.readDoc(documentBuilderFactory.newDocumentBuilder(), xmlStreamReader);
+            NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_dsig_Signature.getNamespaceURI(), WSSConstants.TAG_dsig_Signature.getLocalPart());
+            assertEquals(nodeList.getLength(), 1);
+
+            // The next message is processed with the new Crypto
+            xmlStreamReader = wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+            try {
+                StAX2DOM.readDoc(documentBuilderFactory.newDocumentBuilder(), xmlStreamReader);
+                fail("Exception expected");
+            } catch (XMLStreamException e) {
+                assertTrue(e.getCause() instanceof WSSecurityException);
+            }
+        }
+    }
+}